@@ -1,6 +1,7 @@
 package com.s4m.pharmacy;
 
 import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.util.PasswordHasher;
 
 /**
  * Point d'entrée de l'application
@@ -9,6 +10,8 @@ import com.s4m.pharmacy.db.DatabaseConnection;
 public class Main {
     public static void main(String[] args) {
         System.out.println("=== Initialisation de la base de données ===");
+        // Les utilisateurs par défaut sont hashés avec le facteur calibré pour cette machine
+        PasswordHasher.calibrer(DatabaseConnection.getConfig().getHashBudgetMs());
         DatabaseConnection.initialiser();
         System.out.println("\n=== Application prête ===");
     }
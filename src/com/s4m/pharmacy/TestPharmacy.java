@@ -16,7 +16,7 @@ public class TestPharmacy {
         System.out.println("ID : " + cat1.getId() + ", Nom : " + cat1.getNom() + "\n");
         
         System.out.println("2. TEST PRODUIT");
-        Product prod1 = new Product("Paracétamol 500mg", "Antalgique", 3.50, 100, 
+        Product prod1 = new Product("Paracétamol 500mg", "Antalgique", 350, 100, 
                                     LocalDate.of(2026, 12, 31), 1);
         prod1.setId(1);
         System.out.println("Produit créé : " + prod1);
@@ -25,7 +25,7 @@ public class TestPharmacy {
         Product prod2 = new Product();
         prod2.setId(2);
         prod2.setNom("Amoxicilline 500mg");
-        prod2.setPrix(15.75);
+        prod2.setPrixCentimes(1575);
         prod2.setQuantite(5);
         prod2.setDateExpiration(LocalDate.of(2025, 6, 30));
         System.out.println("Produit 2 : " + prod2);
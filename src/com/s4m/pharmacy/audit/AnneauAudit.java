@@ -0,0 +1,66 @@
+package com.s4m.pharmacy.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Anneau borné sans verrou, plusieurs producteurs / un seul consommateur.
+ * Un producteur réserve une case par CAS sur le compteur de production puis y publie
+ * son élément ; le consommateur lit les cases dans l'ordre et s'arrête à la première
+ * case encore vide (réservée mais pas encore publiée).
+ */
+final class AnneauAudit {
+
+    private final AtomicReferenceArray<EvenementAudit> cases;
+    private final int masque;
+    private final AtomicLong production = new AtomicLong();
+    // Écrit par le seul consommateur ; lu par les producteurs pour détecter l'anneau plein
+    private volatile long consommation;
+
+    AnneauAudit(int capaciteDemandee) {
+        int capacite = Integer.highestOneBit(Math.max(2, capaciteDemandee - 1)) << 1;
+        this.cases = new AtomicReferenceArray<>(capacite);
+        this.masque = capacite - 1;
+    }
+
+    /**
+     * Retourne false si l'anneau est plein
+     */
+    boolean offrir(EvenementAudit evenement) {
+        long position;
+        do {
+            position = production.get();
+            if (position - consommation > masque) return false;
+        } while (!production.compareAndSet(position, position + 1));
+        cases.lazySet((int) (position & masque), evenement);
+        return true;
+    }
+
+    /**
+     * Retire au plus {@code max} éléments, dans l'ordre de réservation (consommateur unique)
+     */
+    int vider(List<EvenementAudit> lot, int max) {
+        long position = consommation;
+        int lus = 0;
+        while (lus < max) {
+            int i = (int) (position & masque);
+            EvenementAudit evenement = cases.get(i);
+            if (evenement == null) break;
+            cases.lazySet(i, null);
+            lot.add(evenement);
+            position++;
+            lus++;
+        }
+        consommation = position;
+        return lus;
+    }
+
+    int taille() {
+        return (int) (production.get() - consommation);
+    }
+
+    int capacite() {
+        return masque + 1;
+    }
+}
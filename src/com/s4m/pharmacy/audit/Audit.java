@@ -0,0 +1,168 @@
+package com.s4m.pharmacy.audit;
+
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.db.UniteDeTravail;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.util.Montant;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Journal d'audit des écritures (qui a modifié quoi).
+ *
+ * Les services publient un événement dans un anneau borné en mémoire ; un thread
+ * d'arrière-plan l'écrit en base par lots. Publier ne coûte donc pas d'aller-retour.
+ * Si l'anneau est plein, l'appelant attend au plus {@code audit.attente.max.ms}
+ * que l'écrivain libère de la place, puis l'événement est compté comme perdu :
+ * l'audit ne bloque jamais durablement une écriture métier.
+ * L'anneau est vidé à l'arrêt de l'application.
+ */
+public final class Audit {
+
+    public static final String AJOUT = "AJOUT";
+    public static final String MODIFICATION = "MODIFICATION";
+    public static final String SUPPRESSION = "SUPPRESSION";
+    public static final String MOT_DE_PASSE = "MOT_DE_PASSE";
+
+    private static final long ATTENTE_PAS_NS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long DELAI_ARRET_MS = 5_000;
+
+    private static final boolean ACTIF;
+    private static final long ATTENTE_MAX_NS;
+    private static final AnneauAudit ANNEAU;
+    private static final EcrivainAudit ECRIVAIN;
+    private static final Thread THREAD;
+    private static final LongAdder PERDUS = new LongAdder();
+
+    // Auteur des écritures : utilisateur de la requête (serveur) ou session locale (terminal)
+    private static final ThreadLocal<User> UTILISATEUR_REQUETE = new ThreadLocal<>();
+    private static volatile Supplier<User> sourceUtilisateur = () -> null;
+
+    static {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        ACTIF = Boolean.parseBoolean(config.getPropriete("audit.enabled", "true"));
+        ATTENTE_MAX_NS = TimeUnit.MILLISECONDS.toNanos(config.getEntier("audit.attente.max.ms", 20));
+        ANNEAU = new AnneauAudit((int) config.getEntier("audit.capacite", 8192));
+        ECRIVAIN = new EcrivainAudit(ANNEAU, (int) config.getEntier("audit.lot", 256));
+        THREAD = new Thread(ECRIVAIN, "pharmacy-audit");
+        THREAD.setDaemon(true);
+        if (ACTIF) {
+            THREAD.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Audit::arreter, "pharmacy-audit-arret"));
+        }
+    }
+
+    private Audit() {}
+
+    /**
+     * Désigne l'utilisateur connecté du terminal (ex. {@code authService::getUtilisateurConnecte})
+     */
+    public static void definirSourceUtilisateur(Supplier<User> source) {
+        sourceUtilisateur = source;
+    }
+
+    /**
+     * Auteur des écritures du thread courant (requête serveur) ; null pour l'effacer
+     */
+    public static void definirUtilisateurRequete(User user) {
+        if (user == null) UTILISATEUR_REQUETE.remove();
+        else UTILISATEUR_REQUETE.set(user);
+    }
+
+    /**
+     * Publie une écriture ; {@code avant}/{@code apres} valent null pour un ajout/une suppression
+     */
+    public static void publier(String entite, int idEntite, String action,
+                               Map<String, Object> avant, Map<String, Object> apres) {
+        if (!ACTIF) return;
+        User auteur = UTILISATEUR_REQUETE.get();
+        if (auteur == null) auteur = sourceUtilisateur.get();
+        EvenementAudit evenement = new EvenementAudit(System.currentTimeMillis(),
+            auteur != null ? auteur.getId() : 0, auteur != null ? auteur.getEmail() : null,
+            entite, idEntite, action, avant, apres);
+        // Une écriture annulée avec son unité de travail n'est pas auditée
+        if (UniteDeTravail.estOuverte()) UniteDeTravail.apresValidation(() -> deposer(evenement));
+        else deposer(evenement);
+    }
+
+    private static void deposer(EvenementAudit evenement) {
+        if (ANNEAU.offrir(evenement)) {
+            if (ANNEAU.taille() > ANNEAU.capacite() / 2) LockSupport.unpark(THREAD);
+            return;
+        }
+        // Anneau plein : contre-pression bornée, puis abandon compté
+        long limite = System.nanoTime() + ATTENTE_MAX_NS;
+        do {
+            LockSupport.unpark(THREAD);
+            LockSupport.parkNanos(ATTENTE_PAS_NS);
+            if (ANNEAU.offrir(evenement)) return;
+        } while (System.nanoTime() < limite);
+        PERDUS.increment();
+    }
+
+    /**
+     * Nombre d'événements abandonnés faute de place depuis le démarrage
+     */
+    public static long evenementsPerdus() {
+        return PERDUS.sum();
+    }
+
+    /**
+     * Écrit les événements en attente et arrête l'écrivain (idempotent)
+     */
+    public static void arreter() {
+        if (!ACTIF || !THREAD.isAlive()) return;
+        ECRIVAIN.demanderArret();
+        LockSupport.unpark(THREAD);
+        try {
+            THREAD.join(DELAI_ARRET_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (PERDUS.sum() > 0) {
+            System.err.println("Audit : " + PERDUS.sum() + " événement(s) perdu(s) par saturation");
+        }
+    }
+
+    // ==================== VALEURS ====================
+
+    public static Map<String, Object> valeurs(Product p) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("nom", p.getNom());
+        m.put("description", p.getDescription());
+        m.put("prix", Montant.versDecimal(p.getPrixCentimes()));
+        m.put("quantite", p.getQuantite());
+        m.put("dateExpiration", p.getDateExpiration());
+        m.put("idCategorie", p.getIdCategorie());
+        m.put("code", p.getCode());
+        m.put("idSite", p.getIdSite());
+        return m;
+    }
+
+    public static Map<String, Object> valeurs(Category c) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("nom", c.getNom());
+        m.put("description", c.getDescription());
+        return m;
+    }
+
+    /**
+     * Le hash du mot de passe n'est jamais journalisé
+     */
+    public static Map<String, Object> valeurs(User u) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("nom", u.getNom());
+        m.put("email", u.getEmail());
+        m.put("role", u.getRole());
+        m.put("idSite", u.getIdSite());
+        return m;
+    }
+}
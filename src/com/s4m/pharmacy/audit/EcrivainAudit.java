@@ -0,0 +1,97 @@
+package com.s4m.pharmacy.audit;
+
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.util.Json;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread d'écriture de l'audit : vide l'anneau par lots et les insère en une requête
+ * multi-lignes. À l'arrêt, l'anneau est entièrement vidé avant la fin du thread.
+ */
+final class EcrivainAudit implements Runnable {
+
+    private static final long INTERVALLE_NS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final int TENTATIVES = 3;
+    private static final String INSERT = "INSERT INTO Audit " +
+        "(date_action, id_utilisateur, utilisateur, entite, id_entite, action, avant, apres) VALUES ";
+    private static final String LIGNE = "(?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final AnneauAudit anneau;
+    private final int tailleLot;
+    private final DatabaseConnection dbConnection = new DatabaseConnection();
+    private volatile boolean arret;
+
+    EcrivainAudit(AnneauAudit anneau, int tailleLot) {
+        this.anneau = anneau;
+        this.tailleLot = tailleLot;
+    }
+
+    void demanderArret() {
+        arret = true;
+    }
+
+    @Override
+    public void run() {
+        // Terminal propre : les insertions d'audit ne renvoient pas les lectures du poste vers le primaire
+        DatabaseConnection.definirTerminal(this);
+        List<EvenementAudit> lot = new ArrayList<>(tailleLot);
+        while (true) {
+            lot.clear();
+            anneau.vider(lot, tailleLot);
+            if (!lot.isEmpty()) {
+                ecrire(lot);
+            } else if (arret) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, INTERVALLE_NS);
+            }
+        }
+    }
+
+    private void ecrire(List<EvenementAudit> lot) {
+        for (int tentative = 1; ; tentative++) {
+            try {
+                inserer(lot);
+                return;
+            } catch (SQLException e) {
+                if (tentative == TENTATIVES || arret) {
+                    System.err.println("Audit : " + lot.size() + " événement(s) perdu(s) : " + e.getMessage());
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(tentative));
+            }
+        }
+    }
+
+    private void inserer(List<EvenementAudit> lot) throws SQLException {
+        StringBuilder sql = new StringBuilder(INSERT.length() + lot.size() * (LIGNE.length() + 2)).append(INSERT);
+        for (int i = 0; i < lot.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(LIGNE);
+        }
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (EvenementAudit e : lot) {
+                pstmt.setTimestamp(p++, new Timestamp(e.horodatage));
+                if (e.idUtilisateur > 0) pstmt.setInt(p++, e.idUtilisateur);
+                else pstmt.setNull(p++, Types.INTEGER);
+                pstmt.setString(p++, e.utilisateur);
+                pstmt.setString(p++, e.entite);
+                pstmt.setInt(p++, e.idEntite);
+                pstmt.setString(p++, e.action);
+                pstmt.setString(p++, e.avant != null ? Json.ecrire(e.avant) : null);
+                pstmt.setString(p++, e.apres != null ? Json.ecrire(e.apres) : null);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.s4m.pharmacy.audit;
+
+import java.util.Map;
+
+/**
+ * Écriture auditée : auteur, entité concernée et valeurs avant/après (null si sans objet).
+ * Les valeurs sont des copies figées au moment de la publication ; leur sérialisation
+ * est faite par l'écrivain, hors du thread appelant.
+ */
+final class EvenementAudit {
+
+    final long horodatage;
+    final int idUtilisateur;
+    final String utilisateur;
+    final String entite;
+    final int idEntite;
+    final String action;
+    final Map<String, Object> avant;
+    final Map<String, Object> apres;
+
+    EvenementAudit(long horodatage, int idUtilisateur, String utilisateur, String entite, int idEntite,
+                   String action, Map<String, Object> avant, Map<String, Object> apres) {
+        this.horodatage = horodatage;
+        this.idUtilisateur = idUtilisateur;
+        this.utilisateur = utilisateur;
+        this.entite = entite;
+        this.idEntite = idEntite;
+        this.action = action;
+        this.avant = avant;
+        this.apres = apres;
+    }
+}
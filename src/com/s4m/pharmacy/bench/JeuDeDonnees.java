@@ -0,0 +1,154 @@
+package com.s4m.pharmacy.bench;
+
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.util.CodeBarre;
+import com.s4m.pharmacy.util.Montant;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Construit un catalogue synthétique réaliste dans la base du site courant, pour les tests
+ * de charge : catégories de tailles très inégales (loi de Zipf), noms de spécialités, dosages
+ * et formes variés, prix et stocks plausibles, péremptions étalées sur trois ans.
+ *
+ * Les produits sont insérés par lots JDBC de {@code lot} lignes, validés lot par lot. Leurs
+ * codes-barres (EAN-13 à préfixe interne 290) les distinguent des produits réels ; l'option
+ * {@code purger} les supprime. Le tirage est reproductible pour une même graine.
+ * Usage : java com.s4m.pharmacy.bench.JeuDeDonnees [produits] [catégories] [graine] [lot]
+ *         java com.s4m.pharmacy.bench.JeuDeDonnees purger
+ */
+public class JeuDeDonnees {
+
+    private static final String PREFIXE_CODE = "290";
+
+    private static final String[] RACINES = {"Paracétamol", "Ibuprofène", "Amoxicilline", "Oméprazole",
+        "Loratadine", "Cétirizine", "Vitamine C", "Vitamine D3", "Magnésium", "Zinc", "Métformine",
+        "Atorvastatine", "Amlodipine", "Lévothyroxine", "Salbutamol", "Diclofénac", "Azithromycine",
+        "Ciprofloxacine", "Doliprane", "Smecta", "Spasfon", "Gaviscon", "Chlorhexidine", "Povidone iodée",
+        "Fer", "Acide folique", "Oméga 3", "Mélatonine", "Kétoprofène", "Desloratadine"};
+    private static final String[] DOSAGES = {"100 mg", "200 mg", "250 mg", "500 mg", "1 g", "5 mg", "10 mg",
+        "20 mg", "40 mg", "1000 UI", "0,5 %", "2 %"};
+    private static final String[] FORMES = {"comprimés", "gélules", "sirop", "sachets", "solution buvable",
+        "crème", "gel", "collyre", "spray nasal", "suppositoires", "ampoules", "pommade"};
+    private static final String[] FAMILLES = {"Antalgiques", "Anti-inflammatoires", "Antibiotiques",
+        "Gastro-entérologie", "Allergologie", "Vitamines et minéraux", "Cardiologie", "Diabétologie",
+        "Dermatologie", "ORL", "Ophtalmologie", "Pneumologie", "Antiseptiques", "Sommeil", "Phytothérapie"};
+
+    public static void main(String[] args) throws SQLException {
+        DatabaseConnection.initialiser();
+        if (args.length > 0 && args[0].equals("purger")) {
+            System.out.println(purger() + " produit(s) synthétique(s) supprimé(s)");
+            return;
+        }
+        int produits = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int nombreCategories = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        long graine = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        int lot = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+
+        long debut = System.nanoTime();
+        List<Integer> categories = categories(nombreCategories);
+        int inseres = inserer(produits, categories, new Random(graine), lot);
+        double secondes = (System.nanoTime() - debut) / 1e9;
+        System.out.printf("%d produit(s) dans %d catégorie(s) en %.1f s (%.0f lignes/s)%n",
+            inseres, categories.size(), secondes, inseres / secondes);
+    }
+
+    /**
+     * Catégories synthétiques (créées par le service, donc recopiées dans les bases de sites)
+     */
+    private static List<Integer> categories(int nombre) {
+        CategoryService service = new CategoryService();
+        Map<String, Integer> existantes = new HashMap<>();
+        for (Category c : service.listerToutesLesCategories()) existantes.put(c.getNom(), c.getId());
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < nombre; i++) {
+            String nom = FAMILLES[i % FAMILLES.length] + (i < FAMILLES.length ? "" : " " + (i / FAMILLES.length + 1));
+            Integer id = existantes.get(nom);
+            if (id == null) {
+                id = service.ajouterCategorie(new Category(nom, "Catégorie synthétique (tests de charge)"));
+                if (id <= 0) throw new IllegalStateException("Création de la catégorie « " + nom + " » impossible");
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static int inserer(int produits, List<Integer> categories, Random random, int lot) throws SQLException {
+        // Quelques catégories concentrent l'essentiel du catalogue
+        LoiZipf repartition = new LoiZipf(categories.size(), 1.1);
+        LocalDate aujourdhui = LocalDate.now();
+        int site = DatabaseConnection.getSiteCourant();
+        long premierCode = prochainCode();
+        String sql = "INSERT INTO Produit (nom, description, prix, quantite, date_expiration, id_categorie, code, id_site) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        int inseres = 0;
+        try (Connection conn = new DatabaseConnection().getConnectionSite();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < produits; i++) {
+                String nom = RACINES[random.nextInt(RACINES.length)] + " " + DOSAGES[random.nextInt(DOSAGES.length)] +
+                             " " + FORMES[random.nextInt(FORMES.length)];
+                // Prix log-normal (médiane ~6 €) et stock exponentiel (beaucoup de petits stocks)
+                long prix = Math.min(50_000, Math.round(Math.exp(1.8 + random.nextGaussian() * 0.8) * 100));
+                int quantite = (int) Math.min(2_000, -Math.log(1 - random.nextDouble()) * 60);
+                pstmt.setString(1, nom);
+                pstmt.setString(2, String.format(Locale.ROOT, "%s — boîte de %d", nom, 8 + random.nextInt(5) * 8));
+                Montant.lier(pstmt, 3, prix);
+                pstmt.setInt(4, quantite);
+                pstmt.setDate(5, Date.valueOf(aujourdhui.plusDays(random.nextInt(3 * 365) - 30)));
+                pstmt.setInt(6, categories.get(repartition.tirer(random)));
+                pstmt.setString(7, CodeBarre.avecCle(PREFIXE_CODE + String.format("%09d", premierCode + i)));
+                pstmt.setInt(8, site);
+                pstmt.addBatch();
+                if ((i + 1) % lot == 0 || i + 1 == produits) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                    inseres = i + 1;
+                    if (inseres % (lot * 50) == 0) System.out.println(inseres + " / " + produits);
+                }
+            }
+        }
+        return inseres;
+    }
+
+    /**
+     * Numéro suivant le plus grand code synthétique déjà présent (générations successives)
+     */
+    private static long prochainCode() throws SQLException {
+        try (Connection conn = new DatabaseConnection().getConnectionSite();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT MAX(code) FROM Produit WHERE code LIKE ?")) {
+            pstmt.setString(1, PREFIXE_CODE + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                String max = rs.next() ? rs.getString(1) : null;
+                return max != null ? Long.parseLong(max.substring(PREFIXE_CODE.length(), 12)) + 1 : 1;
+            }
+        }
+    }
+
+    private static int purger() throws SQLException {
+        int total = 0;
+        try (Connection conn = new DatabaseConnection().getConnectionSite();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Produit WHERE code LIKE ? LIMIT 10000")) {
+            pstmt.setString(1, PREFIXE_CODE + "%");
+            int supprimes;
+            do {
+                supprimes = pstmt.executeUpdate();
+                total += supprimes;
+            } while (supprimes > 0);
+        }
+        return total;
+    }
+}
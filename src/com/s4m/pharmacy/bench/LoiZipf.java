@@ -0,0 +1,30 @@
+package com.s4m.pharmacy.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tirage de rangs selon une loi de Zipf : le rang 0 est le plus fréquent, la fréquence du
+ * rang k décroît en 1/(k+1)^s. Modélise la popularité très inégale des produits (quelques
+ * références font l'essentiel des ventes).
+ */
+final class LoiZipf {
+
+    private final double[] cumul;
+
+    LoiZipf(int n, double s) {
+        if (n <= 0) throw new IllegalArgumentException("Au moins un rang est requis");
+        cumul = new double[n];
+        double somme = 0;
+        for (int k = 0; k < n; k++) {
+            somme += 1 / Math.pow(k + 1, s);
+            cumul[k] = somme;
+        }
+        for (int k = 0; k < n; k++) cumul[k] /= somme;
+    }
+
+    int tirer(Random random) {
+        int i = Arrays.binarySearch(cumul, random.nextDouble());
+        return Math.min(i >= 0 ? i : -i - 1, cumul.length - 1);
+    }
+}
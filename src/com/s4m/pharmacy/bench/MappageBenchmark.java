@@ -0,0 +1,167 @@
+package com.s4m.pharmacy.bench;
+
+import com.s4m.pharmacy.db.AccesDonnees;
+import com.s4m.pharmacy.db.Mappeur;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.util.Montant;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compare le coût par ligne de la correspondance par nom de colonne (ancienne méthode des
+ * services) et par index résolus une fois ({@link Mappeur}), sur un résultat en mémoire :
+ * seul le coût de la correspondance est mesuré, pas celui du réseau ni de la base.
+ * Usage : java com.s4m.pharmacy.bench.MappageBenchmark [lignes] [répétitions]
+ */
+public class MappageBenchmark {
+
+    private static final String[] COLONNES = {"id", "nom", "description", "prix", "quantite",
+        "date_expiration", "id_categorie", "code", "id_site", "created_at", "updated_at"};
+    private static final String SQL = "SELECT * FROM Produit";
+
+    private static final Mappeur<Product> PAR_INDEX = new Mappeur<>(c -> {
+        int id = c.index("id");
+        int nom = c.index("nom");
+        int description = c.indexOptionnel("description");
+        int prix = c.index("prix");
+        int quantite = c.index("quantite");
+        int dateExpiration = c.index("date_expiration");
+        int idCategorie = c.index("id_categorie");
+        int code = c.index("code");
+        int idSite = c.index("id_site");
+        return rs -> {
+            Product p = new Product();
+            p.setId(rs.getInt(id));
+            p.setNom(rs.getString(nom));
+            if (description > 0) p.setDescription(rs.getString(description));
+            p.setPrixCentimes(Montant.lire(rs, prix));
+            p.setQuantite(rs.getInt(quantite));
+            Date dateExp = rs.getDate(dateExpiration);
+            if (dateExp != null) p.setDateExpiration(dateExp.toLocalDate());
+            p.setIdCategorie(rs.getInt(idCategorie));
+            p.setCode(rs.getString(code));
+            p.setIdSite(rs.getInt(idSite));
+            return p;
+        };
+    });
+
+    public static void main(String[] args) throws SQLException {
+        int lignes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Object[][] donnees = generer(lignes);
+
+        // Préchauffage des deux chemins
+        for (int i = 0; i < 5; i++) {
+            parNom(resultat(donnees));
+            AccesDonnees.liste(connexion(donnees), SQL, null, PAR_INDEX);
+        }
+
+        long nsParNom = 0;
+        long nsParIndex = 0;
+        for (int i = 0; i < repetitions; i++) {
+            long debut = System.nanoTime();
+            parNom(resultat(donnees));
+            nsParNom += System.nanoTime() - debut;
+            debut = System.nanoTime();
+            AccesDonnees.liste(connexion(donnees), SQL, null, PAR_INDEX);
+            nsParIndex += System.nanoTime() - debut;
+        }
+        double parNom = (double) nsParNom / repetitions / lignes;
+        double parIndex = (double) nsParIndex / repetitions / lignes;
+        System.out.println("=== CORRESPONDANCE DES LIGNES (" + lignes + " lignes x " + repetitions + ") ===");
+        System.out.printf("%-22s %10.1f ns/ligne%n", "par nom de colonne", parNom);
+        System.out.printf("%-22s %10.1f ns/ligne%n", "par index (Mappeur)", parIndex);
+        System.out.printf("gain : %.1f %%%n", 100 * (1 - parIndex / parNom));
+    }
+
+    /**
+     * Ancienne correspondance : chaque accès recherche la colonne par son nom
+     */
+    private static List<Product> parNom(ResultSet rs) throws SQLException {
+        List<Product> list = new ArrayList<>();
+        while (rs.next()) {
+            Product p = new Product();
+            p.setId(rs.getInt("id"));
+            p.setNom(rs.getString("nom"));
+            p.setDescription(rs.getString("description"));
+            p.setPrixCentimes(Montant.depuisDecimal(rs.getBigDecimal("prix")));
+            p.setQuantite(rs.getInt("quantite"));
+            Date dateExp = rs.getDate("date_expiration");
+            if (dateExp != null) p.setDateExpiration(dateExp.toLocalDate());
+            p.setIdCategorie(rs.getInt("id_categorie"));
+            p.setCode(rs.getString("code"));
+            p.setIdSite(rs.getInt("id_site"));
+            list.add(p);
+        }
+        return list;
+    }
+
+    private static Object[][] generer(int lignes) {
+        Object[][] donnees = new Object[lignes][];
+        Date date = Date.valueOf(LocalDate.now().plusYears(1));
+        for (int i = 0; i < lignes; i++) {
+            donnees[i] = new Object[]{i + 1, "Produit " + i, "Description du produit " + i,
+                BigDecimal.valueOf(450 + (i % 100) * 100L, 2),
+                i % 250, date, 1 + i % 12, String.format("%013d", i), 1, null, null};
+        }
+        return donnees;
+    }
+
+    // ==================== RÉSULTAT EN MÉMOIRE ====================
+
+    private static Connection connexion(Object[][] donnees) {
+        PreparedStatement pstmt = (PreparedStatement) Proxy.newProxyInstance(MappageBenchmark.class.getClassLoader(),
+            new Class<?>[]{PreparedStatement.class}, (proxy, methode, arguments) -> {
+                if (methode.getName().equals("executeQuery")) return resultat(donnees);
+                return null;
+            });
+        return (Connection) Proxy.newProxyInstance(MappageBenchmark.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, methode, arguments) ->
+                methode.getName().equals("prepareStatement") ? pstmt : null);
+    }
+
+    /**
+     * ResultSet minimal ; comme le pilote, la recherche par nom passe par une table de libellés
+     */
+    private static ResultSet resultat(Object[][] donnees) {
+        Map<String, Integer> indexParNom = new HashMap<>();
+        for (int i = 0; i < COLONNES.length; i++) indexParNom.put(COLONNES[i], i + 1);
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(MappageBenchmark.class.getClassLoader(),
+            new Class<?>[]{ResultSetMetaData.class}, (proxy, methode, arguments) -> {
+                if (methode.getName().equals("getColumnCount")) return COLONNES.length;
+                if (methode.getName().equals("getColumnLabel")) return COLONNES[(Integer) arguments[0] - 1];
+                return null;
+            });
+        int[] ligne = {-1};
+        return (ResultSet) Proxy.newProxyInstance(MappageBenchmark.class.getClassLoader(),
+            new Class<?>[]{ResultSet.class}, (proxy, methode, arguments) -> {
+                switch (methode.getName()) {
+                    case "next": return ++ligne[0] < donnees.length;
+                    case "getMetaData": return meta;
+                    case "close": return null;
+                    default: break;
+                }
+                Object cle = arguments[0];
+                int index = cle instanceof Integer ? (Integer) cle
+                    : indexParNom.getOrDefault(((String) cle).toLowerCase(Locale.ROOT), 0);
+                Object valeur = donnees[ligne[0]][index - 1];
+                switch (methode.getName()) {
+                    case "getInt": return valeur != null ? ((Number) valeur).intValue() : 0;
+                    default: return valeur;
+                }
+            });
+    }
+}
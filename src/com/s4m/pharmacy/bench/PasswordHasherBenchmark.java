@@ -0,0 +1,36 @@
+package com.s4m.pharmacy.bench;
+
+import com.s4m.pharmacy.util.PasswordHasher;
+
+/**
+ * Mesure le coût d'une vérification PBKDF2 selon le nombre d'itérations,
+ * puis le facteur de travail retenu pour quelques budgets de latence.
+ * Usage : java com.s4m.pharmacy.bench.PasswordHasherBenchmark [répétitions]
+ */
+public class PasswordHasherBenchmark {
+
+    private static final int[] ITERATIONS = {10_000, 50_000, 100_000, 210_000, 400_000, 800_000};
+    private static final long[] BUDGETS_MS = {50, 100, 250, 500};
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        System.out.println("=== COURBE COÛT / LATENCE (PBKDF2-HMAC-SHA256) ===");
+        System.out.printf("%12s %14s %14s%n", "itérations", "ms/vérif.", "vérif./s/cœur");
+        for (int n : ITERATIONS) {
+            String hash = PasswordHasher.hashPassword("admin123", n);
+            PasswordHasher.verifyPassword("admin123", hash); // préchauffage
+            long debut = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                PasswordHasher.verifyPassword("admin123", hash);
+            }
+            double ms = (System.nanoTime() - debut) / 1e6 / repetitions;
+            System.out.printf("%12d %14.1f %14.1f%n", n, ms, 1000 / ms);
+        }
+
+        System.out.println("\n=== CALIBRAGE ===");
+        for (long budget : BUDGETS_MS) {
+            System.out.printf("budget %4d ms -> %d itérations%n", budget, PasswordHasher.calibrer(budget));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.s4m.pharmacy.bench;
+
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.server.RemoteAuthService;
+import com.s4m.pharmacy.server.RemoteClient;
+import com.s4m.pharmacy.server.RemoteProductService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simule plusieurs terminaux connectés au serveur et mesure le débit et la latence.
+ * Usage : java com.s4m.pharmacy.bench.ServerLoadTest [url] [terminaux] [secondes] [email] [motDePasse]
+ */
+public class ServerLoadTest {
+
+    private static final String[] TERMES = {"para", "amox", "vit", "ibu", "lor"};
+
+    public static void main(String[] args) throws InterruptedException {
+        String url = args.length > 0 ? args[0] : "http://localhost:8470";
+        int terminaux = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int secondes = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String email = args.length > 3 ? args[3] : "user@pharmacy.com";
+        String motDePasse = args.length > 4 ? args[4] : "admin123";
+
+        long fin = System.nanoTime() + secondes * 1_000_000_000L;
+        AtomicLong erreurs = new AtomicLong();
+        List<long[]> latences = new ArrayList<>();
+        int[] nombres = new int[terminaux];
+        CountDownLatch termine = new CountDownLatch(terminaux);
+
+        for (int t = 0; t < terminaux; t++) {
+            long[] mesures = new long[1 << 20];
+            latences.add(mesures);
+            int indice = t;
+            Thread terminal = new Thread(() -> {
+                try {
+                    RemoteClient client = new RemoteClient(url);
+                    if (!new RemoteAuthService(client).seConnecter(email, motDePasse)) {
+                        throw new IllegalStateException("Connexion refusée pour " + email);
+                    }
+                    RemoteProductService produits = new RemoteProductService(client);
+                    List<Product> catalogue = produits.listerTousLesProduits();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int n = 0;
+                    while (System.nanoTime() < fin && n < mesures.length) {
+                        long debut = System.nanoTime();
+                        try {
+                            int tirage = random.nextInt(100);
+                            if (tirage < 60) {
+                                produits.listerTousLesProduits();
+                            } else if (tirage < 80) {
+                                produits.rechercherProduitsParNom(TERMES[random.nextInt(TERMES.length)]);
+                            } else if (tirage < 90 || catalogue.isEmpty()) {
+                                produits.getProduitsStockBas();
+                            } else {
+                                produits.getProduitParId(catalogue.get(random.nextInt(catalogue.size())).getId());
+                            }
+                        } catch (RuntimeException e) {
+                            erreurs.incrementAndGet();
+                        }
+                        mesures[n++] = System.nanoTime() - debut;
+                    }
+                    nombres[indice] = n;
+                } catch (RuntimeException e) {
+                    System.err.println("Terminal " + indice + " : " + e.getMessage());
+                    erreurs.incrementAndGet();
+                } finally {
+                    termine.countDown();
+                }
+            }, "terminal-" + t);
+            terminal.start();
+        }
+        termine.await();
+
+        int total = Arrays.stream(nombres).sum();
+        long[] toutes = new long[total];
+        int position = 0;
+        for (int t = 0; t < terminaux; t++) {
+            System.arraycopy(latences.get(t), 0, toutes, position, nombres[t]);
+            position += nombres[t];
+        }
+        Arrays.sort(toutes);
+
+        System.out.println("=== TEST DE CHARGE SERVEUR ===");
+        System.out.printf("terminaux=%d durée=%ds requêtes=%d erreurs=%d%n", terminaux, secondes, total, erreurs.get());
+        System.out.printf("débit : %.1f req/s%n", total / (double) secondes);
+        if (total > 0) {
+            System.out.printf("latence p50=%.2f ms p95=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                centile(toutes, 50), centile(toutes, 95), centile(toutes, 99), toutes[total - 1] / 1e6);
+        }
+    }
+
+    private static double centile(long[] triees, int p) {
+        int index = (int) Math.min(triees.length - 1, Math.ceil(p / 100.0 * triees.length) - 1);
+        return triees[Math.max(0, index)] / 1e6;
+    }
+}
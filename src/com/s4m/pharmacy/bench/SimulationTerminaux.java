@@ -0,0 +1,277 @@
+package com.s4m.pharmacy.bench;
+
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.service.AuthService;
+import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.service.CritereProduits;
+import com.s4m.pharmacy.service.ProductService;
+import com.s4m.pharmacy.service.UserService;
+import com.s4m.pharmacy.util.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Charge de production reproductible : N terminaux simulés appellent directement les services
+ * réels (ProductService, CategoryService, UserService, AuthService), partagés comme dans le
+ * mode serveur, avec un mélange de comptoir : recherches, scans, délivrances, modifications,
+ * rafraîchissements, connexions.
+ *
+ * Les produits visés suivent une loi de Zipf (quelques références très demandées), ce qui
+ * reproduit la contention sur les lignes populaires. Chaque terminal a sa session et son
+ * routage de lecture. Résultat en JSON (débit, centiles de latence et taux d'erreur, globaux
+ * et par opération) sur la sortie standard ou dans un fichier.
+ * Usage : java com.s4m.pharmacy.bench.SimulationTerminaux [terminaux] [secondes] [email] [motDePasse] [sortie.json]
+ */
+public class SimulationTerminaux {
+
+    /** Opérations et poids du mélange (en pourcentage) */
+    private enum Operation {
+        RECHERCHE_NOM(30), RECHERCHE_CRITERES(10), SCAN(20), DELIVRANCE(15), MODIFICATION(5),
+        RAFRAICHISSEMENT(5), CATEGORIES(8), UTILISATEURS(2), CONNEXION(5);
+
+        final int poids;
+
+        Operation(int poids) {
+            this.poids = poids;
+        }
+    }
+
+    private static final double EXPOSANT_POPULARITE = 1.0;
+
+    private final ProductService produits = new ProductService();
+    private final CategoryService categories = new CategoryService();
+    private final UserService utilisateurs = new UserService();
+    private final String email;
+    private final String motDePasse;
+    private final Operation[] tirage = new Operation[100];
+
+    // Catalogue de référence, chargé une fois : ids et codes dans l'ordre de popularité
+    private int[] ids;
+    private String[] codes;
+    private String[] termes;
+    private int[] idsCategories;
+    private LoiZipf popularite;
+
+    private SimulationTerminaux(String email, String motDePasse) {
+        this.email = email;
+        this.motDePasse = motDePasse;
+        int i = 0;
+        for (Operation o : Operation.values()) {
+            for (int k = 0; k < o.poids; k++) tirage[i++] = o;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int terminaux = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int secondes = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        String email = args.length > 2 ? args[2] : "admin@pharmacy.com";
+        String motDePasse = args.length > 3 ? args[3] : "admin123";
+        Path sortie = args.length > 4 ? Path.of(args[4]) : null;
+
+        DatabaseConnection.initialiser();
+        SimulationTerminaux simulation = new SimulationTerminaux(email, motDePasse);
+        simulation.preparer(new Random(42));
+        Map<String, Object> resultat = simulation.executer(terminaux, secondes);
+        String json = Json.ecrire(resultat);
+        if (sortie != null) {
+            Files.writeString(sortie, json, StandardCharsets.UTF_8);
+            System.out.println("Résultats écrits dans " + sortie);
+        } else {
+            System.out.println(json);
+        }
+        Audit.arreter();
+        DatabaseConnection.fermerPool();
+    }
+
+    private void preparer(Random random) {
+        List<Product> catalogue = new ArrayList<>(produits.listerTousLesProduits());
+        if (catalogue.isEmpty()) throw new IllegalStateException("Catalogue vide : lancer d'abord JeuDeDonnees");
+        Collections.shuffle(catalogue, random); // rang de popularité indépendant de l'ordre d'insertion
+        ids = new int[catalogue.size()];
+        codes = new String[catalogue.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = catalogue.get(i).getId();
+            codes[i] = catalogue.get(i).getCode();
+        }
+        termes = catalogue.stream().limit(500).map(p -> p.getNom().substring(0, Math.min(4, p.getNom().length())))
+            .distinct().toArray(String[]::new);
+        idsCategories = categories.listerToutesLesCategories().stream().mapToInt(Category::getId).toArray();
+        popularite = new LoiZipf(ids.length, EXPOSANT_POPULARITE);
+        System.err.println("Catalogue : " + ids.length + " produit(s), " + idsCategories.length + " catégorie(s)");
+    }
+
+    private Map<String, Object> executer(int terminaux, int secondes) throws InterruptedException {
+        long debut = System.nanoTime();
+        long fin = debut + secondes * 1_000_000_000L;
+        List<Map<Operation, Mesures>> parTerminal = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch termine = new CountDownLatch(terminaux);
+        for (int t = 0; t < terminaux; t++) {
+            int numero = t;
+            Thread terminal = new Thread(() -> {
+                try {
+                    parTerminal.add(terminal(numero, fin));
+                } catch (RuntimeException e) {
+                    System.err.println("Terminal " + numero + " arrêté : " + e.getMessage());
+                } finally {
+                    termine.countDown();
+                }
+            }, "terminal-" + t);
+            terminal.start();
+        }
+        termine.await();
+        return rapport(terminaux, (System.nanoTime() - debut) / 1e9, parTerminal);
+    }
+
+    /**
+     * Boucle d'un terminal : ouvre sa session puis enchaîne les opérations tirées jusqu'à l'échéance
+     */
+    private Map<Operation, Mesures> terminal(int numero, long fin) {
+        Map<Operation, Mesures> mesures = new LinkedHashMap<>();
+        for (Operation o : Operation.values()) mesures.put(o, new Mesures());
+        AuthService auth = new AuthService();
+        if (!auth.seConnecter(email, motDePasse)) throw new IllegalStateException("Connexion refusée pour " + email);
+        DatabaseConnection.definirTerminal("simulation-" + numero);
+        Audit.definirUtilisateurRequete(auth.getUtilisateurConnecte());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            while (System.nanoTime() < fin) {
+                Operation operation = tirage[random.nextInt(tirage.length)];
+                long debut = System.nanoTime();
+                boolean succes;
+                try {
+                    succes = executer(operation, auth, random);
+                } catch (RuntimeException e) {
+                    succes = false;
+                }
+                mesures.get(operation).ajouter(System.nanoTime() - debut, succes);
+            }
+        } finally {
+            DatabaseConnection.definirTerminal(null);
+            Audit.definirUtilisateurRequete(null);
+        }
+        return mesures;
+    }
+
+    private boolean executer(Operation operation, AuthService auth, Random random) {
+        int rang = popularite.tirer(random);
+        switch (operation) {
+            case RECHERCHE_NOM:
+                produits.rechercherProduitsParNom(termes[random.nextInt(termes.length)]);
+                return true;
+            case RECHERCHE_CRITERES:
+                produits.rechercherProduits(new CritereProduits()
+                    .categorie(idsCategories[random.nextInt(idsCategories.length)])
+                    .quantiteEntre(null, 20).trierPar(CritereProduits.Tri.EXPIRATION, false).limite(50));
+                return true;
+            case SCAN:
+                return codes[rang] == null || produits.getProduitParCode(codes[rang]) != null;
+            case DELIVRANCE: {
+                Product p = produits.getProduitParId(ids[rang]);
+                if (p == null) return true; // archivé ou supprimé depuis le chargement
+                // Comptoir : une boîte délivrée ; la réception regarnit un stock épuisé
+                p.setQuantite(p.getQuantite() > 0 ? p.getQuantite() - 1 : 50);
+                return produits.modifierProduit(p);
+            }
+            case MODIFICATION: {
+                Product p = produits.getProduitParId(ids[rang]);
+                if (p == null) return true;
+                p.setPrixCentimes(Math.max(10, Math.round(p.getPrixCentimes() * (0.98 + random.nextDouble() * 0.04))));
+                return produits.modifierProduit(p);
+            }
+            case RAFRAICHISSEMENT:
+                produits.listerTousLesProduits();
+                return true;
+            case CATEGORIES:
+                categories.listerToutesLesCategories();
+                return true;
+            case UTILISATEURS: {
+                User u = auth.getUtilisateurConnecte();
+                if (u.isAdmin()) utilisateurs.rechercherUtilisateurs("a");
+                else utilisateurs.getUtilisateurParId(u.getId());
+                return true;
+            }
+            default:
+                return auth.authentifier(email, motDePasse) != null;
+        }
+    }
+
+    private static Map<String, Object> rapport(int terminaux, double duree, List<Map<Operation, Mesures>> parTerminal) {
+        Map<String, Object> parOperation = new LinkedHashMap<>();
+        Mesures global = new Mesures();
+        for (Operation o : Operation.values()) {
+            Mesures cumul = new Mesures();
+            for (Map<Operation, Mesures> m : parTerminal) cumul.fusionner(m.get(o));
+            global.fusionner(cumul);
+            parOperation.put(o.name().toLowerCase(Locale.ROOT), cumul.resume(duree));
+        }
+        Map<String, Object> rapport = new LinkedHashMap<>();
+        rapport.put("terminaux", terminaux);
+        rapport.put("terminauxActifs", parTerminal.size());
+        rapport.put("dureeS", Math.round(duree * 10) / 10.0);
+        rapport.put("global", global.resume(duree));
+        rapport.put("operations", parOperation);
+        return rapport;
+    }
+
+    /**
+     * Latences d'une opération (nanosecondes) et nombre d'échecs
+     */
+    private static final class Mesures {
+        private long[] latences = new long[1024];
+        private int nombre;
+        private int erreurs;
+
+        void ajouter(long ns, boolean succes) {
+            if (nombre == latences.length) latences = Arrays.copyOf(latences, nombre * 2);
+            latences[nombre++] = ns;
+            if (!succes) erreurs++;
+        }
+
+        void fusionner(Mesures autre) {
+            for (int i = 0; i < autre.nombre; i++) ajouter(autre.latences[i], true);
+            erreurs += autre.erreurs;
+        }
+
+        Map<String, Object> resume(double duree) {
+            long[] triees = Arrays.copyOf(latences, nombre);
+            Arrays.sort(triees);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("operations", nombre);
+            m.put("erreurs", erreurs);
+            m.put("tauxErreur", nombre > 0 ? arrondi((double) erreurs / nombre) : 0.0);
+            m.put("debitParS", arrondi(nombre / duree));
+            m.put("p50Ms", centile(triees, 50));
+            m.put("p95Ms", centile(triees, 95));
+            m.put("p99Ms", centile(triees, 99));
+            m.put("maxMs", nombre > 0 ? arrondi(triees[nombre - 1] / 1e6) : 0.0);
+            return m;
+        }
+
+        private static double centile(long[] triees, int p) {
+            if (triees.length == 0) return 0;
+            int index = (int) Math.min(triees.length - 1, Math.ceil(p / 100.0 * triees.length) - 1);
+            return arrondi(triees[Math.max(0, index)] / 1e6);
+        }
+
+        private static double arrondi(double valeur) {
+            return Math.round(valeur * 1000) / 1000.0;
+        }
+    }
+}
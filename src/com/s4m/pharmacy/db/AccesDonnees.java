@@ -0,0 +1,126 @@
+package com.s4m.pharmacy.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Exécution des requêtes préparées partagée par les services : paramètres, correspondance
+ * des lignes par un {@link Mappeur}, fermeture des ressources.
+ *
+ * Une instance emprunte ses connexions à une source (primaire, réplicas, base du site...) ;
+ * les variantes statiques travaillent sur une connexion déjà ouverte, dans une transaction.
+ * Aucune erreur n'est avalée : elles remontent en {@link AccesDonneesException}
+ * (instances) ou en {@link SQLException} (variantes statiques).
+ */
+public final class AccesDonnees {
+
+    private final Source source;
+
+    public AccesDonnees(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Première ligne du résultat, ou null s'il est vide
+     */
+    public <T> T un(String sql, Parametres parametres, Mappeur<T> mappeur) {
+        try (Connection conn = source.ouvrir()) {
+            return un(conn, sql, parametres, mappeur);
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
+    }
+
+    public <T> List<T> liste(String sql, Parametres parametres, Mappeur<T> mappeur) {
+        try (Connection conn = source.ouvrir()) {
+            return liste(conn, sql, parametres, mappeur);
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
+    }
+
+    /**
+     * Passe chaque ligne au consommateur dès sa réception, sans constituer de liste ;
+     * retourne le nombre de lignes. Le consommateur ne doit pas accéder à la base.
+     */
+    public <T> int parcourir(String sql, Parametres parametres, Mappeur<T> mappeur, Consumer<? super T> consommateur) {
+        try (Connection conn = source.ouvrir();
+             PreparedStatement pstmt = preparer(conn, sql, parametres)) {
+            // Connector/J : lignes transmises au fil de l'eau au lieu d'être toutes chargées en mémoire
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int lignes = 0;
+                if (rs.next()) {
+                    Mappeur.Lecteur<T> lecteur = mappeur.lecteur(sql, rs);
+                    do {
+                        consommateur.accept(lecteur.lire(rs));
+                        lignes++;
+                    } while (rs.next());
+                }
+                return lignes;
+            }
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
+    }
+
+    /**
+     * Écriture ; retourne le nombre de lignes touchées
+     */
+    public int modifier(String sql, Parametres parametres) {
+        try (Connection conn = source.ouvrir();
+             PreparedStatement pstmt = preparer(conn, sql, parametres)) {
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
+    }
+
+    // ==================== CONNEXION OUVERTE ====================
+
+    public static <T> T un(Connection conn, String sql, Parametres parametres, Mappeur<T> mappeur) throws SQLException {
+        try (PreparedStatement pstmt = preparer(conn, sql, parametres);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? mappeur.lecteur(sql, rs).lire(rs) : null;
+        }
+    }
+
+    public static <T> List<T> liste(Connection conn, String sql, Parametres parametres, Mappeur<T> mappeur) throws SQLException {
+        List<T> resultat = new ArrayList<>();
+        try (PreparedStatement pstmt = preparer(conn, sql, parametres);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) return resultat;
+            Mappeur.Lecteur<T> lecteur = mappeur.lecteur(sql, rs);
+            do {
+                resultat.add(lecteur.lire(rs));
+            } while (rs.next());
+        }
+        return resultat;
+    }
+
+    private static PreparedStatement preparer(Connection conn, String sql, Parametres parametres) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        try {
+            if (parametres != null) parametres.appliquer(pstmt);
+            return pstmt;
+        } catch (SQLException | RuntimeException e) {
+            pstmt.close();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Source {
+        Connection ouvrir() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Parametres {
+        void appliquer(PreparedStatement pstmt) throws SQLException;
+    }
+}
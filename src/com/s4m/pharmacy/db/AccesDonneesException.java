@@ -0,0 +1,21 @@
+package com.s4m.pharmacy.db;
+
+import java.sql.SQLException;
+
+/**
+ * Erreur SQL remontée par {@link AccesDonnees} : non vérifiée pour traverser les services
+ * sans alourdir leurs signatures, l'exception d'origine reste disponible en cause.
+ */
+public class AccesDonneesException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AccesDonneesException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,245 @@
+package com.s4m.pharmacy.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool de connexions JDBC partagé par tous les services.
+ * Les connexions empruntées retournent au pool lors de leur fermeture,
+ * ce qui permet aux services de garder leurs blocs try-with-resources.
+ *
+ * Le pool porte aussi la résilience de l'accès à la base : délai maximal par requête,
+ * nouvelles tentatives pour les erreurs transitoires et disjoncteur en cas de panne.
+ */
+public class ConnectionPool {
+
+    private static final long VALIDATION_APRES_MS = 30_000;
+    private static final Set<String> ECRITURES =
+        Set.of("executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final DatabaseConfig config;
+    private final Semaphore permis;
+    private final ConcurrentLinkedDeque<Inactive> libres = new ConcurrentLinkedDeque<>();
+    private final String url;
+    private final Disjoncteur disjoncteur;
+    private final PolitiqueReessai reessai;
+    private volatile Runnable surEcriture = () -> {};
+
+    public ConnectionPool(DatabaseConfig config) {
+        this(config, config.getUrl(), "Base de données");
+    }
+
+    /**
+     * Pool vers un serveur précis ({@code nom} sert aux messages du disjoncteur)
+     */
+    public ConnectionPool(DatabaseConfig config, String url, String nom) {
+        this.config = config;
+        this.url = url;
+        this.permis = new Semaphore(config.getPoolSize(), true);
+        this.disjoncteur = new Disjoncteur(nom, (int) config.getEntier("db.breaker.seuil", 3),
+            config.getEntier("db.breaker.ouverture.ms", 10_000));
+        this.reessai = new PolitiqueReessai((int) config.getEntier("db.retry.max", 3),
+            config.getEntier("db.retry.base.ms", 100), config.getEntier("db.retry.plafond.ms", 2_000));
+    }
+
+    public Disjoncteur getDisjoncteur() {
+        return disjoncteur;
+    }
+
+    /**
+     * Action appelée dans le thread appelant après chaque écriture réussie (executeUpdate, lot)
+     */
+    public void surEcriture(Runnable action) {
+        this.surEcriture = action;
+    }
+
+    /**
+     * Emprunte une connexion ; attend au plus le délai configuré si le pool est saturé.
+     * Échoue immédiatement si le disjoncteur est ouvert.
+     */
+    public Connection emprunter() throws SQLException {
+        disjoncteur.autoriser();
+        try {
+            if (!permis.tryAcquire(config.getPoolTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Pool de connexions saturé (" + config.getPoolSize() + " connexions)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Attente d'une connexion interrompue");
+        }
+        try {
+            return envelopper(obtenirPhysique());
+        } catch (SQLException | RuntimeException e) {
+            permis.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Ferme toutes les connexions inactives
+     */
+    public void fermer() {
+        Inactive inactive;
+        while ((inactive = libres.pollFirst()) != null) {
+            fermerSilencieusement(inactive.connexion);
+        }
+    }
+
+    private Connection obtenirPhysique() throws SQLException {
+        Inactive inactive;
+        while ((inactive = libres.pollFirst()) != null) {
+            boolean recente = System.currentTimeMillis() - inactive.depuis < VALIDATION_APRES_MS;
+            if (recente || inactive.connexion.isValid(2)) {
+                return inactive.connexion;
+            }
+            fermerSilencieusement(inactive.connexion);
+        }
+        try {
+            Connection nouvelle = reessai.executer(
+                () -> DriverManager.getConnection(url, config.getUsername(), config.getPassword()),
+                PolitiqueReessai::estPerteConnexion);
+            disjoncteur.succes();
+            return nouvelle;
+        } catch (SQLException e) {
+            if (PolitiqueReessai.estPanne(e)) disjoncteur.echec();
+            throw e;
+        }
+    }
+
+    private void rendre(Connection physique, boolean enPanne) {
+        try {
+            if (enPanne) {
+                fermerSilencieusement(physique);
+                return;
+            }
+            if (!physique.getAutoCommit()) {
+                physique.rollback();
+                physique.setAutoCommit(true);
+            }
+            libres.offerFirst(new Inactive(physique, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            fermerSilencieusement(physique);
+        } finally {
+            permis.release();
+        }
+    }
+
+    private Connection envelopper(Connection physique) {
+        boolean[] fermee = {false};
+        boolean[] enPanne = {false};
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, methode, args) -> {
+                switch (methode.getName()) {
+                    case "close":
+                        if (!fermee[0]) {
+                            fermee[0] = true;
+                            rendre(physique, enPanne[0]);
+                        }
+                        return null;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "isClosed":
+                        return fermee[0] || physique.isClosed();
+                    case "unwrap":
+                    case "isWrapperFor":
+                        break;
+                    default:
+                        if (fermee[0]) throw new SQLException("Connexion déjà rendue au pool");
+                }
+                Object resultat = invoquer(physique, methode, args);
+                if (resultat instanceof Statement) {
+                    Statement instruction = (Statement) resultat;
+                    instruction.setQueryTimeout(config.getQueryTimeoutS());
+                    return envelopper(instruction, physique, enPanne);
+                }
+                return resultat;
+            });
+    }
+
+    /**
+     * Requête surveillée : une exécution réussie referme le disjoncteur, une panne
+     * (connexion perdue, délai dépassé) le fait progresser et écarte la connexion du pool.
+     * En auto-commit, un interblocage est rejoué avec attente aléatoire.
+     */
+    private Statement envelopper(Statement instruction, Connection physique, boolean[] enPanne) {
+        Class<?> type = instruction instanceof CallableStatement ? CallableStatement.class
+            : instruction instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+            Statement.class.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, methode, args) -> {
+                if (!methode.getName().startsWith("execute")) return invoquer(instruction, methode, args);
+                // Un lot en auto-commit peut être partiellement validé : il n'est jamais rejoué
+                boolean rejouable = !methode.getName().equals("executeBatch");
+                try {
+                    Object resultat = reessai.executer(() -> invoquer(instruction, methode, args),
+                        e -> rejouable && estAutoCommit(physique) && PolitiqueReessai.estConflitTransitoire(e));
+                    disjoncteur.succes();
+                    if (ECRITURES.contains(methode.getName())) surEcriture.run();
+                    return resultat;
+                } catch (SQLException e) {
+                    if (PolitiqueReessai.estPanne(e)) {
+                        enPanne[0] = true;
+                        disjoncteur.echec();
+                    }
+                    throw e;
+                }
+            });
+    }
+
+    private static Object invoquer(Object cible, Method methode, Object[] args) throws SQLException {
+        try {
+            return methode.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SQLException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean estAutoCommit(Connection conn) {
+        try {
+            return conn.getAutoCommit();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void fermerSilencieusement(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // Connexion déjà inutilisable
+        }
+    }
+
+    private static final class Inactive {
+        private final Connection connexion;
+        private final long depuis;
+
+        private Inactive(Connection connexion, long depuis) {
+            this.connexion = connexion;
+            this.depuis = depuis;
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.s4m.pharmacy.db;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeSet;
 
 /**
  * Configuration de la base de données depuis un fichier properties.
@@ -17,19 +20,34 @@ public class DatabaseConfig {
     private static final String DEFAULT_DB = "pharmacy_db";
     private static final String DEFAULT_USERNAME = "root";
     private static final String DEFAULT_PASSWORD = "";
+    private static final int DEFAULT_POOL_SIZE = 8;
+    private static final long DEFAULT_POOL_TIMEOUT_MS = 5000;
+    private static final long DEFAULT_ASYNC_TIMEOUT_MS = 10000;
+    private static final long DEFAULT_HASH_BUDGET_MS = 250;
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = 3000;
+    private static final long DEFAULT_SOCKET_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_QUERY_TIMEOUT_S = 15;
+    private static final int DEFAULT_SITE = 1;
     
     private String host;
     private String port;
     private String database;
     private String username;
     private String password;
+    private int poolSize;
+    private long poolTimeoutMs;
+    private long asyncTimeoutMs;
+    private long hashBudgetMs;
+    private long connectTimeoutMs;
+    private long socketTimeoutMs;
+    private int queryTimeoutS;
+    private final Properties props = new Properties();
     
     public DatabaseConfig() {
         loadConfig();
     }
     
     private void loadConfig() {
-        Properties props = new Properties();
         try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
             props.load(fis);
             host = props.getProperty("db.host", DEFAULT_HOST);
@@ -37,6 +55,13 @@ public class DatabaseConfig {
             database = props.getProperty("db.database", DEFAULT_DB);
             username = props.getProperty("db.username", DEFAULT_USERNAME);
             password = props.getProperty("db.password", DEFAULT_PASSWORD);
+            poolSize = (int) lireEntier("db.pool.size", DEFAULT_POOL_SIZE);
+            poolTimeoutMs = lireEntier("db.pool.timeout.ms", DEFAULT_POOL_TIMEOUT_MS);
+            asyncTimeoutMs = lireEntier("db.async.timeout.ms", DEFAULT_ASYNC_TIMEOUT_MS);
+            hashBudgetMs = lireEntier("auth.hash.budget.ms", DEFAULT_HASH_BUDGET_MS);
+            connectTimeoutMs = lireEntier("db.connect.timeout.ms", DEFAULT_CONNECT_TIMEOUT_MS);
+            socketTimeoutMs = lireEntier("db.socket.timeout.ms", DEFAULT_SOCKET_TIMEOUT_MS);
+            queryTimeoutS = (int) lireEntier("db.query.timeout.s", DEFAULT_QUERY_TIMEOUT_S);
         } catch (FileNotFoundException e) {
             // Fichier non trouvé, utiliser les valeurs par défaut (silencieux)
             setDefaults();
@@ -52,16 +77,134 @@ public class DatabaseConfig {
         database = DEFAULT_DB;
         username = DEFAULT_USERNAME;
         password = DEFAULT_PASSWORD;
+        poolSize = DEFAULT_POOL_SIZE;
+        poolTimeoutMs = DEFAULT_POOL_TIMEOUT_MS;
+        asyncTimeoutMs = DEFAULT_ASYNC_TIMEOUT_MS;
+        hashBudgetMs = DEFAULT_HASH_BUDGET_MS;
+        connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+        socketTimeoutMs = DEFAULT_SOCKET_TIMEOUT_MS;
+        queryTimeoutS = DEFAULT_QUERY_TIMEOUT_S;
+    }
+    
+    private long lireEntier(String cle, long defaut) {
+        String valeur = props.getProperty(cle);
+        if (valeur == null || valeur.isBlank()) return defaut;
+        try {
+            return Long.parseLong(valeur.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valeur invalide pour " + cle + " : " + valeur + " (défaut : " + defaut + ")");
+            return defaut;
+        }
+    }
+    
+    /**
+     * Lit une propriété libre du fichier de configuration (serveur, modes optionnels...)
+     */
+    public String getPropriete(String cle, String defaut) {
+        String valeur = props.getProperty(cle);
+        return valeur == null || valeur.isBlank() ? defaut : valeur.trim();
+    }
+    
+    /**
+     * Lit une propriété numérique libre du fichier de configuration
+     */
+    public long getEntier(String cle, long defaut) {
+        return lireEntier(cle, defaut);
     }
     
     public String getUrl() {
-        return "jdbc:mysql://" + host + ":" + port + "/" + database + 
-               "?useSSL=false&serverTimezone=UTC&characterEncoding=utf8";
+        return getUrl(host + ":" + port);
+    }
+    
+    /**
+     * URL de la base sur un autre serveur ({@code hote:port}), par exemple un réplica
+     */
+    public String getUrl(String hotePort) {
+        return "jdbc:mysql://" + hotePort + "/" + database + 
+               "?useSSL=false&serverTimezone=UTC&characterEncoding=utf8" + parametresConnexion();
     }
     
+    /**
+     * Réplicas en lecture seule ({@code db.replicas=hote1:3306,hote2}) ; vide si non configurés
+     */
+    public List<String> getReplicas() {
+        List<String> replicas = new ArrayList<>();
+        for (String replica : getPropriete("db.replicas", "").split(",")) {
+            replica = replica.trim();
+            if (replica.isEmpty()) continue;
+            replicas.add(replica.contains(":") ? replica : replica + ":" + DEFAULT_PORT);
+        }
+        return replicas;
+    }
+    
+    /**
+     * URL d'une autre base du serveur principal (ex. restauration dans une base neuve)
+     */
+    public String getUrlBase(String base) {
+        return "jdbc:mysql://" + host + ":" + port + "/" + base +
+               "?useSSL=false&serverTimezone=UTC&characterEncoding=utf8" + parametresConnexion();
+    }
+
     public String getUrlWithoutDatabase() {
-        return "jdbc:mysql://" + host + ":" + port + 
-               "?useSSL=false&serverTimezone=UTC&characterEncoding=utf8";
+        return getUrlSansBase(host + ":" + port);
+    }
+    
+    public String getUrlSansBase(String hotePort) {
+        return "jdbc:mysql://" + hotePort + 
+               "?useSSL=false&serverTimezone=UTC&characterEncoding=utf8" + parametresConnexion();
+    }
+    
+    // ==================== SITES ====================
+    
+    /**
+     * Site dont le stock est dans la base principale ({@code site.defaut}, 1 par défaut)
+     */
+    public int getSiteParDefaut() {
+        return (int) lireEntier("site.defaut", DEFAULT_SITE);
+    }
+    
+    /**
+     * Sites connus, triés : le site par défaut et chaque site doté d'une base ({@code site.<id>.base})
+     */
+    public List<Integer> getSites() {
+        TreeSet<Integer> sites = new TreeSet<>();
+        sites.add(getSiteParDefaut());
+        for (String cle : props.stringPropertyNames()) {
+            if (!cle.startsWith("site.") || !cle.endsWith(".base")) continue;
+            try {
+                sites.add(Integer.parseInt(cle.substring(5, cle.lastIndexOf('.'))));
+            } catch (NumberFormatException e) {
+                System.err.println("Identifiant de site invalide : " + cle);
+            }
+        }
+        return new ArrayList<>(sites);
+    }
+    
+    public String getNomSite(int site) {
+        return getPropriete("site." + site + ".nom", "Site " + site);
+    }
+    
+    /**
+     * URL de la base dédiée d'un site (voir {@link #getBaseSite(int)})
+     */
+    public String getUrlSite(int site) {
+        return "jdbc:mysql://" + getBaseSite(site) +
+               "?useSSL=false&serverTimezone=UTC&characterEncoding=utf8" + parametresConnexion();
+    }
+    
+    /**
+     * Base dédiée au stock d'un site ({@code site.<id>.base=hote:port/base}) ;
+     * null si le site est hébergé dans la base principale
+     */
+    public String getBaseSite(int site) {
+        return site == getSiteParDefaut() ? null : getPropriete("site." + site + ".base", null);
+    }
+    
+    // Sans ces délais, une base figée bloque indéfiniment l'appelant
+    private String parametresConnexion() {
+        // Lots JDBC réécrits en requêtes multi-lignes (un aller-retour par lot)
+        return "&connectTimeout=" + connectTimeoutMs + "&socketTimeout=" + socketTimeoutMs +
+               "&rewriteBatchedStatements=true";
     }
     
     public String getUsername() {
@@ -75,5 +218,49 @@ public class DatabaseConfig {
     public String getDatabase() {
         return database;
     }
+    
+    /**
+     * Nombre maximal de connexions ouvertes simultanément par le pool
+     */
+    public int getPoolSize() {
+        return Math.max(1, poolSize);
+    }
+    
+    /**
+     * Délai d'attente maximal pour obtenir une connexion du pool
+     */
+    public long getPoolTimeoutMs() {
+        return poolTimeoutMs;
+    }
+    
+    /**
+     * Délai par défaut appliqué aux appels asynchrones des services
+     */
+    public long getAsyncTimeoutMs() {
+        return asyncTimeoutMs;
+    }
+    
+    /**
+     * Délai maximal d'exécution d'une requête (secondes, 0 = illimité)
+     */
+    public int getQueryTimeoutS() {
+        return queryTimeoutS;
+    }
+    
+    /**
+     * Durée visée pour la vérification d'un mot de passe (calibrage PBKDF2 au démarrage)
+     */
+    public long getHashBudgetMs() {
+        return hashBudgetMs;
+    }
+    
+    /**
+     * Vrai si ce poste exécute les tâches planifiées partagées par tous (instantanés de stock,
+     * archivage) : le serveur s'en charge toujours ; sans serveur, un seul poste est désigné
+     * par {@code taches.poste=true}
+     */
+    public boolean isTachesPoste() {
+        return Boolean.parseBoolean(getPropriete("taches.poste", "false"));
+    }
 }
 
@@ -1,20 +1,49 @@
 package com.s4m.pharmacy.db;
 
+import com.s4m.pharmacy.util.PasswordHasher;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 /**
- * Gère la connexion à la base de données MySQL et son initialisation
+ * Gère la connexion à la base de données MySQL et son initialisation.
+ *
+ * Multi-sites : utilisateurs, catégories de référence et audit sont dans la base principale ;
+ * le stock (produits, historique) de chaque site est dans sa propre base ({@code site.<id>.base}),
+ * le site par défaut gardant le sien dans la base principale. Les catégories sont recopiées
+ * dans chaque base de site pour les clés étrangères.
  */
 public class DatabaseConnection {
     
+    /**
+     * Recopie (ou met à jour) une catégorie de référence dans une base de site, à l'identique
+     */
+    public static final String COPIE_CATEGORIE = "INSERT INTO Categorie (id, nom, description) VALUES (?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE nom = VALUES(nom), description = VALUES(description)";
+    
     private static final DatabaseConfig config = new DatabaseConfig();
+    private static final ConnectionPool pool = new ConnectionPool(config);
+    private static final RepartiteurLecture lecture = new RepartiteurLecture(config, pool);
+    private static final Object TERMINAL_LOCAL = new Object();
+    private static final ThreadLocal<Object> terminal = new ThreadLocal<>();
+    private static final Map<Integer, ConnectionPool> poolsSites = creerPoolsSites();
+    private static final ThreadLocal<Integer> siteRequete = new ThreadLocal<>();
+    private static volatile IntSupplier sourceSite = config::getSiteParDefaut;
     private static boolean driverLoaded = false;
     
     static {
         loadDriver();
+        pool.surEcriture(() -> lecture.marquerEcriture(terminalCourant()));
     }
     
     private static void loadDriver() {
@@ -33,38 +62,194 @@ public class DatabaseConnection {
     }
     
     /**
-     * Retourne une connexion à la base de données
+     * Retourne une connexion du pool partagé (rendue au pool à sa fermeture),
+     * ou celle de l'unité de travail ouverte sur le thread ({@link UniteDeTravail})
      */
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(config.getUrl(), config.getUsername(), config.getPassword());
+        return emprunter(pool);
+    }
+    
+    /**
+     * Connexion pour une lecture seule : réplica si configuré, sinon primaire.
+     * Le primaire reste utilisé juste après une écriture du même terminal,
+     * et dans une unité de travail (elle relit ses propres écritures).
+     */
+    public Connection getConnectionLecture() throws SQLException {
+        Connection unite = UniteDeTravail.connexion(pool);
+        return unite != null ? unite : lecture.emprunter(terminalCourant());
+    }
+    
+    private static Connection emprunter(ConnectionPool p) throws SQLException {
+        Connection unite = UniteDeTravail.connexion(p);
+        return unite != null ? unite : p.emprunter();
+    }
+    
+    /**
+     * Terminal à l'origine des requêtes du thread courant (jeton de session côté serveur) ;
+     * null pour revenir au terminal local
+     */
+    public static void definirTerminal(Object cle) {
+        if (cle == null) terminal.remove();
+        else terminal.set(cle);
+    }
+    
+    /**
+     * Terminal défini pour le thread courant (null : terminal local), pour le transmettre à une tâche
+     */
+    public static Object getTerminal() {
+        return terminal.get();
+    }
+    
+    private static Object terminalCourant() {
+        Object cle = terminal.get();
+        return cle != null ? cle : TERMINAL_LOCAL;
+    }
+    
+    // ==================== SITES ====================
+    
+    private static Map<Integer, ConnectionPool> creerPoolsSites() {
+        Map<Integer, ConnectionPool> pools = new HashMap<>();
+        for (int site : config.getSites()) {
+            if (config.getBaseSite(site) != null) {
+                pools.put(site, new ConnectionPool(config, config.getUrlSite(site), "Base du site " + config.getNomSite(site)));
+            }
+        }
+        return pools;
+    }
+    
+    /**
+     * Connexion à la base de stock du site courant (écritures et lectures cohérentes)
+     */
+    public Connection getConnectionSite() throws SQLException {
+        return getConnectionSite(getSiteCourant());
+    }
+    
+    /**
+     * Connexion pour une lecture seule du stock du site courant (réplicas pour le site par défaut)
+     */
+    public Connection getConnectionSiteLecture() throws SQLException {
+        return getConnectionSiteLecture(getSiteCourant());
+    }
+    
+    public Connection getConnectionSite(int site) throws SQLException {
+        return site == config.getSiteParDefaut() ? getConnection() : emprunter(poolSite(site));
+    }
+    
+    public Connection getConnectionSiteLecture(int site) throws SQLException {
+        return site == config.getSiteParDefaut() ? getConnectionLecture() : emprunter(poolSite(site));
+    }
+    
+    private static ConnectionPool poolSite(int site) throws SQLException {
+        ConnectionPool p = poolsSites.get(site);
+        if (p == null) throw new SQLException("Site " + site + " non configuré (site." + site + ".base absent)");
+        return p;
+    }
+    
+    /**
+     * Site dont le stock est servi au thread courant : site de la requête (serveur),
+     * sinon celui de la source configurée (utilisateur connecté du terminal)
+     */
+    public static int getSiteCourant() {
+        Integer site = siteRequete.get();
+        return site != null ? site : sourceSite.getAsInt();
+    }
+    
+    /**
+     * Site du thread courant (requête serveur) ; null pour l'effacer
+     */
+    public static void definirSite(Integer site) {
+        if (site == null) siteRequete.remove();
+        else siteRequete.set(site);
+    }
+    
+    /**
+     * Site défini pour le thread courant (null si aucun), pour le transmettre à une tâche
+     */
+    public static Integer getSiteRequete() {
+        return siteRequete.get();
+    }
+    
+    /**
+     * Désigne le site du terminal (ex. site de l'utilisateur connecté)
+     */
+    public static void definirSourceSite(IntSupplier source) {
+        sourceSite = source;
+    }
+    
+    public static List<Integer> getSites() {
+        return config.getSites();
+    }
+    
+    public static String getNomSite(int site) {
+        return config.getNomSite(site);
+    }
+    
+    public static int getSiteParDefaut() {
+        return config.getSiteParDefaut();
+    }
+    
+    /**
+     * Vérifie que la base répond (connexion du pool validée par un aller-retour).
+     * Échoue sans attendre tant que le disjoncteur est ouvert.
+     */
+    public static boolean estDisponible() {
+        try (Connection conn = pool.emprunter()) {
+            boolean valide = conn.isValid(2);
+            if (valide) pool.getDisjoncteur().succes();
+            else pool.getDisjoncteur().echec();
+            return valide;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * État de l'accès à la base (disjoncteur) : FERME tant que la base répond normalement
+     */
+    public static Disjoncteur.Etat getEtat() {
+        return pool.getDisjoncteur().getEtat();
+    }
+    
+    /**
+     * Notifié à chaque changement d'état de l'accès à la base (depuis un thread quelconque)
+     */
+    public static void ajouterEcouteurEtat(Consumer<Disjoncteur.Etat> ecouteur) {
+        pool.getDisjoncteur().ajouterEcouteur(ecouteur);
+    }
+    
+    public static void retirerEcouteurEtat(Consumer<Disjoncteur.Etat> ecouteur) {
+        pool.getDisjoncteur().retirerEcouteur(ecouteur);
+    }
+    
+    /**
+     * Retourne la configuration partagée de la base de données
+     */
+    public static DatabaseConfig getConfig() {
+        return config;
     }
     
     /**
-     * Initialise la base de données : crée la BD, les tables et insère les données par défaut
+     * Ferme les connexions inactives du pool (arrêt de l'application)
+     */
+    public static void fermerPool() {
+        lecture.fermer();
+        for (ConnectionPool p : poolsSites.values()) p.fermer();
+        pool.fermer();
+    }
+    
+    /**
+     * Initialise la base de données : crée la BD, les tables et insère les données par défaut,
+     * puis les bases de stock des sites
      */
     public static void initialiser() {
         loadDriver();
         
-        try (Connection conn = DriverManager.getConnection(config.getUrlWithoutDatabase(), config.getUsername(), config.getPassword());
-             Statement stmt = conn.createStatement()) {
-            
-            stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + config.getDatabase() + " CHARACTER SET utf8 COLLATE utf8_general_ci");
-            System.out.println("Base de données '" + config.getDatabase() + "' créée ou déjà existante");
-        } catch (SQLException e) {
-            System.err.println("Erreur lors de la création de la base de données : " + e.getMessage());
-            return;
-        }
+        if (!creerBase(config.getUrlWithoutDatabase(), config.getDatabase())) return;
         
         try (Connection conn = DriverManager.getConnection(config.getUrl(), config.getUsername(), config.getPassword());
              Statement stmt = conn.createStatement()) {
             
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Categorie (" +
-                        "id INT PRIMARY KEY AUTO_INCREMENT, " +
-                        "nom VARCHAR(100) NOT NULL UNIQUE, " +
-                        "description TEXT, " +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
-                        ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+            creerTablesStock(stmt);
             
             stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Utilisateur (" +
                         "id INT PRIMARY KEY AUTO_INCREMENT, " +
@@ -76,29 +261,241 @@ public class DatabaseConnection {
                         "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
                         ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
             
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Produit (" +
-                        "id INT PRIMARY KEY AUTO_INCREMENT, " +
-                        "nom VARCHAR(150) NOT NULL, " +
-                        "description TEXT, " +
-                        "prix DECIMAL(10, 2) NOT NULL CHECK (prix >= 0), " +
-                        "quantite INT NOT NULL DEFAULT 0 CHECK (quantite >= 0), " +
-                        "date_expiration DATE NOT NULL, " +
-                        "id_categorie INT NOT NULL, " +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                        "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
-                        "FOREIGN KEY (id_categorie) REFERENCES Categorie(id) ON DELETE RESTRICT ON UPDATE CASCADE, " +
-                        "INDEX idx_nom (nom), INDEX idx_date_expiration (date_expiration), INDEX idx_categorie (id_categorie)" +
+            // Journal d'audit, alimenté par lots (pas de clé étrangère : l'historique survit aux suppressions)
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Audit (" +
+                        "id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                        "date_action TIMESTAMP(3) NOT NULL, " +
+                        "id_utilisateur INT NULL, " +
+                        "utilisateur VARCHAR(150) NULL, " +
+                        "entite VARCHAR(30) NOT NULL, " +
+                        "id_entite INT NOT NULL, " +
+                        "action VARCHAR(20) NOT NULL, " +
+                        "avant TEXT NULL, " +
+                        "apres TEXT NULL, " +
+                        "INDEX idx_audit_entite (entite, id_entite), INDEX idx_audit_date (date_action)" +
                         ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
                 
             System.out.println("Tables créées ou déjà existantes");
+            migrer(conn);
             insererDonneesParDefaut(conn);
             
+            for (int site : config.getSites()) {
+                if (config.getBaseSite(site) != null) initialiserSite(conn, site);
+            }
+            
             System.out.println("Initialisation terminée avec succès !");
         } catch (SQLException e) {
             System.err.println("Erreur lors de l'initialisation de la base de données : " + e.getMessage());
         }
     }
     
+    private static boolean creerBase(String urlSansBase, String base) {
+        try (Connection conn = DriverManager.getConnection(urlSansBase, config.getUsername(), config.getPassword());
+             Statement stmt = conn.createStatement()) {
+            
+            stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + base + " CHARACTER SET utf8 COLLATE utf8_general_ci");
+            System.out.println("Base de données '" + base + "' créée ou déjà existante");
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la création de la base de données : " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Tables présentes dans chaque base de stock (principale et bases de sites)
+     */
+    private static void creerTablesStock(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Categorie (" +
+                    "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                    "nom VARCHAR(100) NOT NULL UNIQUE, " +
+                    "description TEXT, " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+        
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Produit (" +
+                    "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                    "nom VARCHAR(150) NOT NULL, " +
+                    "description TEXT, " +
+                    "prix DECIMAL(10, 2) NOT NULL CHECK (prix >= 0), " +
+                    "quantite INT NOT NULL DEFAULT 0 CHECK (quantite >= 0), " +
+                    "date_expiration DATE NOT NULL, " +
+                    "id_categorie INT NOT NULL, " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                    "FOREIGN KEY (id_categorie) REFERENCES Categorie(id) ON DELETE RESTRICT ON UPDATE CASCADE, " +
+                    "INDEX idx_nom (nom), INDEX idx_date_expiration (date_expiration), INDEX idx_categorie (id_categorie)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+        
+        // Une ligne par produit et par jour : entrées et sorties cumulées
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS HistoriqueStock (" +
+                    "id_produit INT NOT NULL, " +
+                    "jour DATE NOT NULL, " +
+                    "entrees INT NOT NULL DEFAULT 0, " +
+                    "sorties INT NOT NULL DEFAULT 0, " +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                    "PRIMARY KEY (id_produit, jour), " +
+                    "FOREIGN KEY (id_produit) REFERENCES Produit(id) ON DELETE CASCADE, " +
+                    "INDEX idx_historique_maj (updated_at)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+        
+        // Archives : produits expirés ou retirés sortis de la table chaude (sans clés étrangères)
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ProduitArchive (" +
+                    "id INT PRIMARY KEY, " +
+                    "nom VARCHAR(150) NOT NULL, " +
+                    "description TEXT, " +
+                    "prix DECIMAL(10, 2) NOT NULL, " +
+                    "quantite INT NOT NULL, " +
+                    "date_expiration DATE NOT NULL, " +
+                    "id_categorie INT NOT NULL, " +
+                    "code VARCHAR(14) NULL, " +
+                    "id_site INT NOT NULL, " +
+                    "created_at TIMESTAMP NULL, " +
+                    "updated_at TIMESTAMP NULL, " +
+                    "archive_le TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "INDEX idx_archive_nom (nom), INDEX idx_archive_code (code), INDEX idx_archive_date (archive_le)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+        
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS HistoriqueStockArchive (" +
+                    "id_produit INT NOT NULL, " +
+                    "jour DATE NOT NULL, " +
+                    "entrees INT NOT NULL, " +
+                    "sorties INT NOT NULL, " +
+                    "PRIMARY KEY (id_produit, jour)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+        
+        // Révisions de prix groupées et historique compact ancien/nouveau prix (sans clé
+        // étrangère vers Produit : l'historique survit aux suppressions et à l'archivage)
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS RevisionPrix (" +
+                    "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                    "libelle VARCHAR(200) NOT NULL, " +
+                    "id_annulee INT NULL, " +
+                    "date_revision TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+        
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS HistoriquePrix (" +
+                    "id_revision INT NOT NULL, " +
+                    "id_produit INT NOT NULL, " +
+                    "ancien_prix DECIMAL(10, 2) NOT NULL, " +
+                    "nouveau_prix DECIMAL(10, 2) NOT NULL, " +
+                    "PRIMARY KEY (id_revision, id_produit), " +
+                    "FOREIGN KEY (id_revision) REFERENCES RevisionPrix(id) ON DELETE CASCADE, " +
+                    "INDEX idx_historique_prix_produit (id_produit)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+
+        // Instantanés quotidiens du stock : complets (périodiquement) ou différentiels par
+        // rapport au précédent ; sans clé étrangère, ils couvrent aussi les produits archivés
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS InstantaneStock (" +
+                    "jour DATE PRIMARY KEY, " +
+                    "complet BOOLEAN NOT NULL, " +
+                    "produits INT NOT NULL, " +
+                    "donnees MEDIUMBLOB NOT NULL, " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_general_ci");
+    }
+    
+    /**
+     * Crée la base de stock d'un site et y recopie les catégories de la base principale
+     */
+    private static void initialiserSite(Connection principale, int site) {
+        String base = config.getBaseSite(site);
+        int separateur = base.indexOf('/');
+        if (separateur < 0) {
+            System.err.println("site." + site + ".base invalide (hote:port/base attendu) : " + base);
+            return;
+        }
+        if (!creerBase(config.getUrlSansBase(base.substring(0, separateur)), base.substring(separateur + 1))) return;
+        
+        try (Connection conn = DriverManager.getConnection(config.getUrlSite(site), config.getUsername(), config.getPassword());
+             Statement stmt = conn.createStatement()) {
+            creerTablesStock(stmt);
+            migrerStock(conn, site);
+            try (Statement lecture = principale.createStatement();
+                 ResultSet rs = lecture.executeQuery("SELECT id, nom, description FROM Categorie");
+                 PreparedStatement pstmt = conn.prepareStatement(COPIE_CATEGORIE)) {
+                while (rs.next()) {
+                    pstmt.setInt(1, rs.getInt(1));
+                    pstmt.setString(2, rs.getString(2));
+                    pstmt.setString(3, rs.getString(3));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            System.out.println("Base du site " + config.getNomSite(site) + " prête");
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de l'initialisation du site " + site + " : " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Met à niveau le schéma des bases créées par une version antérieure
+     */
+    private static void migrer(Connection conn) throws SQLException {
+        migrerStock(conn, config.getSiteParDefaut());
+        ajouterColonneSiAbsente(conn, "Utilisateur", "id_site", "INT NOT NULL DEFAULT " + config.getSiteParDefaut());
+        // Concurrence optimiste : les catégories ne sont modifiées que dans la base principale
+        ajouterColonneSiAbsente(conn, "Categorie", "version", "INT NOT NULL DEFAULT 0");
+    }
+    
+    private static void migrerStock(Connection conn, int site) throws SQLException {
+        ajouterIndexSiAbsent(conn, "Produit", "idx_updated_at", "updated_at");
+        // Code-barres EAN-13/CIP/GTIN, unique lorsqu'il est renseigné
+        ajouterColonneSiAbsente(conn, "Produit", "code", "VARCHAR(14) NULL");
+        ajouterIndexSiAbsent(conn, "Produit", "idx_code", "code", true);
+        // Site propriétaire du stock : identifie la ligne dans les résultats multi-sites
+        ajouterColonneSiAbsente(conn, "Produit", "id_site", "INT NOT NULL DEFAULT " + site);
+        // Index composites des recherches multicritères courantes (voir CritereProduits) :
+        // catégorie + péremption, catégorie + stock, stock (bas) + péremption
+        ajouterIndexSiAbsent(conn, "Produit", "idx_categorie_expiration", "id_categorie, date_expiration");
+        ajouterIndexSiAbsent(conn, "Produit", "idx_categorie_quantite", "id_categorie, quantite");
+        ajouterIndexSiAbsent(conn, "Produit", "idx_quantite_expiration", "quantite, date_expiration");
+        // Concurrence optimiste : incrémentée par chaque écriture du produit
+        ajouterColonneSiAbsente(conn, "Produit", "version", "INT NOT NULL DEFAULT 0");
+        // Date de restauration depuis les archives : exempte le produit du prochain archivage
+        ajouterColonneSiAbsente(conn, "Produit", "restaure_le", "TIMESTAMP NULL");
+    }
+    
+    /**
+     * Ajoute une colonne si elle n'existe pas encore (bases créées avant son introduction)
+     */
+    static void ajouterColonneSiAbsente(Connection conn, String table, String colonne, String definition) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, colonne);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) return;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + colonne + " " + definition);
+            System.out.println("Colonne " + table + "." + colonne + " ajoutée");
+        }
+    }
+    
+    /**
+     * Ajoute un index s'il n'existe pas encore
+     */
+    static void ajouterIndexSiAbsent(Connection conn, String table, String index, String colonnes) throws SQLException {
+        ajouterIndexSiAbsent(conn, table, index, colonnes, false);
+    }
+    
+    static void ajouterIndexSiAbsent(Connection conn, String table, String index, String colonnes, boolean unique) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, index);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) return;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + index + " ON " + table + " (" + colonnes + ")");
+            System.out.println("Index " + table + "." + index + " créé");
+        }
+    }
+    
     /**
      * Insère les données par défaut si les tables sont vides
      */
@@ -118,8 +515,8 @@ public class DatabaseConnection {
             rs = stmt.executeQuery("SELECT COUNT(*) FROM Utilisateur");
             if (rs.next() && rs.getInt(1) == 0) {
                 stmt.executeUpdate("INSERT INTO Utilisateur (nom, email, mot_de_passe, role) VALUES " +
-                        "('Administrateur', 'admin@pharmacy.com', '240be518fabd2724ddb6f04eeb1da5967448d7e831c08c8fa822809f74c720a9', 'ADMIN'), " +
-                        "('Assistant', 'user@pharmacy.com', '240be518fabd2724ddb6f04eeb1da5967448d7e831c08c8fa822809f74c720a9', 'USER')");
+                        "('Administrateur', 'admin@pharmacy.com', '" + PasswordHasher.hashPassword("admin123") + "', 'ADMIN'), " +
+                        "('Assistant', 'user@pharmacy.com', '" + PasswordHasher.hashPassword("admin123") + "', 'USER')");
                 System.out.println("Utilisateurs par défaut insérés (admin@pharmacy.com / admin123)");
             }
             
@@ -0,0 +1,105 @@
+package com.s4m.pharmacy.db;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Disjoncteur de l'accès à la base : après {@code seuil} pertes de connexion consécutives,
+ * les appels échouent immédiatement pendant {@code dureeOuvertureMs} au lieu d'attendre
+ * les délais réseau. Passé ce délai, un seul appel d'essai est autorisé ; son succès
+ * referme le disjoncteur, son échec le rouvre.
+ */
+public class Disjoncteur {
+
+    public enum Etat { FERME, OUVERT, SEMI_OUVERT }
+
+    private final String nom;
+    private final int seuil;
+    private final long dureeOuvertureMs;
+    private final List<Consumer<Etat>> ecouteurs = new CopyOnWriteArrayList<>();
+
+    private volatile Etat etat = Etat.FERME;
+    private volatile int echecsConsecutifs;
+    private long ouvertDepuis;
+    private long essaiDepuis;
+
+    public Disjoncteur(String nom, int seuil, long dureeOuvertureMs) {
+        this.nom = nom;
+        this.seuil = Math.max(1, seuil);
+        this.dureeOuvertureMs = dureeOuvertureMs;
+    }
+
+    /**
+     * Laisse passer l'appel ou échoue immédiatement si la base est considérée indisponible
+     */
+    public void autoriser() throws SQLTransientConnectionException {
+        long attenteMs;
+        synchronized (this) {
+            if (etat == Etat.FERME) return;
+            long maintenant = System.currentTimeMillis();
+            if (etat == Etat.OUVERT && maintenant - ouvertDepuis >= dureeOuvertureMs) {
+                etat = Etat.SEMI_OUVERT;
+                essaiDepuis = 0;
+            }
+            // Un essai resté sans verdict (aucune requête exécutée) n'en bloque pas un autre indéfiniment
+            if (etat == Etat.SEMI_OUVERT && maintenant - essaiDepuis >= dureeOuvertureMs) {
+                essaiDepuis = maintenant;
+                return;
+            }
+            attenteMs = Math.max(0, dureeOuvertureMs - (maintenant - ouvertDepuis));
+        }
+        throw new SQLTransientConnectionException(nom + " indisponible (nouvel essai dans "
+            + (attenteMs + 999) / 1000 + " s)", "08001");
+    }
+
+    public void succes() {
+        // Cas courant sans verrou : base saine
+        if (etat == Etat.FERME && echecsConsecutifs == 0) return;
+        changer(() -> {
+            echecsConsecutifs = 0;
+            return Etat.FERME;
+        });
+    }
+
+    public void echec() {
+        changer(() -> {
+            echecsConsecutifs++;
+            if (etat == Etat.SEMI_OUVERT || echecsConsecutifs >= seuil) {
+                ouvertDepuis = System.currentTimeMillis();
+                return Etat.OUVERT;
+            }
+            return etat;
+        });
+    }
+
+    public Etat getEtat() {
+        return etat;
+    }
+
+    public void ajouterEcouteur(Consumer<Etat> ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    public void retirerEcouteur(Consumer<Etat> ecouteur) {
+        ecouteurs.remove(ecouteur);
+    }
+
+    private void changer(Supplier<Etat> transition) {
+        Etat avant;
+        Etat apres;
+        synchronized (this) {
+            avant = etat;
+            apres = transition.get();
+            etat = apres;
+        }
+        // Notification hors verrou : les écouteurs peuvent être lents (interface)
+        if (avant != apres) {
+            if (apres == Etat.OUVERT) System.err.println(nom + " injoignable : disjoncteur ouvert");
+            if (apres == Etat.FERME) System.out.println(nom + " de nouveau joignable");
+            for (Consumer<Etat> ecouteur : ecouteurs) ecouteur.accept(apres);
+        }
+    }
+}
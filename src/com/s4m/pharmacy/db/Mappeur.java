@@ -0,0 +1,82 @@
+package com.s4m.pharmacy.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Correspondance ligne → objet. Les index des colonnes sont résolus une seule fois par forme
+ * de requête (texte SQL) à partir des métadonnées du résultat ; chaque ligne est ensuite lue
+ * par index, sans recherche de colonne par nom.
+ *
+ * Une colonne optionnelle absente de la requête (projection allégée) est simplement ignorée.
+ */
+public final class Mappeur<T> {
+
+    private final Fabrique<T> fabrique;
+    private final Map<String, Lecteur<T>> lecteurs = new ConcurrentHashMap<>();
+
+    public Mappeur(Fabrique<T> fabrique) {
+        this.fabrique = fabrique;
+    }
+
+    /**
+     * Lecteur de lignes pour cette requête, créé au premier résultat puis réutilisé
+     */
+    Lecteur<T> lecteur(String sql, ResultSet rs) throws SQLException {
+        Lecteur<T> lecteur = lecteurs.get(sql);
+        if (lecteur == null) {
+            lecteur = fabrique.creer(new Colonnes(rs.getMetaData()));
+            lecteurs.putIfAbsent(sql, lecteur);
+        }
+        return lecteur;
+    }
+
+    /**
+     * Construit le lecteur d'une forme de requête à partir de ses colonnes
+     */
+    @FunctionalInterface
+    public interface Fabrique<T> {
+        Lecteur<T> creer(Colonnes colonnes) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Lecteur<T> {
+        T lire(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Colonnes d'un résultat, par libellé (insensible à la casse)
+     */
+    public static final class Colonnes {
+
+        private final Map<String, Integer> indexParNom = new HashMap<>();
+
+        Colonnes(ResultSetMetaData meta) throws SQLException {
+            // Parcours à rebours : à libellé égal, la première colonne l'emporte (comme findColumn)
+            for (int i = meta.getColumnCount(); i >= 1; i--) {
+                indexParNom.put(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+            }
+        }
+
+        /**
+         * Index d'une colonne que la requête doit sélectionner
+         */
+        public int index(String nom) throws SQLException {
+            Integer index = indexParNom.get(nom);
+            if (index == null) throw new SQLException("Colonne absente du résultat : " + nom);
+            return index;
+        }
+
+        /**
+         * Index de la colonne, ou 0 si la requête ne la sélectionne pas
+         */
+        public int indexOptionnel(String nom) {
+            return indexParNom.getOrDefault(nom, 0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.s4m.pharmacy.db;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Nouvelles tentatives bornées, avec attente exponentielle aléatoire (« full jitter »),
+ * pour les erreurs SQL transitoires. Un dépassement de délai n'est jamais retenté :
+ * la base est lente, insister ne ferait qu'allonger l'attente.
+ */
+final class PolitiqueReessai {
+
+    private final int maxTentatives;
+    private final long baseMs;
+    private final long plafondMs;
+
+    PolitiqueReessai(int maxTentatives, long baseMs, long plafondMs) {
+        this.maxTentatives = Math.max(1, maxTentatives);
+        this.baseMs = baseMs;
+        this.plafondMs = plafondMs;
+    }
+
+    /**
+     * Exécute l'appel en le retentant tant que l'erreur est acceptée par {@code reessayable}
+     */
+    <T> T executer(AppelSql<T> appel, Predicate<SQLException> reessayable) throws SQLException {
+        for (int tentative = 1; ; tentative++) {
+            try {
+                return appel.appeler();
+            } catch (SQLException e) {
+                if (tentative >= maxTentatives || !reessayable.test(e)) throw e;
+                attendre(tentative, e);
+            }
+        }
+    }
+
+    /**
+     * Interblocage ou attente de verrou dépassée : la requête peut être rejouée telle quelle
+     */
+    static boolean estConflitTransitoire(SQLException e) {
+        return e instanceof SQLTransactionRollbackException
+            || "40001".equals(e.getSQLState())
+            || e.getErrorCode() == 1205 || e.getErrorCode() == 1213;
+    }
+
+    /**
+     * Erreur de la classe SQLState 08 (connexion impossible ou perdue)
+     */
+    static boolean estPerteConnexion(SQLException e) {
+        String etat = e.getSQLState();
+        return etat != null && etat.startsWith("08");
+    }
+
+    /**
+     * Connexion perdue ou délai dépassé : compte comme un échec pour le disjoncteur
+     */
+    static boolean estPanne(SQLException e) {
+        return estPerteConnexion(e) || e instanceof SQLTimeoutException;
+    }
+
+    private void attendre(int tentative, SQLException cause) throws SQLException {
+        long maxAttente = Math.min(plafondMs, baseMs << Math.min(tentative - 1, 20));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(maxAttente + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    @FunctionalInterface
+    interface AppelSql<T> {
+        T appeler() throws SQLException;
+    }
+}
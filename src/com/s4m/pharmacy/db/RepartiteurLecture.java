@@ -0,0 +1,138 @@
+package com.s4m.pharmacy.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Répartit les lectures entre les réplicas (tourniquet sur les réplicas sains) et
+ * garde les écritures sur le primaire.
+ *
+ * Lecture de ses propres écritures : un terminal qui vient d'écrire lit sur le primaire
+ * pendant {@code db.replica.adherence.ms}, le temps que les réplicas rattrapent.
+ * Un réplica injoignable ou trop en retard ({@code db.replica.retard.max.s}) est écarté
+ * jusqu'à la vérification suivante ; sans réplica sain, les lectures vont au primaire.
+ */
+final class RepartiteurLecture {
+
+    private final ConnectionPool primaire;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger suivant = new AtomicInteger();
+    private final Map<Object, Long> dernieresEcritures = new ConcurrentHashMap<>();
+    private final long adherenceNs;
+    private final long retardMaxS;
+    private ScheduledExecutorService verification;
+
+    RepartiteurLecture(DatabaseConfig config, ConnectionPool primaire) {
+        this.primaire = primaire;
+        this.adherenceNs = TimeUnit.MILLISECONDS.toNanos(config.getEntier("db.replica.adherence.ms", 5_000));
+        this.retardMaxS = config.getEntier("db.replica.retard.max.s", 30);
+        for (String replica : config.getReplicas()) {
+            replicas.add(new Replica(replica, new ConnectionPool(config, config.getUrl(replica), "Réplica " + replica)));
+        }
+        if (replicas.isEmpty()) return;
+
+        long intervalleMs = config.getEntier("db.replica.verification.ms", 5_000);
+        verification = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pharmacy-replicas");
+            t.setDaemon(true);
+            return t;
+        });
+        verification.scheduleWithFixedDelay(this::verifier, 0, intervalleMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Note une écriture du terminal : ses lectures restent sur le primaire pendant la fenêtre d'adhérence
+     */
+    void marquerEcriture(Object terminal) {
+        if (!replicas.isEmpty()) dernieresEcritures.put(terminal, System.nanoTime());
+    }
+
+    /**
+     * Connexion pour une lecture : un réplica sain, ou le primaire si le terminal vient d'écrire
+     */
+    Connection emprunter(Object terminal) throws SQLException {
+        if (replicas.isEmpty() || vientDEcrire(terminal)) return primaire.emprunter();
+        int depart = Math.floorMod(suivant.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((depart + i) % replicas.size());
+            if (!replica.sain || replica.pool.getDisjoncteur().getEtat() == Disjoncteur.Etat.OUVERT) continue;
+            try {
+                return replica.pool.emprunter();
+            } catch (SQLException e) {
+                replica.sain = false;
+                System.err.println("Réplica " + replica.adresse + " écarté : " + e.getMessage());
+            }
+        }
+        return primaire.emprunter();
+    }
+
+    void fermer() {
+        if (verification != null) verification.shutdownNow();
+        for (Replica replica : replicas) replica.pool.fermer();
+    }
+
+    private boolean vientDEcrire(Object terminal) {
+        Long derniere = dernieresEcritures.get(terminal);
+        return derniere != null && System.nanoTime() - derniere < adherenceNs;
+    }
+
+    private void verifier() {
+        for (Replica replica : replicas) {
+            boolean sain = estSain(replica);
+            if (sain != replica.sain) {
+                System.out.println("Réplica " + replica.adresse + (sain ? " réintégré" : " écarté"));
+            }
+            replica.sain = sain;
+        }
+        // Les fenêtres d'adhérence expirées n'ont plus d'effet : on les oublie
+        long maintenant = System.nanoTime();
+        dernieresEcritures.values().removeIf(t -> maintenant - t >= adherenceNs);
+    }
+
+    private boolean estSain(Replica replica) {
+        try (Connection conn = replica.pool.emprunter()) {
+            if (!conn.isValid(2)) return false;
+            replica.pool.getDisjoncteur().succes();
+            Long retard = retardReplication(conn);
+            return retard == null || retard <= retardMaxS;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Retard de réplication en secondes, ou null s'il ne peut pas être lu (droits, serveur non réplica).
+     * Une réplication arrêtée (retard NULL) compte comme un retard infini.
+     */
+    private static Long retardReplication(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+            if (!rs.next()) return null;
+            long retard = rs.getLong("Seconds_Behind_Source");
+            return rs.wasNull() ? Long.MAX_VALUE : retard;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static final class Replica {
+        final String adresse;
+        final ConnectionPool pool;
+        volatile boolean sain = true;
+
+        Replica(String adresse, ConnectionPool pool) {
+            this.adresse = adresse;
+            this.pool = pool;
+        }
+    }
+}
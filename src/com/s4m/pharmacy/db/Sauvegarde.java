@@ -0,0 +1,933 @@
+package com.s4m.pharmacy.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Sauvegarde et restauration intégrées d'une base (principale ou de site), sans mysqldump.
+ *
+ * Sauvegarde : toutes les tables de la base sont lues en parallèle ({@code sauvegarde.threads}
+ * connexions, résultats en flux), sur un même instantané cohérent ; chaque thread découpe ses
+ * lignes en blocs d'environ {@code sauvegarde.bloc.ko}, compressés et contrôlés (CRC32C), qu'un
+ * seul écrivain range dans l'archive.
+ *
+ * Restauration, dans une base sans ces tables : tables créées sans index secondaires ni clés
+ * étrangères, blocs insérés en parallèle par lots ({@code sauvegarde.lot}) sans contrôles
+ * d'unicité ni de clés étrangères, puis index construits d'un coup et contraintes rétablies.
+ *
+ * <pre>
+ * en-tête : "PHBK", version, taille, CRC32C, puis date, base, tables (nom, DDL, colonnes et natures)
+ * bloc    : n° de table, taille brute, taille compressée, CRC32C des données brutes, données
+ * fin     : n° -1, puis nombre de lignes de chaque table
+ * </pre>
+ *
+ * {@code java com.s4m.pharmacy.db.Sauvegarde sauvegarder <fichier> [site] | restaurer <fichier> [base] | verifier <fichier>}
+ */
+public class Sauvegarde {
+
+    private static final int MAGIC = 0x5048424B; // "PHBK"
+    private static final int VERSION = 1;
+    private static final int FIN = -1;
+
+    private static final byte ENTIER = 0;
+    private static final byte REEL = 1;
+    private static final byte TEXTE = 2;
+    private static final byte OCTETS = 3;
+
+    private final DatabaseConfig config;
+    private final int threads;
+    private final int tailleBloc;
+    private final int tailleLot;
+    private final int compression;
+
+    public Sauvegarde() {
+        this.config = DatabaseConnection.getConfig();
+        this.threads = (int) Math.max(1, config.getEntier("sauvegarde.threads", 4));
+        this.tailleBloc = (int) Math.max(16, config.getEntier("sauvegarde.bloc.ko", 1024)) * 1024;
+        this.tailleLot = (int) Math.max(1, config.getEntier("sauvegarde.lot", 1000));
+        this.compression = (int) Math.min(9, Math.max(1, config.getEntier("sauvegarde.compression", 1)));
+    }
+
+    // ==================== SAUVEGARDE ====================
+
+    /**
+     * Sauvegarde la base principale, ou la base du site si elle lui est propre
+     */
+    public Bilan sauvegarder(Path fichier, Integer site) throws SQLException, IOException, InterruptedException {
+        boolean baseSite = site != null && config.getBaseSite(site) != null;
+        return sauvegarder(baseSite ? config.getUrlSite(site) : config.getUrl(), fichier);
+    }
+
+    private Bilan sauvegarder(String url, Path fichier) throws SQLException, IOException, InterruptedException {
+        long debut = System.nanoTime();
+        List<Table> tables = new ArrayList<>();
+        List<Connection> lecteurs = new ArrayList<>();
+        String base;
+        try (Connection principale = ouvrir(url)) {
+            base = principale.getCatalog();
+            decrire(principale, tables);
+            try {
+                for (int i = 0; i < Math.min(threads, Math.max(1, tables.size())); i++) lecteurs.add(ouvrir(url));
+                figerInstantane(principale, tables, lecteurs);
+                return ecrireArchive(fichier, base, tables, lecteurs, debut);
+            } finally {
+                for (Connection c : lecteurs) fermer(c);
+            }
+        }
+    }
+
+    /**
+     * Tables de la base, les plus volumineuses d'abord (elles occupent un lecteur le plus longtemps)
+     */
+    private static void decrire(Connection conn, List<Table> tables) throws SQLException {
+        List<String> noms = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT TABLE_NAME FROM information_schema.TABLES " +
+                 "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE' ORDER BY DATA_LENGTH DESC, TABLE_NAME")) {
+            while (rs.next()) noms.add(rs.getString(1));
+        }
+        for (String nom : noms) {
+            Table table = new Table(tables.size(), nom);
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE " + cite(nom))) {
+                    rs.next();
+                    table.ddl = rs.getString(2);
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + cite(nom) + " LIMIT 0")) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    table.colonnes = new String[meta.getColumnCount()];
+                    table.natures = new byte[meta.getColumnCount()];
+                    for (int i = 0; i < table.colonnes.length; i++) {
+                        table.colonnes[i] = meta.getColumnName(i + 1);
+                        table.natures[i] = nature(meta.getColumnType(i + 1));
+                    }
+                }
+            }
+            tables.add(table);
+        }
+    }
+
+    /**
+     * Les lecteurs ouvrent leur instantané pendant que les écritures sont suspendues : toutes les
+     * tables sont vues au même instant. Sans le droit LOCK TABLES, chaque table reste cohérente
+     * en elle-même.
+     */
+    private static void figerInstantane(Connection principale, List<Table> tables, List<Connection> lecteurs)
+            throws SQLException {
+        boolean verrouille = false;
+        if (!tables.isEmpty()) {
+            StringBuilder sql = new StringBuilder("LOCK TABLES ");
+            for (Table t : tables) sql.append(t.index > 0 ? ", " : "").append(cite(t.nom)).append(" READ");
+            try (Statement stmt = principale.createStatement()) {
+                stmt.execute(sql.toString());
+                verrouille = true;
+            } catch (SQLException e) {
+                System.err.println("Sauvegarde : verrouillage impossible (" + e.getMessage() +
+                    "), cohérence assurée table par table seulement");
+            }
+        }
+        try {
+            for (Connection c : lecteurs) {
+                try (Statement stmt = c.createStatement()) {
+                    stmt.execute("SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                    stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                }
+            }
+        } finally {
+            if (verrouille) {
+                try (Statement stmt = principale.createStatement()) {
+                    stmt.execute("UNLOCK TABLES");
+                }
+            }
+        }
+    }
+
+    private Bilan ecrireArchive(Path fichier, String base, List<Table> tables, List<Connection> lecteurs, long debut)
+            throws IOException, SQLException, InterruptedException {
+        Queue<Table> aLire = new ConcurrentLinkedQueue<>(tables);
+        BlockingQueue<Bloc> blocs = new ArrayBlockingQueue<>(lecteurs.size() * 4);
+        long[] lignes = new long[tables.size()];
+        long octetsBruts = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(lecteurs.size(), fabrique("pharmacy-sauvegarde"));
+        List<Future<?>> lectures = new ArrayList<>();
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try {
+            for (Connection c : lecteurs) lectures.add(pool.submit(() -> lire(c, aLire, blocs, lignes)));
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire), 1 << 16))) {
+                ecrireEntete(out, base, tables);
+                int actifs = lecteurs.size();
+                while (actifs > 0) {
+                    Bloc bloc = blocs.poll(1, TimeUnit.SECONDS);
+                    if (bloc == null) {
+                        verifierLectures(lectures, false);
+                        continue;
+                    }
+                    if (bloc.table == FIN) {
+                        actifs--;
+                        continue;
+                    }
+                    out.writeInt(bloc.table);
+                    out.writeInt(bloc.tailleBrute);
+                    out.writeInt(bloc.donnees.length);
+                    out.writeInt(bloc.crc);
+                    out.write(bloc.donnees);
+                    octetsBruts += bloc.tailleBrute;
+                }
+                verifierLectures(lectures, true);
+                out.writeInt(FIN);
+                for (long n : lignes) out.writeLong(n);
+            }
+            Files.move(temporaire, fichier, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(temporaire);
+        }
+        long total = 0;
+        for (long n : lignes) total += n;
+        return new Bilan(tables.size(), total, octetsBruts, Files.size(fichier), System.nanoTime() - debut);
+    }
+
+    /**
+     * Lecteur : vide les tables en flux (ligne à ligne) sur son instantané, bloc par bloc
+     */
+    private Void lire(Connection conn, Queue<Table> aLire, BlockingQueue<Bloc> blocs, long[] lignes)
+            throws SQLException, IOException, InterruptedException {
+        Deflater deflater = new Deflater(compression);
+        ByteArrayOutputStream tampon = new ByteArrayOutputStream(tailleBloc + tailleBloc / 4);
+        DataOutputStream out = new DataOutputStream(tampon);
+        try {
+            Table table;
+            while ((table = aLire.poll()) != null) {
+                long n = 0;
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(Integer.MIN_VALUE); // flux : le pilote ne charge pas toute la table
+                    try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + cite(table.nom))) {
+                        while (rs.next()) {
+                            ecrireLigne(out, rs, table.natures);
+                            n++;
+                            if (tampon.size() >= tailleBloc) {
+                                blocs.put(compresser(table.index, tampon, deflater));
+                                tampon.reset();
+                            }
+                        }
+                    }
+                }
+                if (tampon.size() > 0) {
+                    blocs.put(compresser(table.index, tampon, deflater));
+                    tampon.reset();
+                }
+                lignes[table.index] = n;
+            }
+        } finally {
+            deflater.end();
+            blocs.put(Bloc.FIN_LECTEUR);
+        }
+        return null;
+    }
+
+    private static void ecrireLigne(DataOutputStream out, ResultSet rs, byte[] natures) throws SQLException, IOException {
+        for (int i = 0; i < natures.length; i++) {
+            int colonne = i + 1;
+            switch (natures[i]) {
+                case ENTIER: {
+                    long v = rs.getLong(colonne);
+                    if (rs.wasNull()) out.writeBoolean(false);
+                    else { out.writeBoolean(true); out.writeLong(v); }
+                    break;
+                }
+                case REEL: {
+                    double v = rs.getDouble(colonne);
+                    if (rs.wasNull()) out.writeBoolean(false);
+                    else { out.writeBoolean(true); out.writeDouble(v); }
+                    break;
+                }
+                case OCTETS:
+                    ecrireOctets(out, rs.getBytes(colonne));
+                    break;
+                default: {
+                    String v = rs.getString(colonne);
+                    ecrireOctets(out, v != null ? v.getBytes(StandardCharsets.UTF_8) : null);
+                }
+            }
+        }
+    }
+
+    private static void ecrireOctets(DataOutputStream out, byte[] v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v == null) return;
+        out.writeInt(v.length);
+        out.write(v);
+    }
+
+    private static Bloc compresser(int table, ByteArrayOutputStream tampon, Deflater deflater) {
+        byte[] brut = tampon.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(brut);
+        deflater.reset();
+        deflater.setInput(brut);
+        deflater.finish();
+        ByteArrayOutputStream compresse = new ByteArrayOutputStream(brut.length / 3 + 64);
+        byte[] morceau = new byte[1 << 16];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(morceau);
+            compresse.write(morceau, 0, n);
+        }
+        return new Bloc(table, brut.length, (int) crc.getValue(), compresse.toByteArray());
+    }
+
+    /**
+     * Relance l'échec d'un lecteur ; {@code toutes} attend la fin de chacun (fin de l'archive)
+     */
+    private static void verifierLectures(List<Future<?>> lectures, boolean toutes) throws SQLException, IOException {
+        for (Future<?> f : lectures) {
+            if (!toutes && !f.isDone()) continue;
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                relancer(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void ecrireEntete(DataOutputStream out, String base, List<Table> tables) throws IOException {
+        ByteArrayOutputStream tampon = new ByteArrayOutputStream();
+        DataOutputStream entete = new DataOutputStream(tampon);
+        entete.writeLong(System.currentTimeMillis());
+        entete.writeUTF(base != null ? base : "");
+        entete.writeInt(tables.size());
+        for (Table t : tables) {
+            entete.writeUTF(t.nom);
+            ecrireOctets(entete, t.ddl.getBytes(StandardCharsets.UTF_8));
+            entete.writeInt(t.colonnes.length);
+            for (int i = 0; i < t.colonnes.length; i++) {
+                entete.writeUTF(t.colonnes[i]);
+                entete.writeByte(t.natures[i]);
+            }
+        }
+        byte[] octets = tampon.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(octets);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(octets.length);
+        out.writeInt((int) crc.getValue());
+        out.write(octets);
+    }
+
+    // ==================== RESTAURATION ====================
+
+    /**
+     * Restaure l'archive dans {@code base} du serveur principal (créée si besoin) ; la base ne doit
+     * contenir aucune des tables sauvegardées
+     */
+    public Bilan restaurer(Path fichier, String base) throws SQLException, IOException, InterruptedException {
+        if (!base.matches("[A-Za-z0-9_]+")) throw new IllegalArgumentException("Nom de base invalide : " + base);
+        long debut = System.nanoTime();
+        try (Connection conn = ouvrir(config.getUrlWithoutDatabase());
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS " + base + " CHARACTER SET utf8 COLLATE utf8_general_ci");
+        }
+        String url = config.getUrlBase(base);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier), 1 << 16));
+             Connection conn = ouvrir(url)) {
+            List<Table> tables = lireEntete(in);
+            verifierBaseVide(conn, base, tables);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
+                for (Table t : tables) stmt.executeUpdate(t.creationSansIndex());
+            }
+            Insertions insertions = new Insertions(url, tables);
+            long octetsBruts;
+            try {
+                octetsBruts = charger(in, tables, insertions);
+                insertions.terminer();
+            } finally {
+                insertions.fermer();
+            }
+            long total = 0;
+            for (Table t : tables) total += t.lignes;
+            System.out.println("Restauration : " + total + " ligne(s) chargée(s) en " +
+                String.format(Locale.ROOT, "%.1f s", (System.nanoTime() - debut) / 1e9) + ", construction des index...");
+            reconstruire(url, tables);
+            return new Bilan(tables.size(), total, octetsBruts, Files.size(fichier), System.nanoTime() - debut);
+        }
+    }
+
+    /**
+     * Lit les blocs et les confie aux threads d'insertion (au plus deux blocs en attente par thread)
+     */
+    private long charger(DataInputStream in, List<Table> tables, Insertions insertions)
+            throws IOException, SQLException, InterruptedException {
+        long octetsBruts = 0;
+        while (true) {
+            int table = in.readInt();
+            if (table == FIN) break;
+            if (table < 0 || table >= tables.size()) throw new IOException("Archive corrompue (table " + table + ")");
+            Bloc bloc = lireBloc(in, table);
+            octetsBruts += bloc.tailleBrute;
+            insertions.soumettre(bloc);
+        }
+        insertions.attendre();
+        for (Table t : tables) {
+            long attendues = in.readLong();
+            if (attendues != t.lignes) {
+                throw new IOException("Table " + t.nom + " : " + t.lignes + " ligne(s) restaurée(s), " + attendues + " attendue(s)");
+            }
+        }
+        return octetsBruts;
+    }
+
+    /**
+     * Index secondaires ajoutés d'un coup par table (tri unique plutôt qu'insertion ligne à ligne),
+     * en parallèle ; puis clés étrangères, sans revérification (données issues d'une base cohérente)
+     */
+    private void reconstruire(String url, List<Table> tables) throws SQLException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tables.size())),
+            fabrique("pharmacy-restauration-index"));
+        List<Future<?>> index = new ArrayList<>();
+        for (Table t : tables) {
+            String sql = t.ajoutIndex();
+            if (sql == null) continue;
+            index.add(pool.submit(() -> {
+                try (Connection conn = ouvrir(url); Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(sql);
+                }
+                return null;
+            }));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> f : index) f.get();
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            relancerSql(e.getCause());
+        }
+        try (Connection conn = ouvrir(url); Statement stmt = conn.createStatement()) {
+            stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
+            for (Table t : tables) {
+                String sql = t.ajoutContraintes();
+                if (sql != null) stmt.executeUpdate(sql);
+            }
+        }
+    }
+
+    private static void verifierBaseVide(Connection conn, String base, List<Table> tables) throws SQLException {
+        if (tables.isEmpty()) return;
+        String sql = "SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME IN (" +
+                     String.join(", ", Collections.nCopies(tables.size(), "?")) + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, base);
+            for (Table t : tables) pstmt.setString(t.index + 2, t.nom);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    throw new IllegalStateException("La base " + base + " contient déjà la table " + rs.getString(1) +
+                        " : restaurez dans une base neuve");
+                }
+            }
+        }
+    }
+
+    /**
+     * Threads d'insertion : chacun a sa connexion (contrôles d'unicité et de clés étrangères
+     * suspendus) et une requête préparée par table ; un bloc est inséré par lots puis validé
+     */
+    private final class Insertions {
+        private final String url;
+        private final List<Table> tables;
+        private final ExecutorService pool;
+        private final Semaphore places;
+        private final List<Future<?>> taches = Collections.synchronizedList(new ArrayList<>());
+        private final List<Travailleur> travailleurs = Collections.synchronizedList(new ArrayList<>());
+        private final ThreadLocal<Travailleur> travailleur = new ThreadLocal<>();
+
+        Insertions(String url, List<Table> tables) {
+            this.url = url;
+            this.tables = tables;
+            this.pool = Executors.newFixedThreadPool(threads, fabrique("pharmacy-restauration"));
+            this.places = new Semaphore(threads * 2);
+        }
+
+        void soumettre(Bloc bloc) throws InterruptedException, SQLException, IOException {
+            places.acquire();
+            try {
+                taches.add(pool.submit(() -> {
+                    try {
+                        inserer(bloc);
+                    } finally {
+                        places.release();
+                    }
+                    return null;
+                }));
+            } catch (RuntimeException e) {
+                places.release();
+                throw e;
+            }
+            // Échec déjà survenu : inutile de lire la suite
+            synchronized (taches) {
+                for (Future<?> f : taches) if (f.isDone()) attendre(f);
+                taches.removeIf(Future::isDone);
+            }
+        }
+
+        void attendre() throws SQLException, IOException, InterruptedException {
+            List<Future<?>> copie;
+            synchronized (taches) {
+                copie = new ArrayList<>(taches);
+            }
+            for (Future<?> f : copie) attendre(f);
+        }
+
+        private void attendre(Future<?> f) throws SQLException, IOException, InterruptedException {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                relancer(e.getCause());
+            }
+        }
+
+        void terminer() throws InterruptedException {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        void fermer() {
+            pool.shutdownNow();
+            for (Travailleur t : travailleurs) fermer(t.conn);
+        }
+
+        private void fermer(Connection conn) {
+            Sauvegarde.fermer(conn);
+        }
+
+        private void inserer(Bloc bloc) throws SQLException, IOException, DataFormatException {
+            Table table = tables.get(bloc.table);
+            byte[] brut = decompresser(bloc);
+            Travailleur t = travailleur.get();
+            if (t == null) {
+                t = new Travailleur(ouvrir(url));
+                travailleurs.add(t);
+                travailleur.set(t);
+            }
+            PreparedStatement pstmt = t.insertion(table);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(brut));
+            long lignes = 0;
+            int enAttente = 0;
+            while (in.available() > 0) {
+                lireLigne(in, pstmt, table.natures);
+                pstmt.addBatch();
+                lignes++;
+                if (++enAttente == tailleLot) {
+                    pstmt.executeBatch();
+                    enAttente = 0;
+                }
+            }
+            if (enAttente > 0) pstmt.executeBatch();
+            t.conn.commit();
+            synchronized (table) {
+                table.lignes += lignes;
+            }
+        }
+    }
+
+    private static final class Travailleur {
+        private final Connection conn;
+        private final Map<Integer, PreparedStatement> insertions = new HashMap<>();
+
+        Travailleur(Connection conn) throws SQLException {
+            this.conn = conn;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
+                stmt.execute("SET UNIQUE_CHECKS = 0");
+            }
+            conn.setAutoCommit(false);
+        }
+
+        PreparedStatement insertion(Table table) throws SQLException {
+            PreparedStatement pstmt = insertions.get(table.index);
+            if (pstmt == null) {
+                StringBuilder sql = new StringBuilder("INSERT INTO ").append(cite(table.nom)).append(" (");
+                for (int i = 0; i < table.colonnes.length; i++) sql.append(i > 0 ? ", " : "").append(cite(table.colonnes[i]));
+                sql.append(") VALUES (").append(String.join(", ", Collections.nCopies(table.colonnes.length, "?"))).append(')');
+                pstmt = conn.prepareStatement(sql.toString());
+                insertions.put(table.index, pstmt);
+            }
+            return pstmt;
+        }
+    }
+
+    private static void lireLigne(DataInputStream in, PreparedStatement pstmt, byte[] natures) throws IOException, SQLException {
+        for (int i = 0; i < natures.length; i++) {
+            int parametre = i + 1;
+            if (!in.readBoolean()) {
+                pstmt.setNull(parametre, Types.NULL);
+                continue;
+            }
+            switch (natures[i]) {
+                case ENTIER: pstmt.setLong(parametre, in.readLong()); break;
+                case REEL: pstmt.setDouble(parametre, in.readDouble()); break;
+                case OCTETS: pstmt.setBytes(parametre, lireOctets(in)); break;
+                default: pstmt.setString(parametre, new String(lireOctets(in), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static byte[] lireOctets(DataInputStream in) throws IOException {
+        byte[] v = new byte[in.readInt()];
+        in.readFully(v);
+        return v;
+    }
+
+    // ==================== VÉRIFICATION ====================
+
+    /**
+     * Relit toute l'archive sans base : en-tête, sommes de contrôle et nombre de lignes par table
+     */
+    public Bilan verifier(Path fichier) throws IOException {
+        long debut = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier), 1 << 16))) {
+            List<Table> tables = lireEntete(in);
+            long octetsBruts = 0;
+            int table;
+            while ((table = in.readInt()) != FIN) {
+                if (table < 0 || table >= tables.size()) throw new IOException("Archive corrompue (table " + table + ")");
+                Bloc bloc = lireBloc(in, table);
+                byte[] brut = decompresser(bloc);
+                octetsBruts += brut.length;
+                tables.get(table).lignes += compterLignes(brut, tables.get(table).natures);
+            }
+            long total = 0;
+            for (Table t : tables) {
+                long attendues = in.readLong();
+                if (attendues != t.lignes) {
+                    throw new IOException("Table " + t.nom + " : " + t.lignes + " ligne(s) lue(s), " + attendues + " attendue(s)");
+                }
+                total += t.lignes;
+            }
+            return new Bilan(tables.size(), total, octetsBruts, Files.size(fichier), System.nanoTime() - debut);
+        } catch (DataFormatException e) {
+            throw new IOException("Archive corrompue : " + e.getMessage(), e);
+        }
+    }
+
+    private static long compterLignes(byte[] brut, byte[] natures) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(brut));
+        long lignes = 0;
+        while (in.available() > 0) {
+            for (byte nature : natures) {
+                if (!in.readBoolean()) continue;
+                if (nature == ENTIER || nature == REEL) in.skipBytes(8);
+                else in.skipBytes(in.readInt());
+            }
+            lignes++;
+        }
+        return lignes;
+    }
+
+    // ==================== FORMAT ====================
+
+    private static List<Table> lireEntete(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Ce fichier n'est pas une sauvegarde de la pharmacie");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Version de sauvegarde non prise en charge : " + version);
+        byte[] octets = new byte[in.readInt()];
+        int crcAttendu = in.readInt();
+        in.readFully(octets);
+        CRC32C crc = new CRC32C();
+        crc.update(octets);
+        if ((int) crc.getValue() != crcAttendu) throw new IOException("En-tête de sauvegarde corrompu");
+
+        DataInputStream entete = new DataInputStream(new ByteArrayInputStream(octets));
+        entete.readLong();
+        entete.readUTF();
+        int nombre = entete.readInt();
+        List<Table> tables = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            Table t = new Table(i, entete.readUTF());
+            entete.readBoolean();
+            t.ddl = new String(lireOctets(entete), StandardCharsets.UTF_8);
+            int colonnes = entete.readInt();
+            t.colonnes = new String[colonnes];
+            t.natures = new byte[colonnes];
+            for (int c = 0; c < colonnes; c++) {
+                t.colonnes[c] = entete.readUTF();
+                t.natures[c] = entete.readByte();
+            }
+            tables.add(t);
+        }
+        return tables;
+    }
+
+    private static Bloc lireBloc(DataInputStream in, int table) throws IOException {
+        int tailleBrute = in.readInt();
+        int tailleCompressee = in.readInt();
+        int crc = in.readInt();
+        if (tailleBrute < 0 || tailleCompressee < 0) throw new IOException("Archive corrompue (taille de bloc)");
+        byte[] donnees = new byte[tailleCompressee];
+        try {
+            in.readFully(donnees);
+        } catch (EOFException e) {
+            throw new IOException("Archive tronquée", e);
+        }
+        return new Bloc(table, tailleBrute, crc, donnees);
+    }
+
+    private static byte[] decompresser(Bloc bloc) throws DataFormatException, IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bloc.donnees);
+            byte[] brut = new byte[bloc.tailleBrute];
+            int lus = 0;
+            while (lus < brut.length && !inflater.finished()) {
+                int n = inflater.inflate(brut, lus, brut.length - lus);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                lus += n;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(brut, 0, lus);
+            if (lus != brut.length || (int) crc.getValue() != bloc.crc) {
+                throw new IOException("Bloc corrompu (somme de contrôle) dans la table n° " + bloc.table);
+            }
+            return brut;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte nature(int type) {
+        switch (type) {
+            case Types.BIT: case Types.BOOLEAN: case Types.TINYINT: case Types.SMALLINT:
+            case Types.INTEGER: case Types.BIGINT:
+                return ENTIER;
+            case Types.FLOAT: case Types.REAL: case Types.DOUBLE:
+                return REEL;
+            case Types.BINARY: case Types.VARBINARY: case Types.LONGVARBINARY: case Types.BLOB:
+                return OCTETS;
+            default:
+                // DECIMAL, dates, textes, ENUM : forme textuelle du serveur, exacte et relue telle quelle
+                return TEXTE;
+        }
+    }
+
+    // ==================== OUTILS ====================
+
+    /**
+     * Connexion dédiée hors pool : sans délai de lecture, une construction d'index peut durer
+     */
+    private Connection ouvrir(String url) throws SQLException {
+        Connection conn = DriverManager.getConnection(url, config.getUsername(), config.getPassword());
+        conn.setNetworkTimeout(Runnable::run, 0);
+        return conn;
+    }
+
+    private static void fermer(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Fermeture de connexion : " + e.getMessage());
+        }
+    }
+
+    private static String cite(String identifiant) {
+        return "`" + identifiant.replace("`", "``") + "`";
+    }
+
+    private static java.util.concurrent.ThreadFactory fabrique(String prefixe) {
+        AtomicInteger compteur = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefixe + "-" + compteur.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static void relancer(Throwable cause) throws SQLException, IOException {
+        if (cause instanceof IOException) throw (IOException) cause;
+        if (cause instanceof DataFormatException) throw new IOException("Archive corrompue : " + cause.getMessage(), cause);
+        relancerSql(cause);
+    }
+
+    private static void relancerSql(Throwable cause) throws SQLException {
+        if (cause instanceof SQLException) throw (SQLException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new IllegalStateException(cause);
+    }
+
+    private static final class Table {
+        private final int index;
+        private final String nom;
+        private String ddl;
+        private String[] colonnes;
+        private byte[] natures;
+        private long lignes;
+
+        Table(int index, String nom) {
+            this.index = index;
+            this.nom = nom;
+        }
+
+        /**
+         * CREATE TABLE d'origine sans index secondaires ni clés étrangères ; clé primaire et
+         * contraintes CHECK restent en place (les ajouter après coup reconstruirait la table)
+         */
+        String creationSansIndex() {
+            String[] lignes = ddl.split("\n");
+            List<String> definitions = new ArrayList<>();
+            for (int i = 1; i < lignes.length - 1; i++) {
+                String definition = definition(lignes[i]);
+                if (!estIndex(definition) && !estCleEtrangere(definition)) definitions.add(definition);
+            }
+            return lignes[0] + "\n  " + String.join(",\n  ", definitions) + "\n" + lignes[lignes.length - 1];
+        }
+
+        String ajoutIndex() {
+            return alter(true);
+        }
+
+        String ajoutContraintes() {
+            return alter(false);
+        }
+
+        private String alter(boolean index) {
+            String[] lignes = ddl.split("\n");
+            List<String> ajouts = new ArrayList<>();
+            for (int i = 1; i < lignes.length - 1; i++) {
+                String definition = definition(lignes[i]);
+                if (index ? estIndex(definition) : estCleEtrangere(definition)) ajouts.add("ADD " + definition);
+            }
+            return ajouts.isEmpty() ? null : "ALTER TABLE " + cite(nom) + " " + String.join(", ", ajouts);
+        }
+
+        private static String definition(String ligne) {
+            String d = ligne.strip();
+            return d.endsWith(",") ? d.substring(0, d.length() - 1) : d;
+        }
+
+        private static boolean estIndex(String d) {
+            return d.startsWith("KEY ") || d.startsWith("UNIQUE KEY ") || d.startsWith("FULLTEXT KEY ")
+                || d.startsWith("SPATIAL KEY ");
+        }
+
+        private static boolean estCleEtrangere(String d) {
+            return d.startsWith("CONSTRAINT ") && d.contains(" FOREIGN KEY ");
+        }
+    }
+
+    private static final class Bloc {
+        static final Bloc FIN_LECTEUR = new Bloc(FIN, 0, 0, new byte[0]);
+
+        private final int table;
+        private final int tailleBrute;
+        private final int crc;
+        private final byte[] donnees;
+
+        Bloc(int table, int tailleBrute, int crc, byte[] donnees) {
+            this.table = table;
+            this.tailleBrute = tailleBrute;
+            this.crc = crc;
+            this.donnees = donnees;
+        }
+    }
+
+    /**
+     * Volumes et débit d'une sauvegarde, restauration ou vérification ; le débit est celui
+     * des données brutes (avant compression)
+     */
+    public static final class Bilan {
+        private final int tables;
+        private final long lignes;
+        private final long octetsBruts;
+        private final long octetsArchive;
+        private final long dureeNanos;
+
+        Bilan(int tables, long lignes, long octetsBruts, long octetsArchive, long dureeNanos) {
+            this.tables = tables;
+            this.lignes = lignes;
+            this.octetsBruts = octetsBruts;
+            this.octetsArchive = octetsArchive;
+            this.dureeNanos = dureeNanos;
+        }
+
+        public int getTables() { return tables; }
+        public long getLignes() { return lignes; }
+        public long getOctetsBruts() { return octetsBruts; }
+        public long getOctetsArchive() { return octetsArchive; }
+        public long getDureeNanos() { return dureeNanos; }
+
+        public double getMoParSeconde() {
+            return dureeNanos > 0 ? octetsBruts / 1e6 / (dureeNanos / 1e9) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d table(s), %d ligne(s), %.1f Mo (archive %.1f Mo) en %.1f s : %.1f Mo/s",
+                tables, lignes, octetsBruts / 1e6, octetsArchive / 1e6, dureeNanos / 1e9, getMoParSeconde());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage : Sauvegarde sauvegarder <fichier> [site] | restaurer <fichier> [base] | verifier <fichier>");
+            System.exit(2);
+        }
+        Sauvegarde sauvegarde = new Sauvegarde();
+        Path fichier = Paths.get(args[1]);
+        switch (args[0]) {
+            case "sauvegarder":
+                System.out.println("Sauvegarde : " + sauvegarde.sauvegarder(fichier, args.length > 2 ? Integer.valueOf(args[2]) : null));
+                break;
+            case "restaurer":
+                String base = args.length > 2 ? args[2] : DatabaseConnection.getConfig().getDatabase();
+                System.out.println("Restauration : " + sauvegarde.restaurer(fichier, base));
+                break;
+            case "verifier":
+                System.out.println("Archive valide : " + sauvegarde.verifier(fichier));
+                break;
+            default:
+                System.err.println("Commande inconnue : " + args[0]);
+                System.exit(2);
+        }
+    }
+}
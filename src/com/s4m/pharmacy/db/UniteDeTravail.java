@@ -0,0 +1,339 @@
+package com.s4m.pharmacy.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unité de travail : une transaction par base, liée au thread courant, que tous les appels
+ * de services de la portée réutilisent. Une opération métier en plusieurs étapes (créer une
+ * catégorie puis ses produits, réaffecter des produits puis supprimer leur catégorie) emprunte
+ * ainsi une seule connexion par base et ne valide qu'une fois, à la fin, ou rien.
+ *
+ * <pre>
+ * try (UniteDeTravail unite = UniteDeTravail.ouvrir()) {
+ *     int id = categoryService.ajouterCategorie(categorie);
+ *     productService.ajouterProduit(produit);
+ *     unite.valider();
+ * }   // non validée : tout est annulé
+ * </pre>
+ *
+ * Dans la portée, {@link DatabaseConnection} rend la connexion de l'unité (lectures comprises,
+ * pour relire ses propres écritures) : sa fermeture, {@code setAutoCommit} et {@code commit}
+ * n'y ont pas d'effet, et un {@code rollback} condamne l'unité entière. Une unité ouverte
+ * dans une autre s'y joint ; seule la plus externe valide. Les événements et l'audit publiés
+ * dans la portée ne partent qu'après validation ({@link #apresValidation(Runnable)}).
+ *
+ * La portée est celle du thread : les appels {@code *Async} s'exécutent hors de l'unité.
+ * Chaque base (principale, bases de sites) a sa transaction, validées l'une après l'autre :
+ * l'atomicité est garantie dans chaque base, pas entre elles.
+ */
+public final class UniteDeTravail implements AutoCloseable {
+
+    private static final ThreadLocal<Transaction> COURANTE = new ThreadLocal<>();
+
+    private final Transaction transaction;
+    private final boolean externe;
+    private boolean terminee;
+
+    private UniteDeTravail(Transaction transaction, boolean externe) {
+        this.transaction = transaction;
+        this.externe = externe;
+    }
+
+    /**
+     * Ouvre une unité sur le thread courant, ou se joint à celle déjà ouverte
+     */
+    public static UniteDeTravail ouvrir() {
+        Transaction transaction = COURANTE.get();
+        if (transaction != null) return new UniteDeTravail(transaction, false);
+        transaction = new Transaction();
+        COURANTE.set(transaction);
+        return new UniteDeTravail(transaction, true);
+    }
+
+    /**
+     * Exécute {@code travail} dans une unité validée s'il se termine normalement, annulée sinon
+     */
+    public static <T> T executer(Travail<T> travail) throws SQLException {
+        try (UniteDeTravail unite = ouvrir()) {
+            T resultat = travail.executer();
+            unite.valider();
+            return resultat;
+        }
+    }
+
+    public static boolean estOuverte() {
+        return COURANTE.get() != null;
+    }
+
+    /**
+     * Exécute {@code action} après la validation de l'unité courante (abandonnée si elle est
+     * annulée), ou tout de suite hors unité
+     */
+    public static void apresValidation(Runnable action) {
+        Transaction transaction = COURANTE.get();
+        if (transaction == null) action.run();
+        else transaction.apresValidation.add(action);
+    }
+
+    /**
+     * Connexion de l'unité courante vers la base de {@code pool} (empruntée à la première
+     * demande), ou null hors unité
+     */
+    static Connection connexion(ConnectionPool pool) throws SQLException {
+        Transaction transaction = COURANTE.get();
+        return transaction != null ? transaction.connexion(pool) : null;
+    }
+
+    /**
+     * Valide toutes les bases touchées puis déclenche les actions différées. Sans effet dans une
+     * unité jointe ; échoue si un appel interne a annulé.
+     */
+    public void valider() throws SQLException {
+        verifierOuverte();
+        terminee = true;
+        if (!externe) return;
+        try {
+            if (transaction.condamnee) {
+                transaction.annuler();
+                throw new SQLException("Unité de travail annulée par un appel interne");
+            }
+            transaction.valider();
+        } finally {
+            transaction.liberer();
+        }
+        for (Runnable action : transaction.apresValidation) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("Action après validation en échec : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Annule l'unité ; une unité jointe condamne l'unité externe, qui annulera à sa fin
+     */
+    public void annuler() {
+        if (terminee) return;
+        terminee = true;
+        if (!externe) {
+            transaction.condamnee = true;
+            return;
+        }
+        try {
+            transaction.annuler();
+        } finally {
+            transaction.liberer();
+        }
+    }
+
+    /**
+     * Point de retour dans toutes les bases déjà touchées ; une base touchée ensuite sera
+     * entièrement annulée par {@link #revenirA(PointDeSauvegarde)}
+     */
+    public PointDeSauvegarde pointDeSauvegarde() throws SQLException {
+        verifierOuverte();
+        Map<ConnectionPool, Savepoint> points = new IdentityHashMap<>();
+        for (Map.Entry<ConnectionPool, Participation> e : transaction.participations.entrySet()) {
+            points.put(e.getKey(), e.getValue().physique.setSavepoint());
+        }
+        return new PointDeSauvegarde(transaction, points, transaction.apresValidation.size());
+    }
+
+    /**
+     * Annule ce qui a été fait depuis le point, actions différées comprises ; l'unité continue
+     */
+    public void revenirA(PointDeSauvegarde point) throws SQLException {
+        verifierPoint(point);
+        for (Map.Entry<ConnectionPool, Participation> e : transaction.participations.entrySet()) {
+            Savepoint savepoint = point.points.get(e.getKey());
+            if (savepoint != null) e.getValue().physique.rollback(savepoint);
+            else e.getValue().physique.rollback();
+        }
+        List<Runnable> actions = transaction.apresValidation;
+        actions.subList(Math.min(point.actions, actions.size()), actions.size()).clear();
+    }
+
+    /**
+     * Libère le point sans rien annuler (il n'est plus utilisable)
+     */
+    public void liberer(PointDeSauvegarde point) throws SQLException {
+        verifierPoint(point);
+        for (Map.Entry<ConnectionPool, Savepoint> e : point.points.entrySet()) {
+            transaction.participations.get(e.getKey()).physique.releaseSavepoint(e.getValue());
+        }
+    }
+
+    /**
+     * Annule l'unité si elle n'a été ni validée ni annulée (exception, retour anticipé)
+     */
+    @Override
+    public void close() {
+        annuler();
+    }
+
+    private void verifierOuverte() throws SQLException {
+        if (terminee) throw new SQLException("Unité de travail déjà terminée");
+    }
+
+    private void verifierPoint(PointDeSauvegarde point) throws SQLException {
+        verifierOuverte();
+        if (point.transaction != transaction) throw new SQLException("Point de sauvegarde d'une autre unité de travail");
+    }
+
+    @FunctionalInterface
+    public interface Travail<T> {
+        T executer() throws SQLException;
+    }
+
+    /**
+     * Point de retour d'une unité de travail (un savepoint par base touchée)
+     */
+    public static final class PointDeSauvegarde {
+        private final Transaction transaction;
+        private final Map<ConnectionPool, Savepoint> points;
+        private final int actions;
+
+        private PointDeSauvegarde(Transaction transaction, Map<ConnectionPool, Savepoint> points, int actions) {
+            this.transaction = transaction;
+            this.points = points;
+            this.actions = actions;
+        }
+    }
+
+    /**
+     * État partagé par l'unité externe et les unités qui s'y joignent
+     */
+    private static final class Transaction {
+        // Ordre d'emprunt conservé : les bases sont validées dans l'ordre où elles ont été touchées
+        private final Map<ConnectionPool, Participation> participations = new LinkedHashMap<>();
+        private final List<Runnable> apresValidation = new ArrayList<>();
+        private boolean condamnee;
+
+        Connection connexion(ConnectionPool pool) throws SQLException {
+            Participation participation = participations.get(pool);
+            if (participation == null) {
+                Connection physique = pool.emprunter();
+                try {
+                    physique.setAutoCommit(false);
+                } catch (SQLException e) {
+                    physique.close();
+                    throw e;
+                }
+                participation = new Participation(physique, this);
+                participations.put(pool, participation);
+            }
+            return participation.partagee;
+        }
+
+        void valider() throws SQLException {
+            int validees = 0;
+            for (Participation p : participations.values()) {
+                try {
+                    p.physique.commit();
+                    validees++;
+                } catch (SQLException e) {
+                    if (validees > 0) {
+                        System.err.println("Unité de travail : " + validees + " base(s) déjà validée(s) avant l'échec");
+                    }
+                    annuler();
+                    throw e;
+                }
+            }
+        }
+
+        void annuler() {
+            for (Participation p : participations.values()) {
+                try {
+                    p.physique.rollback();
+                } catch (SQLException e) {
+                    System.err.println("Annulation de l'unité de travail : " + e.getMessage());
+                }
+            }
+            apresValidation.clear();
+        }
+
+        /**
+         * Rend les connexions au pool et détache l'unité du thread
+         */
+        void liberer() {
+            COURANTE.remove();
+            for (Participation p : participations.values()) {
+                try {
+                    p.physique.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                    // Le pool annule et réinitialise la connexion au retour
+                }
+                try {
+                    p.physique.close();
+                } catch (SQLException e) {
+                    System.err.println("Fermeture de connexion : " + e.getMessage());
+                }
+            }
+            participations.clear();
+        }
+    }
+
+    /**
+     * Connexion d'une base dans l'unité et sa vue remise aux services : elle ne peut ni
+     * valider, ni repasser en auto-commit, ni retourner au pool avant la fin de l'unité
+     */
+    private static final class Participation {
+        private final Connection physique;
+        private final Connection partagee;
+
+        Participation(Connection physique, Transaction transaction) {
+            this.physique = physique;
+            this.partagee = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, methode, args) -> {
+                    switch (methode.getName()) {
+                        case "close":
+                        case "commit":
+                        case "setAutoCommit":
+                            return null;
+                        case "getAutoCommit":
+                            return false;
+                        case "rollback":
+                            if (args == null || args.length == 0) {
+                                transaction.condamnee = true;
+                                return null;
+                            }
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    return invoquer(physique, methode, args);
+                });
+        }
+    }
+
+    private static Object invoquer(Object cible, Method methode, Object[] args) throws SQLException {
+        try {
+            return methode.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SQLException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.s4m.pharmacy.evenement;
+
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.db.UniteDeTravail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bus d'événements du processus : les services publient leurs changements
+ * ({@link EvenementDomaine}) et les caches, index et écrans abonnés se mettent à jour
+ * sans relire la base.
+ *
+ * Publier ne bloque pas : l'événement est déposé dans l'une des {@code evenements.voies}
+ * files sans verrou, choisie selon l'entité, puis livré par un petit pool de threads
+ * ({@code evenements.threads}). Les événements d'une entité sont livrés dans l'ordre ;
+ * un abonné lent ne retarde que les entités de sa voie. Sans abonné, publier ne coûte rien.
+ */
+public final class BusEvenements {
+
+    private static final List<Abonnement<?>> ABONNEMENTS = new CopyOnWriteArrayList<>();
+    private static final VoieEvenements[] VOIES;
+
+    static {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        int threads = (int) Math.max(1, config.getEntier("evenements.threads", 2));
+        int voies = (int) Math.max(1, config.getEntier("evenements.voies", 16));
+        AtomicInteger compteur = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pharmacy-evenements-" + compteur.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        VOIES = new VoieEvenements[voies];
+        for (int i = 0; i < voies; i++) VOIES[i] = new VoieEvenements(pool, BusEvenements::livrer);
+    }
+
+    private BusEvenements() {}
+
+    /**
+     * Abonne aux événements du type donné (et de ses sous-types), livrés sur un thread du bus
+     */
+    public static <E extends EvenementDomaine> void abonner(Class<E> type, Consumer<? super E> abonne) {
+        abonner(type, abonne, null);
+    }
+
+    /**
+     * Abonne en faisant exécuter la réception par {@code executeur} (ex. {@code Platform::runLater}) ;
+     * l'ordre est conservé si l'exécuteur traite ses tâches dans l'ordre
+     */
+    public static <E extends EvenementDomaine> void abonner(Class<E> type, Consumer<? super E> abonne, Executor executeur) {
+        ABONNEMENTS.add(new Abonnement<>(type, abonne, executeur));
+    }
+
+    public static void desabonner(Consumer<?> abonne) {
+        ABONNEMENTS.removeIf(a -> a.abonne == abonne);
+    }
+
+    /**
+     * Permet d'éviter de préparer des événements coûteux que personne n'écoute
+     */
+    public static boolean estEcoute(Class<? extends EvenementDomaine> type) {
+        for (Abonnement<?> a : ABONNEMENTS) {
+            if (a.type.isAssignableFrom(type)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Dans une unité de travail, l'événement n'est livré qu'après sa validation
+     */
+    public static void publier(EvenementDomaine evenement) {
+        if (ABONNEMENTS.isEmpty()) return;
+        VoieEvenements voie = VOIES[Math.floorMod(evenement.cle().hashCode(), VOIES.length)];
+        if (UniteDeTravail.estOuverte()) UniteDeTravail.apresValidation(() -> voie.deposer(evenement));
+        else voie.deposer(evenement);
+    }
+
+    private static void livrer(EvenementDomaine evenement) {
+        for (Abonnement<?> a : ABONNEMENTS) a.recevoir(evenement);
+    }
+
+    private static final class Abonnement<E extends EvenementDomaine> {
+        private final Class<E> type;
+        private final Consumer<? super E> abonne;
+        private final Executor executeur;
+
+        private Abonnement(Class<E> type, Consumer<? super E> abonne, Executor executeur) {
+            this.type = type;
+            this.abonne = abonne;
+            this.executeur = executeur;
+        }
+
+        void recevoir(EvenementDomaine evenement) {
+            if (!type.isInstance(evenement)) return;
+            E e = type.cast(evenement);
+            if (executeur != null) executeur.execute(() -> transmettre(e));
+            else transmettre(e);
+        }
+
+        /**
+         * L'erreur d'un abonné n'interrompt ni la voie ni les autres abonnés
+         */
+        private void transmettre(E evenement) {
+            try {
+                abonne.accept(evenement);
+            } catch (RuntimeException ex) {
+                System.err.println("Abonné en échec sur " + evenement.getClass().getSimpleName() +
+                    " " + evenement.cle() + " : " + ex.getMessage());
+            }
+        }
+    }
+}
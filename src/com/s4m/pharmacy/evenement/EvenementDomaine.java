@@ -0,0 +1,167 @@
+package com.s4m.pharmacy.evenement;
+
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.model.User;
+
+/**
+ * Changement de données publié par un service après validation de son écriture.
+ * Les événements d'une même entité (même {@link #cle()}) sont livrés dans l'ordre de
+ * publication ; aucun ordre n'est garanti entre entités différentes.
+ * Les objets portés sont ceux du service : les abonnés ne doivent pas les modifier.
+ */
+public abstract class EvenementDomaine {
+
+    public enum Nature { AJOUT, MODIFICATION, SUPPRESSION }
+
+    private final long date = System.currentTimeMillis();
+    private final int site;
+
+    /**
+     * Site relevé sur le thread de l'écriture
+     */
+    protected EvenementDomaine() {
+        this(DatabaseConnection.getSiteCourant());
+    }
+
+    protected EvenementDomaine(int site) {
+        this.site = site;
+    }
+
+    public long getDate() { return date; }
+    public int getSite() { return site; }
+
+    /**
+     * Clé d'ordonnancement : entité et identifiant
+     */
+    public abstract String cle();
+
+    // ==================== PRODUITS ====================
+
+    public static final class ProduitAjoute extends EvenementDomaine {
+        private final Product produit;
+
+        public ProduitAjoute(Product produit) {
+            this.produit = produit;
+        }
+
+        public Product getProduit() { return produit; }
+
+        @Override
+        public String cle() { return "Produit:" + produit.getId(); }
+    }
+
+    public static final class ProduitModifie extends EvenementDomaine {
+        private final Product produit;
+
+        public ProduitModifie(Product produit) {
+            this.produit = produit;
+        }
+
+        /**
+         * Modification faite pour un autre site que celui du thread (opération multi-sites)
+         */
+        public ProduitModifie(Product produit, int site) {
+            super(site);
+            this.produit = produit;
+        }
+
+        public Product getProduit() { return produit; }
+
+        @Override
+        public String cle() { return "Produit:" + produit.getId(); }
+    }
+
+    public static final class ProduitSupprime extends EvenementDomaine {
+        private final int idProduit;
+
+        public ProduitSupprime(int idProduit) {
+            this.idProduit = idProduit;
+        }
+
+        /**
+         * Suppression faite hors contexte de site (tâche d'archivage)
+         */
+        public ProduitSupprime(int idProduit, int site) {
+            super(site);
+            this.idProduit = idProduit;
+        }
+
+        public int getIdProduit() { return idProduit; }
+
+        @Override
+        public String cle() { return "Produit:" + idProduit; }
+    }
+
+    /**
+     * Variation de stock d'un produit, avec la quantité et la version de ligne qui en résultent
+     */
+    public static final class StockMouvemente extends EvenementDomaine {
+        private final int idProduit;
+        private final int variation;
+        private final int quantite;
+        private final int version;
+
+        public StockMouvemente(int idProduit, int variation, int quantite, int version) {
+            this.idProduit = idProduit;
+            this.variation = variation;
+            this.quantite = quantite;
+            this.version = version;
+        }
+
+        public int getIdProduit() { return idProduit; }
+        public int getVariation() { return variation; }
+        public int getQuantite() { return quantite; }
+        public int getVersion() { return version; }
+
+        @Override
+        public String cle() { return "Produit:" + idProduit; }
+    }
+
+    // ==================== CATÉGORIES ET UTILISATEURS ====================
+
+    /**
+     * La catégorie vaut null pour une suppression
+     */
+    public static final class CategorieModifiee extends EvenementDomaine {
+        private final int idCategorie;
+        private final Category categorie;
+        private final Nature nature;
+
+        public CategorieModifiee(int idCategorie, Category categorie, Nature nature) {
+            this.idCategorie = idCategorie;
+            this.categorie = categorie;
+            this.nature = nature;
+        }
+
+        public int getIdCategorie() { return idCategorie; }
+        public Category getCategorie() { return categorie; }
+        public Nature getNature() { return nature; }
+
+        @Override
+        public String cle() { return "Categorie:" + idCategorie; }
+    }
+
+    /**
+     * L'utilisateur vaut null pour une suppression
+     */
+    public static final class UtilisateurModifie extends EvenementDomaine {
+        private final int idUtilisateur;
+        private final User utilisateur;
+        private final Nature nature;
+
+        public UtilisateurModifie(int idUtilisateur, User utilisateur, Nature nature) {
+            this.idUtilisateur = idUtilisateur;
+            this.utilisateur = utilisateur;
+            this.nature = nature;
+        }
+
+        public int getIdUtilisateur() { return idUtilisateur; }
+        public User getUtilisateur() { return utilisateur; }
+        public Nature getNature() { return nature; }
+
+        @Override
+        public String cle() { return "Utilisateur:" + idUtilisateur; }
+    }
+}
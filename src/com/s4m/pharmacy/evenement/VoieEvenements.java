@@ -0,0 +1,46 @@
+package com.s4m.pharmacy.evenement;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * File de livraison d'un sous-ensemble d'entités : les producteurs déposent sans verrou
+ * ({@link ConcurrentLinkedQueue}) et la voie est confiée à un thread du pool tant qu'elle
+ * n'est pas vide, jamais à deux threads à la fois. L'ordre de dépôt est donc l'ordre
+ * de livraison.
+ */
+final class VoieEvenements implements Runnable {
+
+    /** Événements livrés avant de rendre le thread aux autres voies */
+    private static final int LOT = 64;
+
+    private final Queue<EvenementDomaine> file = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean planifiee = new AtomicBoolean();
+    private final Executor executeur;
+    private final Consumer<EvenementDomaine> livraison;
+
+    VoieEvenements(Executor executeur, Consumer<EvenementDomaine> livraison) {
+        this.executeur = executeur;
+        this.livraison = livraison;
+    }
+
+    void deposer(EvenementDomaine evenement) {
+        file.offer(evenement);
+        if (planifiee.compareAndSet(false, true)) executeur.execute(this);
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < LOT; i++) {
+            EvenementDomaine evenement = file.poll();
+            if (evenement == null) break;
+            livraison.accept(evenement);
+        }
+        planifiee.set(false);
+        // Dépôt arrivé pendant la livraison, ou lot atteint : la voie repasse dans le pool
+        if (!file.isEmpty() && planifiee.compareAndSet(false, true)) executeur.execute(this);
+    }
+}
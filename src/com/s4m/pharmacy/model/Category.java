@@ -7,6 +7,7 @@ public class Category {
     private int id;
     private String nom;
     private String description;
+    private int version; // incrémentée à chaque modification (concurrence optimiste)
     
     public Category() {}
     
@@ -24,10 +25,12 @@ public class Category {
     public int getId() { return id; }
     public String getNom() { return nom; }
     public String getDescription() { return description; }
+    public int getVersion() { return version; }
     
     public void setId(int id) { this.id = id; }
     public void setNom(String nom) { this.nom = nom; }
     public void setDescription(String description) { this.description = description; }
+    public void setVersion(int version) { this.version = version; }
     
     @Override
     public String toString() {
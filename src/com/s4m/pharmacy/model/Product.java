@@ -1,5 +1,7 @@
 package com.s4m.pharmacy.model;
 
+import com.s4m.pharmacy.util.Montant;
+
 import java.time.LocalDate;
 
 /**
@@ -9,29 +11,32 @@ public class Product {
     private int id;
     private String nom;
     private String description;
-    private double prix;
+    private long prixCentimes; // montant exact en centimes (voir Montant)
     private int quantite;
     private LocalDate dateExpiration;
     private int idCategorie;
+    private String code;
+    private int idSite;
+    private int version; // incrémentée à chaque modification (concurrence optimiste)
     
     public Product() {}
     
-    public Product(String nom, String description, double prix, int quantite, 
+    public Product(String nom, String description, long prixCentimes, int quantite, 
                    LocalDate dateExpiration, int idCategorie) {
         this.nom = nom;
         this.description = description;
-        this.prix = prix;
+        this.prixCentimes = prixCentimes;
         this.quantite = quantite;
         this.dateExpiration = dateExpiration;
         this.idCategorie = idCategorie;
     }
     
-    public Product(int id, String nom, String description, double prix, int quantite,
+    public Product(int id, String nom, String description, long prixCentimes, int quantite,
                    LocalDate dateExpiration, int idCategorie) {
         this.id = id;
         this.nom = nom;
         this.description = description;
-        this.prix = prix;
+        this.prixCentimes = prixCentimes;
         this.quantite = quantite;
         this.dateExpiration = dateExpiration;
         this.idCategorie = idCategorie;
@@ -40,27 +45,38 @@ public class Product {
     public int getId() { return id; }
     public String getNom() { return nom; }
     public String getDescription() { return description; }
-    public double getPrix() { return prix; }
+    public long getPrixCentimes() { return prixCentimes; }
     public int getQuantite() { return quantite; }
     public LocalDate getDateExpiration() { return dateExpiration; }
     public int getIdCategorie() { return idCategorie; }
+    public String getCode() { return code; }
+    public int getIdSite() { return idSite; }
+    public int getVersion() { return version; }
     
     public void setId(int id) { this.id = id; }
     public void setNom(String nom) { this.nom = nom; }
     public void setDescription(String description) { this.description = description; }
-    public void setPrix(double prix) { this.prix = prix; }
+    public void setPrixCentimes(long prixCentimes) { this.prixCentimes = prixCentimes; }
     public void setQuantite(int quantite) { this.quantite = quantite; }
     public void setDateExpiration(LocalDate dateExpiration) { this.dateExpiration = dateExpiration; }
     public void setIdCategorie(int idCategorie) { this.idCategorie = idCategorie; }
+    public void setCode(String code) { this.code = code; }
+    public void setIdSite(int idSite) { this.idSite = idSite; }
+    public void setVersion(int version) { this.version = version; }
     
     /**
      * Vérifie si le stock est bas (quantité < 10)
      */
     public boolean isStockBas() { return quantite < 10; }
     
+    /**
+     * Valeur du stock du produit en centimes (prix unitaire × quantité)
+     */
+    public long getValeurStockCentimes() { return Montant.multiplier(prixCentimes, quantite); }
+    
     @Override
     public String toString() {
-        return "Produit [id=" + id + ", nom=" + nom + ", prix=" + prix + 
+        return "Produit [id=" + id + ", nom=" + nom + ", prix=" + Montant.versTexte(prixCentimes) + 
                ", quantite=" + quantite + ", dateExpiration=" + dateExpiration + "]";
     }
 }
@@ -13,6 +13,7 @@ public class User {
     private String email;
     private String motDePasse;
     private Role role;
+    private int idSite;
     
     public User() {}
     
@@ -36,12 +37,14 @@ public class User {
     public String getEmail() { return email; }
     public String getMotDePasse() { return motDePasse; }
     public Role getRole() { return role; }
+    public int getIdSite() { return idSite; }
     
     public void setId(int id) { this.id = id; }
     public void setNom(String nom) { this.nom = nom; }
     public void setEmail(String email) { this.email = email; }
     public void setMotDePasse(String motDePasse) { this.motDePasse = motDePasse; }
     public void setRole(Role role) { this.role = role; }
+    public void setIdSite(int idSite) { this.idSite = idSite; }
     
     /**
      * Vérifie si l'utilisateur est administrateur
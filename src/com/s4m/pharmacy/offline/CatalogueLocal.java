@@ -0,0 +1,269 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.service.AsyncExecutor;
+import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.service.ProductService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dernier catalogue chargé, persisté en fichier binaire compact et relu par
+ * {@link FileChannel#map} au démarrage : la table des produits se remplit
+ * sans attendre la base, puis est réconciliée en arrière-plan grâce à {@code updated_at}.
+ *
+ * <pre>
+ * en-tête (32 o) : magic, version, filigrane (s UTC), nb catégories, nb produits, offset chaînes
+ * catégories     : 24 o  = id, nom (offset, longueur), description (offset, longueur), version
+ * produits       : 52 o  = id, prix (centimes), quantité, expiration (jour), catégorie, nom, description, code, version
+ * chaînes        : UTF-8, dédupliquées
+ * </pre>
+ */
+public class CatalogueLocal {
+
+    private static final int MAGIC = 0x50484353; // "PHCS"
+    private static final int VERSION = 4;
+    private static final int TAILLE_ENTETE = 32;
+    private static final int TAILLE_CATEGORIE = 24;
+    private static final int TAILLE_PRODUIT = 52;
+    private static final int AUCUNE_DATE = Integer.MIN_VALUE;
+    private static final long AUCUN_FILIGRANE = Long.MIN_VALUE;
+
+    private final Path fichierBase;
+    private final ProductService productService;
+    private final CategoryService categoryService;
+
+    public CatalogueLocal(Path fichier, ProductService productService, CategoryService categoryService) {
+        this.fichierBase = fichier;
+        this.productService = productService;
+        this.categoryService = categoryService;
+    }
+
+    /**
+     * Retourne le catalogue local si {@code catalogue.snapshot.enabled} (vrai par défaut), sinon null
+     */
+    public static CatalogueLocal depuisConfiguration(ProductService productService, CategoryService categoryService) {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        if (!Boolean.parseBoolean(config.getPropriete("catalogue.snapshot.enabled", "true"))) return null;
+        Path fichier = Paths.get(config.getPropriete("catalogue.snapshot.file", "catalogue.snap"));
+        return new CatalogueLocal(fichier, productService, categoryService);
+    }
+
+    /**
+     * Lit le fichier projeté en mémoire ; retourne un contenu vide s'il est absent ou invalide
+     */
+    public Contenu charger() {
+        Path fichier = fichier();
+        if (!Files.exists(fichier)) return Contenu.VIDE;
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            return decoder(buf);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Catalogue local illisible, ignoré : " + e.getMessage());
+            return Contenu.VIDE;
+        }
+    }
+
+    /**
+     * Réconcilie en arrière-plan un contenu avec la base : seules les lignes modifiées depuis
+     * le filigrane sont relues, les suppressions sont détectées par la liste des identifiants.
+     * Le fichier est réécrit avec le résultat.
+     */
+    public CompletableFuture<Contenu> reconcilier(Contenu local) {
+        return AsyncExecutor.executer(() -> {
+            if (!DatabaseConnection.estDisponible()) throw new IllegalStateException("Base injoignable");
+            // Filigrane lu avant les lignes : une modification concurrente sera relue la fois suivante
+            LocalDateTime filigrane = productService.getDerniereModification();
+            List<Category> categories = categoryService.listerToutesLesCategories();
+            List<Product> produits;
+            if (local.filigrane == null) {
+                produits = productService.listerTousLesProduits();
+            } else {
+                Set<Integer> ids = productService.listerIdsProduits();
+                Map<Integer, Product> fusion = new LinkedHashMap<>();
+                for (Product p : local.produits) {
+                    if (ids.contains(p.getId())) fusion.put(p.getId(), p);
+                }
+                for (Product p : productService.listerProduitsModifiesDepuis(local.filigrane)) {
+                    fusion.put(p.getId(), p);
+                }
+                produits = new ArrayList<>(fusion.values());
+                produits.sort(Comparator.comparing(Product::getNom, String.CASE_INSENSITIVE_ORDER));
+            }
+            Contenu resultat = new Contenu(produits, categories, filigrane);
+            enregistrer(resultat);
+            return resultat;
+        });
+    }
+
+    /**
+     * Un fichier par site : le catalogue d'un autre site n'est jamais affiché ni fusionné
+     */
+    private Path fichier() {
+        int site = DatabaseConnection.getSiteCourant();
+        return site == DatabaseConnection.getSiteParDefaut()
+            ? fichierBase : fichierBase.resolveSibling(fichierBase.getFileName() + "." + site);
+    }
+
+    /**
+     * Écrit le fichier (remplacement atomique)
+     */
+    public void enregistrer(Contenu contenu) {
+        Path fichier = fichier();
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try {
+            ByteBuffer buf = encoder(contenu);
+            try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buf.hasRemaining()) canal.write(buf);
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Erreur lors de l'écriture du catalogue local : " + e.getMessage());
+        }
+    }
+
+    // ==================== FORMAT ====================
+
+    private static ByteBuffer encoder(Contenu contenu) {
+        TableChaines chaines = new TableChaines();
+        int offsetChaines = TAILLE_ENTETE + contenu.categories.size() * TAILLE_CATEGORIE
+            + contenu.produits.size() * TAILLE_PRODUIT;
+        ByteBuffer enregistrements = ByteBuffer.allocate(offsetChaines);
+
+        enregistrements.putInt(MAGIC).putInt(VERSION)
+            .putLong(contenu.filigrane != null ? contenu.filigrane.toEpochSecond(ZoneOffset.UTC) : AUCUN_FILIGRANE)
+            .putInt(contenu.categories.size()).putInt(contenu.produits.size())
+            .putLong(offsetChaines);
+        for (Category c : contenu.categories) {
+            enregistrements.putInt(c.getId());
+            chaines.ecrire(enregistrements, c.getNom());
+            chaines.ecrire(enregistrements, c.getDescription());
+            enregistrements.putInt(c.getVersion());
+        }
+        for (Product p : contenu.produits) {
+            enregistrements.putInt(p.getId())
+                .putLong(p.getPrixCentimes())
+                .putInt(p.getQuantite())
+                .putInt(p.getDateExpiration() != null ? (int) p.getDateExpiration().toEpochDay() : AUCUNE_DATE)
+                .putInt(p.getIdCategorie());
+            chaines.ecrire(enregistrements, p.getNom());
+            chaines.ecrire(enregistrements, p.getDescription());
+            chaines.ecrire(enregistrements, p.getCode());
+            enregistrements.putInt(p.getVersion());
+        }
+
+        byte[] octets = chaines.octets.toByteArray();
+        ByteBuffer fichier = ByteBuffer.allocate(offsetChaines + octets.length);
+        fichier.put(enregistrements.flip()).put(octets);
+        return fichier.flip();
+    }
+
+    private static Contenu decoder(ByteBuffer buf) {
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IllegalStateException("format de catalogue inconnu");
+        }
+        long secondes = buf.getLong(8);
+        int nbCategories = buf.getInt(16);
+        int nbProduits = buf.getInt(20);
+        int offsetChaines = (int) buf.getLong(24);
+
+        List<Category> categories = new ArrayList<>(nbCategories);
+        int pos = TAILLE_ENTETE;
+        for (int i = 0; i < nbCategories; i++, pos += TAILLE_CATEGORIE) {
+            Category c = new Category(buf.getInt(pos),
+                chaine(buf, offsetChaines, pos + 4), chaine(buf, offsetChaines, pos + 12));
+            c.setVersion(buf.getInt(pos + 20));
+            categories.add(c);
+        }
+        List<Product> produits = new ArrayList<>(nbProduits);
+        for (int i = 0; i < nbProduits; i++, pos += TAILLE_PRODUIT) {
+            int jour = buf.getInt(pos + 16);
+            Product p = new Product(buf.getInt(pos),
+                chaine(buf, offsetChaines, pos + 24), chaine(buf, offsetChaines, pos + 32),
+                buf.getLong(pos + 4), buf.getInt(pos + 12),
+                jour != AUCUNE_DATE ? LocalDate.ofEpochDay(jour) : null, buf.getInt(pos + 20));
+            p.setCode(chaine(buf, offsetChaines, pos + 40));
+            p.setVersion(buf.getInt(pos + 48));
+            produits.add(p);
+        }
+        LocalDateTime filigrane = secondes != AUCUN_FILIGRANE ? LocalDateTime.ofEpochSecond(secondes, 0, ZoneOffset.UTC) : null;
+        return new Contenu(produits, categories, filigrane);
+    }
+
+    private static String chaine(ByteBuffer buf, int offsetChaines, int pos) {
+        int offset = buf.getInt(pos);
+        int longueur = buf.getInt(pos + 4);
+        if (longueur < 0) return null;
+        byte[] octets = new byte[longueur];
+        buf.get(offsetChaines + offset, octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Table des chaînes : chaque valeur distincte n'est stockée qu'une fois
+     */
+    private static final class TableChaines {
+        private final ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        private final Map<String, int[]> positions = new HashMap<>();
+
+        void ecrire(ByteBuffer enregistrement, String valeur) {
+            if (valeur == null) {
+                enregistrement.putInt(0).putInt(-1);
+                return;
+            }
+            int[] position = positions.computeIfAbsent(valeur, v -> {
+                byte[] utf8 = v.getBytes(StandardCharsets.UTF_8);
+                int[] p = {octets.size(), utf8.length};
+                octets.write(utf8, 0, utf8.length);
+                return p;
+            });
+            enregistrement.putInt(position[0]).putInt(position[1]);
+        }
+    }
+
+    /**
+     * Catalogue chargé : produits, catégories et filigrane (plus récent {@code updated_at} connu)
+     */
+    public static final class Contenu {
+        static final Contenu VIDE = new Contenu(List.of(), List.of(), null);
+
+        private final List<Product> produits;
+        private final List<Category> categories;
+        private final LocalDateTime filigrane;
+
+        Contenu(List<Product> produits, List<Category> categories, LocalDateTime filigrane) {
+            this.produits = produits;
+            this.categories = categories;
+            this.filigrane = filigrane;
+        }
+
+        public List<Product> getProduits() { return produits; }
+        public List<Category> getCategories() { return categories; }
+        public boolean estVide() { return produits.isEmpty() && categories.isEmpty(); }
+    }
+}
@@ -0,0 +1,80 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.util.Montant;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Encodage binaire des modèles pour l'instantané local et le journal hors ligne
+ */
+final class Codec {
+
+    private Codec() {}
+
+    static void ecrireProduit(DataOutput out, Product p) throws IOException {
+        out.writeInt(p.getId());
+        ecrireChaine(out, p.getNom());
+        ecrireChaine(out, p.getDescription());
+        out.writeLong(p.getPrixCentimes());
+        out.writeInt(p.getQuantite());
+        out.writeLong(p.getDateExpiration() != null ? p.getDateExpiration().toEpochDay() : Long.MIN_VALUE);
+        out.writeInt(p.getIdCategorie());
+        ecrireChaine(out, p.getCode());
+    }
+
+    static Product lireProduit(DataInput in) throws IOException {
+        Product p = new Product();
+        p.setId(in.readInt());
+        p.setNom(lireChaine(in));
+        p.setDescription(lireChaine(in));
+        p.setPrixCentimes(lirePrix(in.readLong()));
+        p.setQuantite(in.readInt());
+        long jour = in.readLong();
+        if (jour != Long.MIN_VALUE) p.setDateExpiration(LocalDate.ofEpochDay(jour));
+        p.setIdCategorie(in.readInt());
+        p.setCode(lireChaine(in));
+        return p;
+    }
+
+    /**
+     * Le journal n'a pas d'en-tête de version : un prix écrit avant le passage aux centimes est
+     * un double, dont les bits d'exposant placent tout prix non nul au-delà de 2^52 centimes
+     */
+    private static long lirePrix(long brut) {
+        return brut < (1L << 52) ? brut : Montant.depuisDouble(Double.longBitsToDouble(brut));
+    }
+
+    static void ecrireCategorie(DataOutput out, Category c) throws IOException {
+        out.writeInt(c.getId());
+        ecrireChaine(out, c.getNom());
+        ecrireChaine(out, c.getDescription());
+    }
+
+    static Category lireCategorie(DataInput in) throws IOException {
+        return new Category(in.readInt(), lireChaine(in), lireChaine(in));
+    }
+
+    static void ecrireChaine(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] octets = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(octets.length);
+        out.write(octets);
+    }
+
+    static String lireChaine(DataInput in) throws IOException {
+        int taille = in.readInt();
+        if (taille < 0) return null;
+        byte[] octets = new byte[taille];
+        in.readFully(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+}
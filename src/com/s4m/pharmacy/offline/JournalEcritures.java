@@ -0,0 +1,111 @@
+package com.s4m.pharmacy.offline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Journal durable, en ajout seul, des écritures effectuées hors ligne.
+ * Chaque enregistrement est encadré par sa taille et un CRC32 ; un enregistrement
+ * tronqué en fin de fichier (arrêt brutal pendant l'écriture) est ignoré à la relecture.
+ */
+class JournalEcritures {
+
+    private final Path fichier;
+    private long derniereSequence;
+
+    JournalEcritures(Path fichier) {
+        this.fichier = fichier;
+        for (Operation op : lireTout()) {
+            derniereSequence = Math.max(derniereSequence, op.getSequence());
+        }
+    }
+
+    synchronized long prochaineSequence() {
+        return ++derniereSequence;
+    }
+
+    /**
+     * Ajoute une opération et force son écriture sur disque avant de rendre la main
+     */
+    synchronized void ajouter(Operation op) {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            canal.write(encoder(op));
+            canal.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible d'écrire dans le journal hors ligne", e);
+        }
+    }
+
+    /**
+     * Relit toutes les opérations valides, dans l'ordre d'écriture
+     */
+    synchronized List<Operation> lireTout() {
+        List<Operation> operations = new ArrayList<>();
+        if (!Files.exists(fichier)) return operations;
+        try {
+            ByteBuffer tampon = ByteBuffer.wrap(Files.readAllBytes(fichier));
+            while (tampon.remaining() >= 12) {
+                int taille = tampon.getInt();
+                if (taille < 0 || taille + 8 > tampon.remaining()) break;
+                byte[] charge = new byte[taille];
+                tampon.get(charge);
+                long crc = tampon.getLong();
+                if (crc != crc32(charge)) break;
+                operations.add(Operation.lire(new DataInputStream(new ByteArrayInputStream(charge))));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de lire le journal hors ligne", e);
+        }
+        return operations;
+    }
+
+    /**
+     * Remplace le journal par les opérations restantes (après relecture partielle ou totale)
+     */
+    synchronized void remplacer(List<Operation> restantes) {
+        try {
+            if (restantes.isEmpty()) {
+                Files.deleteIfExists(fichier);
+                return;
+            }
+            Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Operation op : restantes) canal.write(encoder(op));
+                canal.force(false);
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de réécrire le journal hors ligne", e);
+        }
+    }
+
+    private static ByteBuffer encoder(Operation op) throws IOException {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream(128);
+        op.ecrire(new DataOutputStream(octets));
+        byte[] charge = octets.toByteArray();
+        ByteBuffer tampon = ByteBuffer.allocate(4 + charge.length + 8);
+        tampon.putInt(charge.length).put(charge).putLong(crc32(charge));
+        return tampon.flip();
+    }
+
+    private static long crc32(byte[] octets) {
+        CRC32 crc = new CRC32();
+        crc.update(octets);
+        return crc.getValue();
+    }
+}
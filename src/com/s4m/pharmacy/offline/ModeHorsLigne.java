@@ -0,0 +1,260 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.db.AccesDonneesException;
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.service.ConflitVersionException;
+import com.s4m.pharmacy.service.ProductService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Mode hors ligne d'un terminal : instantané local des produits et catégories,
+ * journal des écritures effectuées pendant une coupure et relecture ordonnée
+ * dès que la base redevient joignable.
+ *
+ * Une écriture rejouée n'est appliquée que si la ligne en base est encore
+ * celle que le terminal connaissait ; sinon elle est écartée et signalée comme conflit.
+ */
+public class ModeHorsLigne {
+
+    private static final long INTERVALLE_VERIFICATION_S = 5;
+
+    final SnapshotLocal snapshot;
+    private final JournalEcritures journal;
+    private final ProductService produitsDirects = new ProductService();
+    private final CategoryService categoriesDirectes = new CategoryService();
+    private final List<Consumer<ModeHorsLigne>> ecouteurs = new CopyOnWriteArrayList<>();
+    private final List<String> conflits = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService surveillance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pharmacy-hors-ligne");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean enLigne = true;
+
+    public ModeHorsLigne(Path repertoire) {
+        try {
+            Files.createDirectories(repertoire);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de créer le répertoire hors ligne " + repertoire, e);
+        }
+        this.snapshot = new SnapshotLocal(repertoire.resolve("catalogue.dat"));
+        this.journal = new JournalEcritures(repertoire.resolve("journal.log"));
+    }
+
+    /**
+     * Retourne le mode hors ligne si {@code offline.enabled=true}, sinon null
+     */
+    public static ModeHorsLigne depuisConfiguration() {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        if (!Boolean.parseBoolean(config.getPropriete("offline.enabled", "false"))) return null;
+        return new ModeHorsLigne(Paths.get(config.getPropriete("offline.dir", "offline")));
+    }
+
+    /**
+     * Démarre la surveillance périodique de la base (relecture du journal au retour)
+     */
+    public void demarrer() {
+        surveillance.scheduleWithFixedDelay(this::verifierConnexion, 0, INTERVALLE_VERIFICATION_S, TimeUnit.SECONDS);
+    }
+
+    public void arreter() {
+        surveillance.shutdownNow();
+    }
+
+    public boolean estEnLigne() {
+        return enLigne;
+    }
+
+    public int operationsEnAttente() {
+        return journal.lireTout().size();
+    }
+
+    /**
+     * Écritures écartées lors des relectures (la base avait changé entre-temps)
+     */
+    public List<String> getConflits() {
+        return Collections.unmodifiableList(conflits);
+    }
+
+    public void ajouterEcouteur(Consumer<ModeHorsLigne> ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    /**
+     * Teste la base ; si elle répond, rejoue le journal avant de repasser en ligne.
+     * Retourne true si le terminal est en ligne à l'issue de l'appel.
+     */
+    public synchronized boolean verifierConnexion() {
+        boolean disponible = DatabaseConnection.estDisponible();
+        if (disponible && !journal.lireTout().isEmpty()) {
+            disponible = rejouer();
+        }
+        if (disponible != enLigne) {
+            enLigne = disponible;
+            notifier();
+        }
+        return disponible;
+    }
+
+    /**
+     * Enregistre une écriture effectuée hors ligne
+     */
+    synchronized void enregistrer(Operation operation) {
+        journal.ajouter(operation);
+        enLigne = false;
+        notifier();
+    }
+
+    long prochaineSequence() {
+        return journal.prochaineSequence();
+    }
+
+    // ==================== RELECTURE ====================
+
+    /**
+     * Rejoue le journal dans l'ordre ; s'arrête (et conserve le reste) si la base retombe.
+     * Retourne true si tout le journal a été traité.
+     */
+    private boolean rejouer() {
+        List<Operation> operations = journal.lireTout();
+        Map<Integer, Integer> idsProduits = new HashMap<>();
+        Map<Integer, Integer> idsCategories = new HashMap<>();
+        int traitees = 0;
+        for (Operation brute : operations) {
+            Operation op = brute.renumeroter(idsProduits, idsCategories);
+            String conflit;
+            try {
+                conflit = appliquer(op, idsProduits, idsCategories);
+            } catch (IllegalArgumentException | AccesDonneesException | ConflitVersionException e) {
+                conflit = e.getMessage();
+            }
+            if (conflit != null) {
+                // Un échec peut venir d'une nouvelle coupure : l'opération est alors conservée
+                if (!DatabaseConnection.estDisponible()) break;
+                conflits.add(op + " : " + conflit);
+                System.err.println("Conflit hors ligne écarté : " + op + " : " + conflit);
+            }
+            traitees++;
+        }
+
+        List<Operation> restantes = new ArrayList<>();
+        for (Operation op : operations.subList(traitees, operations.size())) {
+            restantes.add(op.renumeroter(idsProduits, idsCategories));
+        }
+        journal.remplacer(restantes);
+        if (!restantes.isEmpty()) return false;
+
+        try {
+            snapshot.remplacerCategories(categoriesDirectes.listerToutesLesCategories());
+            snapshot.remplacerProduits(produitsDirects.listerTousLesProduitsComplets());
+        } catch (AccesDonneesException e) {
+            // Journal rejoué mais base retombée : les prochaines lectures en ligne rafraîchiront l'instantané
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applique une opération ; retourne null si elle a réussi, sinon la raison du conflit
+     */
+    private String appliquer(Operation op, Map<Integer, Integer> idsProduits, Map<Integer, Integer> idsCategories) {
+        switch (op.getType()) {
+            case AJOUT_CATEGORIE: {
+                Category c = SnapshotLocal.copier(op.getCategorie());
+                int idLocal = c.getId();
+                categoriesDirectes.ajouterCategorie(c);
+                idsCategories.put(idLocal, c.getId());
+                snapshot.renumeroterCategorie(idLocal, c.getId());
+                return null;
+            }
+            case MODIF_CATEGORIE: {
+                Category actuelle = categoriesDirectes.getCategorieParId(op.getCategorie().getId());
+                String conflit = comparer(actuelle, op.getCategorieAvant());
+                if (conflit != null) return conflit;
+                // Valeurs identiques à celles vues hors ligne : la version courante est reprise
+                op.getCategorie().setVersion(actuelle.getVersion());
+                return categoriesDirectes.modifierCategorie(op.getCategorie()) ? null : "catégorie supprimée entre-temps";
+            }
+            case SUPPR_CATEGORIE: {
+                Category actuelle = categoriesDirectes.getCategorieParId(op.getCategorie().getId());
+                if (actuelle == null) return DatabaseConnection.estDisponible() ? null : "base injoignable";
+                String conflit = comparer(actuelle, op.getCategorieAvant());
+                if (conflit != null) return conflit;
+                return categoriesDirectes.supprimerCategorie(actuelle.getId()) ? null : "catégorie liée à des produits";
+            }
+            case AJOUT_PRODUIT: {
+                Product p = SnapshotLocal.copier(op.getProduit());
+                int idLocal = p.getId();
+                produitsDirects.ajouterProduit(p);
+                idsProduits.put(idLocal, p.getId());
+                snapshot.renumeroterProduit(idLocal, p.getId());
+                return null;
+            }
+            case MODIF_PRODUIT: {
+                Product actuel = produitsDirects.getProduitParId(op.getProduit().getId());
+                String conflit = comparer(actuel, op.getProduitAvant());
+                if (conflit != null) return conflit;
+                op.getProduit().setVersion(actuel.getVersion());
+                return produitsDirects.modifierProduit(op.getProduit()) ? null : "produit supprimé entre-temps";
+            }
+            case SUPPR_PRODUIT: {
+                Product actuel = produitsDirects.getProduitParId(op.getProduit().getId());
+                if (actuel == null) return DatabaseConnection.estDisponible() ? null : "base injoignable";
+                String conflit = comparer(actuel, op.getProduitAvant());
+                if (conflit != null) return conflit;
+                // Supprimé entre-temps par un autre poste : l'effet voulu est atteint
+                produitsDirects.supprimerProduit(actuel.getId());
+                return null;
+            }
+            default:
+                return "opération inconnue";
+        }
+    }
+
+    private static String comparer(Product actuel, Product avant) {
+        if (actuel == null) return "produit supprimé entre-temps";
+        if (avant == null) return null;
+        boolean identique = Objects.equals(actuel.getNom(), avant.getNom())
+            && Objects.equals(actuel.getDescription(), avant.getDescription())
+            && actuel.getPrixCentimes() == avant.getPrixCentimes()
+            && actuel.getQuantite() == avant.getQuantite()
+            && Objects.equals(actuel.getDateExpiration(), avant.getDateExpiration())
+            && actuel.getIdCategorie() == avant.getIdCategorie()
+            && Objects.equals(actuel.getCode(), avant.getCode());
+        return identique ? null : "modifié entre-temps par un autre poste (actuel : " + actuel + ")";
+    }
+
+    private static String comparer(Category actuelle, Category avant) {
+        if (actuelle == null) return "catégorie supprimée entre-temps";
+        if (avant == null) return null;
+        boolean identique = Objects.equals(actuelle.getNom(), avant.getNom())
+            && Objects.equals(actuelle.getDescription(), avant.getDescription());
+        return identique ? null : "modifiée entre-temps par un autre poste (actuelle : " + actuelle + ")";
+    }
+
+    private void notifier() {
+        for (Consumer<ModeHorsLigne> ecouteur : ecouteurs) {
+            ecouteur.accept(this);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.db.AccesDonneesException;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.service.CategoryService;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * {@link CategoryService} tolérant aux coupures (voir {@link OfflineProductService})
+ */
+public class OfflineCategoryService extends CategoryService {
+
+    private final ModeHorsLigne mode;
+
+    public OfflineCategoryService(ModeHorsLigne mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public int ajouterCategorie(Category category) {
+        if (mode.estEnLigne()) {
+            try {
+                int id = super.ajouterCategorie(category);
+                mode.snapshot.enregistrerCategorie(category);
+                return id;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        validerCategorie(category);
+        category.setId(mode.snapshot.nouvelIdLocal());
+        mode.enregistrer(Operation.categorie(mode.prochaineSequence(), Operation.Type.AJOUT_CATEGORIE,
+            SnapshotLocal.copier(category), null));
+        mode.snapshot.enregistrerCategorie(category);
+        // Écriture journalisée : les abonnés sont prévenus comme pour une écriture en base
+        BusEvenements.publier(new EvenementDomaine.CategorieModifiee(category.getId(), category, EvenementDomaine.Nature.AJOUT));
+        return category.getId();
+    }
+
+    @Override
+    public Category getCategorieParId(int id) {
+        if (mode.estEnLigne()) {
+            try {
+                return super.getCategorieParId(id);
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        return mode.snapshot.categorie(id);
+    }
+
+    @Override
+    public List<Category> listerToutesLesCategories() {
+        if (mode.estEnLigne()) {
+            try {
+                List<Category> liste = super.listerToutesLesCategories();
+                mode.snapshot.remplacerCategories(liste);
+                return liste;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        return mode.snapshot.categories(c -> true);
+    }
+
+    @Override
+    public List<Category> rechercherCategories(String termeRecherche) {
+        if (mode.estEnLigne()) {
+            try {
+                return super.rechercherCategories(termeRecherche);
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        String terme = termeRecherche.toLowerCase();
+        return mode.snapshot.categories(c -> c.getNom() != null && c.getNom().toLowerCase().contains(terme));
+    }
+
+    @Override
+    public boolean modifierCategorie(Category category) {
+        if (mode.estEnLigne()) {
+            try {
+                boolean modifiee = super.modifierCategorie(category);
+                if (modifiee) mode.snapshot.enregistrerCategorie(category);
+                return modifiee;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        validerCategorie(category);
+        Category avant = mode.snapshot.categorie(category.getId());
+        if (avant == null) return false;
+        mode.enregistrer(Operation.categorie(mode.prochaineSequence(), Operation.Type.MODIF_CATEGORIE,
+            SnapshotLocal.copier(category), avant));
+        mode.snapshot.enregistrerCategorie(category);
+        BusEvenements.publier(new EvenementDomaine.CategorieModifiee(category.getId(), category,
+            EvenementDomaine.Nature.MODIFICATION));
+        return true;
+    }
+
+    @Override
+    public boolean supprimerCategorie(int id) {
+        if (mode.estEnLigne()) {
+            try {
+                boolean supprimee = super.supprimerCategorie(id);
+                if (supprimee) mode.snapshot.supprimerCategorie(id);
+                return supprimee;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        Category avant = mode.snapshot.categorie(id);
+        if (avant == null) return false;
+        // Hors ligne, on applique localement la même règle que la contrainte ON DELETE RESTRICT
+        if (!mode.snapshot.produits(p -> p.getIdCategorie() == id, (a, b) -> 0).isEmpty()) return false;
+        mode.enregistrer(Operation.categorie(mode.prochaineSequence(), Operation.Type.SUPPR_CATEGORIE, avant, avant));
+        mode.snapshot.supprimerCategorie(id);
+        BusEvenements.publier(new EvenementDomaine.CategorieModifiee(id, null, EvenementDomaine.Nature.SUPPRESSION));
+        return true;
+    }
+
+    /**
+     * Transaction impossible hors ligne : l'opération est refusée plutôt que journalisée à moitié
+     */
+    @Override
+    public int ajouterCategorieAvecProduits(Category category, List<Product> produits) throws SQLException {
+        if (!mode.estEnLigne()) throw new SQLException("Opération indisponible hors ligne");
+        return super.ajouterCategorieAvecProduits(category, produits);
+    }
+
+    @Override
+    public int supprimerCategorie(int id, int idRemplacement) throws SQLException {
+        if (!mode.estEnLigne()) throw new SQLException("Opération indisponible hors ligne");
+        int deplaces = super.supprimerCategorie(id, idRemplacement);
+        mode.snapshot.supprimerCategorie(id);
+        return deplaces;
+    }
+}
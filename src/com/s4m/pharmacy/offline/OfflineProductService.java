@@ -0,0 +1,202 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.db.AccesDonneesException;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.service.CritereProduits;
+import com.s4m.pharmacy.service.ProductService;
+import com.s4m.pharmacy.util.CodeBarre;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link ProductService} tolérant aux coupures : en ligne, les lectures alimentent
+ * l'instantané local ; hors ligne, elles sont servies depuis celui-ci et les écritures
+ * sont journalisées pour être rejouées au retour de la base.
+ */
+public class OfflineProductService extends ProductService {
+
+    private static final Comparator<Product> PAR_NOM = Comparator.comparing(Product::getNom, String.CASE_INSENSITIVE_ORDER);
+
+    private final ModeHorsLigne mode;
+
+    public OfflineProductService(ModeHorsLigne mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public int ajouterProduit(Product product) {
+        if (mode.estEnLigne()) {
+            try {
+                int id = super.ajouterProduit(product);
+                mode.snapshot.enregistrerProduit(product);
+                return id;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        validerProduit(product);
+        product.setId(mode.snapshot.nouvelIdLocal());
+        mode.enregistrer(Operation.produit(mode.prochaineSequence(), Operation.Type.AJOUT_PRODUIT,
+            SnapshotLocal.copier(product), null));
+        mode.snapshot.enregistrerProduit(product);
+        // Écriture journalisée : les abonnés sont prévenus comme pour une écriture en base
+        BusEvenements.publier(new EvenementDomaine.ProduitAjoute(product));
+        return product.getId();
+    }
+
+    @Override
+    public Product getProduitParId(int id) {
+        if (mode.estEnLigne()) {
+            try {
+                return super.getProduitParId(id);
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        return mode.snapshot.produit(id);
+    }
+
+    @Override
+    public Product getProduitParCode(String code) {
+        if (mode.estEnLigne()) {
+            try {
+                return super.getProduitParCode(code);
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        String cle = CodeBarre.cleRecherche(code);
+        List<Product> trouves = mode.snapshot.produits(p -> cle != null && cle.equals(p.getCode()), PAR_NOM);
+        return trouves.isEmpty() ? null : trouves.get(0);
+    }
+
+    @Override
+    public String getDescriptionProduit(int id) {
+        if (mode.estEnLigne()) {
+            try {
+                return super.getDescriptionProduit(id);
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        Product p = mode.snapshot.produit(id);
+        return p != null ? p.getDescription() : null;
+    }
+
+    /**
+     * Lignes complètes : elles alimentent l'instantané, qui doit garder les descriptions
+     * pour la lecture hors ligne et la détection des conflits au rejeu
+     */
+    @Override
+    public List<Product> listerTousLesProduits() {
+        if (mode.estEnLigne()) {
+            try {
+                List<Product> liste = super.listerTousLesProduitsComplets();
+                mode.snapshot.remplacerProduits(liste);
+                return liste;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        return mode.snapshot.produits(p -> true, PAR_NOM);
+    }
+
+    @Override
+    public List<Product> rechercherProduitsParNom(String termeRecherche) {
+        String terme = termeRecherche.toLowerCase();
+        return lire(() -> super.rechercherProduitsParNom(termeRecherche),
+            p -> p.getNom() != null && p.getNom().toLowerCase().contains(terme), PAR_NOM);
+    }
+
+    @Override
+    public List<Product> rechercherProduitsParCategorie(int idCategorie) {
+        return lire(() -> super.rechercherProduitsParCategorie(idCategorie),
+            p -> p.getIdCategorie() == idCategorie, PAR_NOM);
+    }
+
+    @Override
+    public List<Product> rechercherProduitsParDateExpiration(LocalDate date) {
+        return lire(() -> super.rechercherProduitsParDateExpiration(date),
+            p -> date.equals(p.getDateExpiration()), PAR_NOM);
+    }
+
+    @Override
+    public List<Product> getProduitsStockBas() {
+        return lire(super::getProduitsStockBas, Product::isStockBas, Comparator.comparingInt(Product::getQuantite));
+    }
+
+    @Override
+    public List<Product> getProduitsExpirantAvant(LocalDate date) {
+        return lire(() -> super.getProduitsExpirantAvant(date),
+            p -> p.getDateExpiration() != null && !p.getDateExpiration().isAfter(date),
+            Comparator.comparing(Product::getDateExpiration));
+    }
+
+    @Override
+    public List<Product> rechercherProduits(CritereProduits critere) {
+        List<Product> liste = lire(() -> super.rechercherProduits(critere), critere::accepte, critere.ordre());
+        return critere.getLimite() > 0 && liste.size() > critere.getLimite()
+            ? liste.subList(0, critere.getLimite()) : liste;
+    }
+
+    @Override
+    public boolean modifierProduit(Product product) {
+        if (mode.estEnLigne()) {
+            try {
+                boolean modifie = super.modifierProduit(product);
+                if (modifie) mode.snapshot.enregistrerProduit(product);
+                return modifie;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        validerProduit(product);
+        Product avant = mode.snapshot.produit(product.getId());
+        if (avant == null) return false;
+        mode.enregistrer(Operation.produit(mode.prochaineSequence(), Operation.Type.MODIF_PRODUIT,
+            SnapshotLocal.copier(product), avant));
+        mode.snapshot.enregistrerProduit(product);
+        BusEvenements.publier(new EvenementDomaine.ProduitModifie(product));
+        if (product.getQuantite() != avant.getQuantite()) {
+            BusEvenements.publier(new EvenementDomaine.StockMouvemente(product.getId(),
+                product.getQuantite() - avant.getQuantite(), product.getQuantite(), product.getVersion()));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean supprimerProduit(int id) {
+        if (mode.estEnLigne()) {
+            try {
+                boolean supprime = super.supprimerProduit(id);
+                if (supprime) mode.snapshot.supprimerProduit(id);
+                return supprime;
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        Product avant = mode.snapshot.produit(id);
+        if (avant == null) return false;
+        mode.enregistrer(Operation.produit(mode.prochaineSequence(), Operation.Type.SUPPR_PRODUIT, avant, avant));
+        mode.snapshot.supprimerProduit(id);
+        BusEvenements.publier(new EvenementDomaine.ProduitSupprime(id));
+        return true;
+    }
+
+    private List<Product> lire(Supplier<List<Product>> distant, Predicate<Product> filtre, Comparator<Product> ordre) {
+        if (mode.estEnLigne()) {
+            try {
+                return distant.get();
+            } catch (AccesDonneesException e) {
+                if (mode.verifierConnexion()) throw e;
+            }
+        }
+        return mode.snapshot.produits(filtre, ordre);
+    }
+}
@@ -0,0 +1,116 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Écriture effectuée hors ligne, conservée dans le journal jusqu'à sa relecture.
+ * {@code avant} est la version connue localement au moment de l'écriture :
+ * si la base a changé depuis, la relecture signale un conflit au lieu d'écraser.
+ */
+public final class Operation {
+
+    public enum Type {
+        AJOUT_PRODUIT, MODIF_PRODUIT, SUPPR_PRODUIT,
+        AJOUT_CATEGORIE, MODIF_CATEGORIE, SUPPR_CATEGORIE
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Product produit;
+    private final Product produitAvant;
+    private final Category categorie;
+    private final Category categorieAvant;
+
+    private Operation(long sequence, Type type, Product produit, Product produitAvant,
+                      Category categorie, Category categorieAvant) {
+        this.sequence = sequence;
+        this.type = type;
+        this.produit = produit;
+        this.produitAvant = produitAvant;
+        this.categorie = categorie;
+        this.categorieAvant = categorieAvant;
+    }
+
+    static Operation produit(long sequence, Type type, Product produit, Product avant) {
+        return new Operation(sequence, type, produit, avant, null, null);
+    }
+
+    static Operation categorie(long sequence, Type type, Category categorie, Category avant) {
+        return new Operation(sequence, type, null, null, categorie, avant);
+    }
+
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public Product getProduit() { return produit; }
+    public Product getProduitAvant() { return produitAvant; }
+    public Category getCategorie() { return categorie; }
+    public Category getCategorieAvant() { return categorieAvant; }
+
+    /**
+     * Copie de l'opération où les identifiants provisoires déjà attribués par la base sont remplacés
+     */
+    Operation renumeroter(Map<Integer, Integer> idsProduits, Map<Integer, Integer> idsCategories) {
+        if (concerneProduit()) {
+            return produit(sequence, type, renumeroter(produit, idsProduits, idsCategories),
+                produitAvant != null ? renumeroter(produitAvant, idsProduits, idsCategories) : null);
+        }
+        Category c = SnapshotLocal.copier(categorie);
+        c.setId(idsCategories.getOrDefault(c.getId(), c.getId()));
+        return categorie(sequence, type, c, categorieAvant);
+    }
+
+    private static Product renumeroter(Product p, Map<Integer, Integer> idsProduits, Map<Integer, Integer> idsCategories) {
+        Product copie = SnapshotLocal.copier(p);
+        copie.setId(idsProduits.getOrDefault(p.getId(), p.getId()));
+        copie.setIdCategorie(idsCategories.getOrDefault(p.getIdCategorie(), p.getIdCategorie()));
+        return copie;
+    }
+
+    boolean concerneProduit() {
+        return produit != null;
+    }
+
+    void ecrire(DataOutput out) throws IOException {
+        out.writeLong(sequence);
+        out.writeByte(type.ordinal());
+        if (concerneProduit()) {
+            Codec.ecrireProduit(out, produit);
+            out.writeBoolean(produitAvant != null);
+            if (produitAvant != null) Codec.ecrireProduit(out, produitAvant);
+        } else {
+            Codec.ecrireCategorie(out, categorie);
+            out.writeBoolean(categorieAvant != null);
+            if (categorieAvant != null) Codec.ecrireCategorie(out, categorieAvant);
+        }
+    }
+
+    static Operation lire(DataInput in) throws IOException {
+        long sequence = in.readLong();
+        Type type = Type.values()[in.readByte()];
+        switch (type) {
+            case AJOUT_PRODUIT:
+            case MODIF_PRODUIT:
+            case SUPPR_PRODUIT: {
+                Product p = Codec.lireProduit(in);
+                Product avant = in.readBoolean() ? Codec.lireProduit(in) : null;
+                return produit(sequence, type, p, avant);
+            }
+            default: {
+                Category c = Codec.lireCategorie(in);
+                Category avant = in.readBoolean() ? Codec.lireCategorie(in) : null;
+                return categorie(sequence, type, c, avant);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + (concerneProduit() ? produit : categorie);
+    }
+}
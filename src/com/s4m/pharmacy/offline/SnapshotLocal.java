@@ -0,0 +1,191 @@
+package com.s4m.pharmacy.offline;
+
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Copie locale persistante des produits et catégories, servie en lecture hors ligne.
+ * Les éléments créés hors ligne reçoivent un identifiant provisoire (au-dessus de
+ * {@link #SEUIL_ID_LOCAL}) jusqu'à leur enregistrement en base.
+ */
+class SnapshotLocal {
+
+    private static final int VERSION = 4;
+    /** Les identifiants provisoires sont attribués en descendant depuis Integer.MAX_VALUE */
+    static final int SEUIL_ID_LOCAL = 2_000_000_000;
+
+    private final Path fichier;
+    private final Map<Integer, Product> produits = new LinkedHashMap<>();
+    private final Map<Integer, Category> categories = new LinkedHashMap<>();
+    private int prochainIdLocal = Integer.MAX_VALUE;
+
+    SnapshotLocal(Path fichier) {
+        this.fichier = fichier;
+        charger();
+    }
+
+    // ==================== LECTURES ====================
+
+    synchronized Product produit(int id) {
+        Product p = produits.get(id);
+        return p != null ? copier(p) : null;
+    }
+
+    synchronized List<Product> produits(Predicate<Product> filtre, Comparator<Product> ordre) {
+        return produits.values().stream().filter(filtre).sorted(ordre)
+            .map(SnapshotLocal::copier).collect(Collectors.toList());
+    }
+
+    synchronized Category categorie(int id) {
+        Category c = categories.get(id);
+        return c != null ? copier(c) : null;
+    }
+
+    synchronized List<Category> categories(Predicate<Category> filtre) {
+        return categories.values().stream().filter(filtre)
+            .sorted(Comparator.comparing(Category::getNom, String.CASE_INSENSITIVE_ORDER))
+            .map(SnapshotLocal::copier).collect(Collectors.toList());
+    }
+
+    synchronized boolean estVide() {
+        return produits.isEmpty() && categories.isEmpty();
+    }
+
+    // ==================== ÉCRITURES ====================
+
+    synchronized void remplacerProduits(List<Product> liste) {
+        produits.clear();
+        for (Product p : liste) produits.put(p.getId(), copier(p));
+        sauvegarder();
+    }
+
+    synchronized void remplacerCategories(List<Category> liste) {
+        categories.clear();
+        for (Category c : liste) categories.put(c.getId(), copier(c));
+        sauvegarder();
+    }
+
+    synchronized void enregistrerProduit(Product p) {
+        produits.put(p.getId(), copier(p));
+        sauvegarder();
+    }
+
+    synchronized void supprimerProduit(int id) {
+        if (produits.remove(id) != null) sauvegarder();
+    }
+
+    synchronized void enregistrerCategorie(Category c) {
+        categories.put(c.getId(), copier(c));
+        sauvegarder();
+    }
+
+    synchronized void supprimerCategorie(int id) {
+        if (categories.remove(id) != null) sauvegarder();
+    }
+
+    synchronized int nouvelIdLocal() {
+        return prochainIdLocal--;
+    }
+
+    /**
+     * Remplace un identifiant provisoire par l'identifiant attribué par la base
+     */
+    synchronized void renumeroterProduit(int idLocal, int idDefinitif) {
+        Product p = produits.remove(idLocal);
+        if (p == null) return;
+        p.setId(idDefinitif);
+        produits.put(idDefinitif, p);
+        sauvegarder();
+    }
+
+    synchronized void renumeroterCategorie(int idLocal, int idDefinitif) {
+        Category c = categories.remove(idLocal);
+        if (c != null) {
+            c.setId(idDefinitif);
+            categories.put(idDefinitif, c);
+        }
+        for (Product p : produits.values()) {
+            if (p.getIdCategorie() == idLocal) p.setIdCategorie(idDefinitif);
+        }
+        sauvegarder();
+    }
+
+    // ==================== PERSISTANCE ====================
+
+    private void charger() {
+        if (!Files.exists(fichier)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier)))) {
+            if (in.readInt() != VERSION) return;
+            prochainIdLocal = in.readInt();
+            int nbCategories = in.readInt();
+            for (int i = 0; i < nbCategories; i++) {
+                Category c = Codec.lireCategorie(in);
+                c.setVersion(in.readInt());
+                categories.put(c.getId(), c);
+            }
+            int nbProduits = in.readInt();
+            for (int i = 0; i < nbProduits; i++) {
+                Product p = Codec.lireProduit(in);
+                p.setVersion(in.readInt());
+                produits.put(p.getId(), p);
+            }
+        } catch (IOException e) {
+            System.err.println("Instantané local illisible, ignoré : " + e.getMessage());
+            produits.clear();
+            categories.clear();
+        }
+    }
+
+    private void sauvegarder() {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire)))) {
+                out.writeInt(VERSION);
+                out.writeInt(prochainIdLocal);
+                out.writeInt(categories.size());
+                // Version de ligne hors du Codec : le format du journal d'écritures reste inchangé
+                for (Category c : categories.values()) {
+                    Codec.ecrireCategorie(out, c);
+                    out.writeInt(c.getVersion());
+                }
+                out.writeInt(produits.size());
+                for (Product p : produits.values()) {
+                    Codec.ecrireProduit(out, p);
+                    out.writeInt(p.getVersion());
+                }
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la sauvegarde de l'instantané local : " + e.getMessage());
+        }
+    }
+
+    static Product copier(Product p) {
+        Product copie = new Product(p.getId(), p.getNom(), p.getDescription(), p.getPrixCentimes(), p.getQuantite(),
+            p.getDateExpiration(), p.getIdCategorie());
+        copie.setCode(p.getCode());
+        copie.setVersion(p.getVersion());
+        return copie;
+    }
+
+    static Category copier(Category c) {
+        Category copie = new Category(c.getId(), c.getNom(), c.getDescription());
+        copie.setVersion(c.getVersion());
+        return copie;
+    }
+}
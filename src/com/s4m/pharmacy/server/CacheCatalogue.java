@@ -0,0 +1,53 @@
+package com.s4m.pharmacy.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Réponse JSON partagée par tous les terminaux (liste complète des produits ou des catégories).
+ * Sérialisée une seule fois, servie telle quelle jusqu'à la prochaine écriture ou expiration.
+ * Le chargeur doit lire le primaire : une entrée partagée tirée d'un réplica en retard serait
+ * resservie à tous les terminaux, y compris à celui qui vient d'écrire.
+ */
+class CacheCatalogue {
+
+    private final long dureeVieMs;
+    // Génération et réponse publiées ensemble : une invalidation change l'état par comparaison-échange
+    private final AtomicReference<Etat> etat = new AtomicReference<>(new Etat(0, null, 0));
+
+    CacheCatalogue(long dureeVieMs) {
+        this.dureeVieMs = dureeVieMs;
+    }
+
+    /**
+     * Retourne la réponse en cache ou la recalcule ; le résultat n'est mémorisé que si l'état
+     * n'a pas changé pendant le calcul, si bien qu'une invalidation concurrente n'est jamais écrasée
+     */
+    byte[] obtenir(Supplier<String> chargeur) {
+        Etat courant = etat.get();
+        long maintenant = System.currentTimeMillis();
+        if (courant.json != null && maintenant - courant.creation < dureeVieMs) {
+            return courant.json;
+        }
+        byte[] json = chargeur.get().getBytes(StandardCharsets.UTF_8);
+        etat.compareAndSet(courant, new Etat(courant.generation, json, maintenant));
+        return json;
+    }
+
+    void invalider() {
+        etat.updateAndGet(e -> new Etat(e.generation + 1, null, 0));
+    }
+
+    private static final class Etat {
+        private final long generation;
+        private final byte[] json;
+        private final long creation;
+
+        private Etat(long generation, byte[] json, long creation) {
+            this.generation = generation;
+            this.json = json;
+            this.creation = creation;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.util.Montant;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Conversion des modèles vers/depuis leur représentation JSON (Map) échangée
+ * entre le serveur et les terminaux distants. Le hash du mot de passe n'est jamais exposé.
+ */
+public final class JsonMapper {
+
+    private JsonMapper() {}
+
+    public static Map<String, Object> produit(Product p) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", p.getId());
+        m.put("nom", p.getNom());
+        // Absente des listes (projection allégée) : inutile de transmettre la clé
+        if (p.getDescription() != null) m.put("description", p.getDescription());
+        m.put("prix", Montant.versDecimal(p.getPrixCentimes()));
+        m.put("quantite", p.getQuantite());
+        m.put("dateExpiration", p.getDateExpiration());
+        m.put("idCategorie", p.getIdCategorie());
+        m.put("code", p.getCode());
+        m.put("idSite", p.getIdSite());
+        m.put("version", p.getVersion());
+        return m;
+    }
+
+    public static Product produit(Map<String, Object> m) {
+        Product p = new Product();
+        p.setId(entier(m, "id"));
+        p.setNom(chaine(m, "nom"));
+        p.setDescription(chaine(m, "description"));
+        p.setPrixCentimes(montant(m, "prix"));
+        p.setQuantite(entier(m, "quantite"));
+        String date = chaine(m, "dateExpiration");
+        if (date != null) p.setDateExpiration(LocalDate.parse(date));
+        p.setIdCategorie(entier(m, "idCategorie"));
+        p.setCode(chaine(m, "code"));
+        p.setIdSite(entier(m, "idSite"));
+        p.setVersion(entier(m, "version"));
+        return p;
+    }
+
+    public static Map<String, Object> categorie(Category c) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", c.getId());
+        m.put("nom", c.getNom());
+        m.put("description", c.getDescription());
+        m.put("version", c.getVersion());
+        return m;
+    }
+
+    public static Category categorie(Map<String, Object> m) {
+        Category c = new Category(entier(m, "id"), chaine(m, "nom"), chaine(m, "description"));
+        c.setVersion(entier(m, "version"));
+        return c;
+    }
+
+    public static Map<String, Object> utilisateur(User u) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", u.getId());
+        m.put("nom", u.getNom());
+        m.put("email", u.getEmail());
+        m.put("role", u.getRole());
+        m.put("idSite", u.getIdSite());
+        return m;
+    }
+
+    public static User utilisateur(Map<String, Object> m) {
+        User u = new User();
+        u.setId(entier(m, "id"));
+        u.setNom(chaine(m, "nom"));
+        u.setEmail(chaine(m, "email"));
+        String role = chaine(m, "role");
+        if (role != null) u.setRole(User.Role.valueOf(role));
+        u.setIdSite(entier(m, "idSite"));
+        return u;
+    }
+
+    public static <T> List<Map<String, Object>> liste(List<T> elements, Function<T, Map<String, Object>> convertisseur) {
+        List<Map<String, Object>> resultat = new ArrayList<>(elements.size());
+        for (T e : elements) resultat.add(convertisseur.apply(e));
+        return resultat;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> depuisListe(Object json, Function<Map<String, Object>, T> convertisseur) {
+        List<T> resultat = new ArrayList<>();
+        if (json instanceof List) {
+            for (Object o : (List<Object>) json) resultat.add(convertisseur.apply((Map<String, Object>) o));
+        }
+        return resultat;
+    }
+
+    static String chaine(Map<String, Object> m, String cle) {
+        Object v = m.get(cle);
+        return v == null ? null : v.toString();
+    }
+
+    static int entier(Map<String, Object> m, String cle) {
+        Object v = m.get(cle);
+        if (v instanceof Number) return ((Number) v).intValue();
+        if (v instanceof String) {
+            try {
+                return Integer.parseInt((String) v);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valeur entière invalide pour '" + cle + "'");
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Montant en euros (nombre ou texte) converti en centimes
+     */
+    static long montant(Map<String, Object> m, String cle) {
+        Object v = m.get(cle);
+        try {
+            if (v instanceof Long) return Math.multiplyExact((Long) v, 100L);
+            if (v instanceof Number) return Montant.depuisDouble(((Number) v).doubleValue());
+            if (v instanceof String) return Montant.analyser((String) v);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Montant invalide pour '" + cle + "'");
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,616 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.AccesDonneesException;
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.service.ArchivageService;
+import com.s4m.pharmacy.service.AuthService;
+import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.service.ConflitVersionException;
+import com.s4m.pharmacy.service.CritereProduits;
+import com.s4m.pharmacy.service.InstantaneStockService;
+import com.s4m.pharmacy.service.ProductService;
+import com.s4m.pharmacy.service.UserService;
+import com.s4m.pharmacy.util.Json;
+import com.s4m.pharmacy.util.Montant;
+import com.s4m.pharmacy.util.PasswordHasher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Mode serveur sans interface : héberge les services derrière une API HTTP/JSON locale
+ * pour que tous les terminaux partagent le même pool de connexions et les mêmes caches.
+ *
+ * <pre>
+ * POST   /api/auth/login            {email, motDePasse} -> {jeton, utilisateur}
+ * POST   /api/auth/logout
+ * GET    /api/produits[?code=|nom=|categorie=|expiration=|expirantAvant=|stockBas=true]
+ * GET    /api/produits?nom=&tousSites=true  (en stock dans tous les sites)
+ * GET    /api/produits?archives=|archiveCode=  (produits archivés)
+ * GET    /api/produits?complets=true|modifiesDepuis=AAAA-MM-JJTHH:MM:SS  (copies locales, colonnes complètes)
+ * GET    /api/produits/ids          GET /api/produits/derniere-modification
+ * POST   /api/produits/{id}/restauration    (produit archivé remis en stock)
+ * GET    /api/produits/recherche?nom=&categorie=&expirationMin=&expirationMax=&quantiteMin=
+ *        &quantiteMax=&prixMin=&prixMax=&tri=nom|prix|quantite|expiration&desc=true&limite=
+ * GET    /api/produits/stock?date=[&produit=]  ou  ?produit=&du=&au=  (stock passé, instantanés)
+ * GET    /api/produits/{id}         POST /api/produits   PUT|DELETE /api/produits/{id}
+ * GET    /api/categories[?q=]       GET /api/categories/{id}
+ * POST   /api/categories            PUT|DELETE /api/categories/{id}
+ * GET    /api/utilisateurs[?q=|email=]  (administrateurs uniquement)
+ * GET    /api/utilisateurs/{id}     POST /api/utilisateurs   PUT|DELETE /api/utilisateurs/{id}
+ * PUT    /api/utilisateurs/{id}/mot-de-passe
+ * </pre>
+ *
+ * Authentification par en-tête {@code Authorization: Bearer <jeton>}.
+ */
+public class PharmacyServer {
+
+    private static final long DUREE_CACHE_MS = 30_000;
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pharmacy-server-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AuthService authService = new AuthService();
+    private final ProductService productService = new ProductService();
+    private final CategoryService categoryService = new CategoryService();
+    private final UserService userService = new UserService();
+    private final InstantaneStockService instantaneService = new InstantaneStockService();
+    private final SessionManager sessions;
+    private ScheduledExecutorService archivage;
+    private ScheduledExecutorService instantanes;
+    // Un cache de produits par site : chaque site a son propre stock
+    private final Map<Integer, CacheCatalogue> cachesProduits = new ConcurrentHashMap<>();
+    private final CacheCatalogue cacheCategories = new CacheCatalogue(DUREE_CACHE_MS);
+    // Les routes invalident elles-mêmes (relecture immédiate par le client) ; le bus couvre
+    // les écritures faites hors des routes : archivage, inventaire, révisions de prix
+    private final Consumer<EvenementDomaine> invalidation = this::invalider;
+
+    /**
+     * @param hote adresse d'écoute : {@code 127.0.0.1} n'accepte que le poste local,
+     *             {@code 0.0.0.0} toutes les interfaces
+     */
+    public PharmacyServer(String hote, int port, int threads, long dureeSessionMs) throws IOException {
+        this.sessions = new SessionManager(dureeSessionMs);
+        this.http = HttpServer.create(new InetSocketAddress(hote, port), 0);
+        AtomicInteger compteur = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pharmacy-http-" + compteur.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(executor);
+        route("/api/auth", this::auth, false);
+        route("/api/produits", this::produits, true);
+        route("/api/categories", this::categories, true);
+        route("/api/utilisateurs", this::utilisateurs, true);
+    }
+
+    public void demarrer() {
+        http.start();
+        maintenance.scheduleAtFixedRate(sessions::purger, 5, 5, TimeUnit.MINUTES);
+        archivage = ArchivageService.planifier();
+        instantanes = InstantaneStockService.planifier();
+        BusEvenements.abonner(EvenementDomaine.class, invalidation);
+        System.out.println("Serveur pharmacie démarré sur " + http.getAddress().getHostString() + ":" + http.getAddress().getPort());
+    }
+
+    public void arreter() {
+        BusEvenements.desabonner(invalidation);
+        http.stop(1);
+        executor.shutdown();
+        maintenance.shutdownNow();
+        if (archivage != null) archivage.shutdownNow();
+        if (instantanes != null) instantanes.shutdownNow();
+        Audit.arreter();
+        DatabaseConnection.fermerPool();
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    // ==================== ROUTES ====================
+
+    private Object auth(Requete r) throws IOException {
+        if (r.estPost() && r.chemin("login")) {
+            Map<String, Object> corps = r.corps();
+            User user;
+            try {
+                user = authService.authentifierAsync(JsonMapper.chaine(corps, "email"),
+                    JsonMapper.chaine(corps, "motDePasse")).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    throw new HttpErreur(503, "Trop de connexions en cours, réessayez");
+                }
+                throw e;
+            }
+            if (user == null) throw new HttpErreur(401, "Identifiants incorrects");
+            Map<String, Object> reponse = new LinkedHashMap<>();
+            reponse.put("jeton", sessions.ouvrir(user));
+            reponse.put("utilisateur", JsonMapper.utilisateur(user));
+            return reponse;
+        }
+        if (r.estPost() && r.chemin("logout")) {
+            sessions.fermer(r.jeton);
+            return ok(true);
+        }
+        throw new HttpErreur(404, "Ressource inconnue");
+    }
+
+    private Object produits(Requete r) throws IOException {
+        if (r.estGet() && r.segment == null) {
+            if (r.param("code") != null) {
+                Product p = productService.getProduitParCode(r.param("code"));
+                return versJson(p != null ? List.of(p) : List.of());
+            }
+            if (r.param("archives") != null) return versJson(productService.rechercherProduitsArchives(r.param("archives")));
+            if ("true".equals(r.param("complets"))) return versJson(productService.listerTousLesProduitsComplets());
+            if (r.param("modifiesDepuis") != null) {
+                return versJson(productService.listerProduitsModifiesDepuis(r.dateHeureParam("modifiesDepuis")));
+            }
+            if (r.param("archiveCode") != null) {
+                Product p = productService.getProduitArchiveParCode(r.param("archiveCode"));
+                return versJson(p != null ? List.of(p) : List.of());
+            }
+            if (r.param("nom") != null && "true".equals(r.param("tousSites"))) {
+                return versJson(productService.rechercherEnStockTousSites(r.param("nom")));
+            }
+            if (r.param("nom") != null) return versJson(productService.rechercherProduitsParNom(r.param("nom")));
+            if (r.param("categorie") != null) return versJson(productService.rechercherProduitsParCategorie(r.entierParam("categorie")));
+            if (r.param("expiration") != null) return versJson(productService.rechercherProduitsParDateExpiration(r.dateParam("expiration")));
+            if (r.param("expirantAvant") != null) return versJson(productService.getProduitsExpirantAvant(r.dateParam("expirantAvant")));
+            if ("true".equals(r.param("stockBas"))) return versJson(productService.getProduitsStockBas());
+            return cacheProduits().obtenir(() -> Json.ecrire(JsonMapper.liste(productService.listerTousLesProduitsSurPrimaire(), JsonMapper::produit)));
+        }
+        if (r.estGet() && r.chemin("recherche")) return versJson(productService.rechercherProduits(critere(r)));
+        if (r.estGet() && r.chemin("stock")) return stockADate(r);
+        if (r.estGet() && r.chemin("ids")) {
+            return new ArrayList<>(productService.listerIdsProduits());
+        }
+        if (r.estGet() && r.chemin("derniere-modification")) {
+            LocalDateTime date = productService.getDerniereModification();
+            return Collections.singletonMap("date", date != null ? date.toString() : null);
+        }
+        if (r.estGet()) {
+            Product p = productService.getProduitParId(r.id());
+            if (p == null) throw new HttpErreur(404, "Produit introuvable");
+            return JsonMapper.produit(p);
+        }
+        if (r.estPost() && "restauration".equals(r.sousSegment)) {
+            Product p = productService.restaurerProduitArchive(r.id());
+            if (p == null) throw new HttpErreur(404, "Produit absent des archives");
+            cacheProduits().invalider();
+            return JsonMapper.produit(p);
+        }
+        if (r.estPost() && r.segment == null) {
+            int id = productService.ajouterProduit(JsonMapper.produit(r.corps()));
+            cacheProduits().invalider();
+            return Collections.singletonMap("id", id);
+        }
+        if (r.estPut()) {
+            Product p = JsonMapper.produit(r.corps());
+            p.setId(r.id());
+            boolean resultat = productService.modifierProduit(p);
+            cacheProduits().invalider();
+            return ok(resultat, p.getVersion());
+        }
+        if (r.estDelete()) {
+            boolean resultat = productService.supprimerProduit(r.id());
+            cacheProduits().invalider();
+            return ok(resultat);
+        }
+        throw new HttpErreur(405, "Méthode non autorisée");
+    }
+
+    /**
+     * Stock reconstitué à partir des instantanés quotidiens : d'un produit ou de tout le site
+     * à une date, ou d'un produit jour par jour sur une période
+     */
+    private Object stockADate(Requete r) {
+        try {
+            if (r.param("du") != null || r.param("au") != null) {
+                if (r.param("produit") == null) throw new IllegalArgumentException("Paramètre produit requis");
+                List<Map<String, Object>> jours = new ArrayList<>();
+                instantaneService.evolution(r.entierParam("produit"), r.dateParam("du"), r.dateParam("au"))
+                    .forEach((jour, quantite) -> jours.add(ligneStock("jour", jour.toString(), quantite)));
+                return jours;
+            }
+            LocalDate date = r.dateParam("date");
+            if (r.param("produit") != null) {
+                Integer quantite = instantaneService.quantiteAu(r.entierParam("produit"), date);
+                if (quantite == null) throw new HttpErreur(404, "Aucun instantané de stock au " + date);
+                return ligneStock("produit", r.entierParam("produit"), quantite);
+            }
+            List<Map<String, Object>> produits = new ArrayList<>();
+            new TreeMap<>(instantaneService.stockAu(date))
+                .forEach((id, quantite) -> produits.add(ligneStock("produit", id, quantite)));
+            return produits;
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
+    }
+
+    private static Map<String, Object> ligneStock(String cle, Object valeur, int quantite) {
+        Map<String, Object> ligne = new LinkedHashMap<>();
+        ligne.put(cle, valeur);
+        ligne.put("quantite", quantite);
+        return ligne;
+    }
+
+    private static CritereProduits critere(Requete r) {
+        CritereProduits critere = new CritereProduits()
+            .nom(r.param("nom"))
+            .categorie(r.param("categorie") != null ? r.entierParam("categorie") : null)
+            .expirationEntre(r.param("expirationMin") != null ? r.dateParam("expirationMin") : null,
+                r.param("expirationMax") != null ? r.dateParam("expirationMax") : null)
+            .quantiteEntre(r.param("quantiteMin") != null ? r.entierParam("quantiteMin") : null,
+                r.param("quantiteMax") != null ? r.entierParam("quantiteMax") : null)
+            .prixEntre(r.param("prixMin") != null ? r.montantParam("prixMin") : null,
+                r.param("prixMax") != null ? r.montantParam("prixMax") : null);
+        if (r.param("tri") != null) {
+            CritereProduits.Tri tri;
+            try {
+                tri = CritereProduits.Tri.valueOf(r.param("tri").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tri invalide : " + r.param("tri"));
+            }
+            critere.trierPar(tri, "true".equals(r.param("desc")));
+        }
+        if (r.param("limite") != null) critere.limite(r.entierParam("limite"));
+        return critere;
+    }
+
+    private Object categories(Requete r) throws IOException {
+        if (r.estGet() && r.segment == null) {
+            if (r.param("q") != null) {
+                return JsonMapper.liste(categoryService.rechercherCategories(r.param("q")), JsonMapper::categorie);
+            }
+            return cacheCategories.obtenir(() -> Json.ecrire(JsonMapper.liste(categoryService.listerToutesLesCategoriesSurPrimaire(), JsonMapper::categorie)));
+        }
+        if (r.estGet()) {
+            Category c = categoryService.getCategorieParId(r.id());
+            if (c == null) throw new HttpErreur(404, "Catégorie introuvable");
+            return JsonMapper.categorie(c);
+        }
+        if (r.estPost() && r.segment == null) {
+            Map<String, Object> corps = r.corps();
+            int id;
+            if (corps.get("produits") != null) {
+                // Catégorie et produits en une transaction
+                try {
+                    id = categoryService.ajouterCategorieAvecProduits(JsonMapper.categorie(corps),
+                        JsonMapper.depuisListe(corps.get("produits"), JsonMapper::produit));
+                } catch (SQLException e) {
+                    throw new AccesDonneesException(e);
+                }
+                cachesProduits.values().forEach(CacheCatalogue::invalider);
+            } else {
+                id = categoryService.ajouterCategorie(JsonMapper.categorie(corps));
+            }
+            cacheCategories.invalider();
+            return Collections.singletonMap("id", id);
+        }
+        if (r.estPut()) {
+            Category c = JsonMapper.categorie(r.corps());
+            c.setId(r.id());
+            boolean resultat = categoryService.modifierCategorie(c);
+            cacheCategories.invalider();
+            cachesProduits.values().forEach(CacheCatalogue::invalider);
+            return ok(resultat, c.getVersion());
+        }
+        if (r.estDelete() && r.param("remplacement") != null) {
+            int deplaces;
+            try {
+                deplaces = categoryService.supprimerCategorie(r.id(), r.entierParam("remplacement"));
+            } catch (SQLException e) {
+                throw new AccesDonneesException(e);
+            }
+            cacheCategories.invalider();
+            cachesProduits.values().forEach(CacheCatalogue::invalider);
+            Map<String, Object> reponse = new LinkedHashMap<>();
+            reponse.put("ok", true);
+            reponse.put("deplaces", deplaces);
+            return reponse;
+        }
+        if (r.estDelete()) {
+            boolean resultat = categoryService.supprimerCategorie(r.id());
+            cacheCategories.invalider();
+            return ok(resultat);
+        }
+        throw new HttpErreur(405, "Méthode non autorisée");
+    }
+
+    private Object utilisateurs(Requete r) throws IOException {
+        if (!r.user.isAdmin()) throw new HttpErreur(403, "Accès réservé aux administrateurs");
+        if (r.estGet() && r.segment == null) {
+            if (r.param("email") != null) {
+                User u = userService.getUtilisateurParEmail(r.param("email"));
+                if (u == null) throw new HttpErreur(404, "Utilisateur introuvable");
+                return JsonMapper.utilisateur(u);
+            }
+            if (r.param("q") != null) {
+                return JsonMapper.liste(userService.rechercherUtilisateurs(r.param("q")), JsonMapper::utilisateur);
+            }
+            return JsonMapper.liste(userService.listerTousLesUtilisateurs(), JsonMapper::utilisateur);
+        }
+        if (r.estGet()) {
+            User u = userService.getUtilisateurParId(r.id());
+            if (u == null) throw new HttpErreur(404, "Utilisateur introuvable");
+            return JsonMapper.utilisateur(u);
+        }
+        if (r.estPost() && r.segment == null) {
+            Map<String, Object> corps = r.corps();
+            int id = userService.ajouterUtilisateur(JsonMapper.utilisateur(corps), JsonMapper.chaine(corps, "motDePasse"));
+            return Collections.singletonMap("id", id);
+        }
+        if (r.estPut() && "mot-de-passe".equals(r.sousSegment)) {
+            return ok(userService.modifierMotDePasse(r.id(), JsonMapper.chaine(r.corps(), "motDePasse")));
+        }
+        if (r.estPut()) {
+            User u = JsonMapper.utilisateur(r.corps());
+            u.setId(r.id());
+            return ok(userService.modifierUtilisateur(u));
+        }
+        if (r.estDelete()) {
+            if (r.id() == r.user.getId()) throw new HttpErreur(400, "Vous ne pouvez pas supprimer votre propre compte");
+            return ok(userService.supprimerUtilisateur(r.id()));
+        }
+        throw new HttpErreur(405, "Méthode non autorisée");
+    }
+
+    private CacheCatalogue cacheProduits() {
+        return cachesProduits.computeIfAbsent(DatabaseConnection.getSiteCourant(), site -> new CacheCatalogue(DUREE_CACHE_MS));
+    }
+
+    private void invalider(EvenementDomaine evenement) {
+        if (evenement instanceof EvenementDomaine.CategorieModifiee) {
+            cacheCategories.invalider();
+            cachesProduits.values().forEach(CacheCatalogue::invalider);
+        } else if (!(evenement instanceof EvenementDomaine.UtilisateurModifie)) {
+            CacheCatalogue cache = cachesProduits.get(evenement.getSite());
+            if (cache != null) cache.invalider();
+        }
+    }
+
+    private static Object versJson(List<Product> liste) {
+        return JsonMapper.liste(liste, JsonMapper::produit);
+    }
+
+    private static Map<String, Object> ok(boolean resultat) {
+        return Collections.singletonMap("ok", resultat);
+    }
+
+    /**
+     * Réponse d'une modification : nouvelle version de la ligne, à reprendre par le client
+     */
+    private static Map<String, Object> ok(boolean resultat, int version) {
+        Map<String, Object> reponse = new LinkedHashMap<>();
+        reponse.put("ok", resultat);
+        reponse.put("version", version);
+        return reponse;
+    }
+
+    // ==================== INFRASTRUCTURE HTTP ====================
+
+    private void route(String contexte, Route route, boolean authentifie) {
+        http.createContext(contexte, exchange -> {
+            try {
+                traiter(exchange, contexte, route, authentifie);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private void traiter(HttpExchange exchange, String contexte, Route route, boolean authentifie) throws IOException {
+        int statut = 200;
+        Object reponse;
+        try {
+            Requete requete = new Requete(exchange, contexte);
+            if (authentifie) {
+                requete.user = sessions.utilisateur(requete.jeton);
+                if (requete.user == null) throw new HttpErreur(401, "Session invalide ou expirée");
+            }
+            Audit.definirUtilisateurRequete(requete.user);
+            DatabaseConnection.definirTerminal(requete.jeton);
+            DatabaseConnection.definirSite(requete.user != null ? requete.user.getIdSite() : null);
+            reponse = route.traiter(requete);
+        } catch (HttpErreur e) {
+            statut = e.statut;
+            reponse = erreur(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            statut = 400;
+            reponse = erreur(e.getMessage());
+        } catch (ConflitVersionException e) {
+            // La ligne actuelle accompagne le refus : le client propose la fusion
+            statut = 409;
+            Map<String, Object> conflit = new LinkedHashMap<>(erreur(e.getMessage()));
+            if (e.getProduitActuel() != null) conflit.put("produit", JsonMapper.produit(e.getProduitActuel()));
+            if (e.getCategorieActuelle() != null) conflit.put("categorie", JsonMapper.categorie(e.getCategorieActuelle()));
+            reponse = conflit;
+        } catch (AccesDonneesException e) {
+            statut = 503;
+            reponse = erreur("Base de données indisponible : " + e.getMessage());
+        } catch (Exception e) {
+            statut = 500;
+            reponse = erreur("Erreur interne : " + e.getMessage());
+        } finally {
+            Audit.definirUtilisateurRequete(null);
+            DatabaseConnection.definirTerminal(null);
+            DatabaseConnection.definirSite(null);
+        }
+        byte[] octets = reponse instanceof byte[] ? (byte[]) reponse : Json.ecrire(reponse).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statut, octets.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(octets);
+        }
+    }
+
+    private static Map<String, Object> erreur(String message) {
+        return Collections.singletonMap("erreur", message);
+    }
+
+    @FunctionalInterface
+    private interface Route {
+        Object traiter(Requete requete) throws Exception;
+    }
+
+    private static final class HttpErreur extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int statut;
+
+        private HttpErreur(int statut, String message) {
+            super(message);
+            this.statut = statut;
+        }
+    }
+
+    /**
+     * Requête décodée : méthode, segments de chemin après le contexte, paramètres et corps JSON
+     */
+    private static final class Requete {
+        private final HttpExchange exchange;
+        private final String methode;
+        private final String segment;
+        private final String sousSegment;
+        private final Map<String, String> params = new HashMap<>();
+        private final String jeton;
+        private User user;
+
+        private Requete(HttpExchange exchange, String contexte) {
+            this.exchange = exchange;
+            this.methode = exchange.getRequestMethod();
+            String chemin = exchange.getRequestURI().getPath().substring(contexte.length());
+            String[] segments = chemin.replaceAll("^/+", "").split("/");
+            this.segment = segments.length > 0 && !segments[0].isEmpty() ? segments[0] : null;
+            this.sousSegment = segments.length > 1 ? segments[1] : null;
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String paire : query.split("&")) {
+                    int egal = paire.indexOf('=');
+                    if (egal > 0) {
+                        params.put(URLDecoder.decode(paire.substring(0, egal), StandardCharsets.UTF_8),
+                            URLDecoder.decode(paire.substring(egal + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            String auth = exchange.getRequestHeaders().getFirst("Authorization");
+            this.jeton = auth != null && auth.startsWith("Bearer ") ? auth.substring(7).trim() : null;
+        }
+
+        boolean estGet() { return "GET".equals(methode); }
+        boolean estPost() { return "POST".equals(methode); }
+        boolean estPut() { return "PUT".equals(methode) && segment != null; }
+        boolean estDelete() { return "DELETE".equals(methode) && segment != null; }
+        boolean chemin(String nom) { return nom.equals(segment); }
+        String param(String nom) { return params.get(nom); }
+
+        int id() {
+            try {
+                return Integer.parseInt(segment);
+            } catch (NumberFormatException e) {
+                throw new HttpErreur(404, "Identifiant invalide : " + segment);
+            }
+        }
+
+        int entierParam(String nom) {
+            try {
+                return Integer.parseInt(params.get(nom));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Paramètre entier invalide : " + nom);
+            }
+        }
+
+        /**
+         * Montant en euros ({@code 12.50}) converti en centimes
+         */
+        long montantParam(String nom) {
+            try {
+                return Montant.analyser(params.get(nom));
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException("Paramètre montant invalide : " + nom);
+            }
+        }
+
+        LocalDate dateParam(String nom) {
+            try {
+                return LocalDate.parse(params.get(nom));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Date invalide (AAAA-MM-JJ attendu) : " + nom);
+            }
+        }
+
+        LocalDateTime dateHeureParam(String nom) {
+            try {
+                return LocalDateTime.parse(params.get(nom));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Date invalide (AAAA-MM-JJTHH:MM:SS attendu) : " + nom);
+            }
+        }
+
+        Map<String, Object> corps() throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                String texte = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                return texte.isBlank() ? new HashMap<>() : Json.lireObjet(texte);
+            }
+        }
+    }
+
+    /**
+     * Démarre le serveur : java com.s4m.pharmacy.server.PharmacyServer
+     */
+    public static void main(String[] args) throws IOException {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        // Calibrage d'abord : les utilisateurs par défaut sont hashés à l'initialisation
+        PasswordHasher.calibrer(config.getHashBudgetMs());
+        DatabaseConnection.initialiser();
+
+        PharmacyServer serveur = new PharmacyServer(
+            config.getPropriete("server.bind", "127.0.0.1"),
+            (int) config.getEntier("server.port", 8470),
+            (int) config.getEntier("server.threads", 64),
+            TimeUnit.MINUTES.toMillis(config.getEntier("server.session.minutes", 480)));
+        Runtime.getRuntime().addShutdownHook(new Thread(serveur::arreter, "pharmacy-server-arret"));
+        serveur.demarrer();
+    }
+}
@@ -0,0 +1,52 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.service.AuthService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Implémentation distante de {@link AuthService} : la vérification du mot de passe
+ * est faite par le serveur, qui renvoie un jeton de session conservé par le client.
+ */
+public class RemoteAuthService extends AuthService {
+
+    private final RemoteClient client;
+
+    public RemoteAuthService(RemoteClient client) {
+        this.client = client;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public User authentifier(String email, String motDePasse) {
+        if (email == null || email.isEmpty() || motDePasse == null || motDePasse.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> corps = new LinkedHashMap<>();
+        corps.put("email", email);
+        corps.put("motDePasse", motDePasse);
+        try {
+            Map<String, Object> reponse = (Map<String, Object>) client.post("/api/auth/login", corps);
+            client.setJeton(JsonMapper.chaine(reponse, "jeton"));
+            return JsonMapper.utilisateur((Map<String, Object>) reponse.get("utilisateur"));
+        } catch (RemoteClient.RemoteException e) {
+            if (e.getStatut() == 401) return null;
+            throw e;
+        }
+    }
+
+    @Override
+    public void seDeconnecter() {
+        if (client.getJeton() != null) {
+            try {
+                client.post("/api/auth/logout", new LinkedHashMap<>());
+            } catch (RuntimeException e) {
+                System.err.println("Erreur lors de la déconnexion du serveur : " + e.getMessage());
+            }
+            client.setJeton(null);
+        }
+        super.seDeconnecter();
+    }
+}
@@ -0,0 +1,101 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.service.CategoryService;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implémentation distante de {@link CategoryService}
+ */
+public class RemoteCategoryService extends CategoryService {
+
+    private final RemoteClient client;
+
+    public RemoteCategoryService(RemoteClient client) {
+        this.client = client;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int ajouterCategorie(Category category) {
+        Map<String, Object> reponse = (Map<String, Object>) client.post("/api/categories", JsonMapper.categorie(category));
+        int id = JsonMapper.entier(reponse, "id");
+        if (id > 0) {
+            category.setId(id);
+            BusEvenements.publier(new EvenementDomaine.CategorieModifiee(id, category, EvenementDomaine.Nature.AJOUT));
+        }
+        return id;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Category getCategorieParId(int id) {
+        try {
+            return JsonMapper.categorie((Map<String, Object>) client.get("/api/categories/" + id));
+        } catch (RemoteClient.RemoteException e) {
+            if (e.getStatut() == 404) return null;
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Category> listerToutesLesCategories() {
+        return JsonMapper.depuisListe(client.get("/api/categories"), JsonMapper::categorie);
+    }
+
+    @Override
+    public List<Category> rechercherCategories(String termeRecherche) {
+        return JsonMapper.depuisListe(client.get("/api/categories?q=" + RemoteClient.encoder(termeRecherche)),
+            JsonMapper::categorie);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean modifierCategorie(Category category) {
+        Map<String, Object> reponse = (Map<String, Object>) client.put("/api/categories/" + category.getId(), JsonMapper.categorie(category));
+        if (reponse.get("version") instanceof Number) category.setVersion(((Number) reponse.get("version")).intValue());
+        boolean ok = Boolean.TRUE.equals(reponse.get("ok"));
+        if (ok) {
+            BusEvenements.publier(new EvenementDomaine.CategorieModifiee(category.getId(), category,
+                EvenementDomaine.Nature.MODIFICATION));
+        }
+        return ok;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean supprimerCategorie(int id) {
+        Map<String, Object> reponse = (Map<String, Object>) client.delete("/api/categories/" + id);
+        boolean ok = Boolean.TRUE.equals(reponse.get("ok"));
+        if (ok) BusEvenements.publier(new EvenementDomaine.CategorieModifiee(id, null, EvenementDomaine.Nature.SUPPRESSION));
+        return ok;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int ajouterCategorieAvecProduits(Category category, List<Product> produits) {
+        Map<String, Object> corps = new LinkedHashMap<>(JsonMapper.categorie(category));
+        corps.put("produits", JsonMapper.liste(produits, JsonMapper::produit));
+        Map<String, Object> reponse = (Map<String, Object>) client.post("/api/categories", corps);
+        int id = JsonMapper.entier(reponse, "id");
+        if (id > 0) {
+            category.setId(id);
+            BusEvenements.publier(new EvenementDomaine.CategorieModifiee(id, category, EvenementDomaine.Nature.AJOUT));
+        }
+        return id;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int supprimerCategorie(int id, int idRemplacement) {
+        Map<String, Object> reponse = (Map<String, Object>) client.delete("/api/categories/" + id + "?remplacement=" + idRemplacement);
+        BusEvenements.publier(new EvenementDomaine.CategorieModifiee(id, null, EvenementDomaine.Nature.SUPPRESSION));
+        return JsonMapper.entier(reponse, "deplaces");
+    }
+}
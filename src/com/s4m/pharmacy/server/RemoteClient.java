@@ -0,0 +1,134 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.service.ConflitVersionException;
+import com.s4m.pharmacy.util.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Client HTTP léger vers {@link PharmacyServer}, partagé par les services distants d'un terminal.
+ * Conserve le jeton de session obtenu à la connexion.
+ */
+public class RemoteClient {
+
+    private static final Duration DELAI = Duration.ofSeconds(15);
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(DELAI).build();
+    private final String baseUrl;
+    private volatile String jeton;
+
+    public RemoteClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Retourne un client si {@code server.url} est configuré, sinon null (accès direct à MySQL)
+     */
+    public static RemoteClient depuisConfiguration() {
+        String url = DatabaseConnection.getConfig().getPropriete("server.url", null);
+        return url == null ? null : new RemoteClient(url);
+    }
+
+    /**
+     * Vrai si le terminal passe par le serveur : les services sans équivalent distant
+     * (accès direct à MySQL) ne doivent pas être proposés
+     */
+    public static boolean estConfigure() {
+        return DatabaseConnection.getConfig().getPropriete("server.url", null) != null;
+    }
+
+    public Object get(String chemin) {
+        return envoyer(requete(chemin).GET());
+    }
+
+    public Object post(String chemin, Object corps) {
+        return envoyer(requete(chemin).POST(HttpRequest.BodyPublishers.ofString(Json.ecrire(corps))));
+    }
+
+    public Object put(String chemin, Object corps) {
+        return envoyer(requete(chemin).PUT(HttpRequest.BodyPublishers.ofString(Json.ecrire(corps))));
+    }
+
+    public Object delete(String chemin) {
+        return envoyer(requete(chemin).DELETE());
+    }
+
+    public void setJeton(String jeton) {
+        this.jeton = jeton;
+    }
+
+    public String getJeton() {
+        return jeton;
+    }
+
+    public static String encoder(String valeur) {
+        return URLEncoder.encode(valeur == null ? "" : valeur, StandardCharsets.UTF_8);
+    }
+
+    private HttpRequest.Builder requete(String chemin) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + chemin))
+            .timeout(DELAI)
+            .header("Content-Type", "application/json; charset=utf-8");
+        String courant = jeton;
+        if (courant != null) builder.header("Authorization", "Bearer " + courant);
+        return builder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object envoyer(HttpRequest.Builder builder) {
+        HttpResponse<String> reponse;
+        try {
+            reponse = http.send(builder.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Serveur injoignable : " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Requête interrompue", e);
+        }
+        Object corps = reponse.body().isBlank() ? null : Json.lire(reponse.body());
+        int statut = reponse.statusCode();
+        if (statut == 200) return corps;
+
+        String message = corps instanceof Map ? String.valueOf(((Map<String, Object>) corps).get("erreur")) : "HTTP " + statut;
+        if (statut == 400) throw new IllegalArgumentException(message);
+        if (statut == 409 && corps instanceof Map) {
+            // Conflit de version : même exception qu'en accès direct, avec la ligne actuelle
+            Map<String, Object> conflit = (Map<String, Object>) corps;
+            if (conflit.get("produit") instanceof Map) {
+                throw new ConflitVersionException(JsonMapper.produit((Map<String, Object>) conflit.get("produit")));
+            }
+            if (conflit.get("categorie") instanceof Map) {
+                throw new ConflitVersionException(JsonMapper.categorie((Map<String, Object>) conflit.get("categorie")));
+            }
+        }
+        throw new RemoteException(statut, message);
+    }
+
+    /**
+     * Erreur renvoyée par le serveur (session expirée, droits insuffisants, erreur interne...)
+     */
+    public static class RemoteException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int statut;
+
+        public RemoteException(int statut, String message) {
+            super(message);
+            this.statut = statut;
+        }
+
+        public int getStatut() {
+            return statut;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.service.AsyncExecutor;
+import com.s4m.pharmacy.service.CritereProduits;
+import com.s4m.pharmacy.service.ProductService;
+import com.s4m.pharmacy.util.Montant;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Implémentation distante de {@link ProductService} : chaque appel passe par le serveur,
+ * qui partage son pool et ses caches entre tous les terminaux.
+ */
+public class RemoteProductService extends ProductService {
+
+    private final RemoteClient client;
+
+    public RemoteProductService(RemoteClient client) {
+        this.client = client;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int ajouterProduit(Product product) {
+        Map<String, Object> reponse = (Map<String, Object>) client.post("/api/produits", JsonMapper.produit(product));
+        int id = JsonMapper.entier(reponse, "id");
+        if (id > 0) {
+            product.setId(id);
+            // Écriture faite par le serveur : les abonnés du poste sont prévenus ici
+            BusEvenements.publier(new EvenementDomaine.ProduitAjoute(product));
+        }
+        return id;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Product getProduitParId(int id) {
+        try {
+            return JsonMapper.produit((Map<String, Object>) client.get("/api/produits/" + id));
+        } catch (RemoteClient.RemoteException e) {
+            if (e.getStatut() == 404) return null;
+            throw e;
+        }
+    }
+
+    @Override
+    public Product getProduitParCode(String code) {
+        List<Product> resultat = liste("?code=" + RemoteClient.encoder(code));
+        return resultat.isEmpty() ? null : resultat.get(0);
+    }
+
+    @Override
+    public String getDescriptionProduit(int id) {
+        Product p = getProduitParId(id);
+        return p != null ? p.getDescription() : null;
+    }
+
+    @Override
+    public List<Product> listerTousLesProduits() {
+        return liste("");
+    }
+
+    @Override
+    public List<Product> listerTousLesProduitsComplets() {
+        return liste("?complets=true");
+    }
+
+    @Override
+    public List<Product> listerProduitsModifiesDepuis(LocalDateTime depuis) {
+        return liste("?modifiesDepuis=" + RemoteClient.encoder(depuis.toString()));
+    }
+
+    @Override
+    public Set<Integer> listerIdsProduits() {
+        Set<Integer> ids = new HashSet<>();
+        for (Object id : (List<?>) client.get("/api/produits/ids")) ids.add(((Number) id).intValue());
+        return ids;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public LocalDateTime getDerniereModification() {
+        String date = JsonMapper.chaine((Map<String, Object>) client.get("/api/produits/derniere-modification"), "date");
+        return date != null ? LocalDateTime.parse(date) : null;
+    }
+
+    @Override
+    public void parcourirTousLesProduits(Consumer<Product> consommateur) {
+        listerTousLesProduits().forEach(consommateur);
+    }
+
+    @Override
+    public List<Product> rechercherProduitsParNom(String termeRecherche) {
+        return liste("?nom=" + RemoteClient.encoder(termeRecherche));
+    }
+
+    @Override
+    public List<Product> rechercherProduitsArchives(String termeRecherche) {
+        return liste("?archives=" + RemoteClient.encoder(termeRecherche));
+    }
+
+    @Override
+    public Product getProduitArchiveParCode(String code) {
+        List<Product> resultat = liste("?archiveCode=" + RemoteClient.encoder(code));
+        return resultat.isEmpty() ? null : resultat.get(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Product restaurerProduitArchive(int id) {
+        Product restaure;
+        try {
+            restaure = JsonMapper.produit((Map<String, Object>) client.post("/api/produits/" + id + "/restauration", Map.of()));
+        } catch (RemoteClient.RemoteException e) {
+            if (e.getStatut() == 404) return null;
+            throw e;
+        }
+        BusEvenements.publier(new EvenementDomaine.ProduitAjoute(restaure));
+        return restaure;
+    }
+
+    @Override
+    public List<Product> rechercherEnStockTousSites(String termeRecherche) {
+        return liste("?nom=" + RemoteClient.encoder(termeRecherche) + "&tousSites=true");
+    }
+
+    @Override
+    public CompletableFuture<List<Product>> rechercherEnStockTousSitesAsync(String termeRecherche) {
+        // Le serveur fait lui-même la répartition sur les sites
+        return AsyncExecutor.executer(() -> rechercherEnStockTousSites(termeRecherche));
+    }
+
+    @Override
+    public List<Product> rechercherProduitsParCategorie(int idCategorie) {
+        return liste("?categorie=" + idCategorie);
+    }
+
+    @Override
+    public List<Product> rechercherProduitsParDateExpiration(LocalDate date) {
+        return liste("?expiration=" + date);
+    }
+
+    @Override
+    public List<Product> getProduitsStockBas() {
+        return liste("?stockBas=true");
+    }
+
+    @Override
+    public List<Product> getProduitsExpirantAvant(LocalDate date) {
+        return liste("?expirantAvant=" + date);
+    }
+
+    @Override
+    public List<Product> rechercherProduits(CritereProduits critere) {
+        StringBuilder requete = new StringBuilder("/recherche?tri=")
+            .append(critere.getTri().name().toLowerCase(Locale.ROOT))
+            .append("&desc=").append(critere.isDecroissant());
+        if (critere.getNom() != null) requete.append("&nom=").append(RemoteClient.encoder(critere.getNom()));
+        parametre(requete, "categorie", critere.getIdCategorie());
+        parametre(requete, "expirationMin", critere.getExpirationMin());
+        parametre(requete, "expirationMax", critere.getExpirationMax());
+        parametre(requete, "quantiteMin", critere.getQuantiteMin());
+        parametre(requete, "quantiteMax", critere.getQuantiteMax());
+        if (critere.getPrixMinCentimes() != null) parametre(requete, "prixMin", Montant.versTexte(critere.getPrixMinCentimes()));
+        if (critere.getPrixMaxCentimes() != null) parametre(requete, "prixMax", Montant.versTexte(critere.getPrixMaxCentimes()));
+        if (critere.getLimite() > 0) parametre(requete, "limite", critere.getLimite());
+        return liste(requete.toString());
+    }
+
+    private static void parametre(StringBuilder requete, String nom, Object valeur) {
+        if (valeur != null) requete.append('&').append(nom).append('=').append(valeur);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean modifierProduit(Product product) {
+        Map<String, Object> reponse = (Map<String, Object>) client.put("/api/produits/" + product.getId(), JsonMapper.produit(product));
+        if (reponse.get("version") instanceof Number) product.setVersion(((Number) reponse.get("version")).intValue());
+        boolean ok = Boolean.TRUE.equals(reponse.get("ok"));
+        if (ok) BusEvenements.publier(new EvenementDomaine.ProduitModifie(product));
+        return ok;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean supprimerProduit(int id) {
+        Map<String, Object> reponse = (Map<String, Object>) client.delete("/api/produits/" + id);
+        boolean ok = Boolean.TRUE.equals(reponse.get("ok"));
+        if (ok) BusEvenements.publier(new EvenementDomaine.ProduitSupprime(id));
+        return ok;
+    }
+
+    private List<Product> liste(String requete) {
+        return JsonMapper.depuisListe(client.get("/api/produits" + requete), JsonMapper::produit);
+    }
+}
@@ -0,0 +1,97 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.service.UserService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implémentation distante de {@link UserService} (opérations réservées aux administrateurs).
+ * Le hashage des mots de passe est effectué par le serveur.
+ */
+public class RemoteUserService extends UserService {
+
+    private final RemoteClient client;
+
+    public RemoteUserService(RemoteClient client) {
+        this.client = client;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int ajouterUtilisateur(User user, String motDePasseClair) {
+        Map<String, Object> corps = JsonMapper.utilisateur(user);
+        corps.put("motDePasse", motDePasseClair);
+        Map<String, Object> reponse = (Map<String, Object>) client.post("/api/utilisateurs", corps);
+        int id = JsonMapper.entier(reponse, "id");
+        if (id > 0) {
+            user.setId(id);
+            BusEvenements.publier(new EvenementDomaine.UtilisateurModifie(id, user, EvenementDomaine.Nature.AJOUT));
+        }
+        return id;
+    }
+
+    @Override
+    public User getUtilisateurParId(int id) {
+        return unique("/api/utilisateurs/" + id);
+    }
+
+    @Override
+    public User getUtilisateurParEmail(String email) {
+        return unique("/api/utilisateurs?email=" + RemoteClient.encoder(email));
+    }
+
+    @Override
+    public List<User> listerTousLesUtilisateurs() {
+        return JsonMapper.depuisListe(client.get("/api/utilisateurs"), JsonMapper::utilisateur);
+    }
+
+    @Override
+    public List<User> rechercherUtilisateurs(String termeRecherche) {
+        return JsonMapper.depuisListe(client.get("/api/utilisateurs?q=" + RemoteClient.encoder(termeRecherche)),
+            JsonMapper::utilisateur);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean modifierUtilisateur(User user) {
+        Map<String, Object> reponse = (Map<String, Object>) client.put("/api/utilisateurs/" + user.getId(), JsonMapper.utilisateur(user));
+        boolean ok = Boolean.TRUE.equals(reponse.get("ok"));
+        if (ok) {
+            BusEvenements.publier(new EvenementDomaine.UtilisateurModifie(user.getId(), user,
+                EvenementDomaine.Nature.MODIFICATION));
+        }
+        return ok;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean modifierMotDePasse(int userId, String nouveauMotDePasseClair) {
+        Map<String, Object> reponse = (Map<String, Object>) client.put("/api/utilisateurs/" + userId + "/mot-de-passe",
+            Collections.singletonMap("motDePasse", nouveauMotDePasseClair));
+        return Boolean.TRUE.equals(reponse.get("ok"));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean supprimerUtilisateur(int id) {
+        Map<String, Object> reponse = (Map<String, Object>) client.delete("/api/utilisateurs/" + id);
+        boolean ok = Boolean.TRUE.equals(reponse.get("ok"));
+        if (ok) BusEvenements.publier(new EvenementDomaine.UtilisateurModifie(id, null, EvenementDomaine.Nature.SUPPRESSION));
+        return ok;
+    }
+
+    @SuppressWarnings("unchecked")
+    private User unique(String chemin) {
+        try {
+            return JsonMapper.utilisateur((Map<String, Object>) client.get(chemin));
+        } catch (RemoteClient.RemoteException e) {
+            if (e.getStatut() == 404) return null;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.s4m.pharmacy.server;
+
+import com.s4m.pharmacy.model.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessions des terminaux connectés au serveur : un jeton opaque par connexion réussie,
+ * expiré après une durée d'inactivité.
+ */
+public class SessionManager {
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long dureeInactiviteMs;
+
+    public SessionManager(long dureeInactiviteMs) {
+        this.dureeInactiviteMs = dureeInactiviteMs;
+    }
+
+    /**
+     * Ouvre une session pour un utilisateur authentifié et retourne son jeton
+     */
+    public String ouvrir(User user) {
+        byte[] octets = new byte[32];
+        random.nextBytes(octets);
+        String jeton = Base64.getUrlEncoder().withoutPadding().encodeToString(octets);
+        sessions.put(jeton, new Session(user, System.currentTimeMillis()));
+        return jeton;
+    }
+
+    /**
+     * Retourne l'utilisateur d'une session valide (et prolonge celle-ci), ou null
+     */
+    public User utilisateur(String jeton) {
+        if (jeton == null) return null;
+        Session session = sessions.get(jeton);
+        if (session == null) return null;
+        long maintenant = System.currentTimeMillis();
+        if (maintenant - session.derniereActivite > dureeInactiviteMs) {
+            sessions.remove(jeton);
+            return null;
+        }
+        session.derniereActivite = maintenant;
+        return session.user;
+    }
+
+    public void fermer(String jeton) {
+        if (jeton != null) sessions.remove(jeton);
+    }
+
+    /**
+     * Supprime les sessions expirées
+     */
+    public void purger() {
+        long limite = System.currentTimeMillis() - dureeInactiviteMs;
+        sessions.values().removeIf(s -> s.derniereActivite < limite);
+    }
+
+    public int nombreSessions() {
+        return sessions.size();
+    }
+
+    private static final class Session {
+        private final User user;
+        private volatile long derniereActivite;
+
+        private Session(User user, long derniereActivite) {
+            this.user = user;
+            this.derniereActivite = derniereActivite;
+        }
+    }
+}
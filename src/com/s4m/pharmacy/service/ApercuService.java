@@ -0,0 +1,73 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Charge en parallèle les données indépendantes du tableau de bord :
+ * le temps de chargement est celui de la requête la plus lente, pas leur somme.
+ */
+public class ApercuService {
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+
+    public ApercuService(ProductService productService, CategoryService categoryService) {
+        this.productService = productService;
+        this.categoryService = categoryService;
+    }
+
+    /**
+     * Lance les quatre lectures en parallèle ; si l'une échoue, les autres sont annulées
+     */
+    public CompletableFuture<Apercu> chargerApercu(int joursAvantExpiration) {
+        CompletableFuture<List<Category>> categories = categoryService.listerToutesLesCategoriesAsync();
+        CompletableFuture<List<Product>> produits = productService.listerTousLesProduitsAsync();
+        CompletableFuture<List<Product>> stockBas = productService.getProduitsStockBasAsync();
+        CompletableFuture<List<Product>> expirants =
+            productService.getProduitsExpirantAvantAsync(LocalDate.now().plusDays(joursAvantExpiration));
+
+        List<CompletableFuture<?>> lectures = List.of(categories, produits, stockBas, expirants);
+
+        CompletableFuture<Apercu> apercu = new CompletableFuture<>();
+        for (CompletableFuture<?> lecture : lectures) {
+            lecture.whenComplete((resultat, erreur) -> {
+                if (erreur != null) apercu.completeExceptionally(erreur);
+            });
+        }
+        CompletableFuture.allOf(categories, produits, stockBas, expirants).thenRun(() ->
+            apercu.complete(new Apercu(categories.join(), produits.join(), stockBas.join(), expirants.join())));
+        // Échec d'une lecture ou annulation par l'appelant : on libère les autres
+        apercu.whenComplete((resultat, erreur) -> {
+            if (erreur != null) lectures.forEach(lecture -> lecture.cancel(true));
+        });
+        return apercu;
+    }
+
+    /**
+     * Résultat consolidé du chargement parallèle
+     */
+    public static final class Apercu {
+        private final List<Category> categories;
+        private final List<Product> produits;
+        private final List<Product> stockBas;
+        private final List<Product> bientotExpires;
+
+        public Apercu(List<Category> categories, List<Product> produits,
+                      List<Product> stockBas, List<Product> bientotExpires) {
+            this.categories = categories;
+            this.produits = produits;
+            this.stockBas = stockBas;
+            this.bientotExpires = bientotExpires;
+        }
+
+        public List<Category> getCategories() { return categories; }
+        public List<Product> getProduits() { return produits; }
+        public List<Product> getStockBas() { return stockBas; }
+        public List<Product> getBientotExpires() { return bientotExpires; }
+    }
+}
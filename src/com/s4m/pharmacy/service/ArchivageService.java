@@ -0,0 +1,184 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivage des produits sortis de l'activité : expirés depuis plus de {@code archivage.age.jours},
+ * et, si {@code archivage.retires} le demande, retirés (stock nul et aucune modification depuis
+ * ce même délai). Un produit archivé se restaure par {@link ProductService#restaurerProduitArchive(int)} ;
+ * il n'est alors plus archivé avant {@code archivage.age.jours}, même s'il reste expiré.
+ *
+ * Les lignes sont déplacées vers {@code ProduitArchive} (et leur historique vers
+ * {@code HistoriqueStockArchive}) par lots de {@code archivage.lot}, chacun dans une transaction
+ * courte ; une pause sépare les lots pour laisser passer le trafic. Les lignes déjà verrouillées
+ * par une écriture en cours sont sautées et seront archivées au passage suivant.
+ */
+public class ArchivageService {
+
+    private static final String COLONNES_PRODUIT =
+        "id, nom, description, prix, quantite, date_expiration, id_categorie, code, id_site, created_at";
+    // Colonnes recopiées de Produit vers ProduitArchive
+    private static final String COLONNES = COLONNES_PRODUIT + ", updated_at";
+    // Restauration : la ligne compte comme modifiée (réconciliation des autres postes par updated_at)
+    // et restaure_le l'exempte d'archivage pendant archivage.age.jours
+    static final String RESTAURATION = "INSERT INTO Produit (" + COLONNES_PRODUIT + ", updated_at, restaure_le) SELECT " +
+        COLONNES_PRODUIT + ", CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM ProduitArchive WHERE id = ?";
+    private static final String NON_RESTAURES = "(restaure_le IS NULL OR restaure_le < ?)";
+    private static final String EXPIRES = NON_RESTAURES + " AND date_expiration < ?";
+    private static final String EXPIRES_OU_RETIRES = NON_RESTAURES + " AND (date_expiration < ? OR (quantite = 0 AND updated_at < ?))";
+
+    private final DatabaseConnection dbConnection = new DatabaseConnection();
+    private final boolean retires;
+    private final int ageJours;
+    private final int tailleLot;
+    private final long pauseMs;
+
+    public ArchivageService() {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        this.ageJours = (int) config.getEntier("archivage.age.jours", 90);
+        this.tailleLot = (int) Math.max(1, config.getEntier("archivage.lot", 500));
+        this.pauseMs = config.getEntier("archivage.pause.ms", 50);
+        // Un stock nul peut n'être qu'une rupture : ces produits ne partent que sur demande explicite
+        this.retires = Boolean.parseBoolean(config.getPropriete("archivage.retires", "false"));
+    }
+
+    /**
+     * Lance l'archivage périodique si {@code archivage.enabled} (faux par défaut) ; retourne
+     * le planificateur à arrêter avec l'application, ou null si l'archivage est désactivé.
+     * À n'appeler que depuis un seul processus par installation (voir {@link DatabaseConfig#isTachesPoste()}).
+     */
+    public static ScheduledExecutorService planifier() {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        if (!Boolean.parseBoolean(config.getPropriete("archivage.enabled", "false"))) return null;
+        long intervalleH = Math.max(1, config.getEntier("archivage.intervalle.heures", 24));
+        ArchivageService service = new ArchivageService();
+        ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pharmacy-archivage");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        planificateur.scheduleWithFixedDelay(service::archiverTousLesSites, 10, intervalleH * 60, TimeUnit.MINUTES);
+        return planificateur;
+    }
+
+    /**
+     * Archive les produits éligibles de chaque site ; retourne le nombre de produits archivés
+     */
+    public int archiverTousLesSites() {
+        int total = 0;
+        for (int site : DatabaseConnection.getSites()) {
+            try {
+                total += archiver(site);
+            } catch (SQLException e) {
+                System.err.println("Archivage du site " + site + " interrompu : " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) System.out.println("Archivage : " + total + " produit(s) déplacé(s) vers les archives");
+        return total;
+    }
+
+    /**
+     * Archive par lots jusqu'à épuisement des produits éligibles du site ; la progression se fait
+     * par identifiant croissant, si bien qu'une ligne verrouillée n'est pas réexaminée en boucle
+     */
+    private int archiver(int site) throws SQLException, InterruptedException {
+        LocalDate limiteExpiration = LocalDate.now().minusDays(ageJours);
+        LocalDateTime limiteActivite = LocalDateTime.now().minusDays(ageJours);
+        int total = 0;
+        int apresId = 0;
+        while (true) {
+            List<Integer> candidats;
+            // Repérage sans verrou : un balayage FOR UPDATE verrouillerait toutes les lignes parcourues
+            try (Connection conn = dbConnection.getConnectionSite(site)) {
+                candidats = selectionner(conn, "SELECT id FROM Produit WHERE id > ? AND " + criteres() + " ORDER BY id LIMIT ?",
+                    List.of(apresId), limiteExpiration, limiteActivite, tailleLot);
+            }
+            if (candidats.isEmpty()) return total;
+            total += deplacer(site, candidats, limiteExpiration, limiteActivite);
+            if (candidats.size() < tailleLot) return total;
+            apresId = candidats.get(candidats.size() - 1);
+            TimeUnit.MILLISECONDS.sleep(pauseMs);
+        }
+    }
+
+    /**
+     * Déplace un lot en une transaction courte : seules les lignes retenues sont verrouillées
+     * (par clé primaire, critères revérifiés) ; celles déjà prises par une écriture sont sautées
+     */
+    private int deplacer(int site, List<Integer> candidats, LocalDate limiteExpiration,
+                         LocalDateTime limiteActivite) throws SQLException {
+        try (Connection conn = dbConnection.getConnectionSite(site)) {
+            conn.setAutoCommit(false);
+            List<Integer> ids = selectionner(conn, "SELECT id FROM Produit WHERE id" + dans(candidats.size()) +
+                " AND " + criteres() + " FOR UPDATE SKIP LOCKED", candidats, limiteExpiration, limiteActivite, -1);
+            if (ids.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+            String dans = dans(ids.size());
+            executer(conn, "INSERT INTO ProduitArchive (" + COLONNES + ") SELECT " + COLONNES +
+                " FROM Produit WHERE id" + dans, ids);
+            executer(conn, "INSERT IGNORE INTO HistoriqueStockArchive (id_produit, jour, entrees, sorties) " +
+                "SELECT id_produit, jour, entrees, sorties FROM HistoriqueStock WHERE id_produit" + dans, ids);
+            // L'historique chaud suit par ON DELETE CASCADE
+            executer(conn, "DELETE FROM Produit WHERE id" + dans, ids);
+            conn.commit();
+            for (int id : ids) BusEvenements.publier(new EvenementDomaine.ProduitSupprime(id, site));
+            return ids.size();
+        }
+    }
+
+    private String criteres() {
+        return retires ? EXPIRES_OU_RETIRES : EXPIRES;
+    }
+
+    private static String dans(int n) {
+        return " IN (" + String.join(", ", Collections.nCopies(n, "?")) + ")";
+    }
+
+    private List<Integer> selectionner(Connection conn, String sql, List<Integer> ids, LocalDate limiteExpiration,
+                                              LocalDateTime limiteActivite, int limite) throws SQLException {
+        List<Integer> resultat = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int p = 1;
+            for (int id : ids) pstmt.setInt(p++, id);
+            pstmt.setTimestamp(p++, Timestamp.valueOf(limiteActivite));
+            pstmt.setDate(p++, Date.valueOf(limiteExpiration));
+            if (retires) pstmt.setTimestamp(p++, Timestamp.valueOf(limiteActivite));
+            if (limite > 0) pstmt.setInt(p, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) resultat.add(rs.getInt(1));
+            }
+        }
+        return resultat;
+    }
+
+    private static void executer(Connection conn, String sql, List<Integer> ids) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) pstmt.setInt(i + 1, ids.get(i));
+            pstmt.executeUpdate();
+        }
+    }
+}
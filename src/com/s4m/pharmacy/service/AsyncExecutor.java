@@ -0,0 +1,92 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.db.DatabaseConnection;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécuteur partagé des appels asynchrones des services.
+ * Le nombre de threads est aligné sur la taille du pool de connexions :
+ * des threads supplémentaires ne feraient qu'attendre une connexion.
+ * Chaque appel a un délai maximal ; l'annulation ou le dépassement du délai
+ * interrompt la tâche en cours.
+ */
+public final class AsyncExecutor {
+
+    private static final ExecutorService EXECUTOR = creerExecutor();
+    private static final Duration DELAI_DEFAUT =
+        Duration.ofMillis(DatabaseConnection.getConfig().getAsyncTimeoutMs());
+
+    private AsyncExecutor() {}
+
+    /**
+     * Exécute une tâche en arrière-plan avec le délai par défaut
+     */
+    public static <T> CompletableFuture<T> executer(Callable<T> tache) {
+        return executer(tache, DELAI_DEFAUT);
+    }
+
+    /**
+     * Exécute une tâche en arrière-plan ; le futur échoue avec TimeoutException
+     * si la tâche dépasse le délai donné
+     */
+    public static <T> CompletableFuture<T> executer(Callable<T> tache, Duration delai) {
+        return soumettre(tache).orTimeout(delai.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Exécute une tâche qui borne elle-même sa durée (délais de requête) : le futur n'est pas
+     * abandonné pendant que la base travaille encore, son issue est celle de la transaction
+     */
+    public static <T> CompletableFuture<T> executerSansDelai(Callable<T> tache) {
+        return soumettre(tache);
+    }
+
+    private static <T> CompletableFuture<T> soumettre(Callable<T> tache) {
+        CompletableFuture<T> resultat = new CompletableFuture<>();
+        // Le site et le terminal de l'appelant (requête serveur) suivent la tâche
+        Integer site = DatabaseConnection.getSiteRequete();
+        Object terminal = DatabaseConnection.getTerminal();
+        Future<?> execution = EXECUTOR.submit(() -> {
+            DatabaseConnection.definirSite(site);
+            DatabaseConnection.definirTerminal(terminal);
+            try {
+                resultat.complete(tache.call());
+            } catch (Throwable t) {
+                resultat.completeExceptionally(t);
+            } finally {
+                DatabaseConnection.definirSite(null);
+                DatabaseConnection.definirTerminal(null);
+            }
+        });
+        resultat.whenComplete((valeur, erreur) -> {
+            if (erreur instanceof CancellationException || erreur instanceof TimeoutException) {
+                execution.cancel(true);
+            }
+        });
+        return resultat;
+    }
+
+    private static ExecutorService creerExecutor() {
+        int threads = DatabaseConnection.getConfig().getPoolSize();
+        AtomicInteger compteur = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "pharmacy-async-" + compteur.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -1,64 +1,143 @@
 package com.s4m.pharmacy.service;
 
+import com.s4m.pharmacy.db.AccesDonneesException;
 import com.s4m.pharmacy.model.User;
 import com.s4m.pharmacy.util.PasswordHasher;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Service d'authentification pour gérer la connexion et déconnexion
  */
 public class AuthService {
-    
+
+    /** Vérifications PBKDF2 en attente au-delà desquelles une connexion est refusée */
+    private static final int FILE_VERIFICATIONS_MAX = 32;
+    private static final ExecutorService VERIFICATIONS = creerPoolVerifications();
+
     private UserService userService;
-    private User utilisateurConnecte;
-    
+    private volatile User utilisateurConnecte;
+
     public AuthService() {
         this.userService = new UserService();
         this.utilisateurConnecte = null;
     }
-    
+
     /**
-     * Authentifie un utilisateur avec son email et mot de passe
+     * Authentifie un utilisateur avec son email et mot de passe.
+     * Bloquant (hashage coûteux) : depuis l'interface, utiliser {@link #seConnecterAsync}.
      */
     public boolean seConnecter(String email, String motDePasse) {
-        if (email == null || email.isEmpty() || motDePasse == null || motDePasse.isEmpty()) {
-            return false;
-        }
-        
-        User user = userService.getUtilisateurParEmail(email);
+        User user = authentifier(email, motDePasse);
         if (user == null) return false;
-        
-        if (PasswordHasher.hashPassword(motDePasse).equals(user.getMotDePasse())) {
+        this.utilisateurConnecte = user;
+        return true;
+    }
+
+    /**
+     * Authentifie un utilisateur sur le pool borné de vérification, hors du thread appelant.
+     * Le futur échoue avec RejectedExecutionException si trop de connexions sont en attente.
+     */
+    public CompletableFuture<Boolean> seConnecterAsync(String email, String motDePasse) {
+        return authentifierAsync(email, motDePasse).thenApply(user -> {
+            if (user == null) return false;
             this.utilisateurConnecte = user;
             return true;
+        });
+    }
+
+    /**
+     * Vérifie des identifiants sans modifier la session de ce service
+     * (utilisé par le serveur, qui gère ses propres sessions).
+     * Retourne l'utilisateur authentifié ou null.
+     */
+    public User authentifier(String email, String motDePasse) {
+        if (email == null || email.isEmpty() || motDePasse == null || motDePasse.isEmpty()) {
+            return null;
         }
-        return false;
+
+        User user = userService.getUtilisateurParEmail(email);
+        if (user == null) return null;
+
+        if (PasswordHasher.verifyPassword(motDePasse, user.getMotDePasse())) {
+            migrerHashSiNecessaire(user, motDePasse);
+            return user;
+        }
+        return null;
     }
-    
+
+    /**
+     * Version asynchrone de {@link #authentifier}, exécutée sur le pool borné de vérification
+     */
+    public CompletableFuture<User> authentifierAsync(String email, String motDePasse) {
+        try {
+            return CompletableFuture.supplyAsync(() -> authentifier(email, motDePasse), VERIFICATIONS);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Déconnecte l'utilisateur actuel
      */
     public void seDeconnecter() {
         this.utilisateurConnecte = null;
     }
-    
+
     /**
      * Vérifie si un utilisateur est connecté
      */
     public boolean estConnecte() {
         return utilisateurConnecte != null;
     }
-    
+
     /**
      * Retourne l'utilisateur actuellement connecté
      */
     public User getUtilisateurConnecte() {
         return utilisateurConnecte;
     }
-    
+
     /**
      * Vérifie si l'utilisateur actuel est administrateur
      */
     public boolean estAdmin() {
-        return utilisateurConnecte != null && utilisateurConnecte.isAdmin();
+        User user = utilisateurConnecte;
+        return user != null && user.isAdmin();
+    }
+
+    /**
+     * Remplace un ancien hash (SHA-256 ou facteur de travail dépassé) après une connexion réussie
+     */
+    private void migrerHashSiNecessaire(User user, String motDePasse) {
+        if (!PasswordHasher.doitEtreRehashe(user.getMotDePasse())) return;
+        String nouveauHash = PasswordHasher.hashPassword(motDePasse);
+        try {
+            if (userService.mettreAJourHashMotDePasse(user.getId(), nouveauHash)) {
+                user.setMotDePasse(nouveauHash);
+            }
+        } catch (AccesDonneesException e) {
+            // La connexion reste acceptée : l'ancien hash sera remplacé à la suivante
+            System.err.println("Hash du mot de passe non migré : " + e.getMessage());
+        }
+    }
+
+    private static ExecutorService creerPoolVerifications() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger compteur = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(FILE_VERIFICATIONS_MAX), r -> {
+                Thread t = new Thread(r, "pharmacy-auth-" + compteur.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 }
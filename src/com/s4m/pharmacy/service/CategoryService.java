@@ -1,30 +1,56 @@
 package com.s4m.pharmacy.service;
 
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.AccesDonnees;
+import com.s4m.pharmacy.db.AccesDonneesException;
 import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.db.Mappeur;
+import com.s4m.pharmacy.db.UniteDeTravail;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
 import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service pour la gestion des catégories (CRUD)
  */
 public class CategoryService {
     
+    private static final Mappeur<Category> CATEGORIE = new Mappeur<>(c -> {
+        int id = c.index("id");
+        int nom = c.index("nom");
+        int description = c.index("description");
+        int version = c.indexOptionnel("version");
+        return rs -> {
+            Category categorie = new Category(rs.getInt(id), rs.getString(nom), rs.getString(description));
+            if (version > 0) categorie.setVersion(rs.getInt(version));
+            return categorie;
+        };
+    });
+    
     private DatabaseConnection dbConnection;
+    private final AccesDonnees lecture;
+    private final AccesDonnees primaire;
+    private ProductService produits;
     
     public CategoryService() {
         this.dbConnection = new DatabaseConnection();
+        this.lecture = new AccesDonnees(dbConnection::getConnectionLecture);
+        this.primaire = new AccesDonnees(dbConnection::getConnection);
     }
     
     /**
-     * Ajoute une nouvelle catégorie
+     * Ajoute une nouvelle catégorie ; retourne son identifiant
+     *
+     * @throws AccesDonneesException si la base refuse l'écriture ou ne répond pas
      */
     public int ajouterCategorie(Category category) {
-        if (category.getNom() == null || category.getNom().trim().isEmpty()) {
-            throw new IllegalArgumentException("Le nom de la catégorie est requis");
-        }
+        validerCategorie(category);
         
         String sql = "INSERT INTO Categorie (nom, description) VALUES (?, ?)";
         try (Connection conn = dbConnection.getConnection();
@@ -35,121 +61,248 @@ public class CategoryService {
             pstmt.executeUpdate();
             
             try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    category.setId(rs.getInt(1));
-                    return category.getId();
-                }
+                if (!rs.next()) throw new SQLException("Identifiant de la catégorie non retourné");
+                category.setId(rs.getInt(1));
             }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new IllegalArgumentException("Catégorie refusée par la base : " + e.getMessage(), e);
         } catch (SQLException e) {
-            System.err.println("Erreur lors de l'ajout de la catégorie : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return -1;
+        repliquer(category);
+        Audit.publier("Categorie", category.getId(), Audit.AJOUT, null, Audit.valeurs(category));
+        BusEvenements.publier(new EvenementDomaine.CategorieModifiee(category.getId(), category,
+            EvenementDomaine.Nature.AJOUT));
+        return category.getId();
     }
     
     /**
      * Récupère une catégorie par son ID
      */
     public Category getCategorieParId(int id) {
-        return executerSelect("SELECT * FROM Categorie WHERE id = ?", 
-            pstmt -> pstmt.setInt(1, id));
+        return lecture.un("SELECT * FROM Categorie WHERE id = ?", pstmt -> pstmt.setInt(1, id), CATEGORIE);
     }
     
     /**
      * Liste toutes les catégories
      */
     public List<Category> listerToutesLesCategories() {
-        return executerSelectListe("SELECT * FROM Categorie ORDER BY nom");
+        return lecture.liste("SELECT * FROM Categorie ORDER BY nom", null, CATEGORIE);
+    }
+    
+    /**
+     * Comme {@link #listerToutesLesCategories()}, lu sur la base principale (réponses partagées en cache)
+     */
+    public List<Category> listerToutesLesCategoriesSurPrimaire() {
+        return primaire.liste("SELECT * FROM Categorie ORDER BY nom", null, CATEGORIE);
     }
     
     /**
      * Recherche des catégories par nom
      */
     public List<Category> rechercherCategories(String termeRecherche) {
-        return executerSelectListe("SELECT * FROM Categorie WHERE nom LIKE ? ORDER BY nom",
-            pstmt -> pstmt.setString(1, "%" + termeRecherche + "%"));
+        return lecture.liste("SELECT * FROM Categorie WHERE nom LIKE ? ORDER BY nom",
+            pstmt -> pstmt.setString(1, "%" + termeRecherche + "%"), CATEGORIE);
+    }
+    
+    // ==================== API ASYNCHRONE ====================
+    
+    public CompletableFuture<Category> getCategorieParIdAsync(int id) {
+        return AsyncExecutor.executer(() -> getCategorieParId(id));
+    }
+    
+    public CompletableFuture<List<Category>> listerToutesLesCategoriesAsync() {
+        return AsyncExecutor.executer(this::listerToutesLesCategories);
+    }
+    
+    public CompletableFuture<List<Category>> rechercherCategoriesAsync(String termeRecherche) {
+        return AsyncExecutor.executer(() -> rechercherCategories(termeRecherche));
     }
     
     /**
-     * Modifie une catégorie
+     * Modifie une catégorie si sa version n'a pas changé depuis sa lecture ; sinon
+     * {@link ConflitVersionException} porte la catégorie actuelle. La ligne lue sans verrou sert
+     * d'image « avant » à l'audit : la mise à jour conditionnée par la version garantit que c'est
+     * bien elle qui est remplacée. Retourne false si la catégorie n'existe pas (ou plus).
+     *
+     * @throws AccesDonneesException si la base refuse l'écriture ou ne répond pas
      */
     public boolean modifierCategorie(Category category) {
-        if (category.getNom() == null || category.getNom().trim().isEmpty()) {
-            throw new IllegalArgumentException("Le nom de la catégorie est requis");
-        }
+        validerCategorie(category);
         
-        String sql = "UPDATE Categorie SET nom = ?, description = ? WHERE id = ?";
+        String sql = "UPDATE Categorie SET nom = ?, description = ?, version = version + 1 WHERE id = ? AND version = ?";
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
+            Category avant = lire(conn, category.getId());
+            if (avant == null) return false;
+            if (avant.getVersion() != category.getVersion()) throw new ConflitVersionException(avant);
             pstmt.setString(1, category.getNom());
             pstmt.setString(2, category.getDescription());
             pstmt.setInt(3, category.getId());
-            return pstmt.executeUpdate() > 0;
+            pstmt.setInt(4, category.getVersion());
+            if (pstmt.executeUpdate() == 0) {
+                Category actuelle = lire(conn, category.getId());
+                if (actuelle == null) return false;
+                throw new ConflitVersionException(actuelle);
+            }
+            category.setVersion(category.getVersion() + 1);
+            repliquer(category);
+            Audit.publier("Categorie", category.getId(), Audit.MODIFICATION, Audit.valeurs(avant), Audit.valeurs(category));
+            BusEvenements.publier(new EvenementDomaine.CategorieModifiee(category.getId(), category,
+                EvenementDomaine.Nature.MODIFICATION));
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new IllegalArgumentException("Catégorie refusée par la base : " + e.getMessage(), e);
         } catch (SQLException e) {
-            System.err.println("Erreur lors de la modification de la catégorie : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return false;
     }
     
     /**
-     * Supprime une catégorie
+     * Supprime une catégorie. La suppression est conditionnée par la version lue (image « avant »
+     * de l'audit) ; modifiée entre-temps, la catégorie est relue et la suppression retentée.
+     * Retourne false si la catégorie n'existe pas (ou plus) ou si des produits d'un site l'utilisent.
+     *
+     * @throws AccesDonneesException si une base ne répond pas : dans le doute, rien n'est supprimé
      */
     public boolean supprimerCategorie(int id) {
-        return executerUpdate("DELETE FROM Categorie WHERE id = ?", pstmt -> pstmt.setInt(1, id));
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Categorie WHERE id = ? AND version = ?")) {
+            // Les produits des autres sites ne sont pas couverts par la clé étrangère de la base principale
+            if (estUtiliseeDansUnSite(id)) return false;
+            Category avant;
+            do {
+                avant = lire(conn, id);
+                if (avant == null) return false;
+                pstmt.setInt(1, id);
+                pstmt.setInt(2, avant.getVersion());
+            } while (pstmt.executeUpdate() == 0);
+            supprimerDesSites(id);
+            Audit.publier("Categorie", id, Audit.SUPPRESSION, Audit.valeurs(avant), null);
+            BusEvenements.publier(new EvenementDomaine.CategorieModifiee(id, null, EvenementDomaine.Nature.SUPPRESSION));
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return false; // produits de la base principale (ON DELETE RESTRICT)
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
     }
     
-    private Category creerCategorieDepuisResultSet(ResultSet rs) throws SQLException {
-        Category c = new Category();
-        c.setId(rs.getInt("id"));
-        c.setNom(rs.getString("nom"));
-        c.setDescription(rs.getString("description"));
-        return c;
+    // ==================== OPÉRATIONS EN UNE UNITÉ DE TRAVAIL ====================
+    
+    /**
+     * Crée la catégorie et ses produits (site courant) en une transaction : tout ou rien ;
+     * retourne l'identifiant de la catégorie
+     */
+    public int ajouterCategorieAvecProduits(Category category, List<Product> produits) throws SQLException {
+        return UniteDeTravail.executer(() -> {
+            int id = ajouterCategorie(category);
+            for (Product p : produits) {
+                p.setIdCategorie(id);
+                produitsService().ajouterProduit(p);
+            }
+            return id;
+        });
     }
     
-    private Category executerSelect(String sql, Setter setter) {
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setter.set(pstmt);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next() ? creerCategorieDepuisResultSet(rs) : null;
+    /**
+     * Déplace les produits de la catégorie (tous les sites) vers {@code idRemplacement} puis la
+     * supprime, en une transaction par base ; retourne le nombre de produits déplacés
+     */
+    public int supprimerCategorie(int id, int idRemplacement) throws SQLException {
+        if (id == idRemplacement) throw new IllegalArgumentException("La catégorie de remplacement doit être différente");
+        return UniteDeTravail.executer(() -> {
+            boolean ecoute = BusEvenements.estEcoute(EvenementDomaine.ProduitModifie.class);
+            int deplaces = 0;
+            for (int site : DatabaseConnection.getSites()) {
+                try (Connection conn = dbConnection.getConnectionSite(site)) {
+                    // Lignes verrouillées puis relues pour les abonnés seulement
+                    List<Product> produits = ecoute
+                        ? produitsService().lireProduits(conn, "SELECT * FROM Produit WHERE id_categorie = ? FOR UPDATE",
+                            pstmt -> pstmt.setInt(1, id))
+                        : List.of();
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "UPDATE Produit SET id_categorie = ?, version = version + 1 WHERE id_categorie = ?")) {
+                        pstmt.setInt(1, idRemplacement);
+                        pstmt.setInt(2, id);
+                        deplaces += pstmt.executeUpdate();
+                    }
+                    for (Product p : produits) {
+                        p.setIdCategorie(idRemplacement);
+                        p.setVersion(p.getVersion() + 1);
+                        BusEvenements.publier(new EvenementDomaine.ProduitModifie(p, site));
+                    }
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-            return null;
-        }
+            if (!supprimerCategorie(id)) throw new SQLException("Catégorie " + id + " non supprimée");
+            return deplaces;
+        });
     }
     
-    private List<Category> executerSelectListe(String sql) {
-        return executerSelectListe(sql, null);
+    private ProductService produitsService() {
+        if (produits == null) produits = new ProductService();
+        return produits;
     }
     
-    private List<Category> executerSelectListe(String sql, Setter setter) {
-        List<Category> list = new ArrayList<>();
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            if (setter != null) setter.set(pstmt);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) list.add(creerCategorieDepuisResultSet(rs));
+    // ==================== RÉPLICATION VERS LES SITES ====================
+    
+    /**
+     * Recopie la catégorie dans les bases de sites ; une base injoignable sera
+     * resynchronisée au prochain démarrage (initialisation des sites)
+     */
+    private void repliquer(Category category) {
+        for (int site : sitesDedies()) {
+            try (Connection conn = dbConnection.getConnectionSite(site);
+                 PreparedStatement pstmt = conn.prepareStatement(DatabaseConnection.COPIE_CATEGORIE)) {
+                pstmt.setInt(1, category.getId());
+                pstmt.setString(2, category.getNom());
+                pstmt.setString(3, category.getDescription());
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                System.err.println("Catégorie non recopiée sur le site " + site + " : " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
         }
-        return list;
     }
     
-    private boolean executerUpdate(String sql, Setter setter) {
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setter.set(pstmt);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-            return false;
+    private boolean estUtiliseeDansUnSite(int id) throws SQLException {
+        for (int site : sitesDedies()) {
+            try (Connection conn = dbConnection.getConnectionSite(site);
+                 PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM Produit WHERE id_categorie = ? LIMIT 1")) {
+                pstmt.setInt(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private void supprimerDesSites(int id) {
+        for (int site : sitesDedies()) {
+            try (Connection conn = dbConnection.getConnectionSite(site);
+                 PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Categorie WHERE id = ?")) {
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                System.err.println("Catégorie non supprimée du site " + site + " : " + e.getMessage());
+            }
         }
     }
     
-    @FunctionalInterface
-    private interface Setter {
-        void set(PreparedStatement pstmt) throws SQLException;
+    private static List<Integer> sitesDedies() {
+        List<Integer> sites = new ArrayList<>(DatabaseConnection.getSites());
+        sites.remove(Integer.valueOf(DatabaseConnection.getSiteParDefaut()));
+        return sites;
+    }
+    
+    private Category lire(Connection conn, int id) throws SQLException {
+        return AccesDonnees.un(conn, "SELECT * FROM Categorie WHERE id = ?", pstmt -> pstmt.setInt(1, id), CATEGORIE);
+    }
+    
+    protected void validerCategorie(Category category) {
+        if (category.getNom() == null || category.getNom().trim().isEmpty()) {
+            throw new IllegalArgumentException("Le nom de la catégorie est requis");
+        }
     }
 }
@@ -0,0 +1,103 @@
+package com.s4m.pharmacy.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Encodage compact d'un instantané de stock : suite d'entrées triées par identifiant de
+ * produit, chacune codée par deux varints (écart d'identifiant avec l'entrée précédente,
+ * variation de quantité en zigzag). Un instantané complet est une variation depuis un
+ * stock vide ; un produit absent a une quantité nulle.
+ *
+ * <pre>
+ * varint   nombre d'entrées
+ * entrée : varint écart d'id, varint zigzag(variation)
+ * </pre>
+ * Un catalogue de 100 000 produits tient dans environ 300 Ko complet, et un jour ordinaire
+ * (quelques centaines de produits mouvementés) dans un Ko environ.
+ */
+final class CodageInstantane {
+
+    private CodageInstantane() {}
+
+    /**
+     * Variations qui font passer de {@code avant} à {@code apres} (quantités nulles omises)
+     */
+    static byte[] encoder(Map<Integer, Integer> avant, Map<Integer, Integer> apres) {
+        TreeSet<Integer> ids = new TreeSet<>(avant.keySet());
+        ids.addAll(apres.keySet());
+        int[] entrees = new int[ids.size() * 2];
+        int n = 0;
+        for (int id : ids) {
+            int variation = apres.getOrDefault(id, 0) - avant.getOrDefault(id, 0);
+            if (variation == 0) continue;
+            entrees[n++] = id;
+            entrees[n++] = variation;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + n * 2);
+        ecrireVarint(out, n / 2);
+        int precedent = 0;
+        for (int i = 0; i < n; i += 2) {
+            ecrireVarint(out, entrees[i] - precedent);
+            ecrireVarint(out, (entrees[i + 1] << 1) ^ (entrees[i + 1] >> 31));
+            precedent = entrees[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Applique les variations à {@code etat} (les quantités devenues nulles sont retirées)
+     */
+    static void appliquer(byte[] donnees, Map<Integer, Integer> etat) {
+        int[] pos = {0};
+        int nombre = lireVarint(donnees, pos);
+        int id = 0;
+        for (int i = 0; i < nombre; i++) {
+            id += lireVarint(donnees, pos);
+            int variation = zigzag(lireVarint(donnees, pos));
+            int quantite = etat.getOrDefault(id, 0) + variation;
+            if (quantite == 0) etat.remove(id);
+            else etat.put(id, quantite);
+        }
+    }
+
+    /**
+     * Variation d'un seul produit, sans reconstruire l'état : le parcours s'arrête
+     * dès que l'identifiant est dépassé
+     */
+    static int variation(byte[] donnees, int idProduit) {
+        int[] pos = {0};
+        int nombre = lireVarint(donnees, pos);
+        int id = 0;
+        for (int i = 0; i < nombre; i++) {
+            id += lireVarint(donnees, pos);
+            int variation = zigzag(lireVarint(donnees, pos));
+            if (id == idProduit) return variation;
+            if (id > idProduit) return 0;
+        }
+        return 0;
+    }
+
+    private static void ecrireVarint(ByteArrayOutputStream out, int valeur) {
+        while ((valeur & ~0x7F) != 0) {
+            out.write((valeur & 0x7F) | 0x80);
+            valeur >>>= 7;
+        }
+        out.write(valeur);
+    }
+
+    private static int lireVarint(byte[] donnees, int[] pos) {
+        int valeur = 0;
+        for (int decalage = 0; decalage < 32; decalage += 7) {
+            byte b = donnees[pos[0]++];
+            valeur |= (b & 0x7F) << decalage;
+            if (b >= 0) return valeur;
+        }
+        throw new IllegalStateException("Instantané de stock corrompu (varint trop long)");
+    }
+
+    private static int zigzag(int valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+}
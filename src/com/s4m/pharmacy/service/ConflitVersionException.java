@@ -0,0 +1,37 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.model.Category;
+import com.s4m.pharmacy.model.Product;
+
+/**
+ * Modification refusée : la ligne a changé depuis sa lecture (version différente).
+ * Porte la ligne actuelle, pour que l'écran propose une fusion plutôt que d'écraser.
+ */
+public class ConflitVersionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // Modèles non sérialisables : lignes perdues si l'exception est sérialisée
+    private final transient Product produitActuel;
+    private final transient Category categorieActuelle;
+
+    public ConflitVersionException(Product actuel) {
+        super("Produit « " + actuel.getNom() + " » modifié entre-temps par un autre poste");
+        this.produitActuel = actuel;
+        this.categorieActuelle = null;
+    }
+
+    public ConflitVersionException(Category actuelle) {
+        super("Catégorie « " + actuelle.getNom() + " » modifiée entre-temps par un autre poste");
+        this.produitActuel = null;
+        this.categorieActuelle = actuelle;
+    }
+
+    public Product getProduitActuel() {
+        return produitActuel;
+    }
+
+    public Category getCategorieActuelle() {
+        return categorieActuelle;
+    }
+}
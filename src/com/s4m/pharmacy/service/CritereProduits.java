@@ -0,0 +1,186 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.util.Montant;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Critères combinables d'une recherche de produits (« antibiotiques expirant avant juin
+ * avec un stock inférieur à 20 »), traduits en une seule requête paramétrée par
+ * {@link ProductService#rechercherProduits(CritereProduits)}. Un critère non renseigné
+ * ne filtre pas ; les bornes sont incluses.
+ *
+ * Index composites associés : (id_categorie, date_expiration), (id_categorie, quantite)
+ * et (quantite, date_expiration).
+ */
+public class CritereProduits {
+
+    public enum Tri {
+        NOM("nom"), PRIX("prix"), QUANTITE("quantite"), EXPIRATION("date_expiration");
+
+        final String colonne;
+
+        Tri(String colonne) {
+            this.colonne = colonne;
+        }
+    }
+
+    private String nom;
+    private Integer idCategorie;
+    private LocalDate expirationMin;
+    private LocalDate expirationMax;
+    private Integer quantiteMin;
+    private Integer quantiteMax;
+    private Long prixMinCentimes;
+    private Long prixMaxCentimes;
+    private Tri tri = Tri.NOM;
+    private boolean decroissant;
+    private int limite;
+
+    /**
+     * Nom contenant le terme (insensible à la casse)
+     */
+    public CritereProduits nom(String terme) {
+        this.nom = terme == null || terme.isBlank() ? null : terme.trim();
+        return this;
+    }
+
+    public CritereProduits categorie(Integer idCategorie) {
+        this.idCategorie = idCategorie;
+        return this;
+    }
+
+    public CritereProduits expirationEntre(LocalDate min, LocalDate max) {
+        this.expirationMin = min;
+        this.expirationMax = max;
+        return this;
+    }
+
+    public CritereProduits quantiteEntre(Integer min, Integer max) {
+        this.quantiteMin = min;
+        this.quantiteMax = max;
+        return this;
+    }
+
+    /**
+     * Bornes de prix en centimes
+     */
+    public CritereProduits prixEntre(Long minCentimes, Long maxCentimes) {
+        this.prixMinCentimes = minCentimes;
+        this.prixMaxCentimes = maxCentimes;
+        return this;
+    }
+
+    public CritereProduits trierPar(Tri tri, boolean decroissant) {
+        this.tri = tri != null ? tri : Tri.NOM;
+        this.decroissant = decroissant;
+        return this;
+    }
+
+    /**
+     * Nombre maximal de produits retournés (0 : pas de limite)
+     */
+    public CritereProduits limite(int limite) {
+        if (limite < 0) throw new IllegalArgumentException("La limite ne peut pas être négative");
+        this.limite = limite;
+        return this;
+    }
+
+    public String getNom() { return nom; }
+    public Integer getIdCategorie() { return idCategorie; }
+    public LocalDate getExpirationMin() { return expirationMin; }
+    public LocalDate getExpirationMax() { return expirationMax; }
+    public Integer getQuantiteMin() { return quantiteMin; }
+    public Integer getQuantiteMax() { return quantiteMax; }
+    public Long getPrixMinCentimes() { return prixMinCentimes; }
+    public Long getPrixMaxCentimes() { return prixMaxCentimes; }
+    public Tri getTri() { return tri; }
+    public boolean isDecroissant() { return decroissant; }
+    public int getLimite() { return limite; }
+
+    // ==================== TRADUCTION SQL ====================
+
+    /**
+     * Clause WHERE (vide si aucun critère) ; les valeurs sont ajoutées à {@code valeurs}
+     * dans l'ordre des paramètres
+     */
+    String clauseWhere(List<Object> valeurs) {
+        List<String> conditions = new ArrayList<>();
+        if (nom != null) {
+            conditions.add("nom LIKE ?");
+            valeurs.add("%" + nom + "%");
+        }
+        ajouter(conditions, valeurs, "id_categorie = ?", idCategorie);
+        ajouter(conditions, valeurs, "date_expiration >= ?", expirationMin);
+        ajouter(conditions, valeurs, "date_expiration <= ?", expirationMax);
+        ajouter(conditions, valeurs, "quantite >= ?", quantiteMin);
+        ajouter(conditions, valeurs, "quantite <= ?", quantiteMax);
+        ajouter(conditions, valeurs, "prix >= ?", prixMinCentimes != null ? Montant.versDecimal(prixMinCentimes) : null);
+        ajouter(conditions, valeurs, "prix <= ?", prixMaxCentimes != null ? Montant.versDecimal(prixMaxCentimes) : null);
+        return conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Ordre stable : l'identifiant départage les ex aequo, pour une limite déterministe
+     */
+    String clauseOrderBy() {
+        String sens = decroissant ? " DESC" : "";
+        return "ORDER BY " + tri.colonne + sens + ", id" + sens;
+    }
+
+    /**
+     * Lie les valeurs collectées par {@link #clauseWhere(List)} (et les suivantes) dans l'ordre
+     */
+    static void lier(PreparedStatement pstmt, List<Object> valeurs) throws SQLException {
+        int i = 1;
+        for (Object valeur : valeurs) {
+            if (valeur instanceof LocalDate) pstmt.setDate(i++, Date.valueOf((LocalDate) valeur));
+            else pstmt.setObject(i++, valeur);
+        }
+    }
+
+    private static void ajouter(List<String> conditions, List<Object> valeurs, String condition, Object valeur) {
+        if (valeur == null) return;
+        conditions.add(condition);
+        valeurs.add(valeur);
+    }
+
+    // ==================== ÉVALUATION EN MÉMOIRE ====================
+
+    /**
+     * Même filtre appliqué à un produit déjà chargé (instantané hors ligne)
+     */
+    public boolean accepte(Product p) {
+        if (nom != null && (p.getNom() == null
+                || !p.getNom().toLowerCase(Locale.ROOT).contains(nom.toLowerCase(Locale.ROOT)))) return false;
+        if (idCategorie != null && p.getIdCategorie() != idCategorie) return false;
+        LocalDate date = p.getDateExpiration();
+        if (expirationMin != null && (date == null || date.isBefore(expirationMin))) return false;
+        if (expirationMax != null && (date == null || date.isAfter(expirationMax))) return false;
+        if (quantiteMin != null && p.getQuantite() < quantiteMin) return false;
+        if (quantiteMax != null && p.getQuantite() > quantiteMax) return false;
+        if (prixMinCentimes != null && p.getPrixCentimes() < prixMinCentimes) return false;
+        return prixMaxCentimes == null || p.getPrixCentimes() <= prixMaxCentimes;
+    }
+
+    public Comparator<Product> ordre() {
+        Comparator<Product> ordre;
+        switch (tri) {
+            case PRIX: ordre = Comparator.comparingLong(Product::getPrixCentimes); break;
+            case QUANTITE: ordre = Comparator.comparingInt(Product::getQuantite); break;
+            case EXPIRATION: ordre = Comparator.comparing(Product::getDateExpiration,
+                Comparator.nullsLast(Comparator.naturalOrder())); break;
+            default: ordre = Comparator.comparing(Product::getNom, String.CASE_INSENSITIVE_ORDER);
+        }
+        ordre = ordre.thenComparingInt(Product::getId);
+        return decroissant ? ordre.reversed() : ordre;
+    }
+}
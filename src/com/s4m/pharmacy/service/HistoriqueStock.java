@@ -0,0 +1,94 @@
+package com.s4m.pharmacy.service;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Série temporelle compacte des mouvements de stock : une ligne par produit et par jour
+ * (table {@code HistoriqueStock}), cumulant entrées et sorties.
+ */
+final class HistoriqueStock {
+
+    private static final String SQL_CUMUL =
+        "INSERT INTO HistoriqueStock (id_produit, jour, entrees, sorties) VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE entrees = entrees + VALUES(entrees), sorties = sorties + VALUES(sorties)";
+
+    private HistoriqueStock() {}
+
+    /**
+     * Cumule une variation de quantité dans la ligne du jour, sur la connexion (et donc
+     * la transaction) de l'écriture produit
+     */
+    static void enregistrer(Connection conn, int idProduit, int variation) throws SQLException {
+        if (variation == 0) return;
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_CUMUL)) {
+            lier(pstmt, idProduit, variation, Date.valueOf(LocalDate.now()));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Variante groupée (ajustements d'inventaire) : une seule instruction envoyée en lot
+     */
+    static void enregistrer(Connection conn, Map<Integer, Integer> variations) throws SQLException {
+        Date jour = Date.valueOf(LocalDate.now());
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_CUMUL)) {
+            boolean vide = true;
+            for (Map.Entry<Integer, Integer> v : variations.entrySet()) {
+                if (v.getValue() == 0) continue;
+                lier(pstmt, v.getKey(), v.getValue(), jour);
+                pstmt.addBatch();
+                vide = false;
+            }
+            if (!vide) pstmt.executeBatch();
+        }
+    }
+
+    private static void lier(PreparedStatement pstmt, int idProduit, int variation, Date jour) throws SQLException {
+        pstmt.setInt(1, idProduit);
+        pstmt.setDate(2, jour);
+        pstmt.setInt(3, Math.max(variation, 0));
+        pstmt.setInt(4, Math.max(-variation, 0));
+    }
+
+    /**
+     * Plus récente mise à jour de l'historique (filigrane des lectures incrémentales)
+     */
+    static LocalDateTime derniereModification(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT MAX(updated_at) FROM HistoriqueStock");
+             ResultSet rs = pstmt.executeQuery()) {
+            Timestamp ts = rs.next() ? rs.getTimestamp(1) : null;
+            return ts != null ? ts.toLocalDateTime() : null;
+        }
+    }
+
+    /**
+     * Parcourt les sorties journalières à partir de {@code debut}, limitées aux lignes
+     * modifiées depuis {@code depuis} si celui-ci est renseigné
+     */
+    static void lireSorties(Connection conn, LocalDate debut, LocalDateTime depuis, Lecteur lecteur) throws SQLException {
+        String sql = "SELECT id_produit, jour, sorties FROM HistoriqueStock WHERE jour >= ?" +
+                     (depuis != null ? " AND updated_at >= ?" : "");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(debut));
+            if (depuis != null) pstmt.setTimestamp(2, Timestamp.valueOf(depuis));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    lecteur.lire(rs.getInt(1), rs.getDate(2).toLocalDate(), rs.getInt(3));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Lecteur {
+        void lire(int idProduit, LocalDate jour, int sorties);
+    }
+}
@@ -0,0 +1,112 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.model.Product;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Index en mémoire code-barres → identifiant produit, chargé une fois puis tenu
+ * à jour par les écritures du service. Une entrée périmée (code modifié par un autre
+ * poste) est détectée à la lecture et retirée par l'appelant.
+ *
+ * Les lignes complètes lues par code sont gardées un court instant : des lectures répétées
+ * du même produit (plusieurs boîtes à la caisse) ne retournent pas en base. Une écriture
+ * du service sur le produit les écarte aussitôt.
+ */
+class IndexCodes {
+
+    private final Map<String, Integer> idParCode = new ConcurrentHashMap<>();
+    private final Map<Integer, String> codeParId = new ConcurrentHashMap<>();
+    private final Map<Integer, Ligne> lignes = new ConcurrentHashMap<>();
+    private volatile boolean charge;
+
+    /**
+     * Retourne l'identifiant associé au code, ou -1 ; charge l'index au premier appel
+     */
+    int getId(String code, Source source) {
+        if (!charge) charger(source);
+        return getIdSiCharge(code);
+    }
+
+    /**
+     * Comme {@link #getId} sans jamais charger : -1 tant que l'index n'est pas prêt
+     */
+    int getIdSiCharge(String code) {
+        if (!charge) return -1;
+        Integer id = idParCode.get(code);
+        return id != null ? id : -1;
+    }
+
+    void precharger(Source source) {
+        if (!charge) charger(source);
+    }
+
+    void indexer(Product p) {
+        retirer(p.getId());
+        if (p.getCode() == null) return;
+        idParCode.put(p.getCode(), p.getId());
+        codeParId.put(p.getId(), p.getCode());
+    }
+
+    void retirer(int id) {
+        lignes.remove(id);
+        String ancien = codeParId.remove(id);
+        if (ancien != null) idParCode.remove(ancien, id);
+    }
+
+    /**
+     * Garde une copie de la ligne complète lue en base
+     */
+    void memoriser(Product p) {
+        lignes.put(p.getId(), new Ligne(copier(p), System.nanoTime()));
+    }
+
+    /**
+     * Copie de la ligne gardée si elle a moins de {@code fraicheurNanos}, sinon null
+     */
+    Product ligneRecente(int id, long fraicheurNanos) {
+        Ligne ligne = lignes.get(id);
+        if (ligne == null) return null;
+        if (System.nanoTime() - ligne.lue > fraicheurNanos) {
+            lignes.remove(id, ligne);
+            return null;
+        }
+        return copier(ligne.produit);
+    }
+
+    /**
+     * Un échec de chargement remonte à l'appelant : l'index sera rechargé à l'appel suivant
+     */
+    private synchronized void charger(Source source) {
+        if (charge) return;
+        source.parcourir(this::indexer);
+        charge = true;
+    }
+
+    // Les appelants peuvent modifier le produit retourné : la ligne gardée n'est jamais partagée
+    private static Product copier(Product p) {
+        Product copie = new Product(p.getId(), p.getNom(), p.getDescription(), p.getPrixCentimes(), p.getQuantite(),
+            p.getDateExpiration(), p.getIdCategorie());
+        copie.setCode(p.getCode());
+        copie.setIdSite(p.getIdSite());
+        copie.setVersion(p.getVersion());
+        return copie;
+    }
+
+    private static final class Ligne {
+        private final Product produit;
+        private final long lue;
+
+        private Ligne(Product produit, long lue) {
+            this.produit = produit;
+            this.lue = lue;
+        }
+    }
+
+    @FunctionalInterface
+    interface Source {
+        void parcourir(Consumer<Product> consommateur);
+    }
+}
@@ -0,0 +1,315 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instantanés quotidiens du stock de chaque site ({@code InstantaneStock}), pour répondre
+ * à « quel était le stock de ce produit à telle date ».
+ *
+ * Un instantané complet est écrit tous les {@code instantane.complet.jours} ; les jours
+ * intermédiaires ne stockent que les variations depuis l'instantané précédent
+ * ({@link CodageInstantane}). Une date se reconstruit à partir du dernier complet qui la
+ * précède, en appliquant au plus {@code instantane.complet.jours} différentiels.
+ *
+ * Au démarrage, les jours passés restés sans instantané (application arrêtée à l'heure prévue)
+ * sont reconstitués à partir du stock actuel et des mouvements ({@code HistoriqueStock}) ; le
+ * jour en cours n'est écrit que par le passage quotidien.
+ */
+public class InstantaneStockService {
+
+    private static final String CHAINE =
+        "SELECT jour, complet, donnees FROM InstantaneStock WHERE jour <= ? AND jour >= COALESCE(" +
+        "(SELECT MAX(jour) FROM InstantaneStock WHERE complet AND jour <= ?), '1000-01-01') ORDER BY jour";
+
+    private final DatabaseConnection dbConnection = new DatabaseConnection();
+    private final int intervalleComplet;
+
+    public InstantaneStockService() {
+        this.intervalleComplet = (int) Math.max(1,
+            DatabaseConnection.getConfig().getEntier("instantane.complet.jours", 30));
+    }
+
+    /**
+     * Lance les instantanés si {@code instantane.enabled} (vrai par défaut) : rattrapage des jours
+     * passés manquants peu après le démarrage, puis chaque jour à {@code instantane.heure} ; retourne le planificateur à
+     * arrêter avec l'application, ou null si les instantanés sont désactivés.
+     * À n'appeler que depuis un seul processus par installation (voir {@link DatabaseConfig#isTachesPoste()}).
+     */
+    public static ScheduledExecutorService planifier() {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        if (!Boolean.parseBoolean(config.getPropriete("instantane.enabled", "true"))) return null;
+        int heure = (int) Math.min(23, Math.max(0, config.getEntier("instantane.heure", 23)));
+        InstantaneStockService service = new InstantaneStockService();
+        ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pharmacy-instantanes");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        // Jours manqués pendant que l'application était arrêtée
+        planificateur.schedule(service::rattraperTousLesSites, 2, TimeUnit.MINUTES);
+        LocalDateTime maintenant = LocalDateTime.now();
+        LocalDateTime prochain = maintenant.toLocalDate().atTime(heure, 0);
+        if (!prochain.isAfter(maintenant)) prochain = prochain.plusDays(1);
+        planificateur.scheduleAtFixedRate(service::prendreTousLesSites,
+            Duration.between(maintenant, prochain).toMinutes(), TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+        return planificateur;
+    }
+
+    /**
+     * Prend l'instantané du jour de chaque site ; un site en échec n'empêche pas les suivants
+     */
+    public void prendreTousLesSites() {
+        for (int site : DatabaseConnection.getSites()) {
+            try {
+                prendre(site);
+            } catch (SQLException e) {
+                System.err.println("Instantané de stock du site " + site + " impossible : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reconstitue les jours passés manquants de chaque site ; un site en échec n'empêche pas les suivants
+     */
+    public void rattraperTousLesSites() {
+        for (int site : DatabaseConnection.getSites()) {
+            try {
+                int jours = rattraper(site);
+                if (jours > 0) System.out.println("Instantanés de stock du site " + site + " : " + jours + " jour(s) rattrapé(s)");
+            } catch (SQLException e) {
+                System.err.println("Rattrapage des instantanés du site " + site + " impossible : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Écrit les instantanés des jours compris entre le dernier instantané et aujourd'hui (exclu) :
+     * l'état de fin de chaque jour est le stock actuel diminué des mouvements enregistrés depuis.
+     * Sans instantané antérieur, rien n'est écrit. Retourne le nombre de jours écrits.
+     *
+     * Les produits supprimés depuis (historique effacé avec eux) sont absents des jours rattrapés.
+     */
+    public int rattraper(int site) throws SQLException {
+        LocalDate aujourdHui = LocalDate.now();
+        try (Connection conn = dbConnection.getConnectionSite(site)) {
+            // Stock et mouvements lus dans le même instantané de lecture
+            conn.setAutoCommit(false);
+            try {
+                LocalDate dernier = null;
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT MAX(jour) FROM InstantaneStock WHERE jour < ?")) {
+                    pstmt.setDate(1, Date.valueOf(aujourdHui));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next() && rs.getDate(1) != null) dernier = rs.getDate(1).toLocalDate();
+                    }
+                }
+                if (dernier == null || !dernier.plusDays(1).isBefore(aujourdHui)) {
+                    conn.commit();
+                    return 0;
+                }
+
+                // Mouvements nets par jour depuis le dernier instantané (jour en cours compris)
+                Map<LocalDate, Map<Integer, Integer>> mouvements = new HashMap<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT jour, id_produit, entrees - sorties FROM HistoriqueStock WHERE jour > ?")) {
+                    pstmt.setDate(1, Date.valueOf(dernier));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            mouvements.computeIfAbsent(rs.getDate(1).toLocalDate(), j -> new HashMap<>())
+                                .merge(rs.getInt(2), rs.getInt(3), Integer::sum);
+                        }
+                    }
+                }
+                Map<Integer, Integer> etat = stockActuel(conn);
+
+                // Du jour en cours vers le passé : fin de J = fin de J+1 moins les mouvements de J+1
+                TreeMap<LocalDate, Map<Integer, Integer>> fins = new TreeMap<>();
+                for (LocalDate jour = aujourdHui.minusDays(1); jour.isAfter(dernier); jour = jour.minusDays(1)) {
+                    etat = new HashMap<>(etat);
+                    for (Map.Entry<Integer, Integer> m : mouvements.getOrDefault(jour.plusDays(1), Map.of()).entrySet()) {
+                        int quantite = etat.getOrDefault(m.getKey(), 0) - m.getValue();
+                        if (quantite != 0) etat.put(m.getKey(), quantite);
+                        else etat.remove(m.getKey());
+                    }
+                    fins.put(jour, etat);
+                }
+
+                LocalDate dernierComplet = dernierComplet(conn, dernier.plusDays(1));
+                Map<Integer, Integer> precedent = reconstruire(conn, dernier);
+                for (Map.Entry<LocalDate, Map<Integer, Integer>> fin : fins.entrySet()) {
+                    boolean complet = dernierComplet == null ||
+                        ChronoUnit.DAYS.between(dernierComplet, fin.getKey()) >= intervalleComplet;
+                    if (complet) dernierComplet = fin.getKey();
+                    ecrire(conn, fin.getKey(), complet, fin.getValue().size(),
+                        CodageInstantane.encoder(complet ? Map.of() : precedent, fin.getValue()));
+                    precedent = fin.getValue();
+                }
+                conn.commit();
+                return fins.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Écrit (ou remplace) l'instantané du jour : complet si aucun complet n'a été pris depuis
+     * {@code instantane.complet.jours}, différentiel sinon ; retourne le nombre de produits codés.
+     * Les jours manquants sont d'abord rattrapés : le différentiel du jour ne doit jamais être
+     * calculé par-dessus un trou que le rattrapage comblerait ensuite.
+     */
+    public int prendre(int site) throws SQLException {
+        rattraper(site);
+        LocalDate aujourdHui = LocalDate.now();
+        try (Connection conn = dbConnection.getConnectionSite(site)) {
+            LocalDate dernierComplet = dernierComplet(conn, aujourdHui);
+            boolean complet = dernierComplet == null ||
+                ChronoUnit.DAYS.between(dernierComplet, aujourdHui) >= intervalleComplet;
+            Map<Integer, Integer> precedent = complet ? Map.of() : reconstruire(conn, aujourdHui.minusDays(1));
+
+            Map<Integer, Integer> actuel = stockActuel(conn);
+            // Le dernier passage de la journée l'emporte
+            ecrire(conn, aujourdHui, complet, actuel.size(), CodageInstantane.encoder(precedent, actuel));
+            return actuel.size();
+        }
+    }
+
+    private static Map<Integer, Integer> stockActuel(Connection conn) throws SQLException {
+        Map<Integer, Integer> actuel = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id, quantite FROM Produit WHERE quantite <> 0");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) actuel.put(rs.getInt(1), rs.getInt(2));
+        }
+        return actuel;
+    }
+
+    /**
+     * Jour du dernier instantané complet avant {@code avant}, ou null
+     */
+    private static LocalDate dernierComplet(Connection conn, LocalDate avant) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT MAX(jour) FROM InstantaneStock WHERE complet AND jour < ?")) {
+            pstmt.setDate(1, Date.valueOf(avant));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getDate(1) != null ? rs.getDate(1).toLocalDate() : null;
+            }
+        }
+    }
+
+    private static void ecrire(Connection conn, LocalDate jour, boolean complet, int produits, byte[] donnees) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO InstantaneStock (jour, complet, produits, donnees) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE complet = VALUES(complet), produits = VALUES(produits), donnees = VALUES(donnees)")) {
+            pstmt.setDate(1, Date.valueOf(jour));
+            pstmt.setBoolean(2, complet);
+            pstmt.setInt(3, produits);
+            pstmt.setBytes(4, donnees);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // ==================== REQUÊTES À DATE ====================
+
+    /**
+     * Quantité du produit à la fin du jour donné, ou null si aucun instantané n'est aussi ancien
+     */
+    public Integer quantiteAu(int idProduit, LocalDate jour) throws SQLException {
+        try (Connection conn = dbConnection.getConnectionSiteLecture();
+             PreparedStatement pstmt = preparerChaine(conn, jour);
+             ResultSet rs = pstmt.executeQuery()) {
+            boolean trouve = false;
+            int quantite = 0;
+            while (rs.next()) {
+                trouve = true;
+                quantite += CodageInstantane.variation(rs.getBytes("donnees"), idProduit);
+            }
+            return trouve ? quantite : null;
+        }
+    }
+
+    /**
+     * Stock de tous les produits du site à la fin du jour donné (quantités non nulles),
+     * vide si aucun instantané n'est aussi ancien
+     */
+    public Map<Integer, Integer> stockAu(LocalDate jour) throws SQLException {
+        try (Connection conn = dbConnection.getConnectionSiteLecture()) {
+            return reconstruire(conn, jour);
+        }
+    }
+
+    /**
+     * Quantité du produit pour chaque jour instantané de la période, en une seule lecture ;
+     * les jours antérieurs au premier instantané sont absents
+     */
+    public Map<LocalDate, Integer> evolution(int idProduit, LocalDate debut, LocalDate fin) throws SQLException {
+        if (fin.isBefore(debut)) throw new IllegalArgumentException("Période invalide : " + debut + " > " + fin);
+        Map<LocalDate, Integer> resultat = new TreeMap<>();
+        try (Connection conn = dbConnection.getConnectionSiteLecture();
+             PreparedStatement pstmt = conn.prepareStatement(CHAINE)) {
+            // De la fin de période, en repartant du dernier complet qui précède le début
+            pstmt.setDate(1, Date.valueOf(fin));
+            pstmt.setDate(2, Date.valueOf(debut));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int quantite = 0;
+                while (rs.next()) {
+                    LocalDate j = rs.getDate("jour").toLocalDate();
+                    int variation = CodageInstantane.variation(rs.getBytes("donnees"), idProduit);
+                    // Un complet repart de zéro
+                    quantite = rs.getBoolean("complet") ? variation : quantite + variation;
+                    if (!j.isBefore(debut)) resultat.put(j, quantite);
+                }
+            }
+        }
+        return resultat;
+    }
+
+    public CompletableFuture<Integer> quantiteAuAsync(int idProduit, LocalDate jour) {
+        return AsyncExecutor.executer(() -> quantiteAu(idProduit, jour));
+    }
+
+    public CompletableFuture<Map<Integer, Integer>> stockAuAsync(LocalDate jour) {
+        return AsyncExecutor.executer(() -> stockAu(jour));
+    }
+
+    public CompletableFuture<Map<LocalDate, Integer>> evolutionAsync(int idProduit, LocalDate debut, LocalDate fin) {
+        return AsyncExecutor.executer(() -> evolution(idProduit, debut, fin));
+    }
+
+    private static Map<Integer, Integer> reconstruire(Connection conn, LocalDate jour) throws SQLException {
+        Map<Integer, Integer> etat = new HashMap<>();
+        try (PreparedStatement pstmt = preparerChaine(conn, jour);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) CodageInstantane.appliquer(rs.getBytes("donnees"), etat);
+        }
+        return etat;
+    }
+
+    /**
+     * Dernier complet au plus tard le jour donné, suivi de ses différentiels jusqu'à ce jour
+     */
+    private static PreparedStatement preparerChaine(Connection conn, LocalDate jour) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(CHAINE);
+        pstmt.setDate(1, Date.valueOf(jour));
+        pstmt.setDate(2, Date.valueOf(jour));
+        return pstmt;
+    }
+}
@@ -0,0 +1,290 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventaire physique : les quantités comptées (saisie, douchette ou fichier) sont cumulées
+ * en mémoire, comparées au stock théorique puis appliquées en une seule transaction.
+ *
+ * Les produits sont traités par lots de {@code inventaire.lot} : une lecture verrouillée du
+ * stock théorique du lot, puis une mise à jour groupée des seuls écarts. Les produits non
+ * comptés ne sont pas modifiés (inventaire partiel ou tournant).
+ *
+ * La transaction entière est bornée par {@code inventaire.delai.s} : chaque requête reçoit
+ * le temps qui reste, et un dépassement annule tout avant la validation.
+ */
+public class InventaireService {
+
+    private final ProductService productService;
+    private final DatabaseConnection dbConnection = new DatabaseConnection();
+    private final int tailleLot;
+    private final Duration delai;
+
+    public InventaireService(ProductService productService) {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        this.productService = productService;
+        this.tailleLot = (int) Math.max(1, config.getEntier("inventaire.lot", 500));
+        this.delai = Duration.ofSeconds(Math.max(1, config.getEntier("inventaire.delai.s", 120)));
+    }
+
+    /**
+     * Lit des lignes {@code code[;quantité]} (séparateur {@code ;}, {@code ,} ou tabulation).
+     * Une ligne sans quantité compte une unité (lecture douchette) ; les lignes d'un même
+     * produit s'additionnent (produit compté à plusieurs emplacements). Une première ligne
+     * dont la quantité n'est pas un nombre est prise pour un en-tête.
+     */
+    public Comptage lire(Reader source) throws IOException {
+        Comptage comptage = new Comptage();
+        BufferedReader lecteur = new BufferedReader(source);
+        String ligne;
+        int numero = 0;
+        while ((ligne = lecteur.readLine()) != null) {
+            numero++;
+            ligne = ligne.strip();
+            if (ligne.isEmpty()) continue;
+            String[] champs = ligne.split("[;,\t]");
+            int quantite = 1;
+            if (champs.length > 1 && !champs[1].isBlank()) {
+                try {
+                    quantite = Integer.parseInt(champs[1].strip());
+                } catch (NumberFormatException e) {
+                    if (numero > 1) comptage.rejets.add(ligne + " (quantité invalide)");
+                    continue;
+                }
+            }
+            if (quantite < 0) {
+                comptage.rejets.add(ligne + " (quantité négative)");
+                continue;
+            }
+            // Recherche vérifiée (code relu, repli sur la base) : l'index seul peut être en retard
+            // sur un code réattribué ou un produit créé depuis un autre poste
+            Product produit = productService.getProduitParCode(champs[0].strip());
+            if (produit == null) {
+                comptage.rejets.add(ligne + " (code inconnu)");
+                continue;
+            }
+            comptage.ajouter(produit.getId(), produit.getCode(), quantite);
+        }
+        return comptage;
+    }
+
+    /**
+     * Applique le comptage au stock du site courant ; rien n'est modifié en cas d'erreur
+     * ou de dépassement du délai
+     */
+    public Rapport appliquer(Comptage comptage) throws SQLException {
+        long limite = System.nanoTime() + delai.toNanos();
+        List<Integer> ids = new ArrayList<>(comptage.quantites.keySet());
+        Collections.sort(ids); // ordre de verrouillage stable entre deux inventaires concurrents
+        List<Ecart> ecarts = new ArrayList<>();
+        int conformes = 0;
+        List<Integer> absents = new ArrayList<>();
+        List<String> rejets = new ArrayList<>(comptage.rejets);
+
+        try (Connection conn = dbConnection.getConnectionSite()) {
+            conn.setAutoCommit(false);
+            for (int debut = 0; debut < ids.size(); debut += tailleLot) {
+                List<Integer> lot = ids.subList(debut, Math.min(debut + tailleLot, ids.size()));
+                Map<Integer, Theorique> theoriques = lireVerrouille(conn, lot, secondesRestantes(limite));
+                List<Ecart> ecartsLot = new ArrayList<>();
+                for (int id : lot) {
+                    Theorique t = theoriques.get(id);
+                    if (t == null) {
+                        absents.add(id); // supprimé depuis le comptage
+                        continue;
+                    }
+                    String code = comptage.codes.get(id);
+                    if (code != null && !code.equals(t.code)) {
+                        rejets.add(code + " (code réattribué depuis le comptage)");
+                        continue;
+                    }
+                    int compte = comptage.quantites.get(id);
+                    if (compte == t.quantite) conformes++;
+                    else ecartsLot.add(new Ecart(id, t.nom, t.quantite, compte, t.version + 1));
+                }
+                ajuster(conn, ecartsLot, secondesRestantes(limite));
+                ecarts.addAll(ecartsLot);
+            }
+            secondesRestantes(limite);
+            conn.commit();
+        }
+
+        for (Ecart e : ecarts) {
+            Audit.publier("Produit", e.idProduit, Audit.MODIFICATION,
+                Collections.singletonMap("quantite", e.theorique), Collections.singletonMap("quantite", e.compte));
+            BusEvenements.publier(new EvenementDomaine.StockMouvemente(e.idProduit, e.getEcart(), e.compte, e.version));
+        }
+        ecarts.sort(Comparator.comparingInt((Ecart e) -> -Math.abs(e.getEcart()))
+            .thenComparing(Ecart::getNom, String.CASE_INSENSITIVE_ORDER));
+        return new Rapport(ecarts, conformes, absents, rejets);
+    }
+
+    /**
+     * Le délai est tenu par la transaction elle-même ({@link #appliquer(Comptage)}) : le futur
+     * n'échoue qu'une fois la transaction annulée, jamais pendant qu'elle peut encore valider
+     */
+    public CompletableFuture<Rapport> appliquerAsync(Comptage comptage) {
+        return AsyncExecutor.executerSansDelai(() -> appliquer(comptage));
+    }
+
+    /**
+     * Temps restant avant la limite, en secondes entières (délai de requête JDBC)
+     */
+    private int secondesRestantes(long limite) throws SQLTimeoutException {
+        long restant = limite - System.nanoTime();
+        if (restant <= 0) {
+            throw new SQLTimeoutException("Inventaire interrompu après " + delai.getSeconds() + " s (aucun stock modifié)");
+        }
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(restant));
+    }
+
+    private static Map<Integer, Theorique> lireVerrouille(Connection conn, List<Integer> lot, int delaiS) throws SQLException {
+        Map<Integer, Theorique> theoriques = new HashMap<>();
+        String sql = "SELECT id, nom, quantite, version, code FROM Produit WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(lot.size(), "?")) + ") FOR UPDATE";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setQueryTimeout(delaiS);
+            for (int i = 0; i < lot.size(); i++) pstmt.setInt(i + 1, lot.get(i));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    theoriques.put(rs.getInt(1), new Theorique(rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getString(5)));
+                }
+            }
+        }
+        return theoriques;
+    }
+
+    /**
+     * Mises à jour et mouvements de stock du lot envoyés en deux lots JDBC
+     */
+    private static void ajuster(Connection conn, List<Ecart> ecarts, int delaiS) throws SQLException {
+        if (ecarts.isEmpty()) return;
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE Produit SET quantite = ?, version = version + 1 WHERE id = ?")) {
+            pstmt.setQueryTimeout(delaiS);
+            for (Ecart e : ecarts) {
+                pstmt.setInt(1, e.compte);
+                pstmt.setInt(2, e.idProduit);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        Map<Integer, Integer> variations = new LinkedHashMap<>();
+        for (Ecart e : ecarts) variations.put(e.idProduit, e.getEcart());
+        HistoriqueStock.enregistrer(conn, variations);
+    }
+
+    private static final class Theorique {
+        private final String nom;
+        private final int quantite;
+        private final int version;
+        private final String code;
+
+        private Theorique(String nom, int quantite, int version, String code) {
+            this.nom = nom;
+            this.quantite = quantite;
+            this.version = version;
+            this.code = code;
+        }
+    }
+
+    /**
+     * Quantités comptées par produit, cumulées au fil de la saisie
+     */
+    public static final class Comptage {
+        private final Map<Integer, Integer> quantites = new LinkedHashMap<>();
+        // Code lu pour chaque produit, revérifié sous verrou à l'application
+        private final Map<Integer, String> codes = new HashMap<>();
+        private final List<String> rejets = new ArrayList<>();
+
+        public void ajouter(int idProduit, int quantite) {
+            if (quantite < 0) throw new IllegalArgumentException("La quantité comptée ne peut pas être négative");
+            quantites.merge(idProduit, quantite, Integer::sum);
+        }
+
+        /**
+         * Compte un produit identifié par son code : l'application est refusée pour ce produit
+         * si le code a été réattribué entre-temps
+         */
+        public void ajouter(int idProduit, String code, int quantite) {
+            ajouter(idProduit, quantite);
+            if (code != null) codes.put(idProduit, code);
+        }
+
+        public int getNombreProduits() { return quantites.size(); }
+        public List<String> getRejets() { return rejets; }
+    }
+
+    /**
+     * Écart entre stock théorique et stock compté pour un produit ajusté
+     */
+    public static final class Ecart {
+        private final int idProduit;
+        private final String nom;
+        private final int theorique;
+        private final int compte;
+        private final int version;
+
+        public Ecart(int idProduit, String nom, int theorique, int compte, int version) {
+            this.idProduit = idProduit;
+            this.nom = nom;
+            this.theorique = theorique;
+            this.compte = compte;
+            this.version = version;
+        }
+
+        public int getIdProduit() { return idProduit; }
+        public String getNom() { return nom; }
+        public int getTheorique() { return theorique; }
+        public int getCompte() { return compte; }
+        public int getEcart() { return compte - theorique; }
+        /** Version de la ligne après ajustement */
+        public int getVersion() { return version; }
+    }
+
+    /**
+     * Rapport d'ajustement : écarts (du plus important au plus faible), produits conformes,
+     * produits disparus depuis le comptage et lignes de saisie rejetées
+     */
+    public static final class Rapport {
+        private final List<Ecart> ecarts;
+        private final int conformes;
+        private final List<Integer> absents;
+        private final List<String> rejets;
+
+        public Rapport(List<Ecart> ecarts, int conformes, List<Integer> absents, List<String> rejets) {
+            this.ecarts = ecarts;
+            this.conformes = conformes;
+            this.absents = absents;
+            this.rejets = rejets;
+        }
+
+        public List<Ecart> getEcarts() { return ecarts; }
+        public int getConformes() { return conformes; }
+        public List<Integer> getAbsents() { return absents; }
+        public List<String> getRejets() { return rejets; }
+    }
+}
@@ -1,197 +1,590 @@
 package com.s4m.pharmacy.service;
 
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.AccesDonnees;
+import com.s4m.pharmacy.db.AccesDonneesException;
 import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.db.Mappeur;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
 import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.util.CodeBarre;
+import com.s4m.pharmacy.util.Montant;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * Service pour la gestion des produits (CRUD)
+ * Service pour la gestion des produits (CRUD).
+ * Les produits sont ceux du site courant (voir {@link DatabaseConnection#getSiteCourant()}).
  */
 public class ProductService {
     
+    // Colonnes des listes : la description (TEXT) et les horodatages ne sont lus qu'à la demande
+    private static final String COLONNES_LISTE = "id, nom, prix, quantite, date_expiration, id_categorie, code, id_site, version";
+    
+    // La description est optionnelle : absente des listes (COLONNES_LISTE)
+    private static final Mappeur<Product> PRODUIT = new Mappeur<>(c -> {
+        int id = c.index("id");
+        int nom = c.index("nom");
+        int description = c.indexOptionnel("description");
+        int prix = c.index("prix");
+        int quantite = c.index("quantite");
+        int dateExpiration = c.index("date_expiration");
+        int idCategorie = c.index("id_categorie");
+        int code = c.index("code");
+        int idSite = c.index("id_site");
+        int version = c.indexOptionnel("version");
+        return rs -> {
+            Product p = new Product();
+            p.setId(rs.getInt(id));
+            p.setNom(rs.getString(nom));
+            if (description > 0) p.setDescription(rs.getString(description));
+            p.setPrixCentimes(Montant.lire(rs, prix));
+            p.setQuantite(rs.getInt(quantite));
+            Date dateExp = rs.getDate(dateExpiration);
+            if (dateExp != null) p.setDateExpiration(dateExp.toLocalDate());
+            p.setIdCategorie(rs.getInt(idCategorie));
+            p.setCode(rs.getString(code));
+            p.setIdSite(rs.getInt(idSite));
+            if (version > 0) p.setVersion(rs.getInt(version));
+            return p;
+        };
+    });
+    private static final Mappeur<String> TEXTE = new Mappeur<>(c -> rs -> rs.getString(1));
+    
     private DatabaseConnection dbConnection;
+    private final AccesDonnees lecture;
+    private final AccesDonnees primaire;
+    // Un index par site : les identifiants ne sont uniques qu'au sein d'une base de site
+    private final Map<Integer, IndexCodes> indexParSite = new ConcurrentHashMap<>();
+    private final long fraicheurLignesNanos =
+        TimeUnit.MILLISECONDS.toNanos(DatabaseConnection.getConfig().getEntier("codes.fraicheur.ms", 5000));
     
     public ProductService() {
         this.dbConnection = new DatabaseConnection();
+        this.lecture = new AccesDonnees(dbConnection::getConnectionSiteLecture);
+        this.primaire = new AccesDonnees(dbConnection::getConnectionSite);
     }
     
     /**
-     * Ajoute un nouveau produit
+     * Ajoute un nouveau produit ; retourne son identifiant
+     *
+     * @throws AccesDonneesException si la base refuse l'écriture ou ne répond pas
      */
     public int ajouterProduit(Product product) {
         validerProduit(product);
         
-        String sql = "INSERT INTO Produit (nom, description, prix, quantite, date_expiration, id_categorie) VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = dbConnection.getConnection();
+        product.setIdSite(DatabaseConnection.getSiteCourant());
+        String sql = "INSERT INTO Produit (nom, description, prix, quantite, date_expiration, id_categorie, code, id_site) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = dbConnection.getConnectionSite();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
+            // Stock initial historisé dans la même transaction que l'ajout
+            conn.setAutoCommit(false);
             pstmt.setString(1, product.getNom());
             pstmt.setString(2, product.getDescription());
-            pstmt.setDouble(3, product.getPrix());
+            Montant.lier(pstmt, 3, product.getPrixCentimes());
             pstmt.setInt(4, product.getQuantite());
             pstmt.setDate(5, Date.valueOf(product.getDateExpiration()));
             pstmt.setInt(6, product.getIdCategorie());
+            pstmt.setString(7, product.getCode());
+            pstmt.setInt(8, product.getIdSite());
             pstmt.executeUpdate();
             
             try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    product.setId(rs.getInt(1));
-                    return product.getId();
-                }
+                if (!rs.next()) throw new SQLException("Identifiant du produit non retourné");
+                product.setId(rs.getInt(1));
             }
+            HistoriqueStock.enregistrer(conn, product.getId(), product.getQuantite());
+            conn.commit();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Code-barres déjà attribué, catégorie inconnue : refus de la saisie, pas panne de la base
+            throw new IllegalArgumentException("Produit refusé par la base : " + e.getMessage(), e);
         } catch (SQLException e) {
-            System.err.println("Erreur lors de l'ajout du produit : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return -1;
+        indexCodes().indexer(product);
+        Audit.publier("Produit", product.getId(), Audit.AJOUT, null, Audit.valeurs(product));
+        BusEvenements.publier(new EvenementDomaine.ProduitAjoute(product));
+        return product.getId();
     }
     
     /**
      * Récupère un produit par son ID
      */
     public Product getProduitParId(int id) {
-        return executerSelect("SELECT * FROM Produit WHERE id = ?", pstmt -> pstmt.setInt(1, id));
+        return lecture.un("SELECT * FROM Produit WHERE id = ?", pstmt -> pstmt.setInt(1, id), PRODUIT);
+    }
+    
+    /**
+     * Récupère un produit par son code-barres (EAN/CIP/GTIN, normalisé).
+     * L'index en mémoire évite la recherche en base ; un code absent de l'index
+     * (ajouté depuis un autre poste) est recherché via l'index unique de la table.
+     * Une ligne lue depuis moins de {@code codes.fraicheur.ms} est resservie sans relecture.
+     */
+    public Product getProduitParCode(String code) {
+        String cle = CodeBarre.cleRecherche(code);
+        if (cle == null) return null;
+        IndexCodes index = indexCodes();
+        int id = getIdProduitParCode(cle);
+        if (id > 0) {
+            Product p = index.ligneRecente(id, fraicheurLignesNanos);
+            if (p == null) p = getProduitParId(id);
+            if (p != null && cle.equals(p.getCode())) {
+                index.memoriser(p);
+                return p;
+            }
+            index.retirer(id);
+        }
+        Product p = lecture.un("SELECT * FROM Produit WHERE code = ?", pstmt -> pstmt.setString(1, cle), PRODUIT);
+        if (p != null) {
+            index.indexer(p);
+            index.memoriser(p);
+        }
+        return p;
+    }
+    
+    /**
+     * Identifiant du produit portant ce code d'après l'index en mémoire (-1 si inconnu), sans accès
+     * à la base une fois l'index chargé ; l'appelant vérifie le code du produit obtenu.
+     * Si l'index ne peut pas être chargé, -1 : l'appelant se rabat sur la recherche en base.
+     */
+    public int getIdProduitParCode(String code) {
+        String cle = CodeBarre.cleRecherche(code);
+        if (cle == null) return -1;
+        try {
+            return indexCodes().getId(cle, this::parcourirTousLesProduits);
+        } catch (RuntimeException e) {
+            System.err.println("Index des codes-barres non chargé : " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Comme {@link #getIdProduitParCode} sans jamais charger l'index ni accéder à la base :
+     * utilisable depuis le thread JavaFX ; -1 tant que l'index n'est pas chargé
+     */
+    public int getIdProduitParCodeEnMemoire(String code) {
+        String cle = CodeBarre.cleRecherche(code);
+        return cle == null ? -1 : indexCodes().getIdSiCharge(cle);
     }
     
     /**
-     * Liste tous les produits
+     * Charge l'index des codes-barres en arrière-plan (au démarrage, avant les premières lectures
+     * douchette) ; un échec est signalé et le chargement sera retenté à la demande
+     */
+    public CompletableFuture<Void> prechargerIndexCodesAsync() {
+        return AsyncExecutor.executerSansDelai(() -> {
+            indexCodes().precharger(this::parcourirTousLesProduits);
+            return null;
+        });
+    }
+    
+    /**
+     * Récupère la description d'un produit (null si absente ou produit inconnu) ;
+     * les listes ne la chargent pas, elle est lue à la sélection d'un produit
+     */
+    public String getDescriptionProduit(int id) {
+        return lecture.un("SELECT description FROM Produit WHERE id = ?", pstmt -> pstmt.setInt(1, id), TEXTE);
+    }
+    
+    /**
+     * Liste tous les produits, sans leur description (voir {@link #getDescriptionProduit(int)})
      */
     public List<Product> listerTousLesProduits() {
-        return executerSelectListe("SELECT * FROM Produit ORDER BY nom");
+        return listerResumes("ORDER BY nom", null);
+    }
+    
+    /**
+     * Comme {@link #listerTousLesProduits()}, lu sur la base principale du site : pour les réponses
+     * mises en cache et partagées entre terminaux, qui ne doivent pas figer un réplica en retard
+     */
+    public List<Product> listerTousLesProduitsSurPrimaire() {
+        return primaire.liste("SELECT " + COLONNES_LISTE + " FROM Produit ORDER BY nom", null, PRODUIT);
+    }
+    
+    /**
+     * Parcourt tous les produits (sans description) au fil de leur lecture, sans les garder en mémoire
+     */
+    public void parcourirTousLesProduits(Consumer<Product> consommateur) {
+        lecture.parcourir("SELECT " + COLONNES_LISTE + " FROM Produit", null, PRODUIT, consommateur);
+    }
+    
+    /**
+     * Liste tous les produits avec toutes leurs colonnes, pour les copies locales
+     * qui doivent rester complètes hors ligne
+     */
+    public List<Product> listerTousLesProduitsComplets() {
+        return lecture.liste("SELECT * FROM Produit ORDER BY nom", null, PRODUIT);
     }
     
     /**
      * Recherche des produits par nom
      */
     public List<Product> rechercherProduitsParNom(String termeRecherche) {
-        return executerSelectListe("SELECT * FROM Produit WHERE nom LIKE ? ORDER BY nom",
-            pstmt -> pstmt.setString(1, "%" + termeRecherche + "%"));
+        return rechercherProduits(new CritereProduits().nom(termeRecherche));
     }
     
     /**
      * Recherche des produits par catégorie
      */
     public List<Product> rechercherProduitsParCategorie(int idCategorie) {
-        return executerSelectListe("SELECT * FROM Produit WHERE id_categorie = ? ORDER BY nom",
-            pstmt -> pstmt.setInt(1, idCategorie));
+        return rechercherProduits(new CritereProduits().categorie(idCategorie));
     }
     
     /**
      * Recherche des produits par date d'expiration
      */
     public List<Product> rechercherProduitsParDateExpiration(LocalDate date) {
-        return executerSelectListe("SELECT * FROM Produit WHERE date_expiration = ? ORDER BY nom",
-            pstmt -> pstmt.setDate(1, Date.valueOf(date)));
+        return rechercherProduits(new CritereProduits().expirationEntre(date, date));
     }
     
     /**
      * Récupère les produits avec stock bas (< 10)
      */
     public List<Product> getProduitsStockBas() {
-        return executerSelectListe("SELECT * FROM Produit WHERE quantite < 10 ORDER BY quantite ASC");
+        return rechercherProduits(new CritereProduits().quantiteEntre(null, 9)
+            .trierPar(CritereProduits.Tri.QUANTITE, false));
     }
     
     /**
-     * Modifie un produit
+     * Récupère les produits qui expirent au plus tard à la date donnée
      */
-    public boolean modifierProduit(Product product) {
-        validerProduit(product);
-        
-        String sql = "UPDATE Produit SET nom = ?, description = ?, prix = ?, quantite = ?, date_expiration = ?, id_categorie = ? WHERE id = ?";
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, product.getNom());
-            pstmt.setString(2, product.getDescription());
-            pstmt.setDouble(3, product.getPrix());
-            pstmt.setInt(4, product.getQuantite());
-            pstmt.setDate(5, Date.valueOf(product.getDateExpiration()));
-            pstmt.setInt(6, product.getIdCategorie());
-            pstmt.setInt(7, product.getId());
-            return pstmt.executeUpdate() > 0;
+    public List<Product> getProduitsExpirantAvant(LocalDate date) {
+        return rechercherProduits(new CritereProduits().expirationEntre(null, date)
+            .trierPar(CritereProduits.Tri.EXPIRATION, false));
+    }
+    
+    /**
+     * Recherche multicritère en une seule requête paramétrée (filtre, tri et limite
+     * appliqués par la base), sans description
+     */
+    public List<Product> rechercherProduits(CritereProduits critere) {
+        List<Object> valeurs = new ArrayList<>();
+        String suite = critere.clauseWhere(valeurs) + " " + critere.clauseOrderBy()
+            + (critere.getLimite() > 0 ? " LIMIT ?" : "");
+        // Limite liée comme paramètre : le nombre de formes de requête (et de lecteurs mis
+        // en cache par le Mappeur) reste borné par les combinaisons de critères
+        if (critere.getLimite() > 0) valeurs.add(critere.getLimite());
+        return listerResumes(suite, pstmt -> CritereProduits.lier(pstmt, valeurs));
+    }
+    
+    /**
+     * Récupère les produits créés ou modifiés depuis l'instant donné (inclus),
+     * pour la réconciliation incrémentale du catalogue local
+     */
+    public List<Product> listerProduitsModifiesDepuis(LocalDateTime depuis) {
+        return lecture.liste("SELECT * FROM Produit WHERE updated_at >= ? ORDER BY id",
+            pstmt -> pstmt.setTimestamp(1, Timestamp.valueOf(depuis)), PRODUIT);
+    }
+    
+    /**
+     * Liste les identifiants de tous les produits (détection des suppressions)
+     */
+    public Set<Integer> listerIdsProduits() {
+        Set<Integer> ids = new HashSet<>();
+        try (Connection conn = dbConnection.getConnectionSiteLecture();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM Produit");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) ids.add(rs.getInt(1));
         } catch (SQLException e) {
-            System.err.println("Erreur lors de la modification du produit : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return false;
+        return ids;
     }
     
     /**
-     * Supprime un produit
+     * Date de la dernière modification d'un produit (null si la table est vide)
      */
-    public boolean supprimerProduit(int id) {
-        return executerUpdate("DELETE FROM Produit WHERE id = ?", pstmt -> pstmt.setInt(1, id));
+    public LocalDateTime getDerniereModification() {
+        try (Connection conn = dbConnection.getConnectionSiteLecture();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT MAX(updated_at) FROM Produit");
+             ResultSet rs = pstmt.executeQuery()) {
+            Timestamp ts = rs.next() ? rs.getTimestamp(1) : null;
+            return ts != null ? ts.toLocalDateTime() : null;
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
     }
     
-    private void validerProduit(Product product) {
-        if (product.getNom() == null || product.getNom().trim().isEmpty()) {
-            throw new IllegalArgumentException("Le nom du produit est requis");
-        }
-        if (product.getPrix() < 0) throw new IllegalArgumentException("Le prix ne peut pas être négatif");
-        if (product.getQuantite() < 0) throw new IllegalArgumentException("La quantité ne peut pas être négative");
-        if (product.getDateExpiration() == null) throw new IllegalArgumentException("La date d'expiration est requise");
-        if (product.getIdCategorie() <= 0) throw new IllegalArgumentException("La catégorie est requise");
+    /**
+     * Recherche dans les produits archivés (expirés ou retirés) du site courant ;
+     * les archives ne sont jamais mêlées aux requêtes courantes
+     */
+    public List<Product> rechercherProduitsArchives(String termeRecherche) {
+        return lecture.liste("SELECT * FROM ProduitArchive WHERE nom LIKE ? ORDER BY nom",
+            pstmt -> pstmt.setString(1, "%" + termeRecherche + "%"), PRODUIT);
     }
     
-    private Product creerProduitDepuisResultSet(ResultSet rs) throws SQLException {
-        Product p = new Product();
-        p.setId(rs.getInt("id"));
-        p.setNom(rs.getString("nom"));
-        p.setDescription(rs.getString("description"));
-        p.setPrix(rs.getDouble("prix"));
-        p.setQuantite(rs.getInt("quantite"));
-        Date dateExp = rs.getDate("date_expiration");
-        if (dateExp != null) p.setDateExpiration(dateExp.toLocalDate());
-        p.setIdCategorie(rs.getInt("id_categorie"));
-        return p;
+    /**
+     * Produit archivé portant ce code-barres (le dernier archivé), ou null : recours de la lecture
+     * douchette quand le code n'est plus dans le stock courant
+     */
+    public Product getProduitArchiveParCode(String code) {
+        String cle = CodeBarre.cleRecherche(code);
+        if (cle == null) return null;
+        return lecture.un("SELECT * FROM ProduitArchive WHERE code = ? ORDER BY archive_le DESC LIMIT 1",
+            pstmt -> pstmt.setString(1, cle), PRODUIT);
     }
     
-    private Product executerSelect(String sql, Setter setter) {
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setter.set(pstmt);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next() ? creerProduitDepuisResultSet(rs) : null;
+    /**
+     * Remet un produit archivé dans le stock du site courant, avec son historique, sous son
+     * identifiant d'origine ; retourne le produit restauré, ou null s'il n'est pas (plus) archivé
+     *
+     * @throws IllegalArgumentException si son code-barres a été repris par un produit actif
+     */
+    public Product restaurerProduitArchive(int id) {
+        try (Connection conn = dbConnection.getConnectionSite()) {
+            conn.setAutoCommit(false);
+            Product archive = AccesDonnees.un(conn, "SELECT * FROM ProduitArchive WHERE id = ? FOR UPDATE",
+                pstmt -> pstmt.setInt(1, id), PRODUIT);
+            if (archive == null) {
+                conn.rollback();
+                return null;
+            }
+            if (archive.getCode() != null && AccesDonnees.un(conn, "SELECT id FROM Produit WHERE code = ?",
+                    pstmt -> pstmt.setString(1, archive.getCode()), TEXTE) != null) {
+                conn.rollback();
+                throw new IllegalArgumentException("Code-barres " + archive.getCode() + " déjà attribué à un produit actif");
+            }
+            try (PreparedStatement produit = conn.prepareStatement(ArchivageService.RESTAURATION);
+                 PreparedStatement historique = conn.prepareStatement("INSERT IGNORE INTO HistoriqueStock " +
+                     "(id_produit, jour, entrees, sorties) SELECT id_produit, jour, entrees, sorties " +
+                     "FROM HistoriqueStockArchive WHERE id_produit = ?");
+                 PreparedStatement purgeHistorique = conn.prepareStatement("DELETE FROM HistoriqueStockArchive WHERE id_produit = ?");
+                 PreparedStatement purge = conn.prepareStatement("DELETE FROM ProduitArchive WHERE id = ?")) {
+                for (PreparedStatement pstmt : List.of(produit, historique, purgeHistorique, purge)) {
+                    pstmt.setInt(1, id);
+                    pstmt.executeUpdate();
+                }
             }
+            Product restaure = lire(conn, id);
+            conn.commit();
+            indexCodes().indexer(restaure);
+            Audit.publier("Produit", id, Audit.AJOUT, null, Audit.valeurs(restaure));
+            BusEvenements.publier(new EvenementDomaine.ProduitAjoute(restaure));
+            return restaure;
         } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-            return null;
+            throw new AccesDonneesException(e);
+        }
+    }
+    
+    // ==================== MULTI-SITES ====================
+    
+    /**
+     * Produits en stock correspondant au nom dans tous les sites (« qui a de l'Amoxicilline ? »),
+     * triés par nom puis par site ; {@link Product#getIdSite()} indique le site de chaque ligne
+     */
+    public List<Product> rechercherEnStockTousSites(String termeRecherche) {
+        return rechercherEnStockTousSitesAsync(termeRecherche).join();
+    }
+    
+    /**
+     * Une requête par base de site, en parallèle, puis fusion. Un site injoignable est
+     * ignoré : le résultat est partiel plutôt que bloqué par une succursale en panne.
+     */
+    public CompletableFuture<List<Product>> rechercherEnStockTousSitesAsync(String termeRecherche) {
+        List<CompletableFuture<List<Product>>> parSite = new ArrayList<>();
+        for (int site : DatabaseConnection.getSites()) {
+            parSite.add(AsyncExecutor.executer(() -> rechercherEnStock(site, termeRecherche))
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("Site " + site + " ignoré pour la recherche multi-sites : " + cause.getMessage());
+                    return List.of();
+                }));
         }
+        return CompletableFuture.allOf(parSite.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Product> tous = new ArrayList<>();
+            for (CompletableFuture<List<Product>> f : parSite) tous.addAll(f.join());
+            tous.sort(Comparator.comparing(Product::getNom, String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(Product::getIdSite));
+            return tous;
+        });
     }
     
-    private List<Product> executerSelectListe(String sql) {
-        return executerSelectListe(sql, null);
+    private List<Product> rechercherEnStock(int site, String termeRecherche) throws SQLException {
+        try (Connection conn = dbConnection.getConnectionSiteLecture(site)) {
+            return AccesDonnees.liste(conn, "SELECT " + COLONNES_LISTE + " FROM Produit WHERE nom LIKE ? AND quantite > 0 ORDER BY nom",
+                pstmt -> pstmt.setString(1, "%" + termeRecherche + "%"), PRODUIT);
+        }
+    }
+    
+    // ==================== API ASYNCHRONE ====================
+    
+    public CompletableFuture<Product> getProduitParIdAsync(int id) {
+        return AsyncExecutor.executer(() -> getProduitParId(id));
     }
     
-    private List<Product> executerSelectListe(String sql, Setter setter) {
-        List<Product> list = new ArrayList<>();
-        try (Connection conn = dbConnection.getConnection();
+    public CompletableFuture<Product> getProduitParCodeAsync(String code) {
+        return AsyncExecutor.executer(() -> getProduitParCode(code));
+    }
+    
+    public CompletableFuture<Product> getProduitArchiveParCodeAsync(String code) {
+        return AsyncExecutor.executer(() -> getProduitArchiveParCode(code));
+    }
+    
+    public CompletableFuture<Product> restaurerProduitArchiveAsync(int id) {
+        return AsyncExecutor.executer(() -> restaurerProduitArchive(id));
+    }
+    
+    public CompletableFuture<String> getDescriptionProduitAsync(int id) {
+        return AsyncExecutor.executer(() -> getDescriptionProduit(id));
+    }
+    
+    public CompletableFuture<List<Product>> listerTousLesProduitsAsync() {
+        return AsyncExecutor.executer(this::listerTousLesProduits);
+    }
+    
+    public CompletableFuture<List<Product>> rechercherProduitsParNomAsync(String termeRecherche) {
+        return AsyncExecutor.executer(() -> rechercherProduitsParNom(termeRecherche));
+    }
+    
+    public CompletableFuture<List<Product>> rechercherProduitsAsync(CritereProduits critere) {
+        return AsyncExecutor.executer(() -> rechercherProduits(critere));
+    }
+    
+    public CompletableFuture<List<Product>> rechercherProduitsParCategorieAsync(int idCategorie) {
+        return AsyncExecutor.executer(() -> rechercherProduitsParCategorie(idCategorie));
+    }
+    
+    public CompletableFuture<List<Product>> rechercherProduitsArchivesAsync(String termeRecherche) {
+        return AsyncExecutor.executer(() -> rechercherProduitsArchives(termeRecherche));
+    }
+    
+    public CompletableFuture<List<Product>> getProduitsStockBasAsync() {
+        return AsyncExecutor.executer(this::getProduitsStockBas);
+    }
+    
+    public CompletableFuture<List<Product>> getProduitsExpirantAvantAsync(LocalDate date) {
+        return AsyncExecutor.executer(() -> getProduitsExpirantAvant(date));
+    }
+    
+    /**
+     * Modifie un produit si sa version n'a pas changé depuis sa lecture ; sinon
+     * {@link ConflitVersionException} porte la ligne actuelle. Aucun verrou n'est posé
+     * avant l'écriture : la condition sur la version suffit à éviter la mise à jour perdue.
+     * Retourne false si le produit n'existe pas (ou plus).
+     *
+     * @throws AccesDonneesException si la base refuse l'écriture ou ne répond pas
+     */
+    public boolean modifierProduit(Product product) {
+        validerProduit(product);
+        
+        String sql = "UPDATE Produit SET nom = ?, description = ?, prix = ?, quantite = ?, date_expiration = ?, " +
+                     "id_categorie = ?, code = ?, version = version + 1 WHERE id = ? AND version = ?";
+        try (Connection conn = dbConnection.getConnectionSite();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            if (setter != null) setter.set(pstmt);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) list.add(creerProduitDepuisResultSet(rs));
+            
+            // Variation de stock et audit dans la même transaction que l'écriture
+            conn.setAutoCommit(false);
+            Product avant = lire(conn, product.getId());
+            if (avant == null) return false;
+            if (avant.getVersion() != product.getVersion()) throw new ConflitVersionException(avant);
+            product.setIdSite(avant.getIdSite());
+            pstmt.setString(1, product.getNom());
+            pstmt.setString(2, product.getDescription());
+            Montant.lier(pstmt, 3, product.getPrixCentimes());
+            pstmt.setInt(4, product.getQuantite());
+            pstmt.setDate(5, Date.valueOf(product.getDateExpiration()));
+            pstmt.setInt(6, product.getIdCategorie());
+            pstmt.setString(7, product.getCode());
+            pstmt.setInt(8, product.getId());
+            pstmt.setInt(9, product.getVersion());
+            if (pstmt.executeUpdate() == 0) {
+                // Écrit par un autre poste entre la lecture et la mise à jour : relecture hors instantané
+                conn.rollback();
+                Product actuel = lire(conn, product.getId());
+                if (actuel == null) return false;
+                throw new ConflitVersionException(actuel);
+            }
+            product.setVersion(product.getVersion() + 1);
+            HistoriqueStock.enregistrer(conn, product.getId(), product.getQuantite() - avant.getQuantite());
+            conn.commit();
+            indexCodes().indexer(product);
+            Audit.publier("Produit", product.getId(), Audit.MODIFICATION, Audit.valeurs(avant), Audit.valeurs(product));
+            BusEvenements.publier(new EvenementDomaine.ProduitModifie(product));
+            int variation = product.getQuantite() - avant.getQuantite();
+            if (variation != 0) {
+                BusEvenements.publier(new EvenementDomaine.StockMouvemente(product.getId(), variation, product.getQuantite(),
+                    product.getVersion()));
             }
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new IllegalArgumentException("Produit refusé par la base : " + e.getMessage(), e);
         } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return list;
     }
     
-    private boolean executerUpdate(String sql, Setter setter) {
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setter.set(pstmt);
-            return pstmt.executeUpdate() > 0;
+    /**
+     * Supprime un produit. La suppression est conditionnée par la version lue (image « avant »
+     * de l'audit) ; modifié entre-temps, le produit est relu et la suppression retentée.
+     * Retourne false si le produit n'existe pas (ou plus).
+     */
+    public boolean supprimerProduit(int id) {
+        try (Connection conn = dbConnection.getConnectionSite();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Produit WHERE id = ? AND version = ?")) {
+            Product avant;
+            do {
+                avant = lire(conn, id);
+                if (avant == null) return false;
+                pstmt.setInt(1, id);
+                pstmt.setInt(2, avant.getVersion());
+            } while (pstmt.executeUpdate() == 0);
+            indexCodes().retirer(id);
+            Audit.publier("Produit", id, Audit.SUPPRESSION, Audit.valeurs(avant), null);
+            BusEvenements.publier(new EvenementDomaine.ProduitSupprime(id));
+            return true;
         } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-            return false;
+            throw new AccesDonneesException(e);
         }
     }
     
-    @FunctionalInterface
-    private interface Setter {
-        void set(PreparedStatement pstmt) throws SQLException;
+    /**
+     * Produits complets lus dans la transaction de l'appelant (écritures en masse)
+     */
+    List<Product> lireProduits(Connection conn, String sql, AccesDonnees.Parametres parametres) throws SQLException {
+        return AccesDonnees.liste(conn, sql, parametres, PRODUIT);
+    }
+    
+    private Product lire(Connection conn, int id) throws SQLException {
+        return AccesDonnees.un(conn, "SELECT * FROM Produit WHERE id = ?", pstmt -> pstmt.setInt(1, id), PRODUIT);
+    }
+    
+    protected void validerProduit(Product product) {
+        if (product.getNom() == null || product.getNom().trim().isEmpty()) {
+            throw new IllegalArgumentException("Le nom du produit est requis");
+        }
+        product.setCode(CodeBarre.normaliser(product.getCode()));
+        if (product.getCode() != null && !CodeBarre.estValide(product.getCode())) {
+            throw new IllegalArgumentException("Code-barres invalide (EAN-13, CIP7 ou GTIN attendu)");
+        }
+        if (product.getPrixCentimes() < 0) throw new IllegalArgumentException("Le prix ne peut pas être négatif");
+        if (product.getQuantite() < 0) throw new IllegalArgumentException("La quantité ne peut pas être négative");
+        if (product.getDateExpiration() == null) throw new IllegalArgumentException("La date d'expiration est requise");
+        if (product.getIdCategorie() <= 0) throw new IllegalArgumentException("La catégorie est requise");
+    }
+    
+    private IndexCodes indexCodes() {
+        return indexParSite.computeIfAbsent(DatabaseConnection.getSiteCourant(), site -> new IndexCodes());
+    }
+    
+    /**
+     * Liste allégée : {@code suite} complète « SELECT COLONNES_LISTE FROM Produit »
+     */
+    private List<Product> listerResumes(String suite, AccesDonnees.Parametres parametres) {
+        return lecture.liste("SELECT " + COLONNES_LISTE + " FROM Produit " + suite, parametres, PRODUIT);
     }
 }
@@ -0,0 +1,218 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.model.Product;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Prévision de réapprovisionnement : consommation moyenne sur une fenêtre glissante,
+ * jours de couverture du stock et commande suggérée.
+ *
+ * Le calcul est incrémental : seuls les produits et les jours d'historique modifiés
+ * depuis le passage précédent sont relus et recalculés (tout est recalculé au changement de jour).
+ * Les prévisions sont réparties sur le pool fork-join.
+ */
+public class ReapprovisionnementService {
+
+    private static final int SEUIL_DECOUPAGE = 256;
+
+    private final ProductService productService;
+    private final DatabaseConnection dbConnection = new DatabaseConnection();
+    private final int fenetreJours;
+    private final int delaiJours;
+    private final int couvertureJours;
+
+    // État conservé entre deux calculs
+    private final Map<Integer, Product> produits = new HashMap<>();
+    private final Map<Integer, Serie> series = new HashMap<>();
+    private final Map<Integer, Prevision> previsions = new ConcurrentHashMap<>();
+    private LocalDateTime filigraneProduits;
+    private LocalDateTime filigraneHistorique;
+    private LocalDate jourCalcul;
+
+    public ReapprovisionnementService(ProductService productService) {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        this.productService = productService;
+        this.fenetreJours = (int) config.getEntier("reappro.fenetre.jours", 28);
+        this.delaiJours = (int) config.getEntier("reappro.delai.jours", 7);
+        this.couvertureJours = (int) config.getEntier("reappro.couverture.jours", 30);
+    }
+
+    /**
+     * Met à jour les prévisions et retourne le bon de commande suggéré
+     * (produits à commander, du plus urgent au moins urgent)
+     */
+    public synchronized List<Prevision> calculerBonDeCommande() {
+        LocalDate aujourdhui = LocalDate.now();
+        boolean complet = !aujourdhui.equals(jourCalcul);
+        Set<Integer> modifies = new HashSet<>();
+        chargerProduits(modifies);
+        chargerHistorique(aujourdhui, modifies);
+
+        Set<Integer> aRecalculer = complet ? produits.keySet() : modifies;
+        previsions.keySet().retainAll(produits.keySet());
+        int[] ids = aRecalculer.stream().filter(produits::containsKey).mapToInt(Integer::intValue).toArray();
+        ForkJoinPool.commonPool().invoke(new CalculPrevisions(ids, 0, ids.length, aujourdhui));
+        jourCalcul = aujourdhui;
+
+        List<Prevision> bon = new ArrayList<>();
+        for (Prevision p : previsions.values()) {
+            if (p.quantiteSuggeree > 0) bon.add(p);
+        }
+        bon.sort(Comparator.comparingDouble(Prevision::getJoursCouverture)
+            .thenComparing(p -> p.getProduit().getNom(), String.CASE_INSENSITIVE_ORDER));
+        return bon;
+    }
+
+    public CompletableFuture<List<Prevision>> calculerBonDeCommandeAsync() {
+        return AsyncExecutor.executer(this::calculerBonDeCommande);
+    }
+
+    private void chargerProduits(Set<Integer> modifies) {
+        // Filigrane lu avant les lignes : une modification concurrente sera relue au passage suivant
+        LocalDateTime filigrane = productService.getDerniereModification();
+        if (filigraneProduits == null) {
+            produits.clear();
+            for (Product p : productService.listerTousLesProduits()) produits.put(p.getId(), p);
+            modifies.addAll(produits.keySet());
+        } else {
+            Set<Integer> ids = productService.listerIdsProduits();
+            produits.keySet().retainAll(ids);
+            for (Product p : productService.listerProduitsModifiesDepuis(filigraneProduits)) {
+                produits.put(p.getId(), p);
+                modifies.add(p.getId());
+            }
+        }
+        filigraneProduits = filigrane;
+    }
+
+    private void chargerHistorique(LocalDate aujourdhui, Set<Integer> modifies) {
+        try (Connection conn = dbConnection.getConnectionSiteLecture()) {
+            LocalDateTime filigrane = HistoriqueStock.derniereModification(conn);
+            HistoriqueStock.lireSorties(conn, aujourdhui.minusDays(fenetreJours - 1), filigraneHistorique, (id, jour, sorties) -> {
+                series.computeIfAbsent(id, k -> new Serie(fenetreJours)).enregistrer(jour, sorties);
+                modifies.add(id);
+            });
+            filigraneHistorique = filigrane;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Lecture de l'historique de stock impossible : " + e.getMessage(), e);
+        }
+        series.keySet().retainAll(produits.keySet());
+    }
+
+    private Prevision prevoir(Product p, LocalDate aujourdhui) {
+        Serie serie = series.get(p.getId());
+        int sorties = serie != null ? serie.somme(aujourdhui.minusDays(fenetreJours - 1), aujourdhui) : 0;
+        double consommation = sorties / (double) fenetreJours;
+        double couverture = consommation > 0 ? p.getQuantite() / consommation : Double.POSITIVE_INFINITY;
+        int suggeree = 0;
+        // Point de commande : le stock ne couvre plus le délai de livraison
+        if (couverture <= delaiJours) {
+            suggeree = (int) Math.ceil(consommation * (delaiJours + couvertureJours)) - p.getQuantite();
+        }
+        return new Prevision(p, consommation, couverture, Math.max(suggeree, 0));
+    }
+
+    /**
+     * Découpe récursivement la liste des produits à recalculer
+     */
+    private final class CalculPrevisions extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] ids;
+        private final int debut;
+        private final int fin;
+        private final LocalDate aujourdhui;
+
+        CalculPrevisions(int[] ids, int debut, int fin, LocalDate aujourdhui) {
+            this.ids = ids;
+            this.debut = debut;
+            this.fin = fin;
+            this.aujourdhui = aujourdhui;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut <= SEUIL_DECOUPAGE) {
+                for (int i = debut; i < fin; i++) {
+                    previsions.put(ids[i], prevoir(produits.get(ids[i]), aujourdhui));
+                }
+                return;
+            }
+            int milieu = (debut + fin) >>> 1;
+            invokeAll(new CalculPrevisions(ids, debut, milieu, aujourdhui),
+                      new CalculPrevisions(ids, milieu, fin, aujourdhui));
+        }
+    }
+
+    /**
+     * Sorties journalières d'un produit sur la fenêtre, dans un tampon circulaire indexé par jour
+     */
+    private static final class Serie {
+        private final long[] jours;
+        private final int[] sorties;
+
+        Serie(int taille) {
+            jours = new long[taille];
+            sorties = new int[taille];
+            Arrays.fill(jours, Long.MIN_VALUE);
+        }
+
+        void enregistrer(LocalDate jour, int valeur) {
+            long epoch = jour.toEpochDay();
+            int i = (int) Math.floorMod(epoch, (long) jours.length);
+            if (jours[i] > epoch) return;
+            jours[i] = epoch;
+            sorties[i] = valeur;
+        }
+
+        int somme(LocalDate debut, LocalDate fin) {
+            long min = debut.toEpochDay();
+            long max = fin.toEpochDay();
+            int total = 0;
+            for (int i = 0; i < jours.length; i++) {
+                if (jours[i] >= min && jours[i] <= max) total += sorties[i];
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Prévision pour un produit
+     */
+    public static final class Prevision {
+        private final Product produit;
+        private final double consommationJour;
+        private final double joursCouverture;
+        private final int quantiteSuggeree;
+
+        public Prevision(Product produit, double consommationJour, double joursCouverture, int quantiteSuggeree) {
+            this.produit = produit;
+            this.consommationJour = consommationJour;
+            this.joursCouverture = joursCouverture;
+            this.quantiteSuggeree = quantiteSuggeree;
+        }
+
+        public Product getProduit() { return produit; }
+        public double getConsommationJour() { return consommationJour; }
+        public double getJoursCouverture() { return joursCouverture; }
+        public int getQuantiteSuggeree() { return quantiteSuggeree; }
+    }
+}
@@ -0,0 +1,314 @@
+package com.s4m.pharmacy.service;
+
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.DatabaseConfig;
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.util.Montant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Révisions de prix en masse sur le stock du site courant : pourcentage ou montant appliqué
+ * à un filtre ({@link CritereProduits}), ou liste de nouveaux prix.
+ *
+ * Chaque révision est une transaction : l'ancien et le nouveau prix de chaque produit réellement
+ * modifié sont d'abord inscrits dans {@code HistoriquePrix}, puis les prix sont mis à jour en une
+ * seule instruction par jointure sur cet historique. Une révision s'annule par une révision
+ * inverse, qui épargne les produits dont le prix a changé depuis.
+ */
+public class TarificationService {
+
+    private static final BigDecimal CENT = BigDecimal.valueOf(100);
+    private static final String MISE_A_JOUR =
+        "UPDATE Produit p JOIN HistoriquePrix h ON h.id_produit = p.id " +
+        "SET p.prix = h.nouveau_prix, p.version = p.version + 1 WHERE h.id_revision = ?";
+
+    private final ProductService productService;
+    private final DatabaseConnection dbConnection = new DatabaseConnection();
+    private final int tailleLot;
+
+    public TarificationService(ProductService productService) {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        this.productService = productService;
+        this.tailleLot = (int) Math.max(1, config.getEntier("tarification.lot", 500));
+    }
+
+    /**
+     * Variation en pourcentage (-10 : baisse de 10 %) des produits du filtre ; prix arrondis au centime.
+     * Le taux est lié en décimal : le calcul reste exact en base jusqu'à l'arrondi final.
+     */
+    public Revision reviserPourcentage(CritereProduits filtre, BigDecimal pourcentage) throws SQLException {
+        if (pourcentage.compareTo(CENT.negate()) <= 0) throw new IllegalArgumentException("La baisse ne peut pas atteindre 100 %");
+        return reviser(filtre, "prix * (100 + ?) / 100", pourcentage,
+            String.format(Locale.ROOT, "%+.2f %%", pourcentage) + decrire(filtre));
+    }
+
+    /**
+     * Variation d'un montant fixe en centimes ; un prix ne descend jamais sous zéro
+     */
+    public Revision reviserMontant(CritereProduits filtre, long montantCentimes) throws SQLException {
+        return reviser(filtre, "prix + ?", Montant.versDecimal(montantCentimes),
+            (montantCentimes >= 0 ? "+" : "") + Montant.versTexte(montantCentimes) + " €" + decrire(filtre));
+    }
+
+    /**
+     * Nouveaux prix d'une liste fournisseur ({@link #lireListe}), envoyés par lots JDBC ; un produit
+     * dont le code a été réattribué depuis la lecture de la liste n'est pas repris
+     */
+    public Revision appliquerListe(ListePrix liste, String libelle) throws SQLException {
+        Map<Integer, Long> prix = liste.prix;
+        for (long p : prix.values()) {
+            if (p < 0) throw new IllegalArgumentException("Le prix ne peut pas être négatif");
+        }
+        String sql = "INSERT INTO HistoriquePrix (id_revision, id_produit, ancien_prix, nouveau_prix) " +
+                     "SELECT ?, id, prix, ? FROM Produit WHERE id = ? AND code = ? AND prix <> ?";
+        try (Connection conn = dbConnection.getConnectionSite()) {
+            conn.setAutoCommit(false);
+            int id = creerRevision(conn, libelle, null);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int enAttente = 0;
+                for (Map.Entry<Integer, Long> e : prix.entrySet()) {
+                    pstmt.setInt(1, id);
+                    Montant.lier(pstmt, 2, e.getValue());
+                    pstmt.setInt(3, e.getKey());
+                    pstmt.setString(4, liste.codes.get(e.getKey()));
+                    Montant.lier(pstmt, 5, e.getValue());
+                    pstmt.addBatch();
+                    if (++enAttente == tailleLot) {
+                        pstmt.executeBatch();
+                        enAttente = 0;
+                    }
+                }
+                if (enAttente > 0) pstmt.executeBatch();
+            }
+            return terminer(conn, id, libelle);
+        }
+    }
+
+    /**
+     * Rétablit les anciens prix d'une révision, sauf pour les produits repris depuis
+     */
+    public Revision annuler(int idRevision) throws SQLException {
+        String libelle = "Annulation de la révision n° " + idRevision;
+        String sql = "INSERT INTO HistoriquePrix (id_revision, id_produit, ancien_prix, nouveau_prix) " +
+                     "SELECT ?, p.id, p.prix, h.ancien_prix FROM Produit p JOIN HistoriquePrix h ON h.id_produit = p.id " +
+                     "WHERE h.id_revision = ? AND p.prix = h.nouveau_prix AND p.prix <> h.ancien_prix";
+        try (Connection conn = dbConnection.getConnectionSite()) {
+            conn.setAutoCommit(false);
+            int id = creerRevision(conn, libelle, idRevision);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, id);
+                pstmt.setInt(2, idRevision);
+                pstmt.executeUpdate();
+            }
+            return terminer(conn, id, libelle);
+        }
+    }
+
+    /**
+     * Dernières révisions du site, de la plus récente à la plus ancienne
+     */
+    public List<Revision> listerRevisions(int limite) throws SQLException {
+        String sql = "SELECT r.id, r.libelle, r.date_revision, COUNT(h.id_produit) FROM RevisionPrix r " +
+                     "LEFT JOIN HistoriquePrix h ON h.id_revision = r.id GROUP BY r.id, r.libelle, r.date_revision " +
+                     "ORDER BY r.id DESC LIMIT ?";
+        List<Revision> revisions = new ArrayList<>();
+        try (Connection conn = dbConnection.getConnectionSiteLecture();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp date = rs.getTimestamp(3);
+                    revisions.add(new Revision(rs.getInt(1), rs.getString(2),
+                        date != null ? date.toLocalDateTime() : null, rs.getInt(4)));
+                }
+            }
+        }
+        return revisions;
+    }
+
+    /**
+     * Lit des lignes {@code code;prix} (séparateur {@code ;} ou tabulation, virgule décimale
+     * acceptée) ; une première ligne dont le prix n'est pas un nombre est prise pour un en-tête
+     */
+    public ListePrix lireListe(Reader source) throws IOException {
+        ListePrix liste = new ListePrix();
+        BufferedReader lecteur = new BufferedReader(source);
+        String ligne;
+        int numero = 0;
+        while ((ligne = lecteur.readLine()) != null) {
+            numero++;
+            ligne = ligne.strip();
+            if (ligne.isEmpty()) continue;
+            String[] champs = ligne.split("[;\t]");
+            long prix;
+            try {
+                prix = Montant.analyser(champs.length > 1 ? champs[1] : "");
+            } catch (NumberFormatException | ArithmeticException e) {
+                if (numero > 1) liste.rejets.add(ligne + " (prix invalide)");
+                continue;
+            }
+            if (prix < 0) {
+                liste.rejets.add(ligne + " (prix négatif)");
+                continue;
+            }
+            // Recherche vérifiée : l'index seul peut être en retard sur un code réattribué
+            Product produit = productService.getProduitParCode(champs[0].strip());
+            if (produit == null) {
+                liste.rejets.add(ligne + " (code inconnu)");
+                continue;
+            }
+            liste.prix.put(produit.getId(), prix);
+            liste.codes.put(produit.getId(), produit.getCode());
+        }
+        return liste;
+    }
+
+    public CompletableFuture<Revision> reviserPourcentageAsync(CritereProduits filtre, BigDecimal pourcentage) {
+        return AsyncExecutor.executer(() -> reviserPourcentage(filtre, pourcentage));
+    }
+
+    public CompletableFuture<Revision> reviserMontantAsync(CritereProduits filtre, long montantCentimes) {
+        return AsyncExecutor.executer(() -> reviserMontant(filtre, montantCentimes));
+    }
+
+    public CompletableFuture<Revision> appliquerListeAsync(ListePrix liste, String libelle) {
+        return AsyncExecutor.executer(() -> appliquerListe(liste, libelle));
+    }
+
+    public CompletableFuture<Revision> annulerAsync(int idRevision) {
+        return AsyncExecutor.executer(() -> annuler(idRevision));
+    }
+
+    public CompletableFuture<List<Revision>> listerRevisionsAsync(int limite) {
+        return AsyncExecutor.executer(() -> listerRevisions(limite));
+    }
+
+    /**
+     * Révision ensembliste : historique rempli par un INSERT ... SELECT sur le filtre (seuls
+     * les prix qui changent), puis mise à jour par jointure
+     */
+    private Revision reviser(CritereProduits filtre, String expression, Object valeur, String libelle) throws SQLException {
+        String nouveau = "GREATEST(ROUND(" + expression + ", 2), 0)";
+        List<Object> valeurs = new ArrayList<>();
+        String where = filtre.clauseWhere(valeurs);
+        String sql = "INSERT INTO HistoriquePrix (id_revision, id_produit, ancien_prix, nouveau_prix) " +
+                     "SELECT ?, id, prix, " + nouveau + " FROM Produit " +
+                     (where.isEmpty() ? "WHERE " : where + " AND ") + nouveau + " <> prix";
+        try (Connection conn = dbConnection.getConnectionSite()) {
+            conn.setAutoCommit(false);
+            int id = creerRevision(conn, libelle, null);
+            List<Object> parametres = new ArrayList<>();
+            parametres.add(id);
+            parametres.add(valeur);
+            parametres.addAll(valeurs);
+            parametres.add(valeur);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                CritereProduits.lier(pstmt, parametres);
+                pstmt.executeUpdate();
+            }
+            return terminer(conn, id, libelle);
+        }
+    }
+
+    private static int creerRevision(Connection conn, String libelle, Integer idAnnulee) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO RevisionPrix (libelle, id_annulee) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, libelle.length() > 200 ? libelle.substring(0, 200) : libelle);
+            pstmt.setObject(2, idAnnulee);
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (!rs.next()) throw new SQLException("Identifiant de révision non retourné");
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Applique les prix inscrits dans l'historique de la révision puis valide la transaction
+     */
+    private Revision terminer(Connection conn, int id, String libelle) throws SQLException {
+        int produits;
+        try (PreparedStatement pstmt = conn.prepareStatement(MISE_A_JOUR)) {
+            pstmt.setInt(1, id);
+            produits = pstmt.executeUpdate();
+        }
+        // Lignes revues relues pour les abonnés seulement : une révision peut toucher tout le catalogue
+        List<Product> revus = BusEvenements.estEcoute(EvenementDomaine.ProduitModifie.class)
+            ? productService.lireProduits(conn, "SELECT p.* FROM Produit p JOIN HistoriquePrix h ON h.id_produit = p.id " +
+                "WHERE h.id_revision = ?", pstmt -> pstmt.setInt(1, id))
+            : List.of();
+        conn.commit();
+        for (Product p : revus) BusEvenements.publier(new EvenementDomaine.ProduitModifie(p));
+        Map<String, Object> apres = new LinkedHashMap<>();
+        apres.put("libelle", libelle);
+        apres.put("produits", produits);
+        Audit.publier("RevisionPrix", id, Audit.AJOUT, null, apres);
+        return new Revision(id, libelle, LocalDateTime.now(), produits);
+    }
+
+    private static String decrire(CritereProduits filtre) {
+        StringBuilder texte = new StringBuilder();
+        if (filtre.getIdCategorie() != null) texte.append(" catégorie ").append(filtre.getIdCategorie());
+        if (filtre.getNom() != null) texte.append(" nom « ").append(filtre.getNom()).append(" »");
+        return texte.length() > 0 ? " —" + texte : " — tous les produits";
+    }
+
+    /**
+     * Nouveaux prix lus d'un fichier, par produit
+     */
+    public static final class ListePrix {
+        private final Map<Integer, Long> prix = new LinkedHashMap<>();
+        // Code lu pour chaque produit, revérifié à l'application
+        private final Map<Integer, String> codes = new HashMap<>();
+        private final List<String> rejets = new ArrayList<>();
+
+        /**
+         * Prix en centimes par identifiant de produit
+         */
+        public Map<Integer, Long> getPrix() { return prix; }
+        public List<String> getRejets() { return rejets; }
+    }
+
+    /**
+     * Révision appliquée : identifiant (pour l'annulation), libellé et nombre de produits repris
+     */
+    public static final class Revision {
+        private final int id;
+        private final String libelle;
+        private final LocalDateTime date;
+        private final int produits;
+
+        public Revision(int id, String libelle, LocalDateTime date, int produits) {
+            this.id = id;
+            this.libelle = libelle;
+            this.date = date;
+            this.produits = produits;
+        }
+
+        public int getId() { return id; }
+        public String getLibelle() { return libelle; }
+        public LocalDateTime getDate() { return date; }
+        public int getProduits() { return produits; }
+    }
+}
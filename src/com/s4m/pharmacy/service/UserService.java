@@ -1,26 +1,69 @@
 package com.s4m.pharmacy.service;
 
+import com.s4m.pharmacy.audit.Audit;
+import com.s4m.pharmacy.db.AccesDonnees;
+import com.s4m.pharmacy.db.AccesDonneesException;
 import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.db.Mappeur;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
 import com.s4m.pharmacy.model.User;
 import com.s4m.pharmacy.util.PasswordHasher;
 
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service pour la gestion des utilisateurs (CRUD)
  */
 public class UserService {
     
+    private static final Mappeur<User> UTILISATEUR = new Mappeur<>(c -> {
+        int id = c.index("id");
+        int nom = c.index("nom");
+        int email = c.index("email");
+        int motDePasse = c.index("mot_de_passe");
+        int idSite = c.index("id_site");
+        int role = c.index("role");
+        return rs -> {
+            User u = new User();
+            u.setId(rs.getInt(id));
+            u.setNom(rs.getString(nom));
+            u.setEmail(rs.getString(email));
+            u.setMotDePasse(rs.getString(motDePasse));
+            u.setIdSite(rs.getInt(idSite));
+            String roleStr = rs.getString(role);
+            if (roleStr != null) {
+                try {
+                    u.setRole(User.Role.valueOf(roleStr));
+                } catch (IllegalArgumentException e) {
+                    u.setRole(User.Role.USER);
+                }
+            }
+            return u;
+        };
+    });
+    
+    // Colonnes auditées inchangées depuis la lecture : l'image « avant » est exactement la ligne remplacée
+    private static final String INCHANGE = " AND nom <=> ? AND email <=> ? AND role <=> ? AND id_site = ?";
+    private static final int MAX_TENTATIVES = 3;
+    
     private DatabaseConnection dbConnection;
+    // Lectures unitaires sur le primaire : authentification et unicité de l'e-mail ne tolèrent pas de retard
+    private final AccesDonnees primaire;
+    private final AccesDonnees lecture;
     
     public UserService() {
         this.dbConnection = new DatabaseConnection();
+        this.primaire = new AccesDonnees(dbConnection::getConnection);
+        this.lecture = new AccesDonnees(dbConnection::getConnectionLecture);
     }
     
     /**
-     * Ajoute un nouvel utilisateur
+     * Ajoute un nouvel utilisateur ; retourne son identifiant
+     *
+     * @throws AccesDonneesException si la base refuse l'écriture ou ne répond pas
      */
     public int ajouterUtilisateur(User user, String motDePasseClair) {
         validerUtilisateur(user);
@@ -32,7 +75,7 @@ public class UserService {
         }
         
         user.setMotDePasse(PasswordHasher.hashPassword(motDePasseClair));
-        String sql = "INSERT INTO Utilisateur (nom, email, mot_de_passe, role) VALUES (?, ?, ?, ?)";
+        String sql = "INSERT INTO Utilisateur (nom, email, mot_de_passe, role, id_site) VALUES (?, ?, ?, ?, ?)";
         
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -41,55 +84,87 @@ public class UserService {
             pstmt.setString(2, user.getEmail());
             pstmt.setString(3, user.getMotDePasse());
             pstmt.setString(4, user.getRole().name());
+            pstmt.setInt(5, user.getIdSite());
             pstmt.executeUpdate();
             
             try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    user.setId(rs.getInt(1));
-                    return user.getId();
-                }
+                if (!rs.next()) throw new SQLException("Identifiant de l'utilisateur non retourné");
+                user.setId(rs.getInt(1));
             }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // E-mail enregistré entre-temps par un autre poste
+            throw new IllegalArgumentException("Utilisateur refusé par la base : " + e.getMessage(), e);
         } catch (SQLException e) {
-            System.err.println("Erreur lors de l'ajout de l'utilisateur : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return -1;
+        Audit.publier("Utilisateur", user.getId(), Audit.AJOUT, null, Audit.valeurs(user));
+        BusEvenements.publier(new EvenementDomaine.UtilisateurModifie(user.getId(), user,
+            EvenementDomaine.Nature.AJOUT));
+        return user.getId();
     }
     
     /**
      * Récupère un utilisateur par son ID
      */
     public User getUtilisateurParId(int id) {
-        return executerSelect("SELECT * FROM Utilisateur WHERE id = ?", pstmt -> pstmt.setInt(1, id));
+        return primaire.un("SELECT * FROM Utilisateur WHERE id = ?", pstmt -> pstmt.setInt(1, id), UTILISATEUR);
     }
     
     /**
      * Récupère un utilisateur par son email
      */
     public User getUtilisateurParEmail(String email) {
-        return executerSelect("SELECT * FROM Utilisateur WHERE email = ?", pstmt -> pstmt.setString(1, email));
+        return primaire.un("SELECT * FROM Utilisateur WHERE email = ?", pstmt -> pstmt.setString(1, email), UTILISATEUR);
     }
     
     /**
      * Liste tous les utilisateurs
      */
     public List<User> listerTousLesUtilisateurs() {
-        return executerSelectListe("SELECT * FROM Utilisateur ORDER BY nom");
+        return lecture.liste("SELECT * FROM Utilisateur ORDER BY nom", null, UTILISATEUR);
     }
     
     /**
      * Recherche des utilisateurs par nom ou email
      */
     public List<User> rechercherUtilisateurs(String termeRecherche) {
-        return executerSelectListe("SELECT * FROM Utilisateur WHERE nom LIKE ? OR email LIKE ? ORDER BY nom",
+        return lecture.liste("SELECT * FROM Utilisateur WHERE nom LIKE ? OR email LIKE ? ORDER BY nom",
             pstmt -> {
                 String pattern = "%" + termeRecherche + "%";
                 pstmt.setString(1, pattern);
                 pstmt.setString(2, pattern);
-            });
+            }, UTILISATEUR);
+    }
+    
+    // ==================== API ASYNCHRONE ====================
+    
+    public CompletableFuture<User> getUtilisateurParIdAsync(int id) {
+        return AsyncExecutor.executer(() -> getUtilisateurParId(id));
+    }
+    
+    public CompletableFuture<List<User>> listerTousLesUtilisateursAsync() {
+        return AsyncExecutor.executer(this::listerTousLesUtilisateurs);
+    }
+    
+    public CompletableFuture<List<User>> rechercherUtilisateursAsync(String termeRecherche) {
+        return AsyncExecutor.executer(() -> rechercherUtilisateurs(termeRecherche));
+    }
+    
+    /**
+     * Le hashage PBKDF2 est volontairement coûteux : depuis l'interface, passer par ces variantes
+     */
+    public CompletableFuture<Integer> ajouterUtilisateurAsync(User user, String motDePasseClair) {
+        return AsyncExecutor.executer(() -> ajouterUtilisateur(user, motDePasseClair));
+    }
+    
+    public CompletableFuture<Boolean> modifierMotDePasseAsync(int userId, String nouveauMotDePasseClair) {
+        return AsyncExecutor.executer(() -> modifierMotDePasse(userId, nouveauMotDePasseClair));
     }
     
     /**
-     * Modifie un utilisateur
+     * Modifie un utilisateur. La ligne lue sans verrou sert d'image « avant » à l'audit : la mise
+     * à jour n'a lieu que si ses colonnes n'ont pas changé depuis, sinon la ligne est relue.
+     * Retourne false si l'utilisateur n'existe pas (ou plus).
      */
     public boolean modifierUtilisateur(User user) {
         validerUtilisateur(user);
@@ -100,41 +175,103 @@ public class UserService {
             throw new IllegalArgumentException("Un utilisateur avec cet email existe déjà");
         }
         
-        String sql = "UPDATE Utilisateur SET nom = ?, email = ?, role = ? WHERE id = ?";
+        String sql = "UPDATE Utilisateur SET nom = ?, email = ?, role = ?, id_site = ? WHERE id = ?" + INCHANGE;
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
-            pstmt.setString(1, user.getNom());
-            pstmt.setString(2, user.getEmail());
-            pstmt.setString(3, user.getRole().name());
-            pstmt.setInt(4, user.getId());
-            return pstmt.executeUpdate() > 0;
+            User avant = null;
+            for (int tentative = 0; avant == null; tentative++) {
+                User lu = lire(conn, user.getId());
+                if (lu == null) return false;
+                verifierTentatives(tentative, user.getId());
+                pstmt.setString(1, user.getNom());
+                pstmt.setString(2, user.getEmail());
+                pstmt.setString(3, user.getRole().name());
+                pstmt.setInt(4, user.getIdSite());
+                pstmt.setInt(5, user.getId());
+                lierInchange(pstmt, 6, lu);
+                if (pstmt.executeUpdate() > 0) avant = lu;
+            }
+            Audit.publier("Utilisateur", user.getId(), Audit.MODIFICATION, Audit.valeurs(avant), Audit.valeurs(user));
+            BusEvenements.publier(new EvenementDomaine.UtilisateurModifie(user.getId(), user,
+                EvenementDomaine.Nature.MODIFICATION));
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new IllegalArgumentException("Utilisateur refusé par la base : " + e.getMessage(), e);
         } catch (SQLException e) {
-            System.err.println("Erreur lors de la modification de l'utilisateur : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return false;
     }
     
     /**
-     * Modifie le mot de passe d'un utilisateur
+     * Modifie le mot de passe d'un utilisateur ; false si l'utilisateur n'existe pas
      */
     public boolean modifierMotDePasse(int userId, String nouveauMotDePasseClair) {
         if (nouveauMotDePasseClair == null || nouveauMotDePasseClair.isEmpty()) {
             throw new IllegalArgumentException("Le mot de passe ne peut pas être vide");
         }
         
-        return executerUpdate("UPDATE Utilisateur SET mot_de_passe = ? WHERE id = ?",
+        boolean modifie = executerUpdate("UPDATE Utilisateur SET mot_de_passe = ? WHERE id = ?",
             pstmt -> {
                 pstmt.setString(1, PasswordHasher.hashPassword(nouveauMotDePasseClair));
                 pstmt.setInt(2, userId);
             });
+        if (modifie) Audit.publier("Utilisateur", userId, Audit.MOT_DE_PASSE, null, null);
+        return modifie;
+    }
+    
+    /**
+     * Remplace le hash stocké d'un utilisateur (migration vers le format courant) ; réservé à
+     * {@link AuthService} en accès direct : en mode serveur, c'est le serveur qui migre les hashs
+     */
+    boolean mettreAJourHashMotDePasse(int userId, String nouveauHash) {
+        return executerUpdate("UPDATE Utilisateur SET mot_de_passe = ? WHERE id = ?",
+            pstmt -> {
+                pstmt.setString(1, nouveauHash);
+                pstmt.setInt(2, userId);
+            });
     }
     
     /**
-     * Supprime un utilisateur
+     * Supprime un utilisateur ; comme pour la modification, la ligne supprimée est celle lue
+     * pour l'audit
      */
     public boolean supprimerUtilisateur(int id) {
-        return executerUpdate("DELETE FROM Utilisateur WHERE id = ?", pstmt -> pstmt.setInt(1, id));
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM Utilisateur WHERE id = ?" + INCHANGE)) {
+            User avant = null;
+            for (int tentative = 0; avant == null; tentative++) {
+                User lu = lire(conn, id);
+                if (lu == null) return false;
+                verifierTentatives(tentative, id);
+                pstmt.setInt(1, id);
+                lierInchange(pstmt, 2, lu);
+                if (pstmt.executeUpdate() > 0) avant = lu;
+            }
+            Audit.publier("Utilisateur", id, Audit.SUPPRESSION, Audit.valeurs(avant), null);
+            BusEvenements.publier(new EvenementDomaine.UtilisateurModifie(id, null, EvenementDomaine.Nature.SUPPRESSION));
+            return true;
+        } catch (SQLException e) {
+            throw new AccesDonneesException(e);
+        }
+    }
+    
+    private User lire(Connection conn, int id) throws SQLException {
+        return AccesDonnees.un(conn, "SELECT * FROM Utilisateur WHERE id = ?", pstmt -> pstmt.setInt(1, id), UTILISATEUR);
+    }
+    
+    private static void lierInchange(PreparedStatement pstmt, int index, User lu) throws SQLException {
+        pstmt.setString(index, lu.getNom());
+        pstmt.setString(index + 1, lu.getEmail());
+        pstmt.setString(index + 2, lu.getRole() != null ? lu.getRole().name() : null);
+        pstmt.setInt(index + 3, lu.getIdSite());
+    }
+    
+    // Écritures concurrentes répétées (ou rôle inconnu en base, jamais égal à sa relecture) : abandon
+    private static void verifierTentatives(int tentative, int id) throws SQLException {
+        if (tentative >= MAX_TENTATIVES) {
+            throw new SQLException("Utilisateur " + id + " modifié en continu par un autre poste, écriture abandonnée");
+        }
     }
     
     private boolean emailExiste(String email, int idAExclure) {
@@ -147,9 +284,8 @@ public class UserService {
                 return rs.next() && rs.getInt(1) > 0;
             }
         } catch (SQLException e) {
-            System.err.println("Erreur lors de la vérification de l'email : " + e.getMessage());
+            throw new AccesDonneesException(e);
         }
-        return false;
     }
     
     private void validerUtilisateur(User user) {
@@ -162,69 +298,16 @@ public class UserService {
         if (user.getRole() == null) {
             throw new IllegalArgumentException("Le rôle de l'utilisateur est requis");
         }
-    }
-    
-    private User creerUtilisateurDepuisResultSet(ResultSet rs) throws SQLException {
-        User u = new User();
-        u.setId(rs.getInt("id"));
-        u.setNom(rs.getString("nom"));
-        u.setEmail(rs.getString("email"));
-        u.setMotDePasse(rs.getString("mot_de_passe"));
-        String roleStr = rs.getString("role");
-        if (roleStr != null) {
-            try {
-                u.setRole(User.Role.valueOf(roleStr));
-            } catch (IllegalArgumentException e) {
-                u.setRole(User.Role.USER);
-            }
-        }
-        return u;
-    }
-    
-    private User executerSelect(String sql, Setter setter) {
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setter.set(pstmt);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next() ? creerUtilisateurDepuisResultSet(rs) : null;
-            }
-        } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-            return null;
+        if (user.getIdSite() <= 0) user.setIdSite(DatabaseConnection.getSiteParDefaut());
+        if (!DatabaseConnection.getSites().contains(user.getIdSite())) {
+            throw new IllegalArgumentException("Site inconnu : " + user.getIdSite());
         }
     }
     
-    private List<User> executerSelectListe(String sql) {
-        return executerSelectListe(sql, null);
-    }
-    
-    private List<User> executerSelectListe(String sql, Setter setter) {
-        List<User> list = new ArrayList<>();
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            if (setter != null) setter.set(pstmt);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) list.add(creerUtilisateurDepuisResultSet(rs));
-            }
-        } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-        }
-        return list;
-    }
-    
-    private boolean executerUpdate(String sql, Setter setter) {
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setter.set(pstmt);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.err.println("Erreur SQL : " + e.getMessage());
-            return false;
-        }
-    }
-    
-    @FunctionalInterface
-    private interface Setter {
-        void set(PreparedStatement pstmt) throws SQLException;
+    /**
+     * False si aucune ligne n'est concernée ; une erreur SQL remonte en {@link AccesDonneesException}
+     */
+    private boolean executerUpdate(String sql, AccesDonnees.Parametres parametres) {
+        return primaire.modifier(sql, parametres) > 0;
     }
 }
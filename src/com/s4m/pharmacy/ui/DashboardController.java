@@ -1,61 +1,133 @@
 package com.s4m.pharmacy.ui;
 
+import com.s4m.pharmacy.db.DatabaseConnection;
+import com.s4m.pharmacy.db.Disjoncteur;
+import com.s4m.pharmacy.evenement.BusEvenements;
+import com.s4m.pharmacy.evenement.EvenementDomaine;
 import com.s4m.pharmacy.model.Category;
 import com.s4m.pharmacy.model.Product;
 import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.offline.CatalogueLocal;
+import com.s4m.pharmacy.server.RemoteClient;
+import com.s4m.pharmacy.service.ApercuService;
+import com.s4m.pharmacy.service.AsyncExecutor;
 import com.s4m.pharmacy.service.AuthService;
 import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.service.ConflitVersionException;
+import com.s4m.pharmacy.service.CritereProduits;
+import com.s4m.pharmacy.service.InventaireService;
 import com.s4m.pharmacy.service.ProductService;
+import com.s4m.pharmacy.service.ReapprovisionnementService;
+import com.s4m.pharmacy.service.TarificationService;
 import com.s4m.pharmacy.service.UserService;
+import com.s4m.pharmacy.util.CodeBarre;
+import com.s4m.pharmacy.util.Montant;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.util.StringConverter;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Tableau de bord complet avec validation, confirmations, recherche et contrôle d'accès.
  */
 public class DashboardController {
 
+    private static final int JOURS_ALERTE_EXPIRATION = 30;
+    private static final String REVISION_POURCENTAGE = "Pourcentage (%)";
+    private static final String REVISION_MONTANT = "Montant (€)";
+    private static final String REVISION_LISTE = "Liste de prix (fichier code;prix)";
+    private static final String REVISION_ANNULATION = "Annuler la révision sélectionnée";
+
     private final User currentUser;
     private final AuthService authService;
     private final ProductService productService;
     private final CategoryService categoryService;
     private final UserService userService;
+    private final ApercuService apercuService;
+    private final ReapprovisionnementService reapprovisionnementService;
+    private final InventaireService inventaireService;
+    private final TarificationService tarificationService;
+    private final CatalogueLocal catalogueLocal;
     private final Runnable onLogout;
+    // Terminal relié directement à MySQL (faux quand server.url est configuré)
+    private final boolean accesDirect = !RemoteClient.estConfigure();
+    private final Consumer<Disjoncteur.Etat> ecouteurEtatBase =
+            etat -> Platform.runLater(() -> afficherEtatBase(etat));
+    // Changements publiés par les services : regroupés puis appliqués en un passage JavaFX
+    private final Consumer<EvenementDomaine> ecouteurEvenements = this::recevoirEvenement;
+    private final Queue<EvenementDomaine> evenementsEnAttente = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean vidageProgramme = new AtomicBoolean();
 
     private final ObservableList<Product> produits = FXCollections.observableArrayList();
     private final ObservableList<Category> categories = FXCollections.observableArrayList();
     private final ObservableList<User> users = FXCollections.observableArrayList();
     private final Map<Integer, Category> categoryById = new HashMap<>();
+    private final Map<Integer, Product> productById = new HashMap<>();
+    // Lignes affichées (textes préformatés), dérivées de la liste des produits
+    private final ObservableList<LigneProduit> lignesProduits = FXCollections.observableArrayList();
+    private final Map<Integer, LigneProduit> ligneParId = new HashMap<>();
+    // Descriptions chargées à la sélection (les listes ne les contiennent pas), vidé au rafraîchissement
+    private final Map<Integer, String> descriptions = new HashMap<>();
+    // Produit dont la description est en cours de lecture (null : aucune lecture en cours)
+    private Integer descriptionEnCours;
 
     // Listes filtrées pour la recherche
-    private FilteredList<Product> filteredProduits;
+    private FilteredList<LigneProduit> filteredProduits;
     private FilteredList<Category> filteredCategories;
     private FilteredList<User> filteredUsers;
 
     @FXML
     private Label welcomeLabel;
     @FXML
+    private Label etatBaseLabel;
+    @FXML
     private TabPane tabPane;
     @FXML
     private Tab userTab;
 
     // Produits
-    @FXML private TableView<Product> productTable;
-    @FXML private TableColumn<Product, String> colNom;
-    @FXML private TableColumn<Product, String> colPrix;
-    @FXML private TableColumn<Product, Integer> colQuantite;
-    @FXML private TableColumn<Product, String> colExpiration;
-    @FXML private TableColumn<Product, String> colCategorie;
+    @FXML private TableView<LigneProduit> productTable;
+    @FXML private TableColumn<LigneProduit, LigneProduit> colNom;
+    @FXML private TableColumn<LigneProduit, LigneProduit> colPrix;
+    @FXML private TableColumn<LigneProduit, LigneProduit> colQuantite;
+    @FXML private TableColumn<LigneProduit, LigneProduit> colExpiration;
+    @FXML private TableColumn<LigneProduit, LigneProduit> colCategorie;
     @FXML private TextField productNameField;
     @FXML private TextArea productDescField;
     @FXML private TextField productPriceField;
@@ -64,6 +136,11 @@ public class DashboardController {
     @FXML private ComboBox<Category> productCategoryCombo;
     @FXML private Label productStatus;
     @FXML private TextField productSearchField;
+    @FXML private TextField productCodeField;
+    @FXML private TextField scanField;
+    @FXML private Button prixButton;
+    @FXML private Button reapprovisionnementButton;
+    @FXML private Button inventaireButton;
 
     // Catégories
     @FXML private TableView<Category> categoryTable;
@@ -83,6 +160,7 @@ public class DashboardController {
     @FXML private TextField userEmailField;
     @FXML private PasswordField userPasswordField;
     @FXML private ComboBox<User.Role> userRoleCombo;
+    @FXML private ComboBox<Integer> userSiteCombo;
     @FXML private Label userStatus;
     @FXML private TextField userSearchField;
 
@@ -91,56 +169,75 @@ public class DashboardController {
                                ProductService productService,
                                CategoryService categoryService,
                                UserService userService,
+                               CatalogueLocal catalogueLocal,
                                Runnable onLogout) {
         this.currentUser = currentUser;
         this.authService = authService;
         this.productService = productService;
         this.categoryService = categoryService;
         this.userService = userService;
+        this.apercuService = new ApercuService(productService, categoryService);
+        // Services sans route serveur : réservés à l'accès direct, masqués en mode distant
+        this.reapprovisionnementService = accesDirect ? new ReapprovisionnementService(productService) : null;
+        this.inventaireService = accesDirect ? new InventaireService(productService) : null;
+        this.tarificationService = accesDirect ? new TarificationService(productService) : null;
+        this.catalogueLocal = catalogueLocal;
         this.onLogout = onLogout;
     }
 
     @FXML
     private void initialize() {
         welcomeLabel.setText("Bienvenue " + currentUser.getNom() +
-                (currentUser.isAdmin() ? " (Admin)" : ""));
+                (currentUser.isAdmin() ? " (Admin)" : "") +
+                (DatabaseConnection.getSites().size() > 1 ? " — " + DatabaseConnection.getNomSite(currentUser.getIdSite()) : ""));
+
+        // Mode dégradé : signalé dès que le disjoncteur de la base s'ouvre
+        afficherEtatBase(DatabaseConnection.getEtat());
+        DatabaseConnection.ajouterEcouteurEtat(ecouteurEtatBase);
+        BusEvenements.abonner(EvenementDomaine.class, ecouteurEvenements);
+
+        // Index des codes-barres chargé hors du thread JavaFX, avant les premières lectures douchette
+        productService.prechargerIndexCodesAsync().whenCompleteAsync((ok, erreur) -> {
+            if (erreur != null) showStatus(productStatus, "Index des codes-barres indisponible : recherche en base", false);
+        }, Platform::runLater);
 
         // Masquer l'onglet Utilisateurs si pas admin
         if (!currentUser.isAdmin() && userTab != null) {
             tabPane.getTabs().remove(userTab);
         }
+        if (!currentUser.isAdmin() || !accesDirect) masquer(prixButton);
+        if (!accesDirect) {
+            masquer(reapprovisionnementButton);
+            masquer(inventaireButton);
+        }
 
         // Initialiser les listes filtrées
-        filteredProduits = new FilteredList<>(produits, p -> true);
+        filteredProduits = new FilteredList<>(lignesProduits, p -> true);
         filteredCategories = new FilteredList<>(categories, c -> true);
         filteredUsers = new FilteredList<>(users, u -> true);
 
-        // Table produits avec formatage
-        colNom.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getNom()));
-        colPrix.setCellValueFactory(c -> {
-            double prix = c.getValue().getPrix();
-            return new SimpleStringProperty(String.format("%.2f €", prix));
-        });
-        colQuantite.setCellValueFactory(new PropertyValueFactory<>("quantite"));
-        colExpiration.setCellValueFactory(c -> {
-            LocalDate date = c.getValue().getDateExpiration();
-            return new SimpleStringProperty(date != null ? 
-                date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) : "");
+        // Table produits : lignes préformatées, tri sur des clés primitives
+        colonne(colNom, LigneProduit::getNom, LigneProduit.PAR_NOM);
+        colonne(colPrix, LigneProduit::getPrixTexte, LigneProduit.PAR_PRIX);
+        colonne(colQuantite, LigneProduit::getQuantiteTexte, LigneProduit.PAR_QUANTITE);
+        colonne(colExpiration, LigneProduit::getExpirationTexte, LigneProduit.PAR_EXPIRATION);
+        colonne(colCategorie, LigneProduit::getCategorie, LigneProduit.PAR_CATEGORIE);
+        SortedList<LigneProduit> produitsTries = new SortedList<>(filteredProduits);
+        produitsTries.comparatorProperty().bind(productTable.comparatorProperty());
+        productTable.setItems(produitsTries);
+        produits.addListener((ListChangeListener<Product>) changement -> {
+            productById.clear();
+            for (Product p : produits) productById.put(p.getId(), p);
+            actualiserLignes();
         });
-        colCategorie.setCellValueFactory(c -> {
-            Category cat = categoryById.get(c.getValue().getIdCategorie());
-            return new SimpleStringProperty(cat != null ? cat.getNom() : "");
-        });
-        productTable.setItems(filteredProduits);
-        productTable.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> fillProductForm(newV));
+        productTable.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) ->
+            fillProductForm(newV != null ? newV.getProduit() : null));
 
         // Recherche produits
         if (productSearchField != null) {
             productSearchField.textProperty().addListener((obs, oldV, newV) -> {
-                filteredProduits.setPredicate(p -> 
-                    p.getNom().toLowerCase().contains(newV.toLowerCase()) ||
-                    (p.getDescription() != null && p.getDescription().toLowerCase().contains(newV.toLowerCase()))
-                );
+                String terme = newV.trim().toLowerCase(Locale.ROOT);
+                filteredProduits.setPredicate(l -> l.contient(terme));
             });
         }
 
@@ -167,6 +264,12 @@ public class DashboardController {
         userTable.setItems(filteredUsers);
         userTable.getSelectionModel().selectedItemProperty().addListener((obs, o, n) -> fillUserForm(n));
         userRoleCombo.setItems(FXCollections.observableArrayList(User.Role.values()));
+        userSiteCombo.setItems(FXCollections.observableArrayList(DatabaseConnection.getSites()));
+        userSiteCombo.setConverter(new StringConverter<>() {
+            @Override public String toString(Integer site) { return site != null ? DatabaseConnection.getNomSite(site) : ""; }
+            @Override public Integer fromString(String texte) { return null; }
+        });
+        userSiteCombo.setValue(DatabaseConnection.getSiteParDefaut());
 
         // Recherche utilisateurs
         if (userSearchField != null) {
@@ -178,9 +281,77 @@ public class DashboardController {
             });
         }
 
-        refreshCategories();
-        refreshProduits();
-        refreshUsers();
+        chargerDonneesInitiales();
+    }
+
+    /**
+     * Chargement initial : catégories, produits, stock bas, expirations et utilisateurs
+     * sont lus en parallèle puis appliqués sur le thread JavaFX.
+     */
+    private void chargerDonneesInitiales() {
+        productCategoryCombo.setItems(categories);
+        showStatus(productStatus, "Chargement...", true);
+        if (catalogueLocal != null) {
+            chargerDepuisCatalogueLocal();
+        } else {
+            apercuService.chargerApercu(JOURS_ALERTE_EXPIRATION).whenCompleteAsync((apercu, erreur) -> {
+                if (erreur != null) {
+                    showStatus(productStatus, "Erreur de connexion à la base de données", false);
+                    return;
+                }
+                appliquerCategories(apercu.getCategories());
+                produits.setAll(apercu.getProduits());
+                afficherAlertes(apercu.getStockBas().size(), apercu.getBientotExpires().size());
+            }, Platform::runLater);
+        }
+
+        if (currentUser.isAdmin()) {
+            userService.listerTousLesUtilisateursAsync().whenCompleteAsync((liste, erreur) -> {
+                if (erreur != null) {
+                    showStatus(userStatus, "Erreur de connexion à la base de données", false);
+                } else {
+                    users.setAll(liste);
+                }
+            }, Platform::runLater);
+        }
+    }
+
+    /**
+     * Affiche immédiatement le dernier catalogue enregistré, puis le réconcilie
+     * avec la base en arrière-plan (seules les lignes modifiées sont relues).
+     */
+    private void chargerDepuisCatalogueLocal() {
+        CatalogueLocal.Contenu local = catalogueLocal.charger();
+        if (!local.estVide()) {
+            appliquerCategories(local.getCategories());
+            produits.setAll(local.getProduits());
+            showStatus(productStatus, "Catalogue local affiché, synchronisation...", true);
+        }
+        catalogueLocal.reconcilier(local).whenCompleteAsync((contenu, erreur) -> {
+            if (erreur != null) {
+                showStatus(productStatus, local.estVide()
+                    ? "Erreur de connexion à la base de données"
+                    : "Base injoignable : catalogue local affiché", false);
+                return;
+            }
+            appliquerCategories(contenu.getCategories());
+            produits.setAll(contenu.getProduits());
+            LocalDate limite = LocalDate.now().plusDays(JOURS_ALERTE_EXPIRATION);
+            long stockBas = produits.stream().filter(p -> p.getQuantite() < 10).count();
+            long expirants = produits.stream()
+                .filter(p -> p.getDateExpiration() != null && !p.getDateExpiration().isAfter(limite))
+                .count();
+            afficherAlertes(stockBas, expirants);
+        }, Platform::runLater);
+    }
+
+    private void afficherAlertes(long stockBas, long expirants) {
+        // Somme exacte en centimes, sans objet intermédiaire
+        long valeur = 0;
+        for (Product p : produits) valeur += p.getValeurStockCentimes();
+        showStatus(productStatus, stockBas + " produit(s) en stock bas, " +
+            expirants + " expirant sous " + JOURS_ALERTE_EXPIRATION + " jours — valeur du stock " +
+            Montant.formater(valeur), true);
     }
 
     // ==================== PRODUITS ====================
@@ -188,6 +359,7 @@ public class DashboardController {
     private void refreshProduits() {
         try {
             produits.setAll(productService.listerTousLesProduits());
+            descriptions.clear();
             showStatus(productStatus, "Liste rafraîchie", true);
         } catch (Exception e) {
             showError("Erreur lors du rafraîchissement : " + e.getMessage());
@@ -195,6 +367,382 @@ public class DashboardController {
         }
     }
 
+    /**
+     * Saisie douchette (le scanner termine chaque code par Entrée) : le code est résolu
+     * par l'index en mémoire puis dans la liste déjà chargée, sans aller-retour vers la base.
+     * Index pas encore chargé ou code inconnu : recherche en arrière-plan.
+     * Le champ garde le focus pour enchaîner les lectures.
+     */
+    @FXML
+    private void scannerCode() {
+        String code = scanField.getText();
+        scanField.clear();
+        scanField.requestFocus();
+        if (code == null || code.isBlank()) return;
+        String cle = CodeBarre.cleRecherche(code);
+        if (cle == null) {
+            showStatus(productStatus, "Code illisible : " + code.strip(), false);
+            return;
+        }
+
+        Product p = productById.get(productService.getIdProduitParCodeEnMemoire(cle));
+        if (p != null && cle.equals(p.getCode())) {
+            afficherProduitScanne(p);
+            return;
+        }
+        // Code absent de l'index local (non chargé, ou ajouté depuis un autre poste) : recherche en base
+        productService.getProduitParCodeAsync(code).whenCompleteAsync((trouve, erreur) -> {
+            if (erreur != null) {
+                showStatus(productStatus, "Erreur de connexion à la base de données", false);
+            } else if (trouve == null) {
+                chercherDansLesArchives(code, cle);
+            } else {
+                afficherProduitTrouve(trouve);
+            }
+        }, Platform::runLater);
+    }
+
+    /**
+     * Code absent du stock courant : un produit archivé portant ce code est proposé à la
+     * restauration, sinon le formulaire est préparé pour associer le code à un nouveau produit
+     */
+    private void chercherDansLesArchives(String code, String cle) {
+        productService.getProduitArchiveParCodeAsync(cle).whenCompleteAsync((archive, erreur) -> {
+            if (erreur != null || archive == null) {
+                showStatus(productStatus, "Code inconnu : " + code.strip() + " (saisissez le produit pour l'associer)", false);
+                productTable.getSelectionModel().clearSelection();
+                clearProductForm();
+                productCodeField.setText(cle);
+                return;
+            }
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+            confirm.setTitle("Produit archivé");
+            confirm.setHeaderText("Restaurer le produit archivé ?");
+            confirm.setContentText(archive.getNom() + " (code " + cle + ") a été archivé. Le remettre dans le stock ?");
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+                showStatus(productStatus, archive.getNom() + " est archivé", false);
+                return;
+            }
+            productService.restaurerProduitArchiveAsync(archive.getId()).whenCompleteAsync((restaure, echec) -> {
+                if (echec != null) {
+                    Throwable cause = echec instanceof CompletionException && echec.getCause() != null ? echec.getCause() : echec;
+                    showStatus(productStatus, "Échec de la restauration", false);
+                    showError("Erreur lors de la restauration : " + cause.getMessage());
+                } else if (restaure == null) {
+                    showStatus(productStatus, archive.getNom() + " n'est plus dans les archives", false);
+                } else {
+                    afficherProduitTrouve(restaure);
+                }
+            }, Platform::runLater);
+        }, Platform::runLater);
+    }
+
+    private void afficherProduitTrouve(Product trouve) {
+        Product connu = productById.get(trouve.getId());
+        if (connu != null) produits.set(produits.indexOf(connu), trouve);
+        else produits.add(trouve);
+        afficherProduitScanne(trouve);
+    }
+
+    private void afficherProduitScanne(Product p) {
+        LigneProduit ligne = ligneParId.get(p.getId());
+        if (!filteredProduits.contains(ligne) && productSearchField != null) productSearchField.clear();
+        productTable.getSelectionModel().select(ligne);
+        productTable.scrollTo(ligne);
+        showStatus(productStatus, p.getNom() + " - " + Montant.formater(p.getPrixCentimes()) +
+            " - stock " + p.getQuantite(), !p.isStockBas());
+    }
+
+    /**
+     * Calcule la commande suggérée en arrière-plan et l'affiche
+     */
+    @FXML
+    private void afficherReapprovisionnement() {
+        if (reapprovisionnementService == null) return;
+        showStatus(productStatus, "Calcul des prévisions...", true);
+        reapprovisionnementService.calculerBonDeCommandeAsync().whenCompleteAsync((bon, erreur) -> {
+            if (erreur != null) {
+                showStatus(productStatus, "Prévisions indisponibles", false);
+                showError("Erreur lors du calcul des prévisions : " + erreur.getMessage());
+                return;
+            }
+            showStatus(productStatus, bon.size() + " produit(s) à commander", true);
+            StringBuilder texte = new StringBuilder();
+            for (ReapprovisionnementService.Prevision p : bon) {
+                texte.append(String.format("%-30s %6d   (stock %d, %.1f/jour, couverture %.0f j)%n",
+                    p.getProduit().getNom(), p.getQuantiteSuggeree(), p.getProduit().getQuantite(),
+                    p.getConsommationJour(), p.getJoursCouverture()));
+            }
+            TextArea zone = new TextArea(bon.isEmpty() ? "Aucun produit à commander." : texte.toString());
+            zone.setEditable(false);
+            zone.setStyle("-fx-font-family: monospace;");
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Commande suggérée");
+            alert.setHeaderText("Produits dont le stock ne couvre plus le délai de livraison");
+            alert.getDialogPane().setContent(zone);
+            alert.showAndWait();
+        }, Platform::runLater);
+    }
+
+    @FXML
+    private void rechercherTousSites() {
+        String terme = productSearchField.getText() != null ? productSearchField.getText().trim() : "";
+        if (terme.isEmpty()) {
+            showStatus(productStatus, "Saisissez un nom de produit à rechercher", false);
+            return;
+        }
+        showStatus(productStatus, "Recherche dans tous les sites...", true);
+        productService.rechercherEnStockTousSitesAsync(terme).whenCompleteAsync((trouves, erreur) -> {
+            if (erreur != null) {
+                showStatus(productStatus, "Recherche multi-sites indisponible", false);
+                showError("Erreur lors de la recherche multi-sites : " + erreur.getMessage());
+                return;
+            }
+            showStatus(productStatus, trouves.size() + " résultat(s) dans les sites", true);
+            StringBuilder texte = new StringBuilder();
+            for (Product p : trouves) {
+                texte.append(String.format("%-20s %-30s %6d%n",
+                    DatabaseConnection.getNomSite(p.getIdSite()), p.getNom(), p.getQuantite()));
+            }
+            TextArea zone = new TextArea(trouves.isEmpty() ? "Aucun site n'a ce produit en stock." : texte.toString());
+            zone.setEditable(false);
+            zone.setStyle("-fx-font-family: monospace;");
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Stock des autres sites");
+            alert.setHeaderText("Sites ayant « " + terme + " » en stock");
+            alert.getDialogPane().setContent(zone);
+            alert.showAndWait();
+        }, Platform::runLater);
+    }
+
+    @FXML
+    private void rechercherArchives() {
+        String terme = productSearchField.getText() != null ? productSearchField.getText().trim() : "";
+        showStatus(productStatus, "Recherche dans les archives...", true);
+        productService.rechercherProduitsArchivesAsync(terme).whenCompleteAsync((archives, erreur) -> {
+            if (erreur != null) {
+                showStatus(productStatus, "Archives indisponibles", false);
+                showError("Erreur lors de la recherche dans les archives : " + erreur.getMessage());
+                return;
+            }
+            showStatus(productStatus, archives.size() + " produit(s) archivé(s)", true);
+            StringBuilder texte = new StringBuilder();
+            for (Product p : archives) {
+                LocalDate date = p.getDateExpiration();
+                texte.append(String.format("%-30s %6d   exp. %s%n", p.getNom(), p.getQuantite(),
+                    date != null ? date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) : ""));
+            }
+            TextArea zone = new TextArea(archives.isEmpty() ? "Aucun produit archivé." : texte.toString());
+            zone.setEditable(false);
+            zone.setStyle("-fx-font-family: monospace;");
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Archives");
+            alert.setHeaderText("Produits expirés ou retirés" + (terme.isEmpty() ? "" : " correspondant à « " + terme + " »"));
+            alert.getDialogPane().setContent(zone);
+            alert.showAndWait();
+        }, Platform::runLater);
+    }
+
+    /**
+     * Inventaire physique : lignes « code;quantité » saisies, lues à la douchette (une unité
+     * par lecture) ou importées d'un fichier, puis appliquées en une transaction avec rapport
+     */
+    @FXML
+    private void saisirInventaire() {
+        if (inventaireService == null) return;
+        TextArea saisie = new TextArea();
+        saisie.setPromptText("code;quantité (une ligne par produit, ou une lecture douchette par unité)");
+        saisie.setStyle("-fx-font-family: monospace;");
+        saisie.setPrefRowCount(16);
+        TextField scan = new TextField();
+        scan.setPromptText("Code-barres...");
+        scan.setOnAction(e -> {
+            if (!scan.getText().isBlank()) saisie.appendText(scan.getText().strip() + "\n");
+            scan.clear();
+        });
+        Button importer = new Button("Importer un fichier...");
+        importer.setOnAction(e -> {
+            FileChooser choix = new FileChooser();
+            choix.getExtensionFilters().add(new FileChooser.ExtensionFilter("Comptage (CSV, texte)", "*.csv", "*.txt"));
+            File fichier = choix.showOpenDialog(importer.getScene().getWindow());
+            if (fichier == null) return;
+            try {
+                saisie.appendText(Files.readString(fichier.toPath(), StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                showError("Lecture du fichier impossible : " + ex.getMessage());
+            }
+        });
+        HBox outils = new HBox(8, new Label("Scan:"), scan, importer);
+        outils.setAlignment(Pos.CENTER_LEFT);
+
+        Dialog<ButtonType> dialogue = new Dialog<>();
+        dialogue.setTitle("Inventaire");
+        dialogue.setHeaderText("Quantités comptées (les produits non comptés ne sont pas modifiés)");
+        dialogue.getDialogPane().setContent(new VBox(8, outils, saisie));
+        dialogue.getDialogPane().getButtonTypes().addAll(
+            new ButtonType("Appliquer", ButtonBar.ButtonData.OK_DONE), ButtonType.CANCEL);
+        Platform.runLater(scan::requestFocus);
+        if (dialogue.showAndWait().filter(b -> b.getButtonData() == ButtonBar.ButtonData.OK_DONE).isEmpty()) return;
+
+        String texte = saisie.getText();
+        showStatus(productStatus, "Application de l'inventaire...", true);
+        AsyncExecutor.executer(() -> inventaireService.lire(new StringReader(texte)))
+            .thenCompose(inventaireService::appliquerAsync)
+            .whenCompleteAsync((rapport, erreur) -> {
+                if (erreur != null) {
+                    showStatus(productStatus, "Inventaire non appliqué", false);
+                    showError("Erreur lors de l'inventaire (aucun stock modifié) : " + erreur.getMessage());
+                    return;
+                }
+                // Rechargement plutôt que les seules quantités : les versions des lignes ont changé
+                refreshProduits();
+                showStatus(productStatus, "Inventaire appliqué : " + rapport.getEcarts().size() + " écart(s), " +
+                    rapport.getConformes() + " produit(s) conforme(s)", true);
+                afficherRapportInventaire(rapport);
+            }, Platform::runLater);
+    }
+
+    private void afficherRapportInventaire(InventaireService.Rapport rapport) {
+        StringBuilder texte = new StringBuilder();
+        texte.append(String.format("%-30s %9s %9s %7s%n", "Produit", "Théorique", "Compté", "Écart"));
+        for (InventaireService.Ecart e : rapport.getEcarts()) {
+            texte.append(String.format("%-30s %9d %9d %+7d%n", e.getNom(), e.getTheorique(), e.getCompte(), e.getEcart()));
+        }
+        texte.append(String.format("%n%d produit(s) conforme(s)%n", rapport.getConformes()));
+        if (!rapport.getAbsents().isEmpty()) {
+            texte.append(rapport.getAbsents().size()).append(" produit(s) supprimé(s) depuis le comptage, ignoré(s)\n");
+        }
+        if (!rapport.getRejets().isEmpty()) {
+            texte.append("\nLignes rejetées :\n");
+            for (String rejet : rapport.getRejets()) texte.append("  ").append(rejet).append('\n');
+        }
+        TextArea zone = new TextArea(texte.toString());
+        zone.setEditable(false);
+        zone.setStyle("-fx-font-family: monospace;");
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Rapport d'inventaire");
+        alert.setHeaderText("Ajustements de stock appliqués");
+        alert.getDialogPane().setContent(zone);
+        alert.showAndWait();
+    }
+
+    /**
+     * Révision des prix (administrateurs) : pourcentage ou montant sur une catégorie et/ou un
+     * nom, liste de prix importée, ou annulation d'une révision précédente
+     */
+    @FXML
+    private void reviserPrix() {
+        if (!currentUser.isAdmin() || tarificationService == null) return;
+        ChoiceBox<String> operation = new ChoiceBox<>(FXCollections.observableArrayList(
+            REVISION_POURCENTAGE, REVISION_MONTANT, REVISION_LISTE, REVISION_ANNULATION));
+        operation.setValue(REVISION_POURCENTAGE);
+        List<Category> choixCategories = new ArrayList<>(categories);
+        ChoiceBox<String> categorie = new ChoiceBox<>();
+        categorie.getItems().add("Toutes les catégories");
+        for (Category c : choixCategories) categorie.getItems().add(c.getNom());
+        categorie.getSelectionModel().selectFirst();
+        TextField nom = new TextField();
+        nom.setPromptText("Nom contenant... (facultatif)");
+        TextField valeur = new TextField();
+        valeur.setPromptText("ex. 5 ou -2,50");
+        ListView<TarificationService.Revision> revisions = new ListView<>();
+        revisions.setPrefHeight(160);
+        revisions.setCellFactory(v -> new ListCell<>() {
+            @Override
+            protected void updateItem(TarificationService.Revision r, boolean vide) {
+                super.updateItem(r, vide);
+                setText(vide || r == null ? null : String.format("n° %d  %s  %s (%d produit(s))", r.getId(),
+                    r.getDate() != null ? r.getDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "",
+                    r.getLibelle(), r.getProduits()));
+            }
+        });
+        tarificationService.listerRevisionsAsync(20).whenCompleteAsync((liste, erreur) -> {
+            if (erreur == null) revisions.getItems().setAll(liste);
+        }, Platform::runLater);
+
+        GridPane grille = new GridPane();
+        grille.setHgap(8);
+        grille.setVgap(8);
+        grille.addRow(0, new Label("Opération :"), operation);
+        grille.addRow(1, new Label("Catégorie :"), categorie);
+        grille.addRow(2, new Label("Nom :"), nom);
+        grille.addRow(3, new Label("Valeur :"), valeur);
+        Dialog<ButtonType> dialogue = new Dialog<>();
+        dialogue.setTitle("Révision des prix");
+        dialogue.setHeaderText("Modification groupée des prix, historisée et annulable");
+        dialogue.getDialogPane().setContent(new VBox(8, grille, new Label("Dernières révisions :"), revisions));
+        dialogue.getDialogPane().getButtonTypes().addAll(
+            new ButtonType("Appliquer", ButtonBar.ButtonData.OK_DONE), ButtonType.CANCEL);
+        if (dialogue.showAndWait().filter(b -> b.getButtonData() == ButtonBar.ButtonData.OK_DONE).isEmpty()) return;
+
+        int indexCategorie = categorie.getSelectionModel().getSelectedIndex();
+        CritereProduits filtre = new CritereProduits().nom(nom.getText())
+            .categorie(indexCategorie > 0 ? choixCategories.get(indexCategorie - 1).getId() : null);
+        CompletableFuture<TarificationService.Revision> revision;
+        List<String> rejets = new ArrayList<>();
+        try {
+            switch (operation.getValue()) {
+                case REVISION_POURCENTAGE:
+                    revision = tarificationService.reviserPourcentageAsync(filtre, lireDecimal(valeur.getText()));
+                    break;
+                case REVISION_MONTANT:
+                    revision = tarificationService.reviserMontantAsync(filtre, lireMontant(valeur.getText()));
+                    break;
+                case REVISION_LISTE:
+                    FileChooser choix = new FileChooser();
+                    choix.getExtensionFilters().add(new FileChooser.ExtensionFilter("Liste de prix (code;prix)", "*.csv", "*.txt"));
+                    File fichier = choix.showOpenDialog(productTable.getScene().getWindow());
+                    if (fichier == null) return;
+                    String texte = Files.readString(fichier.toPath(), StandardCharsets.UTF_8);
+                    revision = AsyncExecutor.executer(() -> tarificationService.lireListe(new StringReader(texte)))
+                        .thenCompose(liste -> {
+                            rejets.addAll(liste.getRejets());
+                            return tarificationService.appliquerListeAsync(liste, "Liste de prix " + fichier.getName());
+                        });
+                    break;
+                default:
+                    TarificationService.Revision choisie = revisions.getSelectionModel().getSelectedItem();
+                    if (choisie == null) {
+                        showStatus(productStatus, "Sélectionnez la révision à annuler", false);
+                        return;
+                    }
+                    revision = tarificationService.annulerAsync(choisie.getId());
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            showError("Révision impossible : " + e.getMessage());
+            return;
+        }
+
+        showStatus(productStatus, "Révision des prix en cours...", true);
+        revision.whenCompleteAsync((r, erreur) -> {
+            if (erreur != null) {
+                showStatus(productStatus, "Révision des prix non appliquée", false);
+                showError("Erreur lors de la révision des prix (aucun prix modifié) : " + erreur.getMessage());
+                return;
+            }
+            showStatus(productStatus, "Révision n° " + r.getId() + " : " + r.getProduits() + " prix modifié(s)", true);
+            if (!rejets.isEmpty()) {
+                showError(rejets.size() + " ligne(s) ignorée(s) :\n" + String.join("\n", rejets));
+            }
+        }, Platform::runLater);
+    }
+
+    private static BigDecimal lireDecimal(String texte) {
+        try {
+            return new BigDecimal(texte.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valeur numérique attendue");
+        }
+    }
+
+    private static long lireMontant(String texte) {
+        try {
+            return Montant.analyser(texte);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Montant attendu (ex. 12,50)");
+        }
+    }
+
     @FXML
     private void addProduit() {
         try {
@@ -202,7 +750,6 @@ public class DashboardController {
             int id = productService.ajouterProduit(p);
             if (id > 0) {
                 showStatus(productStatus, "Produit ajouté avec succès", true);
-                refreshProduits();
                 clearProductForm();
             } else {
                 showStatus(productStatus, "Échec de l'ajout", false);
@@ -217,16 +764,37 @@ public class DashboardController {
 
     @FXML
     private void updateProduit() {
-        Product selected = productTable.getSelectionModel().getSelectedItem();
+        Product selected = produitSelectionne();
         if (selected == null) {
             showStatus(productStatus, "Sélectionnez un produit à modifier", false);
             return;
         }
+        // Description pas encore chargée : l'enregistrer l'effacerait ; après un échec, nouvelle lecture
+        if (productDescField.isDisabled()) {
+            if (descriptionEnCours == null) afficherDescription(selected);
+            showStatus(productStatus, "Description en cours de chargement, réessayez", false);
+            return;
+        }
         try {
+            String descriptionLue = descriptions.get(selected.getId());
             Product p = buildProductFromForm(selected.getId());
-            boolean ok = productService.modifierProduit(p);
+            p.setVersion(selected.getVersion());
+            boolean ok;
+            try {
+                ok = productService.modifierProduit(p);
+            } catch (ConflitVersionException conflit) {
+                p = fusionner(selected, descriptionLue, p, conflit.getProduitActuel());
+                if (p == null) {
+                    showStatus(productStatus, "Modification abandonnée, produit rechargé", false);
+                    refreshProduits();
+                    return;
+                }
+                ok = productService.modifierProduit(p);
+            }
             showStatus(productStatus, ok ? "Produit mis à jour avec succès" : "Échec de la mise à jour", ok);
-            if (ok) refreshProduits();
+        } catch (ConflitVersionException e) {
+            showStatus(productStatus, e.getMessage() + ", réessayez", false);
+            refreshProduits();
         } catch (IllegalArgumentException e) {
             showStatus(productStatus, e.getMessage(), false);
         } catch (Exception e) {
@@ -235,9 +803,50 @@ public class DashboardController {
         }
     }
 
+    /**
+     * Conflit de version : les champs changés dans le formulaire sont reportés sur la ligne
+     * actuelle, la quantité par différence (les délivrances faites ailleurs sont conservées).
+     * Si l'autre poste a changé un même champ autrement, l'utilisateur choisit ; null s'il
+     * préfère recharger le produit.
+     */
+    private Product fusionner(Product lu, String descriptionLue, Product saisi, Product actuel) {
+        List<String> communs = new ArrayList<>();
+        Product fusion = new Product();
+        fusion.setId(actuel.getId());
+        fusion.setVersion(actuel.getVersion());
+        fusion.setNom(choisir("nom", lu.getNom(), saisi.getNom(), actuel.getNom(), communs));
+        fusion.setDescription(choisir("description", descriptionLue, saisi.getDescription(), actuel.getDescription(), communs));
+        fusion.setPrixCentimes(choisir("prix", lu.getPrixCentimes(), saisi.getPrixCentimes(), actuel.getPrixCentimes(), communs));
+        fusion.setDateExpiration(choisir("date d'expiration", lu.getDateExpiration(), saisi.getDateExpiration(),
+            actuel.getDateExpiration(), communs));
+        fusion.setIdCategorie(choisir("catégorie", lu.getIdCategorie(), saisi.getIdCategorie(), actuel.getIdCategorie(), communs));
+        fusion.setCode(choisir("code-barres", lu.getCode(), saisi.getCode(), actuel.getCode(), communs));
+        fusion.setQuantite(Math.max(0, actuel.getQuantite() + saisi.getQuantite() - lu.getQuantite()));
+
+        Alert alerte = new Alert(Alert.AlertType.CONFIRMATION);
+        alerte.setTitle("Modification concurrente");
+        alerte.setHeaderText("« " + actuel.getNom() + " » a été modifié par un autre poste");
+        alerte.setContentText((communs.isEmpty()
+                ? "Vos modifications peuvent être fusionnées avec les siennes."
+                : "Champs modifiés des deux côtés : " + String.join(", ", communs) + ".\nVos valeurs remplaceront les siennes.")
+            + "\nStock après fusion : " + fusion.getQuantite());
+        ButtonType garder = new ButtonType("Enregistrer la fusion", ButtonBar.ButtonData.OK_DONE);
+        alerte.getButtonTypes().setAll(garder, new ButtonType("Recharger", ButtonBar.ButtonData.CANCEL_CLOSE));
+        return alerte.showAndWait().filter(b -> b == garder).isPresent() ? fusion : null;
+    }
+
+    /**
+     * Valeur fusionnée d'un champ : la saisie si elle a changé, sinon la valeur actuelle
+     */
+    private static <T> T choisir(String champ, T lu, T saisi, T actuel, List<String> communs) {
+        if (Objects.equals(saisi, lu)) return actuel;
+        if (!Objects.equals(actuel, lu) && !Objects.equals(actuel, saisi)) communs.add(champ);
+        return saisi;
+    }
+
     @FXML
     private void deleteProduit() {
-        Product selected = productTable.getSelectionModel().getSelectedItem();
+        Product selected = produitSelectionne();
         if (selected == null) {
             showStatus(productStatus, "Sélectionnez un produit à supprimer", false);
             return;
@@ -252,10 +861,7 @@ public class DashboardController {
             try {
                 boolean ok = productService.supprimerProduit(selected.getId());
                 showStatus(productStatus, ok ? "Produit supprimé avec succès" : "Échec de la suppression", ok);
-                if (ok) {
-                    refreshProduits();
-                    clearProductForm();
-                }
+                if (ok) clearProductForm();
             } catch (Exception e) {
                 showError("Erreur lors de la suppression : " + e.getMessage());
                 showStatus(productStatus, "Erreur de connexion à la base de données", false);
@@ -270,11 +876,11 @@ public class DashboardController {
         
         String desc = productDescField.getText();
         
-        double prix;
+        long prix;
         try {
-            prix = Double.parseDouble(productPriceField.getText().trim());
+            prix = Montant.analyser(productPriceField.getText());
             if (prix < 0) throw new IllegalArgumentException("Le prix ne peut pas être négatif");
-        } catch (NumberFormatException e) {
+        } catch (NumberFormatException | ArithmeticException e) {
             throw new IllegalArgumentException("Le prix doit être un nombre valide");
         }
         
@@ -293,39 +899,111 @@ public class DashboardController {
         if (cat == null) throw new IllegalArgumentException("Choisissez une catégorie");
         
         Product p = new Product(nom, desc, prix, qty, date, cat.getId());
+        p.setCode(productCodeField.getText());
         if (id > 0) p.setId(id);
         return p;
     }
 
+    private Product produitSelectionne() {
+        LigneProduit ligne = productTable.getSelectionModel().getSelectedItem();
+        return ligne != null ? ligne.getProduit() : null;
+    }
+
+    /**
+     * Aligne les lignes affichées sur la liste des produits : seules les lignes dont le produit
+     * ou le nom de catégorie a changé sont reformatées, les autres sont réutilisées
+     */
+    private void actualiserLignes() {
+        Map<Integer, LigneProduit> anciennes = new HashMap<>(ligneParId);
+        ligneParId.clear();
+        List<LigneProduit> lignes = new ArrayList<>(produits.size());
+        for (Product p : produits) {
+            Category cat = categoryById.get(p.getIdCategorie());
+            String nomCategorie = cat != null ? cat.getNom() : null;
+            LigneProduit ligne = anciennes.get(p.getId());
+            if (ligne == null || !ligne.correspond(p, nomCategorie)) ligne = new LigneProduit(p, nomCategorie);
+            lignes.add(ligne);
+            ligneParId.put(p.getId(), ligne);
+        }
+        lignesProduits.setAll(lignes);
+    }
+
+    /**
+     * Colonne de la table produits : la cellule affiche le texte préformaté de la ligne,
+     * sans formatage ni objet créé pendant le défilement
+     */
+    private static void colonne(TableColumn<LigneProduit, LigneProduit> colonne,
+                                Function<LigneProduit, String> texte, Comparator<LigneProduit> ordre) {
+        colonne.setCellValueFactory(c -> c.getValue());
+        colonne.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(LigneProduit ligne, boolean vide) {
+                super.updateItem(ligne, vide);
+                setText(vide || ligne == null ? null : texte.apply(ligne));
+            }
+        });
+        colonne.setComparator(ordre);
+    }
+
     private void fillProductForm(Product p) {
         if (p == null) return;
         productNameField.setText(p.getNom());
-        productDescField.setText(p.getDescription());
-        productPriceField.setText(String.valueOf(p.getPrix()));
+        afficherDescription(p);
+        productPriceField.setText(Montant.versTexte(p.getPrixCentimes()));
         productQtyField.setText(String.valueOf(p.getQuantite()));
         productDateField.setValue(p.getDateExpiration());
         Category cat = categoryById.get(p.getIdCategorie());
         productCategoryCombo.setValue(cat);
+        productCodeField.setText(p.getCode());
+    }
+
+    /**
+     * La description n'est pas dans la liste : lue une fois à la première sélection, puis
+     * gardée en cache. Le champ reste désactivé pendant la lecture, et après un échec jusqu'à
+     * une nouvelle lecture (nouvelle sélection ou tentative de modification).
+     */
+    private void afficherDescription(Product p) {
+        int id = p.getId();
+        if (p.getDescription() != null) descriptions.put(id, p.getDescription());
+        if (descriptions.containsKey(id)) {
+            productDescField.setDisable(false);
+            productDescField.setText(descriptions.get(id));
+            return;
+        }
+        productDescField.clear();
+        productDescField.setDisable(true);
+        descriptionEnCours = id;
+        productService.getDescriptionProduitAsync(id).whenCompleteAsync((description, erreur) -> {
+            if (Objects.equals(descriptionEnCours, id)) descriptionEnCours = null;
+            if (erreur != null) {
+                showStatus(productStatus, "Description indisponible, modifiez à nouveau pour réessayer", false);
+                return;
+            }
+            descriptions.put(id, description);
+            Product selection = produitSelectionne();
+            if (selection != null && selection.getId() == id) {
+                productDescField.setText(description);
+                productDescField.setDisable(false);
+            }
+        }, Platform::runLater);
     }
 
     private void clearProductForm() {
         productNameField.clear();
         productDescField.clear();
+        productDescField.setDisable(false);
         productPriceField.clear();
         productQtyField.clear();
         productDateField.setValue(null);
         productCategoryCombo.setValue(null);
+        productCodeField.clear();
     }
 
     // ==================== CATEGORIES ====================
     @FXML
     private void refreshCategories() {
         try {
-            categories.setAll(categoryService.listerToutesLesCategories());
-            categoryById.clear();
-            for (Category c : categories) {
-                categoryById.put(c.getId(), c);
-            }
+            appliquerCategories(categoryService.listerToutesLesCategories());
             productCategoryCombo.setItems(categories);
             showStatus(categoryStatus, "Liste rafraîchie", true);
         } catch (Exception e) {
@@ -334,6 +1012,15 @@ public class DashboardController {
         }
     }
 
+    private void appliquerCategories(List<Category> liste) {
+        categories.setAll(liste);
+        categoryById.clear();
+        for (Category c : categories) {
+            categoryById.put(c.getId(), c);
+        }
+        actualiserLignes();
+    }
+
     @FXML
     private void addCategorie() {
         String nom = categoryNameField.getText().trim();
@@ -346,11 +1033,7 @@ public class DashboardController {
             Category c = new Category(nom, desc);
             int id = categoryService.ajouterCategorie(c);
             showStatus(categoryStatus, id > 0 ? "Catégorie ajoutée avec succès" : "Échec de l'ajout", id > 0);
-            if (id > 0) {
-                refreshCategories();
-                refreshProduits();
-                clearCategoryForm();
-            }
+            if (id > 0) clearCategoryForm();
         } catch (IllegalArgumentException e) {
             showStatus(categoryStatus, e.getMessage(), false);
         } catch (Exception e) {
@@ -372,14 +1055,33 @@ public class DashboardController {
             return;
         }
         try {
-            selected.setNom(nom);
-            selected.setDescription(categoryDescField.getText());
-            boolean ok = categoryService.modifierCategorie(selected);
-            showStatus(categoryStatus, ok ? "Catégorie mise à jour avec succès" : "Échec de la mise à jour", ok);
-            if (ok) {
-                refreshCategories();
-                refreshProduits();
+            Category c = new Category(selected.getId(), nom, categoryDescField.getText());
+            c.setVersion(selected.getVersion());
+            boolean ok;
+            try {
+                ok = categoryService.modifierCategorie(c);
+            } catch (ConflitVersionException conflit) {
+                Category actuelle = conflit.getCategorieActuelle();
+                Alert alerte = new Alert(Alert.AlertType.CONFIRMATION);
+                alerte.setTitle("Modification concurrente");
+                alerte.setHeaderText("Catégorie modifiée par un autre poste");
+                alerte.setContentText("Valeurs actuelles : " + actuelle.getNom() +
+                    (actuelle.getDescription() != null ? " — " + actuelle.getDescription() : "") +
+                    "\nRemplacer par les vôtres ?");
+                ButtonType garder = new ButtonType("Garder mes valeurs", ButtonBar.ButtonData.OK_DONE);
+                alerte.getButtonTypes().setAll(garder, new ButtonType("Recharger", ButtonBar.ButtonData.CANCEL_CLOSE));
+                if (alerte.showAndWait().filter(b -> b == garder).isEmpty()) {
+                    showStatus(categoryStatus, "Modification abandonnée, catégorie rechargée", false);
+                    refreshCategories();
+                    return;
+                }
+                c.setVersion(actuelle.getVersion());
+                ok = categoryService.modifierCategorie(c);
             }
+            showStatus(categoryStatus, ok ? "Catégorie mise à jour avec succès" : "Échec de la mise à jour", ok);
+        } catch (ConflitVersionException e) {
+            showStatus(categoryStatus, e.getMessage() + ", réessayez", false);
+            refreshCategories();
         } catch (IllegalArgumentException e) {
             showStatus(categoryStatus, e.getMessage(), false);
         } catch (Exception e) {
@@ -408,8 +1110,6 @@ public class DashboardController {
                 showStatus(categoryStatus, ok ? "Catégorie supprimée avec succès" : 
                     "Échec : la catégorie est liée à des produits", ok);
                 if (ok) {
-                    refreshCategories();
-                    refreshProduits();
                     clearCategoryForm();
                 }
             } catch (Exception e) {
@@ -470,20 +1170,22 @@ public class DashboardController {
             return;
         }
         
-        try {
-            User u = new User(nom, email, pwd, role);
-            int id = userService.ajouterUtilisateur(u, pwd);
-            showStatus(userStatus, id > 0 ? "Utilisateur ajouté avec succès" : "Échec de l'ajout", id > 0);
-            if (id > 0) {
-                refreshUsers();
-                clearUserForm();
+        User u = new User(nom, email, pwd, role);
+        if (userSiteCombo.getValue() != null) u.setIdSite(userSiteCombo.getValue());
+        showStatus(userStatus, "Ajout en cours...", true);
+        // Hashage du mot de passe hors du thread JavaFX
+        userService.ajouterUtilisateurAsync(u, pwd).whenCompleteAsync((id, erreur) -> {
+            Throwable cause = erreur instanceof CompletionException ? erreur.getCause() : erreur;
+            if (cause instanceof IllegalArgumentException) {
+                showStatus(userStatus, cause.getMessage(), false);
+            } else if (cause != null) {
+                showError("Erreur lors de l'ajout : " + cause.getMessage());
+                showStatus(userStatus, "Erreur de connexion à la base de données", false);
+            } else {
+                showStatus(userStatus, id > 0 ? "Utilisateur ajouté avec succès" : "Échec de l'ajout", id > 0);
+                if (id > 0) clearUserForm();
             }
-        } catch (IllegalArgumentException e) {
-            showStatus(userStatus, e.getMessage(), false);
-        } catch (Exception e) {
-            showError("Erreur lors de l'ajout : " + e.getMessage());
-            showStatus(userStatus, "Erreur de connexion à la base de données", false);
-        }
+        }, Platform::runLater);
     }
 
     @FXML
@@ -517,9 +1219,9 @@ public class DashboardController {
             selected.setNom(nom);
             selected.setEmail(email);
             selected.setRole(role);
+            if (userSiteCombo.getValue() != null) selected.setIdSite(userSiteCombo.getValue());
             boolean ok = userService.modifierUtilisateur(selected);
             showStatus(userStatus, ok ? "Utilisateur mis à jour avec succès" : "Échec de la mise à jour", ok);
-            if (ok) refreshUsers();
         } catch (IllegalArgumentException e) {
             showStatus(userStatus, e.getMessage(), false);
         } catch (Exception e) {
@@ -553,7 +1255,6 @@ public class DashboardController {
                 boolean ok = userService.supprimerUtilisateur(selected.getId());
                 showStatus(userStatus, ok ? "Utilisateur supprimé avec succès" : "Échec de la suppression", ok);
                 if (ok) {
-                    refreshUsers();
                     clearUserForm();
                 }
             } catch (Exception e) {
@@ -568,6 +1269,7 @@ public class DashboardController {
         userNameField.setText(u.getNom());
         userEmailField.setText(u.getEmail());
         userRoleCombo.setValue(u.getRole());
+        userSiteCombo.setValue(u.getIdSite());
         userPasswordField.clear(); // on ne remplit pas le mot de passe existant
     }
 
@@ -576,9 +1278,121 @@ public class DashboardController {
         userEmailField.clear();
         userPasswordField.clear();
         userRoleCombo.setValue(null);
+        userSiteCombo.setValue(DatabaseConnection.getSiteParDefaut());
+    }
+
+    // ==================== ÉVÉNEMENTS ====================
+
+    /**
+     * Reçu sur un thread du bus : l'événement est mis en file et un seul passage sur le thread
+     * JavaFX applique tout ce qui est arrivé entre-temps (une révision de prix ou un inventaire
+     * publie un événement par produit)
+     */
+    private void recevoirEvenement(EvenementDomaine evenement) {
+        evenementsEnAttente.add(evenement);
+        if (vidageProgramme.compareAndSet(false, true)) Platform.runLater(this::appliquerEvenements);
+    }
+
+    /**
+     * Applique le lot en attente : les produits changés sont retrouvés par {@code productById},
+     * ceux d'une version antérieure à la ligne affichée sont ignorés, et la liste n'est réécrite
+     * qu'une fois. Les produits d'un autre site que celui affiché sont ignorés.
+     */
+    private void appliquerEvenements() {
+        vidageProgramme.set(false);
+        // Produits changés par le lot (null = supprimé), dans l'ordre de réception
+        Map<Integer, Product> changes = new LinkedHashMap<>();
+        EvenementDomaine evenement;
+        while ((evenement = evenementsEnAttente.poll()) != null) {
+            appliquerEvenement(evenement, changes);
+        }
+        if (changes.isEmpty()) return;
+        List<Product> liste = new ArrayList<>(produits.size() + changes.size());
+        for (Product p : produits) {
+            if (!changes.containsKey(p.getId())) liste.add(p);
+            else if (changes.get(p.getId()) != null) liste.add(changes.remove(p.getId()));
+            else changes.remove(p.getId());
+        }
+        // Reste : produits absents de la liste (ajoutés ailleurs)
+        for (Product p : changes.values()) {
+            if (p != null) liste.add(p);
+        }
+        produits.setAll(liste);
+    }
+
+    private void appliquerEvenement(EvenementDomaine evenement, Map<Integer, Product> changes) {
+        if (evenement instanceof EvenementDomaine.CategorieModifiee) {
+            EvenementDomaine.CategorieModifiee e = (EvenementDomaine.CategorieModifiee) evenement;
+            List<Category> liste = new ArrayList<>(categories);
+            liste.removeIf(c -> c.getId() == e.getIdCategorie());
+            if (e.getCategorie() != null) liste.add(e.getCategorie());
+            liste.sort(Comparator.comparing(Category::getNom, String.CASE_INSENSITIVE_ORDER));
+            appliquerCategories(liste); // les lignes de produits de la catégorie sont reformatées
+            return;
+        }
+        if (evenement instanceof EvenementDomaine.UtilisateurModifie) {
+            EvenementDomaine.UtilisateurModifie e = (EvenementDomaine.UtilisateurModifie) evenement;
+            if (currentUser.isAdmin()) remplacer(users, User::getId, e.getIdUtilisateur(), e.getUtilisateur());
+            return;
+        }
+        if (evenement.getSite() != DatabaseConnection.getSiteCourant()) return;
+        if (evenement instanceof EvenementDomaine.ProduitAjoute) {
+            Product p = ((EvenementDomaine.ProduitAjoute) evenement).getProduit();
+            changes.put(p.getId(), p);
+        } else if (evenement instanceof EvenementDomaine.ProduitModifie) {
+            Product p = ((EvenementDomaine.ProduitModifie) evenement).getProduit();
+            Product connu = produitAffiche(p.getId(), changes);
+            // Arrivé après une écriture plus récente déjà affichée
+            if (connu != null && p.getVersion() < connu.getVersion()) return;
+            if (p.getDescription() != null) descriptions.put(p.getId(), p.getDescription());
+            changes.put(p.getId(), p);
+        } else if (evenement instanceof EvenementDomaine.ProduitSupprime) {
+            int id = ((EvenementDomaine.ProduitSupprime) evenement).getIdProduit();
+            descriptions.remove(id);
+            changes.put(id, null);
+        } else if (evenement instanceof EvenementDomaine.StockMouvemente) {
+            EvenementDomaine.StockMouvemente e = (EvenementDomaine.StockMouvemente) evenement;
+            Product connu = produitAffiche(e.getIdProduit(), changes);
+            // Déjà reçu par ProduitModifie, ou plus ancien que la ligne affichée
+            if (connu == null || e.getVersion() <= connu.getVersion()) return;
+            Product p = new Product(connu.getId(), connu.getNom(), connu.getDescription(), connu.getPrixCentimes(),
+                e.getQuantite(), connu.getDateExpiration(), connu.getIdCategorie());
+            p.setCode(connu.getCode());
+            p.setIdSite(connu.getIdSite());
+            p.setVersion(e.getVersion());
+            changes.put(p.getId(), p);
+        }
+    }
+
+    /**
+     * Produit tel qu'il sera affiché après le lot en cours (null s'il est absent ou supprimé)
+     */
+    private Product produitAffiche(int id, Map<Integer, Product> changes) {
+        return changes.containsKey(id) ? changes.get(id) : productById.get(id);
+    }
+
+    /**
+     * Remplace l'élément d'identifiant {@code id} (ajouté s'il est absent, retiré si {@code valeur} est null)
+     */
+    private static <T> void remplacer(ObservableList<T> liste, Function<T, Integer> identifiant, int id, T valeur) {
+        for (int i = 0; i < liste.size(); i++) {
+            if (identifiant.apply(liste.get(i)) == id) {
+                if (valeur != null) liste.set(i, valeur);
+                else liste.remove(i);
+                return;
+            }
+        }
+        if (valeur != null) liste.add(valeur);
     }
 
     // ==================== UTIL ====================
+
+    private static void masquer(Node noeud) {
+        if (noeud == null) return;
+        noeud.setVisible(false);
+        noeud.setManaged(false);
+    }
+
     @FXML
     private void handleLogout() {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
@@ -586,11 +1400,26 @@ public class DashboardController {
         confirm.setHeaderText("Voulez-vous vous déconnecter ?");
         
         if (confirm.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK) {
+            DatabaseConnection.retirerEcouteurEtat(ecouteurEtatBase);
+            BusEvenements.desabonner(ecouteurEvenements);
             authService.seDeconnecter();
             onLogout.run();
         }
     }
 
+    private void afficherEtatBase(Disjoncteur.Etat etat) {
+        switch (etat) {
+            case OUVERT:
+                etatBaseLabel.setText("⚠ Base de données injoignable — mode dégradé");
+                break;
+            case SEMI_OUVERT:
+                etatBaseLabel.setText("⚠ Reconnexion à la base en cours...");
+                break;
+            default:
+                etatBaseLabel.setText("");
+        }
+    }
+
     private void showStatus(Label label, String text, boolean success) {
         label.setText(text);
         label.setStyle(success ? "-fx-text-fill: green;" : "-fx-text-fill: crimson;");
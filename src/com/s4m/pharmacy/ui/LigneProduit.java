@@ -0,0 +1,97 @@
+package com.s4m.pharmacy.ui;
+
+import com.s4m.pharmacy.model.Product;
+import com.s4m.pharmacy.util.Montant;
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Ligne affichée dans la table des produits : textes formatés une seule fois et clés de tri
+ * primitives, pour un défilement sans allocation. Immuable ; une nouvelle ligne remplace
+ * l'ancienne quand le produit (ou le nom de sa catégorie) change.
+ *
+ * La ligne est sa propre valeur observable : la fabrique de valeurs des colonnes la renvoie
+ * telle quelle et chaque cellule n'en affiche que le texte qui la concerne.
+ */
+final class LigneProduit implements ObservableValue<LigneProduit> {
+
+    private static final DateTimeFormatter FORMAT_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    static final Comparator<LigneProduit> PAR_NOM = (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.nom, b.nom);
+    static final Comparator<LigneProduit> PAR_PRIX = (a, b) -> Long.compare(a.prix, b.prix);
+    static final Comparator<LigneProduit> PAR_QUANTITE = (a, b) -> Integer.compare(a.quantite, b.quantite);
+    static final Comparator<LigneProduit> PAR_EXPIRATION = (a, b) -> Long.compare(a.jourExpiration, b.jourExpiration);
+    static final Comparator<LigneProduit> PAR_CATEGORIE = (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.categorie, b.categorie);
+
+    private final Product produit;
+    private final String nom;
+    private final String nomMinuscule;
+    private final long prix; // centimes
+    private final String prixTexte;
+    private final int quantite;
+    private final String quantiteTexte;
+    private final long jourExpiration;
+    private final String expirationTexte;
+    private final String categorie;
+
+    LigneProduit(Product produit, String categorie) {
+        this.produit = produit;
+        this.nom = produit.getNom() != null ? produit.getNom() : "";
+        this.nomMinuscule = nom.toLowerCase(Locale.ROOT);
+        this.prix = produit.getPrixCentimes();
+        this.prixTexte = Montant.formater(prix);
+        this.quantite = produit.getQuantite();
+        this.quantiteTexte = Integer.toString(quantite);
+        LocalDate date = produit.getDateExpiration();
+        // Sans date : trié après toutes les autres
+        this.jourExpiration = date != null ? date.toEpochDay() : Long.MAX_VALUE;
+        this.expirationTexte = date != null ? date.format(FORMAT_DATE) : "";
+        this.categorie = categorie != null ? categorie : "";
+    }
+
+    Product getProduit() { return produit; }
+    String getNom() { return nom; }
+    String getPrixTexte() { return prixTexte; }
+    String getQuantiteTexte() { return quantiteTexte; }
+    String getExpirationTexte() { return expirationTexte; }
+    String getCategorie() { return categorie; }
+
+    /**
+     * Vrai si la ligne affiche encore fidèlement ce produit et cette catégorie
+     */
+    boolean correspond(Product p, String nomCategorie) {
+        return produit == p && categorie.equals(nomCategorie != null ? nomCategorie : "");
+    }
+
+    /**
+     * Recherche : {@code terme} déjà en minuscules (calculé une fois par saisie, pas par ligne)
+     */
+    boolean contient(String terme) {
+        return nomMinuscule.contains(terme) || (produit.getCode() != null && produit.getCode().contains(terme));
+    }
+
+    // ==================== VALEUR OBSERVABLE (immuable) ====================
+
+    @Override
+    public LigneProduit getValue() {
+        return this;
+    }
+
+    @Override
+    public void addListener(ChangeListener<? super LigneProduit> listener) {}
+
+    @Override
+    public void removeListener(ChangeListener<? super LigneProduit> listener) {}
+
+    @Override
+    public void addListener(InvalidationListener listener) {}
+
+    @Override
+    public void removeListener(InvalidationListener listener) {}
+}
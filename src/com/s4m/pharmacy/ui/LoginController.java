@@ -2,11 +2,14 @@ package com.s4m.pharmacy.ui;
 
 import com.s4m.pharmacy.model.User;
 import com.s4m.pharmacy.service.AuthService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 /**
@@ -26,6 +29,9 @@ public class LoginController {
     @FXML
     private Label statusLabel;
 
+    @FXML
+    private Button loginButton;
+
     public LoginController(AuthService authService, Consumer<User> onLoginSuccess) {
         this.authService = authService;
         this.onLoginSuccess = onLoginSuccess;
@@ -33,6 +39,8 @@ public class LoginController {
 
     @FXML
     private void handleLogin() {
+        // Une vérification à la fois : des clics répétés ne doivent pas empiler les hashages
+        if (loginButton.isDisabled()) return;
         String email = emailField.getText().trim();
         String password = passwordField.getText();
 
@@ -42,9 +50,18 @@ public class LoginController {
             return;
         }
 
-        try {
-            boolean ok = authService.seConnecter(email, password);
-            if (ok) {
+        statusLabel.setText("Vérification...");
+        statusLabel.setStyle("-fx-text-fill: gray;");
+        loginButton.setDisable(true);
+        // Le hashage PBKDF2 est volontairement coûteux : il ne doit pas bloquer le thread JavaFX
+        authService.seConnecterAsync(email, password).whenCompleteAsync((ok, erreur) -> {
+            loginButton.setDisable(false);
+            if (erreur != null) {
+                boolean sature = erreur.getCause() instanceof RejectedExecutionException
+                        || erreur instanceof RejectedExecutionException;
+                statusLabel.setText(sature ? "Trop de connexions en cours, réessayez" : "Erreur de connexion à la base de données");
+                statusLabel.setStyle("-fx-text-fill: crimson;");
+            } else if (ok) {
                 statusLabel.setText("Connexion réussie");
                 statusLabel.setStyle("-fx-text-fill: green;");
                 onLoginSuccess.accept(authService.getUtilisateurConnecte());
@@ -52,10 +69,7 @@ public class LoginController {
                 statusLabel.setText("Identifiants incorrects");
                 statusLabel.setStyle("-fx-text-fill: crimson;");
             }
-        } catch (Exception e) {
-            statusLabel.setText("Erreur de connexion à la base de données");
-            statusLabel.setStyle("-fx-text-fill: crimson;");
-        }
+        }, Platform::runLater);
     }
 }
 
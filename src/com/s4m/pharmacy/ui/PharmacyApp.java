@@ -1,37 +1,110 @@
 package com.s4m.pharmacy.ui;
 
+import com.s4m.pharmacy.audit.Audit;
 import com.s4m.pharmacy.db.DatabaseConnection;
 import com.s4m.pharmacy.model.User;
+import com.s4m.pharmacy.offline.CatalogueLocal;
+import com.s4m.pharmacy.offline.ModeHorsLigne;
+import com.s4m.pharmacy.offline.OfflineCategoryService;
+import com.s4m.pharmacy.offline.OfflineProductService;
+import com.s4m.pharmacy.server.RemoteAuthService;
+import com.s4m.pharmacy.server.RemoteCategoryService;
+import com.s4m.pharmacy.server.RemoteClient;
+import com.s4m.pharmacy.server.RemoteProductService;
+import com.s4m.pharmacy.server.RemoteUserService;
+import com.s4m.pharmacy.service.ArchivageService;
 import com.s4m.pharmacy.service.AuthService;
 import com.s4m.pharmacy.service.CategoryService;
+import com.s4m.pharmacy.service.InstantaneStockService;
 import com.s4m.pharmacy.service.ProductService;
 import com.s4m.pharmacy.service.UserService;
+import com.s4m.pharmacy.util.PasswordHasher;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Point d'entrée JavaFX : affiche d'abord l'écran de connexion puis un tableau produits.
  */
 public class PharmacyApp extends Application {
 
-    private final AuthService authService = new AuthService();
-    private final ProductService productService = new ProductService();
-    private final CategoryService categoryService = new CategoryService();
-    private final UserService userService = new UserService();
+    private static final String TITRE = "Pharmacy - JavaFX";
+
+    // Si server.url est configuré, le terminal passe par le serveur partagé au lieu de MySQL
+    private final RemoteClient remote = RemoteClient.depuisConfiguration();
+    // Si offline.enabled=true (accès direct uniquement), le terminal survit aux coupures de la base
+    private final ModeHorsLigne horsLigne = remote == null ? ModeHorsLigne.depuisConfiguration() : null;
+    private final AuthService authService;
+    private final ProductService productService;
+    private final CategoryService categoryService;
+    private final UserService userService;
+    // Dernier catalogue sur disque pour un affichage immédiat (accès direct uniquement)
+    private final CatalogueLocal catalogueLocal;
     private Stage primaryStage;
+    // Archivage périodique et instantanés de stock (accès direct, poste désigné par taches.poste)
+    private ScheduledExecutorService archivage;
+    private ScheduledExecutorService instantanes;
+
+    public PharmacyApp() {
+        if (remote != null) {
+            authService = new RemoteAuthService(remote);
+            productService = new RemoteProductService(remote);
+            categoryService = new RemoteCategoryService(remote);
+            userService = new RemoteUserService(remote);
+            catalogueLocal = null;
+        } else {
+            authService = new AuthService();
+            productService = horsLigne != null ? new OfflineProductService(horsLigne) : new ProductService();
+            categoryService = horsLigne != null ? new OfflineCategoryService(horsLigne) : new CategoryService();
+            userService = new UserService();
+            catalogueLocal = CatalogueLocal.depuisConfiguration(productService, categoryService);
+        }
+    }
 
     @Override
     public void init() {
+        if (remote != null) return;
+        // Calibre le coût du hashage des mots de passe sur cette machine, avant que
+        // l'initialisation ne hashe les utilisateurs par défaut
+        PasswordHasher.calibrer(DatabaseConnection.getConfig().getHashBudgetMs());
         // Initialise la base de données (création BD + données par défaut)
         DatabaseConnection.initialiser();
+        // Les écritures sont attribuées à l'utilisateur connecté sur ce terminal
+        Audit.definirSourceUtilisateur(authService::getUtilisateurConnecte);
+        // Le stock affiché et modifié est celui du site de l'utilisateur connecté
+        DatabaseConnection.definirSourceSite(() -> {
+            User user = authService.getUtilisateurConnecte();
+            return user != null && user.getIdSite() > 0 ? user.getIdSite() : DatabaseConnection.getSiteParDefaut();
+        });
+        if (horsLigne != null) horsLigne.demarrer();
+        // Un seul processus par installation : le serveur, ou le poste désigné (taches.poste)
+        if (DatabaseConnection.getConfig().isTachesPoste()) {
+            archivage = ArchivageService.planifier();
+            instantanes = InstantaneStockService.planifier();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (horsLigne != null) horsLigne.arreter();
+        if (archivage != null) archivage.shutdownNow();
+        if (instantanes != null) instantanes.shutdownNow();
+        if (remote == null) Audit.arreter();
     }
 
     @Override
     public void start(Stage stage) {
         this.primaryStage = stage;
-        this.primaryStage.setTitle("Pharmacy - JavaFX");
+        this.primaryStage.setTitle(TITRE);
+        if (horsLigne != null) {
+            horsLigne.ajouterEcouteur(mode -> Platform.runLater(() -> primaryStage.setTitle(mode.estEnLigne()
+                ? TITRE
+                : TITRE + " (hors ligne, " + mode.operationsEnAttente() + " opération(s) en attente)")));
+        }
         showLoginView();
         this.primaryStage.show();
     }
@@ -67,6 +140,7 @@ public class PharmacyApp extends Application {
                             productService,
                             categoryService,
                             userService,
+                            catalogueLocal,
                             this::onLogout);
                 }
                 try {
@@ -0,0 +1,88 @@
+package com.s4m.pharmacy.util;
+
+/**
+ * Normalisation et validation des codes produits lus à la douchette :
+ * EAN-8, EAN-13 (dont CIP13, préfixe 34009), GTIN-14, CIP7, ainsi que le
+ * DataMatrix GS1 des boîtes de médicaments (identifiant d'application 01).
+ */
+public final class CodeBarre {
+
+    private static final String AI_GTIN = "01";
+    private static final String SYMBOLOGIE_DATAMATRIX = "]d2";
+    private static final char FNC1 = '\u001D';
+
+    private CodeBarre() {}
+
+    /**
+     * Retourne la forme canonique du code (chiffres seuls, GTIN-14 à zéro initial ramené
+     * à 13 chiffres), ou null si la saisie est vide ; un DataMatrix GS1 tronqué est refusé
+     * ({@link IllegalArgumentException})
+     */
+    public static String normaliser(String brut) {
+        if (brut == null) return null;
+        String code = brut.strip();
+        // Identifiant de symbologie (]d2) et FNC1 initial transmis par certaines douchettes
+        if (code.startsWith(SYMBOLOGIE_DATAMATRIX)) code = code.substring(SYMBOLOGIE_DATAMATRIX.length());
+        while (!code.isEmpty() && code.charAt(0) == FNC1) code = code.substring(1);
+        code = code.strip();
+        if (code.isEmpty()) return null;
+        // DataMatrix GS1 : (01) + GTIN-14, suivi éventuellement de l'expiration et du lot
+        if (code.length() > 14 && code.startsWith(AI_GTIN)) {
+            if (code.length() < 16) throw new IllegalArgumentException("DataMatrix incomplet : " + code);
+            code = code.substring(2, 16);
+        }
+        if (code.length() == 14 && code.charAt(0) == '0') {
+            code = code.substring(1);
+        }
+        return code;
+    }
+
+    /**
+     * Forme canonique pour une recherche : null si la saisie est vide ou illisible
+     */
+    public static String cleRecherche(String brut) {
+        try {
+            return normaliser(brut);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Vérifie le format et, pour les GTIN, la clé de contrôle
+     */
+    public static boolean estValide(String code) {
+        if (code == null) return false;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        switch (code.length()) {
+            case 7:
+                return true;
+            case 8:
+            case 12:
+            case 13:
+            case 14:
+                return cleGtin(code) == code.charAt(code.length() - 1) - '0';
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Complète des chiffres (EAN/GTIN sans clé) par leur clé de contrôle
+     */
+    public static String avecCle(String chiffres) {
+        return chiffres + cleGtin(chiffres + "0");
+    }
+
+    private static int cleGtin(String code) {
+        int somme = 0;
+        // Pondération 3,1,3... en partant du chiffre qui précède la clé
+        for (int i = code.length() - 2, poids = 3; i >= 0; i--, poids = 4 - poids) {
+            somme += (code.charAt(i) - '0') * poids;
+        }
+        return (10 - somme % 10) % 10;
+    }
+}
@@ -0,0 +1,222 @@
+package com.s4m.pharmacy.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodeur/décodeur JSON minimal (objets, tableaux, chaînes, nombres, booléens, null).
+ * Les objets sont lus en {@code Map<String, Object>}, les tableaux en {@code List<Object>},
+ * les nombres en {@code Long} ou {@code Double}.
+ */
+public final class Json {
+
+    private Json() {}
+
+    /**
+     * Sérialise une valeur (Map, Iterable, CharSequence, Number, Boolean ou null)
+     */
+    public static String ecrire(Object valeur) {
+        StringBuilder sb = new StringBuilder(128);
+        ecrire(sb, valeur);
+        return sb.toString();
+    }
+
+    /**
+     * Analyse un texte JSON
+     */
+    public static Object lire(String texte) {
+        Lecteur lecteur = new Lecteur(texte);
+        Object valeur = lecteur.valeur();
+        lecteur.espaces();
+        if (lecteur.pos != texte.length()) throw lecteur.erreur("fin de texte attendue");
+        return valeur;
+    }
+
+    /**
+     * Analyse un objet JSON
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> lireObjet(String texte) {
+        Object valeur = lire(texte);
+        if (!(valeur instanceof Map)) throw new IllegalArgumentException("Objet JSON attendu");
+        return (Map<String, Object>) valeur;
+    }
+
+    private static void ecrire(StringBuilder sb, Object valeur) {
+        if (valeur == null) {
+            sb.append("null");
+        } else if (valeur instanceof CharSequence || valeur instanceof Enum || valeur instanceof java.time.temporal.Temporal) {
+            ecrireChaine(sb, valeur.toString());
+        } else if (valeur instanceof Number || valeur instanceof Boolean) {
+            sb.append(valeur);
+        } else if (valeur instanceof Map) {
+            sb.append('{');
+            boolean premier = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) valeur).entrySet()) {
+                if (!premier) sb.append(',');
+                premier = false;
+                ecrireChaine(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                ecrire(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (valeur instanceof Iterable) {
+            sb.append('[');
+            boolean premier = true;
+            for (Object o : (Iterable<?>) valeur) {
+                if (!premier) sb.append(',');
+                premier = false;
+                ecrire(sb, o);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Type non sérialisable en JSON : " + valeur.getClass().getName());
+        }
+    }
+
+    private static void ecrireChaine(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static final class Lecteur {
+        private final String texte;
+        private int pos;
+
+        private Lecteur(String texte) {
+            this.texte = texte;
+        }
+
+        private Object valeur() {
+            espaces();
+            if (pos >= texte.length()) throw erreur("valeur attendue");
+            char c = texte.charAt(pos);
+            switch (c) {
+                case '{': return objet();
+                case '[': return tableau();
+                case '"': return chaine();
+                case 't': return mot("true", Boolean.TRUE);
+                case 'f': return mot("false", Boolean.FALSE);
+                case 'n': return mot("null", null);
+                default: return nombre();
+            }
+        }
+
+        private Map<String, Object> objet() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            espaces();
+            if (suivantEst('}')) return map;
+            do {
+                espaces();
+                if (pos >= texte.length() || texte.charAt(pos) != '"') throw erreur("clé attendue");
+                String cle = chaine();
+                espaces();
+                attendre(':');
+                map.put(cle, valeur());
+                espaces();
+            } while (suivantEst(','));
+            attendre('}');
+            return map;
+        }
+
+        private List<Object> tableau() {
+            List<Object> liste = new ArrayList<>();
+            pos++;
+            espaces();
+            if (suivantEst(']')) return liste;
+            do {
+                liste.add(valeur());
+                espaces();
+            } while (suivantEst(','));
+            attendre(']');
+            return liste;
+        }
+
+        private String chaine() {
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (pos < texte.length()) {
+                char c = texte.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= texte.length()) break;
+                char e = texte.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > texte.length()) throw erreur("séquence \\u incomplète");
+                        sb.append((char) Integer.parseInt(texte.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+            throw erreur("chaîne non terminée");
+        }
+
+        private Object nombre() {
+            int debut = pos;
+            while (pos < texte.length() && "+-0123456789.eE".indexOf(texte.charAt(pos)) >= 0) pos++;
+            String s = texte.substring(debut, pos);
+            if (s.isEmpty()) throw erreur("valeur inattendue");
+            try {
+                if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) return Long.parseLong(s);
+                return Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                throw erreur("nombre invalide '" + s + "'");
+            }
+        }
+
+        private Object mot(String mot, Object valeur) {
+            if (!texte.startsWith(mot, pos)) throw erreur("valeur inattendue");
+            pos += mot.length();
+            return valeur;
+        }
+
+        private boolean suivantEst(char c) {
+            if (pos < texte.length() && texte.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void attendre(char c) {
+            if (!suivantEst(c)) throw erreur("'" + c + "' attendu");
+        }
+
+        private void espaces() {
+            while (pos < texte.length() && Character.isWhitespace(texte.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException erreur(String message) {
+            return new IllegalArgumentException("JSON invalide à la position " + pos + " : " + message);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.s4m.pharmacy.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Montants en centimes ({@code long}) : les prix circulent en entiers du modèle à l'écran,
+ * les sommes et comparaisons sont exactes et sans allocation. {@link BigDecimal} n'apparaît
+ * qu'aux frontières : colonnes {@code DECIMAL(10, 2)}, JSON et saisie.
+ */
+public final class Montant {
+
+    private static final char SEPARATEUR = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+
+    private Montant() {}
+
+    // ==================== JDBC ====================
+
+    public static long lire(ResultSet rs, int colonne) throws SQLException {
+        BigDecimal valeur = rs.getBigDecimal(colonne);
+        return valeur != null ? depuisDecimal(valeur) : 0;
+    }
+
+    public static void lier(PreparedStatement pstmt, int parametre, long centimes) throws SQLException {
+        pstmt.setBigDecimal(parametre, versDecimal(centimes));
+    }
+
+    // ==================== CONVERSIONS ====================
+
+    /**
+     * Arrondi au centime le plus proche (demi vers le haut)
+     */
+    public static long depuisDecimal(BigDecimal valeur) {
+        return valeur.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal versDecimal(long centimes) {
+        return BigDecimal.valueOf(centimes, 2);
+    }
+
+    /**
+     * Nombre lu d'un JSON ou d'une ancienne donnée : pris pour sa plus courte écriture décimale
+     * (12.35 donne 1235 centimes, là où {@code 12.35 * 100} vaut 1234,999...)
+     */
+    public static long depuisDouble(double valeur) {
+        if (Double.isNaN(valeur) || Double.isInfinite(valeur)) {
+            throw new IllegalArgumentException("Montant invalide : " + valeur);
+        }
+        return depuisDecimal(BigDecimal.valueOf(valeur));
+    }
+
+    /**
+     * Saisie en euros : point ou virgule décimale, signe et symbole € acceptés, espaces de
+     * groupement ignorés (y compris insécables, U+00A0 et U+202F, que produit le formatage
+     * français). Plus de deux décimales significatives : refusé plutôt qu'arrondi.
+     */
+    public static long analyser(String texte) {
+        if (texte == null || texte.isBlank()) throw new NumberFormatException("Montant vide");
+        StringBuilder nettoye = new StringBuilder(texte.length());
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (c == '€' || Character.isWhitespace(c) || Character.isSpaceChar(c)) continue;
+            nettoye.append(c == ',' ? '.' : c);
+        }
+        BigDecimal valeur = new BigDecimal(nettoye.toString());
+        if (valeur.stripTrailingZeros().scale() > 2) {
+            throw new NumberFormatException("Montant au-delà du centime : " + texte.strip());
+        }
+        return valeur.movePointRight(2).longValueExact();
+    }
+
+    // ==================== CALCULS ====================
+
+    /**
+     * Prix unitaire multiplié par une quantité ; déborde en exception plutôt qu'en silence
+     */
+    public static long multiplier(long centimes, int quantite) {
+        return Math.multiplyExact(centimes, (long) quantite);
+    }
+
+    // ==================== AFFICHAGE ====================
+
+    /**
+     * {@code 1234,50 €} (séparateur décimal de la langue du poste)
+     */
+    public static String formater(long centimes) {
+        return ecrire(new StringBuilder(16), centimes, SEPARATEUR).append(" €").toString();
+    }
+
+    /**
+     * Écriture indépendante de la langue, pour la saisie et les libellés ({@code 1234.50})
+     */
+    public static String versTexte(long centimes) {
+        return ecrire(new StringBuilder(16), centimes, '.').toString();
+    }
+
+    private static StringBuilder ecrire(StringBuilder sb, long centimes, char separateur) {
+        if (centimes < 0) sb.append('-');
+        long absolu = Math.abs(centimes);
+        long reste = absolu % 100;
+        sb.append(absolu / 100).append(separateur);
+        if (reste < 10) sb.append('0');
+        return sb.append(reste);
+    }
+}
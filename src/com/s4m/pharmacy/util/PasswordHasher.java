@@ -1,16 +1,127 @@
 package com.s4m.pharmacy.util;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
 
 /**
- * Utilitaire pour le hashage des mots de passe avec SHA-256
+ * Utilitaire pour le hashage des mots de passe avec PBKDF2 (HMAC-SHA256, salé et itéré).
+ * Format auto-descriptif : {@code pbkdf2-sha256$<itérations>$<sel base64>$<hash base64>}.
+ * Les anciens hashs SHA-256 (64 caractères hexadécimaux) restent vérifiables
+ * et sont signalés par {@link #doitEtreRehashe(String)} pour être migrés.
  */
 public class PasswordHasher {
-    
+
+    private static final String PREFIXE = "pbkdf2-sha256";
+    private static final String ALGORITHME = "PBKDF2WithHmacSHA256";
+    private static final int TAILLE_SEL = 16;
+    private static final int TAILLE_HASH_BITS = 256;
+    private static final int ITERATIONS_MIN = 50_000;
+    private static final int ITERATIONS_MAX = 5_000_000;
+    private static final int ITERATIONS_SONDE = 20_000;
+    // Un hash n'est refait qu'en dessous des 3/4 du facteur courant : le calibrage, bruité et propre
+    // à chaque machine, ne doit pas faire rehasher un utilisateur à chaque changement de poste
+    private static final int TOLERANCE_NUMERATEUR = 3;
+    private static final int TOLERANCE_DENOMINATEUR = 4;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static volatile int iterations = 210_000;
+
     /**
-     * Hash un mot de passe avec SHA-256
+     * Hash un mot de passe avec PBKDF2 et le facteur de travail courant
      */
     public static String hashPassword(String password) {
+        return hashPassword(password, iterations);
+    }
+
+    /**
+     * Hash un mot de passe avec un nombre d'itérations explicite
+     */
+    public static String hashPassword(String password, int nbIterations) {
+        byte[] sel = new byte[TAILLE_SEL];
+        RANDOM.nextBytes(sel);
+        byte[] hash = pbkdf2(password, sel, nbIterations);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIXE + "$" + nbIterations + "$" + b64.encodeToString(sel) + "$" + b64.encodeToString(hash);
+    }
+
+    /**
+     * Vérifie si un mot de passe correspond à un hash (PBKDF2 ou ancien SHA-256)
+     */
+    public static boolean verifyPassword(String password, String hash) {
+        if (password == null || hash == null) return false;
+        if (estAncienFormat(hash)) {
+            byte[] attendu = sha256(password).getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(attendu, hash.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+        }
+        String[] parties = hash.split("\\$");
+        if (parties.length != 4 || !PREFIXE.equals(parties[0])) return false;
+        try {
+            int nbIterations = Integer.parseInt(parties[1]);
+            byte[] sel = Base64.getDecoder().decode(parties[2]);
+            byte[] attendu = Base64.getDecoder().decode(parties[3]);
+            return MessageDigest.isEqual(attendu, pbkdf2(password, sel, nbIterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indique si un hash stocké doit être recalculé (ancien format ou facteur de travail nettement
+     * inférieur au facteur courant)
+     */
+    public static boolean doitEtreRehashe(String hash) {
+        if (hash == null || estAncienFormat(hash)) return true;
+        String[] parties = hash.split("\\$");
+        if (parties.length != 4 || !PREFIXE.equals(parties[0])) return true;
+        try {
+            return Integer.parseInt(parties[1]) < (long) iterations * TOLERANCE_NUMERATEUR / TOLERANCE_DENOMINATEUR;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Calibre le nombre d'itérations pour qu'une vérification prenne environ le budget donné
+     * sur cette machine. Retourne le nombre d'itérations retenu. À appeler avant
+     * {@code DatabaseConnection.initialiser()}, qui hashe les utilisateurs par défaut.
+     */
+    public static int calibrer(long budgetMs) {
+        pbkdf2("calibration", new byte[TAILLE_SEL], ITERATIONS_SONDE); // préchauffage JIT
+        long debut = System.nanoTime();
+        pbkdf2("calibration", new byte[TAILLE_SEL], ITERATIONS_SONDE);
+        long nanosParIteration = Math.max(1, (System.nanoTime() - debut) / ITERATIONS_SONDE);
+        long cible = budgetMs * 1_000_000L / nanosParIteration;
+        iterations = (int) Math.max(ITERATIONS_MIN, Math.min(ITERATIONS_MAX, cible));
+        return iterations;
+    }
+
+    /**
+     * Nombre d'itérations utilisé pour les nouveaux hashs
+     */
+    public static int getIterations() {
+        return iterations;
+    }
+
+    private static boolean estAncienFormat(String hash) {
+        return hash.length() == 64 && hash.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] sel, int nbIterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), sel, nbIterations, TAILLE_HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHME).generateSecret(spec).getEncoded();
+        } catch (Exception e) {
+            throw new IllegalStateException("PBKDF2 indisponible : " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String sha256(String password) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             byte[] hash = md.digest(password.getBytes());
@@ -22,16 +133,7 @@ public class PasswordHasher {
             }
             return sb.toString();
         } catch (Exception e) {
-            System.err.println("Erreur lors du hashage du mot de passe : " + e.getMessage());
-            return null;
+            throw new IllegalStateException("SHA-256 indisponible : " + e.getMessage(), e);
         }
     }
-    
-    /**
-     * Vérifie si un mot de passe correspond à un hash
-     */
-    public static boolean verifyPassword(String password, String hash) {
-        String hashed = hashPassword(password);
-        return hashed != null && hashed.equals(hash);
-    }
 }